@@ -0,0 +1,121 @@
+package com.chatbot.service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Decoding and formatting one streamed reply of {@code tokens} frames, as it arrives
+ * (one network read per frame):
+ * <ul>
+ *   <li>{@code perLineMapper}: the old path, a new ObjectMapper and Map per line and
+ *       the uncompiled regex chain on every token (its per-token println left out)</li>
+ *   <li>{@code sharedMapper}: the same with one ObjectMapper</li>
+ *   <li>{@code streamingDecoder}: {@link OllamaStreamDecoder} and {@link ReplyFormatter}</li>
+ * </ul>
+ * Run with {@code mvn -P jmh test-compile exec:exec}; pass {@code "OllamaStream -prof gc"} as
+ * {@code -Djmh.args} to compare allocation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OllamaStreamBenchmark {
+
+    private static final String[] WORDS = {
+        "The", "lecture", "on", "Data", "Structures", "is", "at", "10", ":", "30", "AM", "in", "room",
+        "**", "B-204", "**", ".", "Next", ",", "you", "have", "a", "lab", "from", "2", "-", "4", "PM", "\n\n"
+    };
+
+    @Param({"500"})
+    public int tokens;
+
+    private List<String> lines;
+    private List<byte[]> frames;
+    private final ObjectMapper shared = new ObjectMapper();
+    private final JsonFactory factory = shared.getFactory();
+
+    @Setup
+    public void setUp() throws IOException {
+        Random random = new Random(7);
+        lines = new ArrayList<>();
+        frames = new ArrayList<>();
+        for (int i = 0; i < tokens; i++) {
+            String token = (random.nextInt(4) == 0 ? "" : " ") + WORDS[random.nextInt(WORDS.length)];
+            lines.add(shared.writeValueAsString(Map.of(
+                "model", "llama3.1", "created_at", "2024-01-01T00:00:00Z", "response", token, "done", false)));
+        }
+        // the last frame carries the token context, a long integer array
+        StringBuilder context = new StringBuilder("[");
+        for (int i = 0; i < 2048; i++) context.append(i == 0 ? "" : ",").append(random.nextInt(128000));
+        lines.add("{\"model\":\"llama3.1\",\"response\":\"\",\"done\":true,\"context\":" + context + "],\"total_duration\":1}");
+        for (String line : lines) frames.add((line + "\n").getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Benchmark
+    public void perLineMapper(Blackhole bh) throws IOException {
+        for (String line : lines) {
+            ObjectMapper mapper = new ObjectMapper();
+            Map<String, Object> jsonMap = mapper.readValue(line, new TypeReference<>() {});
+            String chunk = (String) jsonMap.getOrDefault("response", "");
+            if (!chunk.isBlank()) bh.consume(legacyFormat(chunk));
+        }
+    }
+
+    @Benchmark
+    public void sharedMapper(Blackhole bh) throws IOException {
+        for (String line : lines) {
+            Map<String, Object> jsonMap = shared.readValue(line, new TypeReference<>() {});
+            String chunk = (String) jsonMap.getOrDefault("response", "");
+            if (!chunk.isBlank()) bh.consume(legacyFormat(chunk));
+        }
+    }
+
+    @Benchmark
+    public void streamingDecoder(Blackhole bh) throws IOException {
+        OllamaStreamDecoder decoder = new OllamaStreamDecoder(factory);
+        ReplyFormatter formatter = new ReplyFormatter();
+        for (byte[] frame : frames) {
+            decoder.feed(ByteBuffer.wrap(frame), token -> bh.consume(formatter.accept(token)));
+        }
+        bh.consume(formatter.finish());
+    }
+
+    /** cleanAndFormatResponse as it was: every replaceAll compiles its pattern */
+    private static String legacyFormat(String input) {
+        return input
+            .replaceAll("\\s{2,}", " ")
+            .replaceAll("(?<=[a-zA-Z])\\s(?=[a-zA-Z])", " ")
+            .replaceAll("\\*{2}\\s*", "**")
+            .replaceAll("\\s*\\*{2}", "**")
+            .replaceAll("(?<=\\d)\\s*-\\s*(?=\\d)", "-")
+            .replaceAll("(?<=\\d)\\s*:\\s*(?=\\d)", ":")
+            .replaceAll("(?<=\\d)(AM|PM)", " $1")
+            .replaceAll("\\s+", " ")
+            .trim();
+    }
+}
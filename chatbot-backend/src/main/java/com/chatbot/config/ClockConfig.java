@@ -0,0 +1,22 @@
+package com.chatbot.config;
+
+import java.time.Clock;
+import java.time.ZoneId;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class ClockConfig {
+
+    /**
+     * The one source of "now" for anything that answers by date or time: the prompt's
+     * date line, the timetable and the calendar. {@code app.timezone} (e.g.
+     * Asia/Kolkata) overrides the host's zone, which on a hosted server is usually UTC.
+     */
+    @Bean
+    public Clock clock(@Value("${app.timezone:}") String zone) {
+        return zone.isBlank() ? Clock.systemDefaultZone() : Clock.system(ZoneId.of(zone));
+    }
+}
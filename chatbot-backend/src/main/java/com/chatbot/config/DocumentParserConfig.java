@@ -0,0 +1,19 @@
+package com.chatbot.config;
+
+import org.apache.tika.parser.AutoDetectParser;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class DocumentParserConfig {
+
+    /**
+     * One parser for the whole app. AutoDetectParser (and the detector and parser
+     * registry it loads from the classpath) is thread-safe, and building it is the
+     * expensive part of a Tika call.
+     */
+    @Bean
+    public AutoDetectParser documentParser() {
+        return new AutoDetectParser();
+    }
+}
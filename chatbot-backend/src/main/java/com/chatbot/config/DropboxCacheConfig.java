@@ -0,0 +1,37 @@
+package com.chatbot.config;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.time.Duration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+import com.chatbot.service.CachingDropboxService;
+import com.chatbot.service.DropboxServiceImpl;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+@Configuration
+public class DropboxCacheConfig {
+
+    /**
+     * Everything that injects DropboxService gets the cached view; the SDK-backed
+     * DropboxServiceImpl is only used through it.
+     */
+    @Bean
+    @Primary
+    @ConditionalOnProperty(name = "dropbox.cache.enabled", havingValue = "true", matchIfMissing = true)
+    public CachingDropboxService cachingDropboxService(
+        DropboxServiceImpl dropbox,
+        MeterRegistry registry,
+        @Value("${dropbox.cache.dir:./data/dropbox-cache}") String dir,
+        @Value("${dropbox.cache.maxBytes:1073741824}") long maxBytes,
+        @Value("${dropbox.cache.listingRefresh:30s}") Duration listingRefresh
+    ) throws IOException {
+        return new CachingDropboxService(dropbox, Paths.get(dir), maxBytes, listingRefresh).bindTo(registry);
+    }
+}
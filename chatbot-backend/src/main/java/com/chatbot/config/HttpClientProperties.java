@@ -0,0 +1,112 @@
+package com.chatbot.config;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Connection pool and timeout settings for outbound HTTP, one named pool per
+ * downstream. Anything a pool leaves unset comes from {@code http.client.defaults}:
+ * <pre>
+ * http.client.defaults.maxConnections=50
+ * http.client.pools.ollama.responseTimeout=120s
+ * </pre>
+ */
+@Component
+@ConfigurationProperties(prefix = "http.client")
+public class HttpClientProperties {
+
+    private Pool defaults = Pool.builtIn();
+    private Map<String, Pool> pools = new HashMap<>();
+
+    public static class Pool {
+        /** Connections per remote host */
+        private Integer maxConnections;
+        /** Requests allowed to wait for a connection; -1 for no limit */
+        private Integer pendingAcquireMaxCount;
+        private Duration pendingAcquireTimeout;
+        /** Idle connections are closed after this long (keep-alive) */
+        private Duration maxIdleTime;
+        private Duration maxLifeTime;
+        /** How often idle and expired connections are swept */
+        private Duration evictInterval;
+        private Duration connectTimeout;
+        /** Longest gap between reads of a response; streams may run longer in total */
+        private Duration responseTimeout;
+        /** Largest body the codecs will buffer */
+        private DataSize maxInMemorySize;
+
+        static Pool builtIn() {
+            Pool p = new Pool();
+            p.maxConnections = 50;
+            p.pendingAcquireMaxCount = 500;
+            p.pendingAcquireTimeout = Duration.ofSeconds(45);
+            p.maxIdleTime = Duration.ofSeconds(30);
+            p.maxLifeTime = Duration.ofMinutes(5);
+            p.evictInterval = Duration.ofSeconds(30);
+            p.connectTimeout = Duration.ofSeconds(5);
+            p.responseTimeout = Duration.ofSeconds(60);
+            p.maxInMemorySize = DataSize.ofMegabytes(16);
+            return p;
+        }
+
+        /** This pool's settings with the gaps filled from {@code base} */
+        Pool over(Pool base) {
+            Pool p = new Pool();
+            p.maxConnections = maxConnections != null ? maxConnections : base.maxConnections;
+            p.pendingAcquireMaxCount = pendingAcquireMaxCount != null ? pendingAcquireMaxCount : base.pendingAcquireMaxCount;
+            p.pendingAcquireTimeout = pendingAcquireTimeout != null ? pendingAcquireTimeout : base.pendingAcquireTimeout;
+            p.maxIdleTime = maxIdleTime != null ? maxIdleTime : base.maxIdleTime;
+            p.maxLifeTime = maxLifeTime != null ? maxLifeTime : base.maxLifeTime;
+            p.evictInterval = evictInterval != null ? evictInterval : base.evictInterval;
+            p.connectTimeout = connectTimeout != null ? connectTimeout : base.connectTimeout;
+            p.responseTimeout = responseTimeout != null ? responseTimeout : base.responseTimeout;
+            p.maxInMemorySize = maxInMemorySize != null ? maxInMemorySize : base.maxInMemorySize;
+            return p;
+        }
+
+        public Integer getMaxConnections() { return maxConnections; }
+        public void setMaxConnections(Integer maxConnections) { this.maxConnections = maxConnections; }
+
+        public Integer getPendingAcquireMaxCount() { return pendingAcquireMaxCount; }
+        public void setPendingAcquireMaxCount(Integer pendingAcquireMaxCount) { this.pendingAcquireMaxCount = pendingAcquireMaxCount; }
+
+        public Duration getPendingAcquireTimeout() { return pendingAcquireTimeout; }
+        public void setPendingAcquireTimeout(Duration pendingAcquireTimeout) { this.pendingAcquireTimeout = pendingAcquireTimeout; }
+
+        public Duration getMaxIdleTime() { return maxIdleTime; }
+        public void setMaxIdleTime(Duration maxIdleTime) { this.maxIdleTime = maxIdleTime; }
+
+        public Duration getMaxLifeTime() { return maxLifeTime; }
+        public void setMaxLifeTime(Duration maxLifeTime) { this.maxLifeTime = maxLifeTime; }
+
+        public Duration getEvictInterval() { return evictInterval; }
+        public void setEvictInterval(Duration evictInterval) { this.evictInterval = evictInterval; }
+
+        public Duration getConnectTimeout() { return connectTimeout; }
+        public void setConnectTimeout(Duration connectTimeout) { this.connectTimeout = connectTimeout; }
+
+        public Duration getResponseTimeout() { return responseTimeout; }
+        public void setResponseTimeout(Duration responseTimeout) { this.responseTimeout = responseTimeout; }
+
+        public DataSize getMaxInMemorySize() { return maxInMemorySize; }
+        public void setMaxInMemorySize(DataSize maxInMemorySize) { this.maxInMemorySize = maxInMemorySize; }
+    }
+
+    /** Effective settings for the named pool */
+    public Pool pool(String name) {
+        Pool base = defaults.over(Pool.builtIn());
+        Pool own = pools.get(name);
+        return own != null ? own.over(base) : base;
+    }
+
+    public Pool getDefaults() { return defaults; }
+    public void setDefaults(Pool defaults) { this.defaults = defaults; }
+
+    public Map<String, Pool> getPools() { return pools; }
+    public void setPools(Map<String, Pool> pools) { this.pools = pools; }
+}
@@ -0,0 +1,82 @@
+package com.chatbot.config;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.http.codec.json.Jackson2JsonDecoder;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.netty.channel.ChannelOption;
+import jakarta.annotation.PreDestroy;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+/**
+ * WebClients for the services the backend calls. Each named pool ("ollama", "qdrant")
+ * has its own connection pool, sized and timed from {@link HttpClientProperties}, and
+ * every client shares the application's ObjectMapper for JSON. Pool usage is published
+ * as {@code reactor.netty.connection.provider.*} (active, idle, pending connections),
+ * tagged with the pool name.
+ */
+@Component
+public class HttpClients {
+
+    private final HttpClientProperties properties;
+    private final ObjectMapper objectMapper;
+    private final Map<String, ReactorClientHttpConnector> connectors = new ConcurrentHashMap<>();
+    private final Map<String, ConnectionProvider> providers = new ConcurrentHashMap<>();
+
+    public HttpClients(HttpClientProperties properties, ObjectMapper objectMapper) {
+        this.properties = properties;
+        this.objectMapper = objectMapper;
+    }
+
+    /** A WebClient builder on the named pool; clients built from it share its connections */
+    public WebClient.Builder builder(String pool) {
+        HttpClientProperties.Pool settings = properties.pool(pool);
+        int maxInMemory = (int) Math.min(Integer.MAX_VALUE, settings.getMaxInMemorySize().toBytes());
+        return WebClient.builder()
+            .clientConnector(connectors.computeIfAbsent(pool, this::connector))
+            .codecs(codecs -> {
+                codecs.defaultCodecs().jackson2JsonDecoder(new Jackson2JsonDecoder(objectMapper));
+                codecs.defaultCodecs().jackson2JsonEncoder(new Jackson2JsonEncoder(objectMapper));
+                codecs.defaultCodecs().maxInMemorySize(maxInMemory);
+            });
+    }
+
+    public ObjectMapper objectMapper() {
+        return objectMapper;
+    }
+
+    private ReactorClientHttpConnector connector(String pool) {
+        HttpClientProperties.Pool settings = properties.pool(pool);
+        ConnectionProvider provider = ConnectionProvider.builder(pool)
+            .maxConnections(settings.getMaxConnections())
+            .pendingAcquireMaxCount(settings.getPendingAcquireMaxCount())
+            .pendingAcquireTimeout(settings.getPendingAcquireTimeout())
+            .maxIdleTime(settings.getMaxIdleTime())
+            .maxLifeTime(settings.getMaxLifeTime())
+            .evictInBackground(settings.getEvictInterval())
+            .metrics(true)
+            .build();
+        providers.put(pool, provider);
+
+        HttpClient client = HttpClient.create(provider)
+            .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) settings.getConnectTimeout().toMillis())
+            .option(ChannelOption.SO_KEEPALIVE, true)
+            .responseTimeout(settings.getResponseTimeout());
+        System.out.println("🌐 [HTTP] Pool " + pool + ": " + settings.getMaxConnections() + " connections per host, "
+            + settings.getResponseTimeout().toSeconds() + " s response timeout");
+        return new ReactorClientHttpConnector(client);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        providers.values().forEach(ConnectionProvider::dispose);
+    }
+}
@@ -0,0 +1,85 @@
+package com.chatbot.config;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import com.chatbot.service.ModelEndpointRouter;
+
+/**
+ * Ollama servers the backend may send generate and embed calls to, e.g.
+ * <pre>
+ * llm.endpoints[0].url=http://gpu-1:11434
+ * llm.endpoints[1].url=http://gpu-2:11434
+ * llm.endpoints[1].roles=generate
+ * </pre>
+ * With no endpoints listed, {@code ollama.url} (generate) and
+ * {@code rag.embeddings.ollamaUrl} (embed) are used as before. Every embed endpoint
+ * must serve the same embedding model, or stored vectors stop being comparable.
+ */
+@Component
+@ConfigurationProperties(prefix = "llm")
+public class ModelEndpointProperties {
+
+    public enum Balancing { LEAST_OUTSTANDING, EWMA }
+
+    private List<Backend> endpoints = new ArrayList<>();
+    /** Generate model for endpoints that don't name their own */
+    private String model = "llama3.1";
+    private Balancing balancing = Balancing.EWMA;
+    private Duration healthInterval = Duration.ofSeconds(10);
+    private Duration healthTimeout = Duration.ofSeconds(2);
+    /** Consecutive failures that open an endpoint's circuit */
+    private int failureThreshold = 3;
+    private Duration openDuration = Duration.ofSeconds(30);
+    /** Conversations remembered for sticky routing */
+    private int stickyEntries = 10000;
+
+    public static class Backend {
+        private String name;
+        private String url;
+        private Set<ModelEndpointRouter.Role> roles = EnumSet.allOf(ModelEndpointRouter.Role.class);
+        private String model;
+
+        public String getName() { return name; }
+        public void setName(String name) { this.name = name; }
+
+        public String getUrl() { return url; }
+        public void setUrl(String url) { this.url = url; }
+
+        public Set<ModelEndpointRouter.Role> getRoles() { return roles; }
+        public void setRoles(Set<ModelEndpointRouter.Role> roles) { this.roles = roles; }
+
+        public String getModel() { return model; }
+        public void setModel(String model) { this.model = model; }
+    }
+
+    public List<Backend> getEndpoints() { return endpoints; }
+    public void setEndpoints(List<Backend> endpoints) { this.endpoints = endpoints; }
+
+    public String getModel() { return model; }
+    public void setModel(String model) { this.model = model; }
+
+    public Balancing getBalancing() { return balancing; }
+    public void setBalancing(Balancing balancing) { this.balancing = balancing; }
+
+    public Duration getHealthInterval() { return healthInterval; }
+    public void setHealthInterval(Duration healthInterval) { this.healthInterval = healthInterval; }
+
+    public Duration getHealthTimeout() { return healthTimeout; }
+    public void setHealthTimeout(Duration healthTimeout) { this.healthTimeout = healthTimeout; }
+
+    public int getFailureThreshold() { return failureThreshold; }
+    public void setFailureThreshold(int failureThreshold) { this.failureThreshold = failureThreshold; }
+
+    public Duration getOpenDuration() { return openDuration; }
+    public void setOpenDuration(Duration openDuration) { this.openDuration = openDuration; }
+
+    public int getStickyEntries() { return stickyEntries; }
+    public void setStickyEntries(int stickyEntries) { this.stickyEntries = stickyEntries; }
+}
@@ -0,0 +1,25 @@
+package com.chatbot.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+@Configuration
+public class SchedulerConfig {
+
+    /**
+     * Where reactive request paths run their blocking JPA calls. Sized like the
+     * connection pool (Hikari defaults to 10), so extra work queues here instead of
+     * holding threads that wait for a connection.
+     */
+    @Bean(destroyMethod = "dispose")
+    public Scheduler jdbcScheduler(
+        @Value("${chat.jdbc.threads:10}") int threads,
+        @Value("${chat.jdbc.queue:1000}") int queue
+    ) {
+        return Schedulers.newBoundedElastic(threads, queue, "jdbc");
+    }
+}
@@ -45,6 +45,8 @@ public class SecurityConfig {
                 .csrf(csrf -> csrf.disable())
                 .cors(withDefaults())
                 .authorizeHttpRequests(auth -> auth
+                        // history is per user: anonymous chat owners ("ip:...") are shared addresses
+                        .requestMatchers("/chat/history", "/chat/history/**").authenticated()
                         .requestMatchers("/login","/chat","/chat/**", "/register", "/h2-console/**", "/files/download/**" ,  "/swagger-ui.html",
                                 "/swagger-ui/**",
                                 "/v3/api-docs/**",
@@ -0,0 +1,106 @@
+package com.chatbot.config;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Executors for the blocking work the services hand off (searches, ingestion, parsing).
+ * With {@code spring.threads.virtual.enabled=true} they run on virtual threads, the
+ * same switch Boot uses for Tomcat's request threads; otherwise, or on a JVM without
+ * virtual threads (the build targets Java 17, so they are looked up reflectively),
+ * they are the daemon platform pools the services used before.
+ * <p>
+ * Pools that exist to cap concurrency ({@link #newWorkers}) keep their size in both
+ * modes. Calls to Ollama, Qdrant and Dropbox are capped separately by
+ * {@link com.chatbot.service.DownstreamLimiters}, so cheap threads don't just move the
+ * overload to those services.
+ */
+@Component
+public class ThreadPools {
+
+    private final boolean virtual;
+
+    public ThreadPools(@Value("${spring.threads.virtual.enabled:false}") boolean virtualRequested) {
+        boolean supported = virtualFactory("probe") != null;
+        if (virtualRequested && !supported) {
+            System.err.println("⚠️ [Threads] spring.threads.virtual.enabled is set but this JVM ("
+                + Runtime.version() + ") has no virtual threads; using platform threads");
+        }
+        this.virtual = virtualRequested && supported;
+        if (virtual) System.out.println("🧵 [Threads] Blocking work runs on virtual threads");
+    }
+
+    public boolean isVirtual() {
+        return virtual;
+    }
+
+    /** Thread factory for {@code name}: virtual threads named name-N, or daemon platform threads */
+    public ThreadFactory factory(String name) {
+        if (virtual) {
+            ThreadFactory factory = virtualFactory(name);
+            if (factory != null) return factory;
+        }
+        return r -> {
+            Thread t = new Thread(r, name);
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    /**
+     * Pool for short blocking tasks: a virtual thread per task, or {@code platformThreads}
+     * fixed platform threads.
+     */
+    public ExecutorService newPool(String name, int platformThreads) {
+        if (virtual) {
+            ExecutorService perTask = threadPerTask(factory(name));
+            if (perTask != null) return perTask;
+        }
+        return Executors.newFixedThreadPool(Math.max(1, platformThreads), factory(name));
+    }
+
+    /** Exactly {@code n} workers over an unbounded queue, on virtual threads when enabled */
+    public ExecutorService newWorkers(String name, int n) {
+        int size = Math.max(1, n);
+        return new ThreadPoolExecutor(size, size, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), factory(name));
+    }
+
+    /** Unbounded pool for tasks that mostly wait (pipes, streams): a virtual thread per task when enabled */
+    public ExecutorService newCached(String name) {
+        if (virtual) {
+            ExecutorService perTask = threadPerTask(factory(name));
+            if (perTask != null) return perTask;
+        }
+        return Executors.newCachedThreadPool(factory(name));
+    }
+
+    // ===== Java 21 API, looked up at runtime =====
+
+    private static ThreadFactory virtualFactory(String name) {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            builder = builderType.getMethod("name", String.class, long.class).invoke(builder, name + "-", 0L);
+            return (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static ExecutorService threadPerTask(ThreadFactory factory) {
+        try {
+            Method m = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+            return (ExecutorService) m.invoke(null, factory);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.chatbot.config;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingStream;
+
+/**
+ * Reports virtual threads that stay pinned to their carrier (blocking inside
+ * {@code synchronized} or native code) for longer than {@code threads.virtual.pinning.threshold},
+ * from JFR's {@code jdk.VirtualThreadPinned} event. Each pin is timed as
+ * {@code threads.virtual.pinned}; the stack is logged the first time a call site pins
+ * and then every {@value #LOG_EVERY} times.
+ */
+@Component
+public class VirtualThreadPinningMonitor {
+
+    private static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+    private static final int LOG_EVERY = 100;
+    private static final int FRAMES = 8;
+
+    private final ThreadPools threadPools;
+    private final boolean enabled;
+    private final Duration threshold;
+    private final Timer pinned;
+    private final ConcurrentHashMap<String, AtomicLong> pinsBySite = new ConcurrentHashMap<>();
+    private volatile RecordingStream stream;
+
+    public VirtualThreadPinningMonitor(
+        ThreadPools threadPools,
+        @Value("${threads.virtual.pinning.enabled:true}") boolean enabled,
+        @Value("${threads.virtual.pinning.threshold:20ms}") Duration threshold,
+        MeterRegistry meterRegistry
+    ) {
+        this.threadPools = threadPools;
+        this.enabled = enabled;
+        this.threshold = threshold;
+        this.pinned = Timer.builder("threads.virtual.pinned").register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled || !threadPools.isVirtual()) return;
+        try {
+            RecordingStream rs = new RecordingStream();
+            rs.enable(PINNED_EVENT).withThreshold(threshold).withStackTrace();
+            rs.onEvent(PINNED_EVENT, this::report);
+            rs.startAsync();
+            stream = rs;
+            System.out.println("📌 [Threads] Watching for virtual threads pinned over " + threshold.toMillis() + " ms");
+        } catch (Exception | LinkageError e) {
+            // JFR can be missing from trimmed runtimes
+            System.err.println("⚠️ [Threads] Pinning diagnostics unavailable: " + e.getMessage());
+        }
+    }
+
+    private void report(RecordedEvent event) {
+        pinned.record(event.getDuration());
+
+        RecordedStackTrace trace = event.getStackTrace();
+        List<RecordedFrame> frames = trace != null ? trace.getFrames() : List.of();
+        String site = frames.stream()
+            .filter(RecordedFrame::isJavaFrame)
+            .map(VirtualThreadPinningMonitor::frame)
+            .filter(f -> f.startsWith("com.chatbot."))
+            .findFirst()
+            .orElse(frames.isEmpty() ? "unknown" : frame(frames.get(0)));
+
+        long n = pinsBySite.computeIfAbsent(site, k -> new AtomicLong()).incrementAndGet();
+        if (n != 1 && n % LOG_EVERY != 0) return;
+
+        StringBuilder sb = new StringBuilder("📌 [Threads] Virtual thread pinned for ")
+            .append(event.getDuration().toMillis()).append(" ms at ").append(site)
+            .append(" (").append(n).append(n == 1 ? " time)" : " times)");
+        for (int i = 0; i < Math.min(FRAMES, frames.size()); i++) {
+            sb.append("\n    at ").append(frame(frames.get(i)));
+        }
+        System.err.println(sb);
+    }
+
+    private static String frame(RecordedFrame f) {
+        return f.getMethod().getType().getName() + "." + f.getMethod().getName() + ":" + f.getLineNumber();
+    }
+
+    @PreDestroy
+    public void stop() {
+        RecordingStream rs = stream;
+        if (rs != null) rs.close();
+    }
+}
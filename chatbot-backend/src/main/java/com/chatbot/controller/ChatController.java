@@ -1,32 +1,38 @@
 package com.chatbot.controller;
 
-import java.io.InputStream;
-import java.net.URL;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
-import java.time.LocalDate;
-import java.time.format.DateTimeFormatter;
+import java.security.Principal;
 import java.util.*;
-import java.util.stream.Collectors;
-
-import net.fortuna.ical4j.data.CalendarBuilder;
-import net.fortuna.ical4j.model.Calendar;
-import net.fortuna.ical4j.model.component.VEvent;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.*;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import jakarta.servlet.http.HttpServletRequest;
 
 import com.chatbot.model.ChatMessage;
-import com.chatbot.model.Resource;
-import com.chatbot.model.UploadedFile;
 import com.chatbot.repository.ChatRepository;
-import com.chatbot.repository.ResourceRepository;
-import com.chatbot.repository.UploadedFileRepository;
+import com.chatbot.service.CalendarFeedService;
 import com.chatbot.service.ChatGPTService;
+import com.chatbot.service.ChatHistoryService;
+import com.chatbot.service.DownstreamLimiter;
+import com.chatbot.service.IntentRouter;
 import com.chatbot.service.RagService;
+import com.chatbot.service.ReplyFormatter;
+import com.chatbot.service.SemanticAnswerCache;
+import com.chatbot.service.TimetableService;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+import reactor.core.scheduler.Scheduler;
 
 @RestController
 @RequestMapping("/chat")
@@ -36,229 +42,280 @@ public class ChatController {
     @Autowired
     private ChatGPTService chatGPTService;
 
-    @Autowired
-    private UploadedFileRepository uploadedFileRepository;
-
     @Autowired
     private ChatRepository chatRepository;
 
     @Autowired
-    private ResourceRepository resourceRepository;
+    private ChatHistoryService chatHistoryService;
 
     @Autowired
-    private RagService ragService;
-
-    // 🔗 Live Moodle ICS URL
-    private static final String MOODLE_ICS_URL =
-            "https://moodle.coep.org.in/moodle/calendar/export_execute.php?userid=25932&authtoken=214046f471911012c4e9537d0a62043b8a4615f3&preset_what=all&preset_time=custom";
+    private IntentRouter intentRouter;
 
-    // ============================= Helpers =============================
-    private String buildContextFromFiles() {
-        return uploadedFileRepository.findAll().stream()
-                .filter(file -> file.getTextContent() != null && !file.getTextContent().isBlank())
-                .map(file -> "[FILE: " + file.getFileName() + "]\n" + file.getTextContent())
-                .collect(Collectors.joining("\n\n"));
-    }
+    @Autowired
+    private TimetableService timetableService;
 
-    private List<String> getIcsDeadlinesFromUrl(String icsUrl, boolean allDeadlines) throws Exception {
-        try (InputStream in = new URL(icsUrl).openStream()) {
-            Calendar calendar = new CalendarBuilder().build(in);
-            LocalDate today = LocalDate.now();
+    @Autowired
+    private CalendarFeedService calendarFeedService;
 
-            List<Map.Entry<LocalDate, String>> events = new ArrayList<>();
+    @Autowired
+    private RagService ragService;
 
-            for (Object obj : calendar.getComponents("VEVENT")) {
-                VEvent event = (VEvent) obj;
-                String summary = event.getSummary().getValue().toLowerCase();
-                String start = event.getStartDate().getValue();
+    @Autowired
+    private SemanticAnswerCache answerCache;
 
-                LocalDate eventDate = LocalDate.parse(start.substring(0, 8), DateTimeFormatter.BASIC_ISO_DATE);
+    @Autowired
+    private Scheduler jdbcScheduler;
 
-                if (!eventDate.isBefore(today) &&
-                    (summary.contains("assignment") || summary.contains("deadline") || summary.contains("due"))) {
-                    events.add(Map.entry(eventDate, event.getSummary().getValue()));
-                }
-            }
+    @Autowired
+    private MeterRegistry meterRegistry;
 
-            if (events.isEmpty()) {
-                return List.of("No upcoming assignments or deadlines found.");
-            }
+    // ============================= Helpers =============================
+    /** Who the model's fair queue charges and whose history the chat is saved to: the signed-in user, else the client address */
+    private static String requester(HttpServletRequest request) {
+        Object username = request.getAttribute("username");
+        return username != null ? username.toString() : "ip:" + request.getRemoteAddr();
+    }
 
-            if (allDeadlines) {
-                return events.stream()
-                        .sorted(Map.Entry.comparingByKey())
-                        .map(e -> e.getKey() + ": " + e.getValue())
-                        .toList();
-            } else {
-                LocalDate nextDate = events.stream()
-                        .map(Map.Entry::getKey)
-                        .min(LocalDate::compareTo)
-                        .orElse(today);
-
-                return events.stream()
-                        .filter(e -> e.getKey().equals(nextDate))
-                        .sorted(Map.Entry.comparingByKey())
-                        .map(e -> e.getKey() + ": " + e.getValue())
-                        .toList();
-            }
+    private static String resourceReply(IntentRouter.Route route) {
+        StringBuilder reply = new StringBuilder();
+        IntentRouter.ResourceLink res = route.getResource();
+        if (res != null) {
+            reply.append("**📂 Resource Found!**  \n\n**").append(res.getName())
+                 .append("**  \n[📎 Open in Google Drive](").append(res.getDriveLink()).append(")");
+        } else {
+            reply.append("**📂 Resources Found!**\n\n");
+            route.getResourcesByType().forEach(r -> reply.append("**").append(r.getName())
+                    .append("**  \n[📎 Open in Google Drive](").append(r.getDriveLink()).append(")\n\n"));
         }
+        return reply.toString();
+    }
+
+    private static String downloadReply(String fileName) {
+        String encodedFileName = URLEncoder.encode(fileName, StandardCharsets.UTF_8);
+        return "**📄 File Found!**  \n\n[📥 Click here to download](http://localhost:8080/files/download/" + encodedFileName + ")";
     }
 
     // ============================= /chat (single reply) =============================
     @PostMapping
-    public ResponseEntity<?> chat(@RequestBody Map<String, String> body) throws Exception {
+    public ResponseEntity<?> chat(@RequestBody Map<String, String> body, HttpServletRequest request) throws Exception {
         String userMessage = body.get("message").trim().toLowerCase();
+        String owner = requester(request);
+
+        IntentRouter.Route route = intentRouter.route(userMessage);
 
         // 1️⃣ ICS Deadlines
-        if (userMessage.contains("assignment") || userMessage.contains("deadline") || userMessage.contains("due")) {
-            boolean allDeadlines = userMessage.contains("all");
-            List<String> deadlines = getIcsDeadlinesFromUrl(MOODLE_ICS_URL, allDeadlines);
+        if (route.getIntent() == IntentRouter.Intent.DEADLINES) {
+            boolean allDeadlines = route.isAllDeadlines();
+            List<String> deadlines = calendarFeedService.deadlines(allDeadlines);
 
             // Add double line breaks for proper Markdown rendering
             String reply = (allDeadlines ? "📝 All upcoming assignments/deadlines:\n\n"
                                          : "📝 Next assignment/deadline:\n\n")
                            + String.join("\n\n", deadlines);
 
-            chatRepository.save(new ChatMessage(null, userMessage, reply));
+            chatRepository.save(new ChatMessage(owner, userMessage, reply));
             return ResponseEntity.ok(Map.of("reply", ChatGPTService.cleanAndFormatResponse(reply)));
         }
 
         // 2️⃣ File download
-        if (userMessage.startsWith("download")) {
-            String fileNameInput = userMessage.substring("download".length()).trim().toLowerCase();
-            Optional<UploadedFile> matchedFile = uploadedFileRepository.findAll().stream()
-                    .filter(file -> file.getFileName().toLowerCase().contains(fileNameInput))
-                    .findFirst();
-
-            if (matchedFile.isPresent()) {
-                String encodedFileName = URLEncoder.encode(matchedFile.get().getFileName(), StandardCharsets.UTF_8);
-                String reply = "**📄 File Found!**  \n\n[📥 Click here to download](http://localhost:8080/files/download/" + encodedFileName + ")";
-                chatRepository.save(new ChatMessage(null, userMessage, reply));
+        if (route.getIntent() == IntentRouter.Intent.DOWNLOAD) {
+            if (route.getFileName() != null) {
+                String reply = downloadReply(route.getFileName());
+                chatRepository.save(new ChatMessage(owner, userMessage, reply));
                 return ResponseEntity.ok(Map.of("reply", ChatGPTService.cleanAndFormatResponse(reply)));
             } else {
                 return ResponseEntity.status(HttpStatus.NOT_FOUND)
-                        .body("❌ File not found: " + fileNameInput);
+                        .body("❌ File not found: " + route.getFileQuery());
             }
         }
 
-        // 3️⃣ Resource search
-        List<Resource> allResources = resourceRepository.findAll();
-        Optional<Resource> matchByName = allResources.stream()
-                .filter(r -> r.getName() != null && userMessage.contains(r.getName().toLowerCase()))
-                .findFirst();
-        List<Resource> matchByType = allResources.stream()
-                .filter(r -> r.getType() != null && userMessage.contains(r.getType().toLowerCase()))
-                .collect(Collectors.toList());
-
-        if (userMessage.contains("resource") || matchByName.isPresent() || !matchByType.isEmpty()) {
-            StringBuilder reply = new StringBuilder();
-            if (matchByName.isPresent()) {
-                Resource res = matchByName.get();
-                reply.append("**📂 Resource Found!**  \n\n**").append(res.getName())
-                     .append("**  \n[📎 Open in Google Drive](").append(res.getDriveLink()).append(")");
-            } else {
-                reply.append("**📂 Resources Found!**\n\n");
-                matchByType.forEach(res -> reply.append("**").append(res.getName())
-                        .append("**  \n[📎 Open in Google Drive](").append(res.getDriveLink()).append(")\n\n"));
-            }
-            chatRepository.save(new ChatMessage(null, userMessage, reply.toString()));
-            return ResponseEntity.ok(Map.of("reply", ChatGPTService.cleanAndFormatResponse(reply.toString())));
+        // 3️⃣ Timetable, answered from the index (already clean Markdown, so line breaks are kept)
+        if (route.getIntent() == IntentRouter.Intent.TIMETABLE) {
+            String reply = timetableService.answer(userMessage);
+            chatRepository.save(new ChatMessage(owner, userMessage, reply));
+            return ResponseEntity.ok(Map.of("reply", reply));
         }
 
-        // 4️⃣ General chat (RAG + file context)
+        // 4️⃣ Resource search
+        if (route.getIntent() == IntentRouter.Intent.RESOURCE) {
+            String reply = resourceReply(route);
+            chatRepository.save(new ChatMessage(owner, userMessage, reply));
+            return ResponseEntity.ok(Map.of("reply", ChatGPTService.cleanAndFormatResponse(reply)));
+        }
+
+        // 5️⃣ General chat (RAG context), answered from the semantic cache when possible
+        float[] queryVector = ragService.embedQuery(userMessage);
         String ragContext = ragService.buildContext(userMessage);
-        String fileContext = buildContextFromFiles();
-        String systemCtx = "";
-        if (!ragContext.isBlank()) systemCtx += "Retrieved context:\n" + ragContext + "\n\n";
-        if (!fileContext.isBlank()) systemCtx += "Attached documents:\n" + fileContext + "\n\n";
+        String systemCtx = ragContext.isBlank() ? "" : "Retrieved context:\n" + ragContext + "\n\n";
+        String contextFingerprint = SemanticAnswerCache.fingerprint(chatGPTService.promptClock() + "\n" + systemCtx);
+
+        Optional<String> cached = answerCache.lookup(queryVector, contextFingerprint);
+        if (cached.isPresent()) {
+            chatRepository.save(new ChatMessage(owner, userMessage, cached.get()));
+            return ResponseEntity.ok(Map.of("reply", cached.get()));
+        }
 
         String formattedPrompt = chatGPTService.wrapInFormattedPrompt(userMessage, systemCtx);
-        String reply = chatGPTService.ask(formattedPrompt);
+        String reply;
+        try {
+            reply = chatGPTService.ask(formattedPrompt, owner);
+        } catch (DownstreamLimiter.BusyException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(Map.of("reply", "⏳ " + e.getMessage()));
+        }
+        answerCache.store(queryVector, contextFingerprint, reply);
 
         // Ensure Markdown line breaks remain
-        chatRepository.save(new ChatMessage(null, userMessage, ChatGPTService.cleanAndFormatResponse(reply)));
+        chatRepository.save(new ChatMessage(owner, userMessage, reply));
 
-        return ResponseEntity.ok(Map.of("reply", ChatGPTService.cleanAndFormatResponse(reply)));
+        return ResponseEntity.ok(Map.of("reply", reply));
     }
 
+    // 🕘 History (signed-in users only): newest first, one keyset page at a time, without reply bodies
     @GetMapping("/history")
-    public ResponseEntity<?> getChatHistory() {
-        return ResponseEntity.ok(chatGPTService.getAllChats());
+    public ResponseEntity<?> getChatHistory(@RequestParam(required = false) String cursor,
+                                            @RequestParam(defaultValue = "50") int limit,
+                                            Principal principal) {
+        try {
+            return ResponseEntity.ok(chatHistoryService.page(principal.getName(), cursor, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    @GetMapping("/history/{id}")
+    public ResponseEntity<ChatMessage> getChatMessage(@PathVariable Long id, Principal principal) {
+        return chatHistoryService.find(principal.getName(), id)
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    // 📦 Whole history as NDJSON, oldest first, written page by page
+    @GetMapping(value = "/history/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportChatHistory(Principal principal) {
+        String owner = principal.getName();
+        StreamingResponseBody body = out -> chatHistoryService.export(owner, out);
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"chat-history.ndjson\"")
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
     }
 
     // ============================= /stream (real-time) =============================
+    /**
+     * Nothing here blocks the calling thread: routing is in memory ({@link IntentRouter}),
+     * deadlines come from the in-memory calendar ({@link CalendarFeedService}), embedding and vector search are
+     * reactive, and the reply is saved once, when the stream completes.
+     * chat.stream.ttft (time to first token) is the headline metric.
+     */
     @PostMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
-    public Flux<String> streamChat(@RequestBody Map<String, String> body) {
+    public Flux<String> streamChat(@RequestBody Map<String, String> body, HttpServletRequest request) {
         String userMessage = body.get("message").trim().toLowerCase();
+        String owner = requester(request);
+        long requestStart = System.nanoTime();
+
+        IntentRouter.Route route = intentRouter.route(userMessage);
 
         // 1️⃣ ICS Deadlines
-        try {
-            if (userMessage.contains("assignment") || userMessage.contains("deadline") || userMessage.contains("due")) {
-                boolean allDeadlines = userMessage.contains("all");
-                List<String> deadlines = getIcsDeadlinesFromUrl(MOODLE_ICS_URL, allDeadlines);
-                return Flux.fromIterable(deadlines)
-                        .map(e -> {
-                            String msg = "📝 " + e;
-                            chatRepository.save(new ChatMessage(null, userMessage, msg));
-                            return msg;
-                        });
-            }
-        } catch (Exception e) {
-            return Flux.just("❌ Error reading ICS calendar: " + e.getMessage());
+        if (route.getIntent() == IntentRouter.Intent.DEADLINES) {
+            boolean allDeadlines = route.isAllDeadlines();
+            Flux<String> deadlines = Mono.fromFuture(() -> calendarFeedService.deadlinesAsync(allDeadlines))
+                    .flatMapMany(Flux::fromIterable)
+                    .map(e -> "📝 " + e);
+            return timed("deadlines", requestStart, persisted(owner, userMessage, deadlines, "\n", null)
+                    .onErrorResume(e -> Flux.just("❌ Error reading ICS calendar: " + e.getMessage())));
         }
 
         // 2️⃣ File download
-        if (userMessage.startsWith("download")) {
-            String fileNameInput = userMessage.substring("download".length()).trim().toLowerCase();
-            Optional<UploadedFile> matchedFile = uploadedFileRepository.findAll().stream()
-                    .filter(file -> file.getFileName().toLowerCase().contains(fileNameInput))
-                    .findFirst();
-
-            if (matchedFile.isPresent()) {
-                String encodedFileName = URLEncoder.encode(matchedFile.get().getFileName(), StandardCharsets.UTF_8);
-                String msg = "**📄 File Found!**  \n\n[📥 Click here to download](http://localhost:8080/files/download/" + encodedFileName + ")";
-                chatRepository.save(new ChatMessage(null, userMessage, msg));
-                return Flux.just(ChatGPTService.cleanAndFormatResponse(msg));
-            } else {
-                return Flux.just("❌ File not found: " + fileNameInput);
-            }
+        if (route.getIntent() == IntentRouter.Intent.DOWNLOAD) {
+            Flux<String> reply = route.getFileName() == null
+                    ? Flux.just("❌ File not found: " + route.getFileQuery())
+                    : persisted(owner, userMessage, Flux.just(ChatGPTService.cleanAndFormatResponse(downloadReply(route.getFileName()))), "", null);
+            return timed("download", requestStart, reply);
         }
 
-        // 3️⃣ Resource links
-        List<Resource> allResources = resourceRepository.findAll();
-        Optional<Resource> matchByName = allResources.stream()
-                .filter(r -> r.getName() != null && userMessage.contains(r.getName().toLowerCase()))
-                .findFirst();
-        List<Resource> matchByType = allResources.stream()
-                .filter(r -> r.getType() != null && userMessage.contains(r.getType().toLowerCase()))
-                .collect(Collectors.toList());
-
-        if (userMessage.contains("resource") || matchByName.isPresent() || !matchByType.isEmpty()) {
-            StringBuilder msgBuilder = new StringBuilder();
-            if (matchByName.isPresent()) {
-                Resource res = matchByName.get();
-                msgBuilder.append("**📂 Resource Found!**  \n\n**").append(res.getName())
-                        .append("**  \n[📎 Open in Google Drive](").append(res.getDriveLink()).append(")");
-            } else {
-                msgBuilder.append("**📂 Resources Found!**\n\n");
-                matchByType.forEach(res -> msgBuilder.append("**").append(res.getName())
-                        .append("**  \n[📎 Open in Google Drive](").append(res.getDriveLink()).append(")\n\n"));
-            }
-            String msg = msgBuilder.toString();
-            chatRepository.save(new ChatMessage(null, userMessage, msg));
-            return Flux.just(ChatGPTService.cleanAndFormatResponse(msg));
+        // 3️⃣ Timetable
+        if (route.getIntent() == IntentRouter.Intent.TIMETABLE) {
+            String msg = timetableService.answer(userMessage);
+            return timed("timetable", requestStart, persisted(owner, userMessage, Flux.just(msg), "", null));
         }
 
-        // 4️⃣ General chat
-        String ragContext = ragService.buildContext(userMessage);
-        String fileContext = buildContextFromFiles();
-        String systemCtx = "";
-        if (!ragContext.isBlank()) systemCtx += "Retrieved context:\n" + ragContext + "\n\n";
-        if (!fileContext.isBlank()) systemCtx += "Attached documents:\n" + fileContext + "\n\n";
+        // 4️⃣ Resource links
+        if (route.getIntent() == IntentRouter.Intent.RESOURCE) {
+            String msg = ChatGPTService.cleanAndFormatResponse(resourceReply(route));
+            return timed("resource", requestStart, persisted(owner, userMessage, Flux.just(msg), "", null));
+        }
 
-        String formattedPrompt = chatGPTService.wrapInFormattedPrompt(userMessage, systemCtx);
-        return chatGPTService.streamReply(formattedPrompt)
-                .map(ChatGPTService::cleanAndFormatResponse)
-                .doOnNext(reply -> chatRepository.save(new ChatMessage(null, userMessage, reply)));
+        // 5️⃣ General chat
+        return generalChat(userMessage, owner, requestStart);
+    }
+
+    private Flux<String> generalChat(String userMessage, String owner, long requestStart) {
+        Flux<String> reply = ragService.embedQueryAsync(userMessage)
+                .flatMapMany(queryVector -> ragService.buildContextAsync(userMessage, queryVector)
+                        .flatMapMany(ragContext -> {
+                            String systemCtx = ragContext.isBlank() ? "" : "Retrieved context:\n" + ragContext + "\n\n";
+                            String contextFingerprint = SemanticAnswerCache.fingerprint(chatGPTService.promptClock() + "\n" + systemCtx);
+
+                            Optional<String> cached = answerCache.lookup(queryVector, contextFingerprint);
+                            if (cached.isPresent()) {
+                                return persisted(owner, userMessage, Flux.just(cached.get()), "", null);
+                            }
+
+                            String formattedPrompt = chatGPTService.wrapInFormattedPrompt(userMessage, systemCtx);
+                            return persisted(owner, userMessage,
+                                    ReplyFormatter.format(chatGPTService.streamReply(formattedPrompt, owner)),
+                                    "",
+                                    fullReply -> answerCache.store(queryVector, contextFingerprint, fullReply));
+                        }))
+                // model queue full or too slow: say so instead of failing the stream
+                .onErrorResume(DownstreamLimiter.BusyException.class, e -> Flux.just("⏳ " + e.getMessage()));
+        return timed("chat", requestStart, reply);
+    }
+
+    /**
+     * Pass {@code reply} through while collecting it, then save it as one of {@code owner}'s ChatMessages when
+     * it completes (or whatever was sent if the client went away) and hand the full text
+     * to {@code onComplete}.
+     */
+    private Flux<String> persisted(String owner, String userMessage, Flux<String> reply, String separator, Consumer<String> onComplete) {
+        return Flux.defer(() -> {
+            StringBuilder fullReply = new StringBuilder();
+            return reply
+                    .doOnNext(part -> {
+                        if (fullReply.length() > 0) fullReply.append(separator);
+                        fullReply.append(part);
+                    })
+                    .doFinally(signal -> {
+                        if (signal == SignalType.ON_ERROR || fullReply.length() == 0) return;
+                        String text = fullReply.toString();
+                        if (signal == SignalType.ON_COMPLETE && onComplete != null) onComplete.accept(text);
+                        Mono.fromRunnable(() -> chatRepository.save(new ChatMessage(owner, userMessage, text)))
+                                .subscribeOn(jdbcScheduler)
+                                .subscribe(null, e -> System.err.println("❌ [Chat] Could not save reply: " + e.getMessage()));
+                    });
+        });
+    }
+
+    /** Record time to first token and total stream time, both measured from the request */
+    private Flux<String> timed(String route, long requestStart, Flux<String> reply) {
+        return Flux.defer(() -> {
+            AtomicBoolean first = new AtomicBoolean();
+            return reply
+                    .doOnNext(part -> {
+                        if (first.compareAndSet(false, true)) {
+                            Timer.builder("chat.stream.ttft")
+                                    .tag("route", route)
+                                    .publishPercentileHistogram()
+                                    .register(meterRegistry)
+                                    .record(System.nanoTime() - requestStart, TimeUnit.NANOSECONDS);
+                        }
+                    })
+                    .doFinally(signal -> Timer.builder("chat.stream.duration")
+                            .tag("route", route)
+                            .tag("outcome", signal == SignalType.ON_COMPLETE ? "complete"
+                                    : signal == SignalType.CANCEL ? "cancelled" : "error")
+                            .register(meterRegistry)
+                            .record(System.nanoTime() - requestStart, TimeUnit.NANOSECONDS));
+        });
     }
-}
\ No newline at end of file
+}
@@ -1,10 +1,8 @@
 package com.chatbot.controller;
 
+import java.io.IOException;
 import java.io.InputStream;
-import java.net.URL;
-import java.time.LocalDate;
-import java.time.format.DateTimeFormatter;
-import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -13,32 +11,38 @@ import java.util.stream.Collectors;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import com.chatbot.model.UploadedFile;
+import com.chatbot.model.IngestionJob;
 import com.chatbot.repository.UploadedFileRepository;
-import com.chatbot.service.FileStorageService;
+import com.chatbot.repository.UploadedFileSummary;
+import com.chatbot.service.BlobStore;
+import com.chatbot.service.CalendarFeedService;
+import com.chatbot.service.DropboxService;
+import com.chatbot.service.IndexProgress;
+import com.chatbot.service.IngestionJobService;
 import com.chatbot.service.RagService;
 
 import jakarta.servlet.http.HttpServletRequest;
-import net.fortuna.ical4j.data.CalendarBuilder;
-import net.fortuna.ical4j.model.Calendar;
-import net.fortuna.ical4j.model.component.VEvent;
 
 @RestController
 @RequestMapping("/files")
 public class FileController {
 
     @Autowired
-    private FileStorageService fileService;
+    private IngestionJobService ingestionJobService;
 
     @Autowired
     private UploadedFileRepository uploadedFileRepository;
@@ -46,7 +50,16 @@ public class FileController {
     @Autowired
     private RagService ragService;
 
-    // 📤 Upload file and store Dropbox-style link
+    @Autowired
+    private BlobStore blobStore;
+
+    @Autowired
+    private DropboxService dropboxService;
+
+    @Autowired
+    private CalendarFeedService calendarFeedService;
+
+    // 📤 Upload file: spool it and queue an ingestion job, return the job id straight away
     @PostMapping("/upload")
     public ResponseEntity<?> uploadFile(@RequestParam("file") MultipartFile file, HttpServletRequest request) {
         try {
@@ -63,25 +76,13 @@ public class FileController {
                 return ResponseEntity.badRequest().body("Empty file.");
             }
 
-            // ✅ Store the uploaded file
-            UploadedFile savedFile = fileService.storeFile(file, username);
-
-            if (savedFile == null) {
-                System.out.println("❌ UploadedFile is null after storing.");
-                return ResponseEntity.status(500).body("Failed to store file.");
-            }
-
-            System.out.println("✅ File saved: " + savedFile.getFileName());
-
-            // ✅ Index file in RAG if it's text-based
-            if (savedFile.getTextContent() != null 
-                    || savedFile.getFileType().contains("text")
-                    || savedFile.getFileType().contains("json")
-                    || savedFile.getFileType().contains("csv")) {
-                ragService.indexFile(savedFile);
-            }
+            IngestionJob job = ingestionJobService.submit(file, username);
 
-            return ResponseEntity.ok(savedFile);
+            return ResponseEntity.accepted().body(Map.of(
+                    "jobId", job.getId(),
+                    "stage", job.getStage(),
+                    "statusUrl", "/files/jobs/" + job.getId()
+            ));
 
         } catch (Exception e) {
             System.out.println("❌ Exception during upload: " + e.getMessage());
@@ -90,15 +91,57 @@ public class FileController {
         }
     }
 
-    // 📥 Download endpoint
+    // 🧾 Ingestion job status
+    @GetMapping("/jobs/{id}")
+    public ResponseEntity<Map<String, Object>> getJob(@PathVariable Long id) {
+        return ingestionJobService.find(id)
+                .map(job -> {
+                    Map<String, Object> status = new HashMap<>();
+                    status.put("job", job);
+                    status.put("indexing", ingestionJobService.liveProgress(job));
+                    return ResponseEntity.ok(status);
+                })
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    @GetMapping("/jobs")
+    public ResponseEntity<List<IngestionJob>> listJobs() {
+        return ResponseEntity.ok(ingestionJobService.recent());
+    }
+
+    // 📥 Download endpoint: streamed, with Range and ETag (content hash) support
     @GetMapping("/download/{filename}")
-    public ResponseEntity<byte[]> downloadFile(@PathVariable String filename, HttpServletRequest request) {
+    public ResponseEntity<StreamingResponseBody> downloadFile(
+            @PathVariable String filename,
+            @RequestHeader(value = HttpHeaders.RANGE, required = false) String rangeHeader,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            @RequestHeader(value = HttpHeaders.IF_RANGE, required = false) String ifRange,
+            HttpServletRequest request) {
         String username = (String) request.getAttribute("username");
-        System.out.println("📥 [Download] Request by: " + username + " | File requested: " + filename);
+        System.out.println("📥 [Download] Request by: " + username + " | File requested: " + filename
+                + (rangeHeader != null ? " | " + rangeHeader : ""));
 
         try {
-            UploadedFile file = uploadedFileRepository.findByFileNameIgnoreCase(filename)
-                    .orElseThrow(() -> new RuntimeException("File not found in DB"));
+            Optional<UploadedFileSummary> found = uploadedFileRepository.findSummaryByFileNameIgnoreCase(filename);
+            if (found.isEmpty()) {
+                System.out.println("❌ [Download] File not found in DB: " + filename);
+                return ResponseEntity.notFound().build();
+            }
+            UploadedFileSummary file = found.get();
+
+            String etag = file.getContentHash() != null ? "\"" + file.getContentHash() + "\"" : null;
+            if (etag != null && etagMatches(ifNoneMatch, etag)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+            }
+
+            // Local blob segments if present, otherwise proxy the Dropbox copy
+            BlobStore.Manifest blob = file.getBlobId() != null ? blobStore.manifest(file.getBlobId()) : null;
+            String dropboxPath = file.getDropboxLink();
+            if (blob == null && (dropboxPath == null || dropboxPath.isEmpty())) {
+                System.out.println("❌ [Download] No stored content for " + filename);
+                return ResponseEntity.notFound().build();
+            }
+            Long size = blob != null ? Long.valueOf(blob.getSize()) : file.getSize();
 
             String fileType = file.getFileType(); // e.g., application/pdf
             String downloadFileName = file.getFileName();
@@ -109,10 +152,58 @@ public class FileController {
                 downloadFileName += extension;
             }
 
-            return ResponseEntity.ok()
+            // A single byte range is honoured; multiple ranges get the whole file
+            long start = 0;
+            long length = size != null ? size : -1;
+            boolean partial = false;
+            if (rangeHeader != null && size != null && (ifRange == null || ifRange.equals(etag))) {
+                List<HttpRange> ranges;
+                try {
+                    ranges = HttpRange.parseRanges(rangeHeader);
+                } catch (IllegalArgumentException e) {
+                    ranges = List.of();
+                }
+                if (ranges.size() == 1) {
+                    try {
+                        start = ranges.get(0).getRangeStart(size);
+                        length = ranges.get(0).getRangeEnd(size) - start + 1;
+                        partial = true;
+                    } catch (IllegalArgumentException e) {
+                        return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+                                .header(HttpHeaders.CONTENT_RANGE, "bytes */" + size)
+                                .build();
+                    }
+                }
+            }
+
+            ResponseEntity.BodyBuilder response = ResponseEntity.status(partial ? HttpStatus.PARTIAL_CONTENT : HttpStatus.OK)
                     .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + downloadFileName + "\"")
-                    .contentType(MediaType.parseMediaType(fileType))
-                    .body(file.getData());
+                    .contentType(MediaType.parseMediaType(fileType));
+            if (etag != null) response.eTag(etag);
+            if (size != null) {
+                response.header(HttpHeaders.ACCEPT_RANGES, "bytes").contentLength(length);
+            }
+            if (partial) {
+                response.header(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + (start + length - 1) + "/" + size);
+            }
+
+            final long from = start;
+            final long count = length;
+            final boolean ranged = partial;
+            StreamingResponseBody body = blob != null
+                    ? out -> blobStore.transferTo(blob, from, count, out)
+                    : out -> {
+                        try (InputStream in = ranged
+                                ? dropboxService.downloadFromDropbox(dropboxPath, from, count)
+                                : dropboxService.downloadFromDropbox(dropboxPath)) {
+                            in.transferTo(out);
+                        } catch (IOException e) {
+                            throw e;
+                        } catch (Exception e) {
+                            throw new IOException("Dropbox download failed: " + e.getMessage(), e);
+                        }
+                    };
+            return response.body(body);
 
         } catch (Exception e) {
             System.out.println("❌ [Download Error] " + e.getMessage());
@@ -120,6 +211,16 @@ public class FileController {
         }
     }
 
+    /** If-None-Match: "*" or a list of (possibly weak) entity tags */
+    private static boolean etagMatches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) return false;
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*") || tag.equals(etag) || tag.equals("W/" + etag)) return true;
+        }
+        return false;
+    }
+
     private String getExtensionFromMimeType(String mimeType) {
         switch (mimeType) {
             case "application/pdf": return ".pdf";
@@ -133,7 +234,7 @@ public class FileController {
 
     @GetMapping("")
     public ResponseEntity<List<Map<String, String>>> listAllFiles() {
-        List<UploadedFile> files = uploadedFileRepository.findAll();
+        List<UploadedFileSummary> files = uploadedFileRepository.findAllProjectedByOrderByIdAsc();
 
         List<Map<String, String>> fileList = files.stream().map(file -> {
             Map<String, String> fileInfo = new HashMap<>();
@@ -145,9 +246,15 @@ public class FileController {
         return ResponseEntity.ok(fileList);
     }
 
+    // 📊 Per-document indexing progress
+    @GetMapping("/indexing")
+    public ResponseEntity<Collection<IndexProgress>> indexingProgress() {
+        return ResponseEntity.ok(ragService.indexingProgress());
+    }
+
     @GetMapping("/dropbox-link/{filename}")
     public ResponseEntity<String> getDropboxLink(@PathVariable String filename) {
-        return uploadedFileRepository.findByFileNameIgnoreCase(filename)
+        return uploadedFileRepository.findSummaryByFileNameIgnoreCase(filename)
                 .map(file -> {
                     if (file.getDropboxLink() == null || file.getDropboxLink().isEmpty()) {
                         return ResponseEntity.status(404).body("❌ Dropbox link not found for " + filename);
@@ -158,47 +265,16 @@ public class FileController {
     }
     
     
+    // 📅 Upcoming deadlines from an ICS feed, served from the cached calendar
     @GetMapping("/ics-deadlines")
     public List<String> getIcsDeadlines(@RequestParam String icsUrl) throws Exception {
-        // 1️⃣ Fetch ICS file directly from the URL
-        URL url = new URL(icsUrl);
-        try (InputStream in = url.openStream()) {
-            CalendarBuilder builder = new CalendarBuilder();
-            Calendar calendar = builder.build(in);
-
-            List<String> deadlines = new ArrayList<>();
-            LocalDate today = LocalDate.now();
-
-            // 2️⃣ Iterate over events
-            for (Object obj : calendar.getComponents("VEVENT")) {
-                VEvent event = (VEvent) obj;
-                String summary = event.getSummary().getValue().toLowerCase();
-                String start = event.getStartDate().getValue(); // format: YYYYMMDD or YYYYMMDDTHHmmss
-
-                LocalDate eventDate = LocalDate.parse(start.substring(0, 8), DateTimeFormatter.BASIC_ISO_DATE);
-
-                // 3️⃣ Filter relevant events
-                if ((summary.contains("assignment") || summary.contains("deadline") || summary.contains("due"))
-                        && !eventDate.isBefore(today)) {
-                    deadlines.add(eventDate + ": " + event.getSummary().getValue());
-                }
-            }
-
-            // 4️⃣ Handle no results
-            if (deadlines.isEmpty()) {
-                deadlines.add("No upcoming assignments or deadlines found.");
-            }
-
-            return deadlines;
-        }
+        return calendarFeedService.deadlines(icsUrl, true);
     }
 
-
-
     // 📄 Optional: Get file by ID
     @GetMapping("/{id}")
-    public ResponseEntity<UploadedFile> getFileById(@PathVariable Long id) {
-        Optional<UploadedFile> file = uploadedFileRepository.findById(id);
+    public ResponseEntity<UploadedFileSummary> getFileById(@PathVariable Long id) {
+        Optional<UploadedFileSummary> file = uploadedFileRepository.findSummaryById(id);
         return file.map(ResponseEntity::ok).orElseGet(() -> ResponseEntity.notFound().build());
     }
     
@@ -0,0 +1,28 @@
+package com.chatbot.event;
+
+/** Published whenever an entity that feeds chat answers (files, resources) is created, updated or deleted. */
+public class CorpusChangedEvent {
+
+    public enum Action { SAVED, DELETED }
+
+    private final Object entity;
+    private final Action action;
+
+    public CorpusChangedEvent(Object entity, Action action) {
+        this.entity = entity;
+        this.action = action;
+    }
+
+    public Object getEntity() {
+        return entity;
+    }
+
+    public Action getAction() {
+        return action;
+    }
+
+    @Override
+    public String toString() {
+        return "CorpusChangedEvent [" + entity.getClass().getSimpleName() + " " + action + "]";
+    }
+}
@@ -0,0 +1,33 @@
+package com.chatbot.event;
+
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+
+/**
+ * JPA listener on corpus entities. Hibernate resolves it through Spring's bean
+ * container, so it can publish {@link CorpusChangedEvent}s to the application.
+ */
+@Component
+public class CorpusEntityListener {
+
+    private final ApplicationEventPublisher publisher;
+
+    public CorpusEntityListener(ApplicationEventPublisher publisher) {
+        this.publisher = publisher;
+    }
+
+    @PostPersist
+    @PostUpdate
+    public void onSave(Object entity) {
+        publisher.publishEvent(new CorpusChangedEvent(entity, CorpusChangedEvent.Action.SAVED));
+    }
+
+    @PostRemove
+    public void onRemove(Object entity) {
+        publisher.publishEvent(new CorpusChangedEvent(entity, CorpusChangedEvent.Action.DELETED));
+    }
+}
@@ -1,14 +1,25 @@
 package com.chatbot.model;
 
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+
 import jakarta.persistence.*;
 
+// history is read per owner, newest first, in (created_at, id) keyset pages
 @Entity
+@Table(indexes = @Index(name = "idx_chat_message_owner_created", columnList = "owner, created_at, id"))
 public class ChatMessage {
 
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
+    // signed-in user, or "ip:<address>" for anonymous chats
+    private String owner;
+
+    @Column(name = "created_at")
+    private Instant createdAt;
+
     private String userMessage;
     
     @Lob
@@ -19,8 +30,10 @@ public class ChatMessage {
     public ChatMessage() {}
 
     // Constructor used in your service
-    public ChatMessage(Long id, String userMessage, String botReply) {
-        this.id = id;
+    public ChatMessage(String owner, String userMessage, String botReply) {
+        this.owner = owner;
+        // millisecond precision survives every database's timestamp type, so cursors match exactly
+        this.createdAt = Instant.now().truncatedTo(ChronoUnit.MILLIS);
         this.userMessage = userMessage;
         this.botReply = botReply;
     }
@@ -30,6 +43,14 @@ public class ChatMessage {
         return id;
     }
 
+    public String getOwner() {
+        return owner;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
     public String getUserMessage() {
         return userMessage;
     }
@@ -44,6 +65,14 @@ public class ChatMessage {
         this.id = id;
     }
 
+    public void setOwner(String owner) {
+        this.owner = owner;
+    }
+
+    public void setCreatedAt(Instant createdAt) {
+        this.createdAt = createdAt;
+    }
+
     public void setUserMessage(String userMessage) {
         this.userMessage = userMessage;
     }
@@ -57,6 +86,8 @@ public class ChatMessage {
     public String toString() {
         return "ChatMessage{" +
                 "id=" + id +
+                ", owner='" + owner + '\'' +
+                ", createdAt=" + createdAt +
                 ", userMessage='" + userMessage + '\'' +
                 ", botReply='" + botReply + '\'' +
                 '}';
@@ -0,0 +1,116 @@
+package com.chatbot.model;
+
+import java.time.Instant;
+
+import jakarta.persistence.*;
+
+@Entity
+@Table(name = "INGESTION_JOB", indexes = @Index(name = "idx_ingestion_job_stage", columnList = "stage"))
+public class IngestionJob {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    private String originalFileName;
+    private String contentType;
+    private String username;
+
+    // Raw upload spooled to local disk so the job survives a restart
+    @Column(length = 1000)
+    private String spoolPath;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private IngestionStage stage = IngestionStage.QUEUED;
+
+    private int attempts;
+
+    @Column(length = 2000)
+    private String error;
+
+    private Long uploadedFileId;
+    private String docKey;
+
+    private long chunksQueued;
+    private long chunksEmbedded;
+    private long chunksFailed;
+    private long pointsIndexed;
+    private long extractedChars;
+
+    private Instant createdAt;
+    private Instant startedAt;
+    private Instant finishedAt;
+    private Long parseMillis;
+    private Long indexMillis;
+
+    public IngestionJob() {}
+
+    public IngestionJob(String originalFileName, String contentType, String username, String spoolPath) {
+        this.originalFileName = originalFileName;
+        this.contentType = contentType;
+        this.username = username;
+        this.spoolPath = spoolPath;
+        this.createdAt = Instant.now();
+    }
+
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+
+    public String getOriginalFileName() { return originalFileName; }
+    public void setOriginalFileName(String originalFileName) { this.originalFileName = originalFileName; }
+
+    public String getContentType() { return contentType; }
+    public void setContentType(String contentType) { this.contentType = contentType; }
+
+    public String getUsername() { return username; }
+    public void setUsername(String username) { this.username = username; }
+
+    public String getSpoolPath() { return spoolPath; }
+    public void setSpoolPath(String spoolPath) { this.spoolPath = spoolPath; }
+
+    public IngestionStage getStage() { return stage; }
+    public void setStage(IngestionStage stage) { this.stage = stage; }
+
+    public int getAttempts() { return attempts; }
+    public void setAttempts(int attempts) { this.attempts = attempts; }
+
+    public String getError() { return error; }
+    public void setError(String error) { this.error = error; }
+
+    public Long getUploadedFileId() { return uploadedFileId; }
+    public void setUploadedFileId(Long uploadedFileId) { this.uploadedFileId = uploadedFileId; }
+
+    public String getDocKey() { return docKey; }
+    public void setDocKey(String docKey) { this.docKey = docKey; }
+
+    public long getChunksQueued() { return chunksQueued; }
+    public void setChunksQueued(long chunksQueued) { this.chunksQueued = chunksQueued; }
+
+    public long getChunksEmbedded() { return chunksEmbedded; }
+    public void setChunksEmbedded(long chunksEmbedded) { this.chunksEmbedded = chunksEmbedded; }
+
+    public long getChunksFailed() { return chunksFailed; }
+    public void setChunksFailed(long chunksFailed) { this.chunksFailed = chunksFailed; }
+
+    public long getPointsIndexed() { return pointsIndexed; }
+    public void setPointsIndexed(long pointsIndexed) { this.pointsIndexed = pointsIndexed; }
+
+    public long getExtractedChars() { return extractedChars; }
+    public void setExtractedChars(long extractedChars) { this.extractedChars = extractedChars; }
+
+    public Instant getCreatedAt() { return createdAt; }
+    public void setCreatedAt(Instant createdAt) { this.createdAt = createdAt; }
+
+    public Instant getStartedAt() { return startedAt; }
+    public void setStartedAt(Instant startedAt) { this.startedAt = startedAt; }
+
+    public Instant getFinishedAt() { return finishedAt; }
+    public void setFinishedAt(Instant finishedAt) { this.finishedAt = finishedAt; }
+
+    public Long getParseMillis() { return parseMillis; }
+    public void setParseMillis(Long parseMillis) { this.parseMillis = parseMillis; }
+
+    public Long getIndexMillis() { return indexMillis; }
+    public void setIndexMillis(Long indexMillis) { this.indexMillis = indexMillis; }
+}
@@ -0,0 +1,14 @@
+package com.chatbot.model;
+
+/** Lifecycle of an {@link IngestionJob}. QUEUED/PARSING/INDEXING are resumed after a restart. */
+public enum IngestionStage {
+    QUEUED,
+    PARSING,   // Dropbox upload + Tika text extraction + DB write
+    INDEXING,  // chunk + embed + vector upsert
+    DONE,
+    FAILED;
+
+    public boolean isTerminal() {
+        return this == DONE || this == FAILED;
+    }
+}
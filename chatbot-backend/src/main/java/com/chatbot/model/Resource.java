@@ -1,8 +1,11 @@
 package com.chatbot.model;
 
+import com.chatbot.event.CorpusEntityListener;
+
 import jakarta.persistence.*;
 
 @Entity
+@EntityListeners(CorpusEntityListener.class)
 @Table(name = "RESOURCE")
 public class Resource {
 
@@ -1,8 +1,11 @@
 package com.chatbot.model;
 
+import com.chatbot.event.CorpusEntityListener;
+
 import jakarta.persistence.*;
 
 @Entity
+@EntityListeners(CorpusEntityListener.class)
 public class UploadedFile {
 
     @Id
@@ -31,8 +34,16 @@ public class UploadedFile {
     }
 
 
-    @Lob
-    private byte[] data;
+    // Bytes live in the BlobStore under this id (SHA-256 of the content)
+    @Column(name = "blob_id", length = 64)
+    private String blobId;
+
+    // SHA-256 of the uploaded bytes, hex
+    @Column(name = "content_hash", length = 64)
+    private String contentHash;
+
+    @Column(name = "size_bytes")
+    private Long size;
 
     // Optional: Link to a user
     @ManyToOne
@@ -41,10 +52,10 @@ public class UploadedFile {
 
     public UploadedFile() {}
 
-    public UploadedFile(String fileName, String fileType, byte[] data, User user) {
+    public UploadedFile(String fileName, String fileType, String blobId, User user) {
         this.fileName = fileName;
         this.fileType = fileType;
-        this.data = data;
+        this.blobId = blobId;
         this.user = user;
     }
 
@@ -72,21 +83,21 @@ public class UploadedFile {
 		this.fileType = fileType;
 	}
 
-	public UploadedFile(Long id, String fileName, String fileType, byte[] data, User user) {
+	public UploadedFile(Long id, String fileName, String fileType, String blobId, User user) {
 		super();
 		this.id = id;
 		this.fileName = fileName;
 		this.fileType = fileType;
-		this.data = data;
+		this.blobId = blobId;
 		this.user = user;
 	}
 
-	public byte[] getData() {
-		return data;
+	public String getBlobId() {
+		return blobId;
 	}
 
-	public void setData(byte[] data) {
-		this.data = data;
+	public void setBlobId(String blobId) {
+		this.blobId = blobId;
 	}
 
 	public User getUser() {
@@ -98,6 +109,22 @@ public class UploadedFile {
 	}
 	
 
+	public String getContentHash() {
+		return contentHash;
+	}
+
+	public void setContentHash(String contentHash) {
+		this.contentHash = contentHash;
+	}
+
+	public Long getSize() {
+		return size;
+	}
+
+	public void setSize(Long size) {
+		this.size = size;
+	}
+
 	public String getTextContent() {
 	    return textContent;
 	}
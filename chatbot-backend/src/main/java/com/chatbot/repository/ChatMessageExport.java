@@ -0,0 +1,14 @@
+package com.chatbot.repository;
+
+import java.time.Instant;
+
+/**
+ * One exported exchange, reply included. A projection rather than the entity, so
+ * exporting a long history does not fill the persistence context.
+ */
+public interface ChatMessageExport {
+    Long getId();
+    String getUserMessage();
+    String getBotReply();
+    Instant getCreatedAt();
+}
@@ -0,0 +1,13 @@
+package com.chatbot.repository;
+
+import java.time.Instant;
+
+/**
+ * List view of a ChatMessage for history pages; leaves out the reply body, which is
+ * loaded one message at a time.
+ */
+public interface ChatMessageSummary {
+    Long getId();
+    String getUserMessage();
+    Instant getCreatedAt();
+}
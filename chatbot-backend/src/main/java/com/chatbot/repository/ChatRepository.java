@@ -1,7 +1,35 @@
 package com.chatbot.repository;
 
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
 import com.chatbot.model.ChatMessage;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 public interface ChatRepository extends JpaRepository<ChatMessage, Long> {
+
+	/** The owner's newest messages: the first keyset page */
+	List<ChatMessageSummary> findByOwnerOrderByCreatedAtDescIdDesc(String owner, Limit limit);
+
+	/** The owner's messages older than (createdAt, id), newest first: one keyset page */
+	@Query("select c.id as id, c.userMessage as userMessage, c.createdAt as createdAt from ChatMessage c"
+			+ " where c.owner = :owner and (c.createdAt < :createdAt or (c.createdAt = :createdAt and c.id < :id))"
+			+ " order by c.createdAt desc, c.id desc")
+	List<ChatMessageSummary> findPageBefore(@Param("owner") String owner, @Param("createdAt") Instant createdAt,
+			@Param("id") long id, Limit limit);
+
+	List<ChatMessageExport> findByOwnerOrderByCreatedAtAscIdAsc(String owner, Limit limit);
+
+	/** The owner's messages newer than (createdAt, id), oldest first, replies included */
+	@Query("select c.id as id, c.userMessage as userMessage, c.botReply as botReply, c.createdAt as createdAt from ChatMessage c"
+			+ " where c.owner = :owner and (c.createdAt > :createdAt or (c.createdAt = :createdAt and c.id > :id))"
+			+ " order by c.createdAt asc, c.id asc")
+	List<ChatMessageExport> findPageAfter(@Param("owner") String owner, @Param("createdAt") Instant createdAt,
+			@Param("id") long id, Limit limit);
+
+	Optional<ChatMessage> findByIdAndOwner(Long id, String owner);
 }
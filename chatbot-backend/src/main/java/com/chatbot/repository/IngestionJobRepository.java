@@ -0,0 +1,13 @@
+package com.chatbot.repository;
+
+import com.chatbot.model.IngestionJob;
+import com.chatbot.model.IngestionStage;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface IngestionJobRepository extends JpaRepository<IngestionJob, Long> {
+    List<IngestionJob> findByStageInOrderByIdAsc(Collection<IngestionStage> stages);
+    List<IngestionJob> findTop50ByOrderByIdDesc();
+}
@@ -2,6 +2,7 @@ package com.chatbot.repository;
 
 import com.chatbot.model.UploadedFile;
 
+import java.util.List;
 import java.util.Optional;
 
 import org.springframework.data.jpa.repository.JpaRepository;
@@ -9,4 +10,10 @@ import org.springframework.data.jpa.repository.JpaRepository;
 public interface UploadedFileRepository extends JpaRepository<UploadedFile, Long> {
 	Optional<UploadedFile> findByFileNameIgnoreCase(String fileName);
 
+	Optional<UploadedFileSummary> findSummaryById(Long id);
+	Optional<UploadedFileSummary> findSummaryByFileNameIgnoreCase(String fileName);
+	Optional<UploadedFileSummary> findFirstByFileNameContainingIgnoreCaseOrderByIdAsc(String fragment);
+	List<UploadedFileSummary> findAllProjectedByOrderByIdAsc();
+	boolean existsByBlobId(String blobId);
+
 }
@@ -0,0 +1,15 @@
+package com.chatbot.repository;
+
+/**
+ * Metadata-only view of an UploadedFile for list, lookup and download endpoints;
+ * selects neither the extracted text nor the owning user.
+ */
+public interface UploadedFileSummary {
+    Long getId();
+    String getFileName();
+    String getFileType();
+    String getDropboxLink();
+    Long getSize();
+    String getContentHash();
+    String getBlobId();
+}
@@ -0,0 +1,127 @@
+package com.chatbot.service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Aho-Corasick automaton over a fixed set of patterns: one pass over a text reports
+ * every occurrence of every pattern, in time linear in the text plus the number of
+ * hits. The trie is flattened into primitive arrays, each node's edges sorted by char
+ * and found by binary search. Immutable once built, so it can be shared between threads.
+ */
+final class AhoCorasick {
+
+    /** Receives each occurrence: the pattern's index in the build list and where it starts */
+    interface Hits {
+        void hit(int pattern, int start);
+    }
+
+    private final int[] edgeStart;   // node -> its first edge; edgeStart[nodes] = edge count
+    private final char[] edgeChar;
+    private final int[] edgeTarget;
+    private final int[] fail;
+    private final int[] output;      // pattern ending at the node, or -1
+    private final int[] dictLink;    // nearest node on the fail chain with an output, or -1
+    private final int[] lengths;
+
+    /** Patterns should be distinct; an empty pattern never matches */
+    AhoCorasick(List<String> patterns) {
+        List<Map<Character, Integer>> children = new ArrayList<>();
+        List<Integer> ends = new ArrayList<>();
+        children.add(new TreeMap<>());
+        ends.add(-1);
+        lengths = new int[patterns.size()];
+
+        for (int p = 0; p < patterns.size(); p++) {
+            String pattern = patterns.get(p);
+            lengths[p] = pattern.length();
+            if (pattern.isEmpty()) continue;
+            int node = 0;
+            for (int i = 0; i < pattern.length(); i++) {
+                Integer next = children.get(node).get(pattern.charAt(i));
+                if (next == null) {
+                    next = children.size();
+                    children.add(new TreeMap<>());
+                    ends.add(-1);
+                    children.get(node).put(pattern.charAt(i), next);
+                }
+                node = next;
+            }
+            ends.set(node, p);
+        }
+
+        int nodes = children.size();
+        edgeStart = new int[nodes + 1];
+        edgeChar = new char[nodes - 1];
+        edgeTarget = new int[nodes - 1];
+        output = new int[nodes];
+        int e = 0;
+        for (int n = 0; n < nodes; n++) {
+            edgeStart[n] = e;
+            output[n] = ends.get(n);
+            for (Map.Entry<Character, Integer> edge : children.get(n).entrySet()) {
+                edgeChar[e] = edge.getKey();
+                edgeTarget[e++] = edge.getValue();
+            }
+        }
+        edgeStart[nodes] = e;
+
+        // fail and dictionary links, breadth first so shallower nodes are done first
+        fail = new int[nodes];
+        dictLink = new int[nodes];
+        dictLink[0] = -1;
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (int i = edgeStart[0]; i < edgeStart[1]; i++) {
+            int child = edgeTarget[i];
+            fail[child] = 0;
+            dictLink[child] = -1;
+            queue.add(child);
+        }
+        while (!queue.isEmpty()) {
+            int node = queue.poll();
+            for (int i = edgeStart[node]; i < edgeStart[node + 1]; i++) {
+                int child = edgeTarget[i];
+                int f = fail[node];
+                int t;
+                while ((t = step(f, edgeChar[i])) < 0 && f != 0) f = fail[f];
+                fail[child] = t < 0 ? 0 : t;
+                dictLink[child] = output[fail[child]] >= 0 ? fail[child] : dictLink[fail[child]];
+                queue.add(child);
+            }
+        }
+    }
+
+    /** Report every pattern occurrence in {@code text} to {@code hits}, in order of where it ends */
+    void match(CharSequence text, Hits hits) {
+        int state = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            int t;
+            while ((t = step(state, c)) < 0 && state != 0) state = fail[state];
+            state = t < 0 ? 0 : t;
+            for (int n = output[state] >= 0 ? state : dictLink[state]; n >= 0; n = dictLink[n]) {
+                int p = output[n];
+                hits.hit(p, i - lengths[p] + 1);
+            }
+        }
+    }
+
+    int nodeCount() {
+        return output.length;
+    }
+
+    private int step(int node, char c) {
+        int lo = edgeStart[node], hi = edgeStart[node + 1] - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            char m = edgeChar[mid];
+            if (m < c) lo = mid + 1;
+            else if (m > c) hi = mid - 1;
+            else return edgeTarget[mid];
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,88 @@
+package com.chatbot.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.sql.Blob;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * One-off move of file bytes from the old {@code uploaded_file.data} column into the
+ * {@link BlobStore}. Rows are copied one at a time (streamed, never fully in memory),
+ * given their blob id and have the column cleared; it is a no-op once nothing is left
+ * or when the column does not exist.
+ */
+@Component
+public class BlobMigration {
+
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate tx;
+    private final BlobStore blobStore;
+
+    public BlobMigration(JdbcTemplate jdbc, TransactionTemplate tx, BlobStore blobStore) {
+        this.jdbc = jdbc;
+        this.tx = tx;
+        this.blobStore = blobStore;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrate() {
+        List<Long> ids;
+        try {
+            ids = jdbc.queryForList(
+                "SELECT id FROM uploaded_file WHERE data IS NOT NULL AND blob_id IS NULL", Long.class);
+        } catch (DataAccessException e) {
+            return; // fresh schema without the legacy column
+        }
+        if (ids.isEmpty()) return;
+
+        System.out.println("📦 [Blob] Moving " + ids.size() + " stored file(s) into the blob store");
+        int moved = 0;
+        for (Long id : ids) {
+            try {
+                // large objects can only be read inside a transaction on Postgres
+                tx.executeWithoutResult(status -> move(id));
+                moved++;
+            } catch (Exception e) {
+                System.err.println("❌ [Blob] Could not move file " + id + ": " + e.getMessage());
+            }
+        }
+        System.out.println("✅ [Blob] Moved " + moved + "/" + ids.size() + " file(s)");
+    }
+
+    private void move(Long id) {
+        BlobStore.Manifest blob = jdbc.query("SELECT data FROM uploaded_file WHERE id = ?", rs -> {
+            if (!rs.next()) return null;
+            try (InputStream in = content(rs)) {
+                return in == null ? null : blobStore.put(in);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, id);
+        if (blob == null) return;
+
+        jdbc.update("UPDATE uploaded_file SET blob_id = ?, content_hash = COALESCE(content_hash, ?),"
+                + " size_bytes = COALESCE(size_bytes, ?), data = NULL WHERE id = ?",
+            blob.getId(), blob.getId(), blob.getSize(), id);
+    }
+
+    /** BLOB/oid columns via getBlob, bytea-style columns via getBinaryStream */
+    private static InputStream content(ResultSet rs) throws SQLException {
+        try {
+            Blob blob = rs.getBlob(1);
+            if (blob != null) return blob.getBinaryStream();
+        } catch (SQLException e) {
+            // not a large object column
+        }
+        return rs.getBinaryStream(1);
+    }
+}
@@ -0,0 +1,273 @@
+package com.chatbot.service;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Content-addressed store for uploaded file bytes, so entities only carry a blob id.
+ * A blob is cut into fixed-size segments, each stored once under its own SHA-256
+ * (identical segments across files share a file), and described by a manifest named
+ * after the SHA-256 of the whole content:
+ * <pre>
+ * {localDir}/segments/ab/abcdef...   raw segment bytes
+ * {localDir}/manifests/12/1234...    "size segmentBytes" then one segment hash per line
+ * </pre>
+ * Dropbox is the second tier: a blob missing locally is downloaded again from the
+ * file's Dropbox path and re-segmented on first read.
+ */
+@Service
+public class BlobStore {
+
+    private final Path segmentsDir;
+    private final Path manifestsDir;
+    private final int segmentBytes;
+    private final DropboxService dropboxService;
+    // puts share the read lock; delete takes the write lock so no put relies on a segment it removes
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public BlobStore(
+        DropboxService dropboxService,
+        @Value("${blob.localDir:./data/blobs}") String localDir,
+        @Value("${blob.segmentBytes:4194304}") int segmentBytes
+    ) {
+        this.dropboxService = dropboxService;
+        this.segmentsDir = Paths.get(localDir, "segments");
+        this.manifestsDir = Paths.get(localDir, "manifests");
+        this.segmentBytes = Math.max(64 * 1024, segmentBytes);
+    }
+
+    /** Blob id (SHA-256 of the content, hex), size and segment layout */
+    public static final class Manifest {
+        private final String id;
+        private final long size;
+        private final int segmentBytes;
+        private final List<String> segments;
+
+        Manifest(String id, long size, int segmentBytes, List<String> segments) {
+            this.id = id;
+            this.size = size;
+            this.segmentBytes = segmentBytes;
+            this.segments = segments;
+        }
+
+        public String getId() { return id; }
+        public long getSize() { return size; }
+        public int getSegmentBytes() { return segmentBytes; }
+        public List<String> getSegments() { return segments; }
+    }
+
+    public Manifest put(Path source) throws IOException {
+        try (InputStream in = Files.newInputStream(source)) {
+            return put(in);
+        }
+    }
+
+    /** Store a stream; segments that already exist are not written again */
+    public Manifest put(InputStream in) throws IOException {
+        lock.readLock().lock();
+        try {
+            return write(in);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private Manifest write(InputStream in) throws IOException {
+        MessageDigest whole = sha256();
+        List<String> segments = new ArrayList<>();
+        byte[] buf = new byte[segmentBytes];
+        long size = 0;
+        int n;
+        while ((n = in.readNBytes(buf, 0, buf.length)) > 0) {
+            whole.update(buf, 0, n);
+            MessageDigest part = sha256();
+            part.update(buf, 0, n);
+            String hash = HexFormat.of().formatHex(part.digest());
+            Path target = shard(segmentsDir, hash);
+            if (!Files.exists(target)) writeAtomically(target, buf, n);
+            segments.add(hash);
+            size += n;
+            if (n < buf.length) break;
+        }
+
+        String id = HexFormat.of().formatHex(whole.digest());
+        StringBuilder manifest = new StringBuilder().append(size).append(' ').append(segmentBytes).append('\n');
+        for (String s : segments) manifest.append(s).append('\n');
+        Path target = shard(manifestsDir, id);
+        if (!Files.exists(target)) {
+            byte[] bytes = manifest.toString().getBytes(StandardCharsets.UTF_8);
+            writeAtomically(target, bytes, bytes.length);
+        }
+        return new Manifest(id, size, segmentBytes, segments);
+    }
+
+    /**
+     * Remove a blob nothing should refer to any more (the copy of an upload that failed):
+     * its manifest, and the segments no other manifest lists. A file that does refer to it
+     * still reads it, restored from Dropbox.
+     */
+    public void delete(Manifest m) throws IOException {
+        lock.writeLock().lock();
+        try {
+            Path manifest = shard(manifestsDir, m.getId());
+            if (!Files.deleteIfExists(manifest)) return;
+            Set<String> shared = new HashSet<>();
+            if (Files.isDirectory(manifestsDir)) {
+                try (Stream<Path> all = Files.walk(manifestsDir)) {
+                    for (Path p : (Iterable<Path>) all.filter(Files::isRegularFile)::iterator) {
+                        List<String> lines = Files.readAllLines(p, StandardCharsets.UTF_8);
+                        shared.addAll(lines.subList(Math.min(1, lines.size()), lines.size()));
+                    }
+                }
+            }
+            int removed = 0;
+            for (String s : new HashSet<>(m.getSegments())) {
+                if (!shared.contains(s) && Files.deleteIfExists(shard(segmentsDir, s))) removed++;
+            }
+            System.out.println("🗑️ [Blob] Deleted " + m.getId() + " (" + removed + " unshared segments)");
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Local manifest, or null if the blob (or any of its segments) is not stored locally */
+    public Manifest manifest(String blobId) throws IOException {
+        Path path = shard(manifestsDir, blobId);
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(path, StandardCharsets.UTF_8);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+        String[] header = lines.get(0).split(" ");
+        List<String> segments = new ArrayList<>(lines.subList(1, lines.size()));
+        segments.removeIf(String::isBlank);
+        for (String s : segments) {
+            if (!Files.exists(shard(segmentsDir, s))) return null;
+        }
+        return new Manifest(blobId, Long.parseLong(header[0]), Integer.parseInt(header[1]),
+            Collections.unmodifiableList(segments));
+    }
+
+    /**
+     * Open a blob for reading. If it is not stored locally it is fetched from
+     * {@code dropboxPath} (when given), stored, and then served from local segments.
+     */
+    public InputStream open(String blobId, String dropboxPath) throws IOException {
+        Manifest m = manifest(blobId);
+        if (m == null) m = rehydrate(blobId, dropboxPath);
+        return open(m);
+    }
+
+    public InputStream open(Manifest m) {
+        Iterator<String> it = m.getSegments().iterator();
+        return new SequenceInputStream(new java.util.Enumeration<InputStream>() {
+            @Override
+            public boolean hasMoreElements() {
+                return it.hasNext();
+            }
+
+            @Override
+            public InputStream nextElement() {
+                try {
+                    return Files.newInputStream(shard(segmentsDir, it.next()));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Write {@code length} bytes starting at {@code offset} to {@code out}, segment by
+     * segment with {@link FileChannel#transferTo}, so nothing is copied onto the heap.
+     */
+    public void transferTo(Manifest m, long offset, long length, OutputStream out) throws IOException {
+        WritableByteChannel target = Channels.newChannel(out);
+        int segment = (int) (offset / m.getSegmentBytes());
+        long pos = offset % m.getSegmentBytes();
+        while (length > 0) {
+            try (FileChannel in = FileChannel.open(shard(segmentsDir, m.getSegments().get(segment)), StandardOpenOption.READ)) {
+                long n = Math.min(length, in.size() - pos);
+                for (long done = 0; done < n; ) {
+                    long written = in.transferTo(pos + done, n - done, target);
+                    if (written <= 0) throw new EOFException("Segment of blob " + m.getId() + " is shorter than its manifest");
+                    done += written;
+                }
+                length -= n;
+            }
+            segment++;
+            pos = 0;
+        }
+        out.flush();
+    }
+
+    private Manifest rehydrate(String blobId, String dropboxPath) throws IOException {
+        if (dropboxPath == null || dropboxPath.isBlank()) {
+            throw new NoSuchFileException("Blob " + blobId + " is not stored locally and has no Dropbox copy");
+        }
+        Manifest m;
+        try (InputStream in = dropboxService.downloadFromDropbox(dropboxPath)) {
+            m = put(in);
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException("Dropbox download failed for " + dropboxPath + ": " + e.getMessage(), e);
+        }
+        if (!m.getId().equals(blobId)) {
+            throw new IOException("Dropbox copy of " + dropboxPath + " does not match blob " + blobId);
+        }
+        System.out.println("☁️ [Blob] Restored " + blobId + " (" + m.getSize() + " bytes) from Dropbox");
+        return m;
+    }
+
+    private static Path shard(Path dir, String hash) {
+        return dir.resolve(hash.substring(0, 2)).resolve(hash);
+    }
+
+    private static void writeAtomically(Path target, byte[] bytes, int length) throws IOException {
+        Files.createDirectories(target.getParent());
+        Path tmp = target.resolveSibling(target.getFileName() + "." + UUID.randomUUID() + ".tmp");
+        try (var out = Files.newOutputStream(tmp)) {
+            out.write(bytes, 0, length);
+        }
+        Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,387 @@
+package com.chatbot.service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * BM25 inverted index over text chunks. Each term's postings are two parallel
+ * {@code int[]}s (chunk ids ascending, term frequencies); chunks get increasing ids
+ * as they are added, so postings only ever grow at the end. Removing a chunk leaves a
+ * tombstone until {@link #compact} renumbers the survivors.
+ * <p>
+ * Tokens are lower-cased runs of letters and digits; codes joined by {@code -} or
+ * {@code _} (e.g. {@code BT2-Hon-DL}) are indexed whole as well as by their parts, so
+ * an exact code outranks chunks that only share a fragment of it.
+ *
+ * <pre>
+ * file     magic "LEX1", version, body, crc32 of everything before it
+ * body     chunkCount, per chunk: id, length, payload JSON
+ *          termCount, per term: term, df, per posting: chunk id delta, tf
+ * </pre>
+ * Every number in the body is an unsigned varint and strings are a varint length
+ * followed by UTF-8. Not thread-safe; {@link LexicalIndex} guards it.
+ */
+final class Bm25Index {
+
+    private static final int MAGIC = 0x4C455831; // "LEX1"
+    private static final int VERSION = 1;
+    private static final int MAX_TOKEN_CHARS = 64;
+    private static final Set<String> STOPWORDS = Set.of(
+        "a", "an", "and", "are", "as", "at", "be", "by", "for", "from", "in", "is", "it", "of",
+        "on", "or", "that", "the", "this", "to", "was", "what", "when", "where", "which", "with");
+
+    private final float k1;
+    private final float b;
+
+    private final Map<String, Postings> terms = new HashMap<>();
+    private final Map<String, Integer> chunkById = new HashMap<>();
+    private final List<String> ids = new ArrayList<>();
+    private final List<Map<String, Object>> payloads = new ArrayList<>();
+    private int[] lengths = new int[64];
+    private final BitSet deleted = new BitSet();
+    private int deletedCount;
+    private long liveTokens;
+
+    Bm25Index(float k1, float b) {
+        this.k1 = k1;
+        this.b = b;
+    }
+
+    /** One term's postings: chunk ids ascending, with the term's frequency in each */
+    private static final class Postings {
+        int[] chunks = new int[2];
+        int[] freqs = new int[2];
+        int size;
+
+        void add(int chunk, int freq) {
+            if (size == chunks.length) {
+                chunks = Arrays.copyOf(chunks, size * 2);
+                freqs = Arrays.copyOf(freqs, size * 2);
+            }
+            chunks[size] = chunk;
+            freqs[size++] = freq;
+        }
+    }
+
+    int size() { return ids.size(); }
+    int liveCount() { return ids.size() - deletedCount; }
+    int deletedCount() { return deletedCount; }
+    int termCount() { return terms.size(); }
+
+    boolean contains(String id) {
+        return chunkById.containsKey(id);
+    }
+
+    /** Payloads of the live chunks, for rebuilding per-document bookkeeping */
+    List<Map<String, Object>> livePayloads() {
+        List<Map<String, Object>> out = new ArrayList<>(liveCount());
+        for (int c = 0; c < ids.size(); c++) {
+            if (!deleted.get(c)) out.add(payloads.get(c));
+        }
+        return out;
+    }
+
+    /** Index {@code text} under {@code id}, replacing any chunk already stored with that id */
+    void add(String id, String text, Map<String, Object> payload) {
+        remove(id);
+        Map<String, Integer> freqs = new HashMap<>();
+        int length = 0;
+        for (String token : tokens(text)) {
+            freqs.merge(token, 1, Integer::sum);
+            length++;
+        }
+        int chunk = ids.size();
+        ids.add(id);
+        payloads.add(payload);
+        if (chunk == lengths.length) lengths = Arrays.copyOf(lengths, chunk * 2);
+        lengths[chunk] = length;
+        liveTokens += length;
+        chunkById.put(id, chunk);
+        for (Map.Entry<String, Integer> e : freqs.entrySet()) {
+            terms.computeIfAbsent(e.getKey(), t -> new Postings()).add(chunk, e.getValue());
+        }
+    }
+
+    /** Payload of the removed chunk, or null if there was none */
+    Map<String, Object> remove(String id) {
+        Integer chunk = chunkById.remove(id);
+        if (chunk == null) return null;
+        deleted.set(chunk);
+        deletedCount++;
+        liveTokens -= lengths[chunk];
+        return payloads.get(chunk);
+    }
+
+    /**
+     * Top-{@code k} live chunks for {@code query}, best first. Scores are accumulated
+     * term at a time over each query term's postings.
+     */
+    HnswIndex.Result search(String query, int k) {
+        int live = liveCount();
+        if (live == 0 || k <= 0) return new HnswIndex.Result(new int[0], new float[0]);
+
+        float avgLength = Math.max(1f, (float) liveTokens / live);
+        float[] scores = null;
+        int[] touched = new int[16];
+        int touchedCount = 0;
+        for (String term : new LinkedHashSet<>(tokens(query))) {
+            Postings p = terms.get(term);
+            if (p == null) continue;
+            // document frequency counts tombstones until the next compaction; close enough for ranking
+            int df = Math.min(p.size, live);
+            double idf = Math.log(1 + (live - df + 0.5) / (df + 0.5));
+            if (idf <= 0) continue;
+            if (scores == null) scores = new float[ids.size()];
+            for (int i = 0; i < p.size; i++) {
+                int chunk = p.chunks[i];
+                if (deleted.get(chunk)) continue;
+                float tf = p.freqs[i];
+                float norm = k1 * (1 - b + b * lengths[chunk] / avgLength);
+                if (scores[chunk] == 0) {
+                    if (touchedCount == touched.length) touched = Arrays.copyOf(touched, touchedCount * 2);
+                    touched[touchedCount++] = chunk;
+                }
+                scores[chunk] += (float) (idf * tf * (k1 + 1) / (tf + norm));
+            }
+        }
+        if (touchedCount == 0) return new HnswIndex.Result(new int[0], new float[0]);
+
+        HnswIndex.Heap top = new HnswIndex.Heap(false, k + 1);
+        for (int i = 0; i < touchedCount; i++) {
+            int chunk = touched[i];
+            if (top.size < k) {
+                top.push(chunk, scores[chunk]);
+            } else if (scores[chunk] > top.topScore()) {
+                top.pop();
+                top.push(chunk, scores[chunk]);
+            }
+        }
+        int n = top.size;
+        int[] chunks = new int[n];
+        float[] best = new float[n];
+        for (int i = n - 1; i >= 0; i--) {
+            float s = top.topScore();
+            chunks[i] = top.pop();
+            best[i] = s;
+        }
+        return new HnswIndex.Result(chunks, best);
+    }
+
+    String id(int chunk) { return ids.get(chunk); }
+    Map<String, Object> payload(int chunk) { return payloads.get(chunk); }
+
+    /** Drop tombstoned chunks and renumber the rest, keeping their order */
+    void compact() {
+        if (deletedCount == 0) return;
+        int[] renumber = new int[ids.size()];
+        int next = 0;
+        for (int c = 0; c < ids.size(); c++) {
+            renumber[c] = deleted.get(c) ? -1 : next++;
+        }
+        int[] newLengths = new int[Math.max(64, next)];
+        List<String> newIds = new ArrayList<>(next);
+        List<Map<String, Object>> newPayloads = new ArrayList<>(next);
+        for (int c = 0; c < ids.size(); c++) {
+            if (renumber[c] < 0) continue;
+            newLengths[renumber[c]] = lengths[c];
+            newIds.add(ids.get(c));
+            newPayloads.add(payloads.get(c));
+        }
+        terms.values().removeIf(p -> {
+            int n = 0;
+            for (int i = 0; i < p.size; i++) {
+                int to = renumber[p.chunks[i]];
+                if (to < 0) continue;
+                p.chunks[n] = to;
+                p.freqs[n++] = p.freqs[i];
+            }
+            p.size = n;
+            return n == 0;
+        });
+        ids.clear();
+        ids.addAll(newIds);
+        payloads.clear();
+        payloads.addAll(newPayloads);
+        lengths = newLengths;
+        chunkById.clear();
+        for (int c = 0; c < ids.size(); c++) chunkById.put(ids.get(c), c);
+        deleted.clear();
+        deletedCount = 0;
+    }
+
+    // ===== tokens =====
+
+    /** Lower-cased word tokens of {@code text}, plus whole hyphen/underscore-joined codes */
+    static List<String> tokens(String text) {
+        List<String> out = new ArrayList<>();
+        if (text == null) return out;
+        String s = text.toLowerCase(Locale.ROOT);
+        int i = 0, n = s.length();
+        while (i < n) {
+            if (!Character.isLetterOrDigit(s.charAt(i))) {
+                i++;
+                continue;
+            }
+            // a compound: words joined by single '-' or '_'
+            int start = i;
+            int parts = 0;
+            int end;
+            while (true) {
+                int wordStart = i;
+                while (i < n && Character.isLetterOrDigit(s.charAt(i))) i++;
+                word(s, wordStart, i, out);
+                parts++;
+                end = i;
+                if (i + 1 < n && (s.charAt(i) == '-' || s.charAt(i) == '_') && Character.isLetterOrDigit(s.charAt(i + 1))) {
+                    i++;
+                } else {
+                    break;
+                }
+            }
+            if (parts > 1 && end - start <= MAX_TOKEN_CHARS) out.add(s.substring(start, end));
+        }
+        return out;
+    }
+
+    private static void word(String s, int start, int end, List<String> out) {
+        if (end - start > MAX_TOKEN_CHARS) return;
+        String w = s.substring(start, end);
+        if (!STOPWORDS.contains(w)) out.add(w);
+    }
+
+    // ===== persistence =====
+
+    /** Write the live chunks; call {@link #compact} first so chunk ids are dense */
+    void write(Path path, ObjectMapper mapper) throws IOException {
+        if (deletedCount > 0) throw new IllegalStateException("compact before writing");
+        CRC32 crc = new CRC32();
+        try (OutputStream file = Files.newOutputStream(path);
+             CheckedOutputStream checked = new CheckedOutputStream(new BufferedOutputStream(file, 1 << 16), crc);
+             DataOutputStream out = new DataOutputStream(checked)) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            writeVarInt(out, ids.size());
+            for (int c = 0; c < ids.size(); c++) {
+                writeString(out, ids.get(c));
+                writeVarInt(out, lengths[c]);
+                byte[] json = mapper.writeValueAsBytes(payloads.get(c));
+                writeVarInt(out, json.length);
+                out.write(json);
+            }
+            writeVarInt(out, terms.size());
+            for (Map.Entry<String, Postings> e : terms.entrySet()) {
+                Postings p = e.getValue();
+                writeString(out, e.getKey());
+                writeVarInt(out, p.size);
+                int previous = 0;
+                for (int i = 0; i < p.size; i++) {
+                    writeVarInt(out, p.chunks[i] - previous);
+                    writeVarInt(out, p.freqs[i]);
+                    previous = p.chunks[i];
+                }
+            }
+            out.flush();
+            // the checksum itself is written past the checked stream
+            new DataOutputStream(file).writeInt((int) crc.getValue());
+        }
+    }
+
+    static Bm25Index read(Path path, ObjectMapper mapper, float k1, float b) throws IOException {
+        Bm25Index index = new Bm25Index(k1, b);
+        CRC32 crc = new CRC32();
+        try (InputStream file = new BufferedInputStream(Files.newInputStream(path), 1 << 16)) {
+            DataInputStream in = new DataInputStream(new CheckedInputStream(file, crc));
+            if (in.readInt() != MAGIC) throw new IOException("Not a lexical index: " + path);
+            int version = in.readInt();
+            if (version != VERSION) throw new IOException("Unsupported lexical index version " + version);
+
+            int count = readVarInt(in);
+            index.lengths = new int[Math.max(64, count)];
+            for (int c = 0; c < count; c++) {
+                String id = readString(in);
+                index.lengths[c] = readVarInt(in);
+                byte[] json = new byte[readVarInt(in)];
+                in.readFully(json);
+                index.ids.add(id);
+                index.payloads.add(mapper.readValue(json, new TypeReference<Map<String, Object>>() {}));
+                index.chunkById.put(id, c);
+                index.liveTokens += index.lengths[c];
+            }
+            int termCount = readVarInt(in);
+            for (int t = 0; t < termCount; t++) {
+                String term = readString(in);
+                Postings p = new Postings();
+                p.size = readVarInt(in);
+                p.chunks = new int[Math.max(2, p.size)];
+                p.freqs = new int[p.chunks.length];
+                int previous = 0;
+                for (int i = 0; i < p.size; i++) {
+                    previous += readVarInt(in);
+                    if (previous >= count) throw new IOException("Posting past the last chunk in " + path);
+                    p.chunks[i] = previous;
+                    p.freqs[i] = readVarInt(in);
+                }
+                index.terms.put(term, p);
+            }
+            int expected = (int) crc.getValue();
+            if (new DataInputStream(file).readInt() != expected) throw new IOException("Checksum mismatch in " + path);
+        }
+        return index;
+    }
+
+    static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    static int readVarInt(DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(out, bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = readVarInt(in);
+        if (length < 0) throw new EOFException();
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,450 @@
+package com.chatbot.service;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+import com.dropbox.core.v2.files.DeletedMetadata;
+import com.dropbox.core.v2.files.ListFolderResult;
+import com.dropbox.core.v2.files.Metadata;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Read-through cache in front of another {@link DropboxService}.
+ * <ul>
+ *   <li>File contents are kept on disk, one file per Dropbox path, in LRU order up to
+ *       {@code maxBytes}. Concurrent misses on the same path share one download.</li>
+ *   <li>Folder listings are kept in memory with their cursor. After {@code listingRefresh}
+ *       they are brought up to date with {@code listFolderContinue}, which returns only
+ *       the changes; changed or deleted files are also dropped from the content cache.</li>
+ *   <li>Uploads go straight through and invalidate the cached copy of the path.</li>
+ * </ul>
+ * Dropbox paths are case-insensitive, so keys are lower-cased.
+ */
+public class CachingDropboxService implements DropboxService {
+
+    private static final String TMP_SUFFIX = ".part";
+
+    private final DropboxService delegate;
+    private final Path dir;
+    private final long maxBytes;
+    private final long listingRefreshNanos;
+
+    // content: sha256(lower-cased path) -> size, in access order; guarded by this
+    private final LinkedHashMap<String, Long> files = new LinkedHashMap<>(16, 0.75f, true);
+    private long storedBytes;
+    private long generation; // bumped by every invalidation, so a download racing one is not cached
+    private final ConcurrentHashMap<String, CompletableFuture<Void>> inFlight = new ConcurrentHashMap<>();
+
+    // listings: lower-cased folder -> entries + cursor
+    private final ConcurrentHashMap<String, Listing> listings = new ConcurrentHashMap<>();
+    // not monitors: a virtual thread blocked on a listing call inside synchronized would pin its carrier
+    private final ConcurrentHashMap<String, ReentrantLock> listingLocks = new ConcurrentHashMap<>();
+
+    private final AtomicLong contentHits = new AtomicLong();
+    private final AtomicLong contentMisses = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong listingHits = new AtomicLong();
+    private final AtomicLong listingMisses = new AtomicLong();
+    private final AtomicLong listingRefreshes = new AtomicLong();
+
+    private static final class Listing {
+        final Map<String, Metadata> entries = new LinkedHashMap<>();
+        String cursor;
+        long refreshedAt;
+    }
+
+    public CachingDropboxService(DropboxService delegate, Path dir, long maxBytes, Duration listingRefresh) throws IOException {
+        this.delegate = delegate;
+        this.dir = dir;
+        this.maxBytes = maxBytes;
+        this.listingRefreshNanos = listingRefresh.toNanos();
+        Files.createDirectories(dir);
+        load();
+    }
+
+    /** Rebuild the LRU order from the files left by a previous run (oldest access first) */
+    private void load() throws IOException {
+        List<Path> cached = new ArrayList<>();
+        try (Stream<Path> list = Files.list(dir)) {
+            for (Path p : (Iterable<Path>) list::iterator) {
+                if (p.getFileName().toString().endsWith(TMP_SUFFIX)) Files.deleteIfExists(p);
+                else if (Files.isRegularFile(p)) cached.add(p);
+            }
+        }
+        cached.sort(Comparator.comparing(CachingDropboxService::lastModified));
+        synchronized (this) {
+            for (Path p : cached) {
+                long size = Files.size(p);
+                files.put(p.getFileName().toString(), size);
+                storedBytes += size;
+            }
+            evict();
+        }
+        if (!cached.isEmpty()) {
+            System.out.println("🗄️ [DropboxCache] " + files.size() + " cached file(s), " + storedBytes + " bytes");
+        }
+    }
+
+    public CachingDropboxService bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("dropbox.cache.hits", contentHits, AtomicLong::get).tag("cache", "content").register(registry);
+        FunctionCounter.builder("dropbox.cache.misses", contentMisses, AtomicLong::get).tag("cache", "content").register(registry);
+        FunctionCounter.builder("dropbox.cache.coalesced", coalesced, AtomicLong::get).tag("cache", "content").register(registry);
+        FunctionCounter.builder("dropbox.cache.evictions", evictions, AtomicLong::get).tag("cache", "content").register(registry);
+        FunctionCounter.builder("dropbox.cache.hits", listingHits, AtomicLong::get).tag("cache", "listing").register(registry);
+        FunctionCounter.builder("dropbox.cache.misses", listingMisses, AtomicLong::get).tag("cache", "listing").register(registry);
+        FunctionCounter.builder("dropbox.cache.refreshes", listingRefreshes, AtomicLong::get).tag("cache", "listing").register(registry);
+        Gauge.builder("dropbox.cache.hit.ratio", this, c -> ratio(c.contentHits, c.contentMisses)).tag("cache", "content").register(registry);
+        Gauge.builder("dropbox.cache.hit.ratio", this, c -> ratio(c.listingHits, c.listingMisses)).tag("cache", "listing").register(registry);
+        Gauge.builder("dropbox.cache.bytes", this, CachingDropboxService::storedBytes).tag("cache", "content").register(registry);
+        Gauge.builder("dropbox.cache.size", this, CachingDropboxService::size).tag("cache", "content").register(registry);
+        return this;
+    }
+
+    // ===== uploads =====
+
+    @Override
+    public String uploadToDropbox(String fileName, Path source) throws Exception {
+        String path = delegate.uploadToDropbox(fileName, source);
+        invalidate(path);
+        return path;
+    }
+
+    // ===== contents =====
+
+    @Override
+    public InputStream downloadFromDropbox(String dropboxPath) throws Exception {
+        String key = key(dropboxPath);
+        InputStream cached = openCached(key, 0, -1);
+        if (cached != null) {
+            contentHits.incrementAndGet();
+            return cached;
+        }
+        contentMisses.incrementAndGet();
+
+        Path oversized = fetch(dropboxPath, key);
+        if (oversized != null) return Files.newInputStream(oversized, StandardOpenOption.DELETE_ON_CLOSE);
+        InputStream in = openCached(key, 0, -1);
+        // evicted or invalidated in the meantime: read through without caching
+        return in != null ? in : delegate.downloadFromDropbox(dropboxPath);
+    }
+
+    /** Served from the cache when the whole file is there; otherwise only the range is fetched, uncached */
+    @Override
+    public InputStream downloadFromDropbox(String dropboxPath, long offset, long length) throws Exception {
+        InputStream cached = openCached(key(dropboxPath), offset, length);
+        if (cached != null) {
+            contentHits.incrementAndGet();
+            return cached;
+        }
+        contentMisses.incrementAndGet();
+        return delegate.downloadFromDropbox(dropboxPath, offset, length);
+    }
+
+    /**
+     * Download {@code dropboxPath} into the cache, or wait for the download another thread
+     * already started. Returns a temp file the caller owns if the file is bigger than the
+     * whole cache, else null.
+     */
+    private Path fetch(String dropboxPath, String key) throws Exception {
+        CompletableFuture<Void> mine = new CompletableFuture<>();
+        CompletableFuture<Void> running = inFlight.putIfAbsent(key, mine);
+        if (running != null) {
+            coalesced.incrementAndGet();
+            try {
+                running.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof Exception ex) throw ex;
+                throw e;
+            }
+            return null;
+        }
+
+        try {
+            long startGeneration;
+            synchronized (this) {
+                startGeneration = generation;
+            }
+            Path tmp = dir.resolve(key + "." + UUID.randomUUID() + TMP_SUFFIX);
+            long size;
+            try (InputStream in = delegate.downloadFromDropbox(dropboxPath)) {
+                size = Files.copy(in, tmp, StandardCopyOption.REPLACE_EXISTING);
+            } catch (Exception e) {
+                Files.deleteIfExists(tmp);
+                throw e;
+            }
+
+            Path oversized = null;
+            if (size > maxBytes) {
+                oversized = tmp;
+            } else {
+                synchronized (this) {
+                    if (generation == startGeneration) {
+                        Files.move(tmp, dir.resolve(key), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                        Long previous = files.put(key, size);
+                        storedBytes += size - (previous != null ? previous : 0);
+                        evict();
+                    }
+                }
+                Files.deleteIfExists(tmp);
+            }
+            mine.complete(null);
+            return oversized;
+        } catch (Exception e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    /** Open a cached file (a {@code length} of -1 means to the end), or null if it is not cached */
+    private synchronized InputStream openCached(String key, long offset, long length) throws IOException {
+        if (files.get(key) == null) return null;
+        Path file = dir.resolve(key);
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(file, StandardOpenOption.READ);
+        } catch (NoSuchFileException e) {
+            storedBytes -= files.remove(key);
+            return null;
+        }
+        // an open file stays readable after eviction deletes it
+        Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+        channel.position(offset);
+        InputStream in = Channels.newInputStream(channel);
+        return length < 0 ? in : new LimitedInputStream(in, length);
+    }
+
+    private synchronized void evict() throws IOException {
+        Iterator<Map.Entry<String, Long>> it = files.entrySet().iterator();
+        while (storedBytes > maxBytes && it.hasNext()) {
+            Map.Entry<String, Long> eldest = it.next();
+            Files.deleteIfExists(dir.resolve(eldest.getKey()));
+            storedBytes -= eldest.getValue();
+            it.remove();
+            evictions.incrementAndGet();
+        }
+    }
+
+    /** Drop the cached copy of a path; a download already under way will not be cached */
+    public synchronized void invalidate(String dropboxPath) throws IOException {
+        if (dropboxPath == null) return;
+        generation++;
+        String key = key(dropboxPath);
+        Long size = files.remove(key);
+        if (size != null) {
+            storedBytes -= size;
+            Files.deleteIfExists(dir.resolve(key));
+        }
+    }
+
+    // ===== listings =====
+
+    @Override
+    public List<Metadata> listAllFiles(String dropboxFolderPath) throws Exception {
+        String key = dropboxFolderPath.toLowerCase(Locale.ROOT);
+        Listing listing = listings.get(key);
+        if (listing != null && fresh(listing)) {
+            listingHits.incrementAndGet();
+            return snapshot(listing);
+        }
+
+        ReentrantLock lock = listingLocks.computeIfAbsent(key, k -> new ReentrantLock());
+        lock.lock();
+        try {
+            listing = listings.get(key);
+            if (listing != null && fresh(listing)) {
+                // refreshed by the thread we waited for
+                coalesced.incrementAndGet();
+                listingHits.incrementAndGet();
+                return snapshot(listing);
+            }
+
+            if (listing != null) {
+                try {
+                    refresh(listing);
+                    listingRefreshes.incrementAndGet();
+                    listingHits.incrementAndGet();
+                    return snapshot(listing);
+                } catch (Exception e) {
+                    // cursor expired or reset: fall back to a full listing
+                    System.err.println("⚠️ [DropboxCache] Incremental listing of " + dropboxFolderPath
+                        + " failed, relisting: " + e.getMessage());
+                }
+            }
+
+            listingMisses.incrementAndGet();
+            Listing full = new Listing();
+            ListFolderResult page = delegate.listFolder(dropboxFolderPath);
+            apply(full, page);
+            while (page.getHasMore()) {
+                page = delegate.listFolderContinue(page.getCursor());
+                apply(full, page);
+            }
+            full.refreshedAt = System.nanoTime();
+            listings.put(key, full);
+            return snapshot(full);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Apply the changes since the listing's cursor; changed files also leave the content cache */
+    private void refresh(Listing listing) throws Exception {
+        Listing updated = new Listing();
+        synchronized (listing) {
+            updated.entries.putAll(listing.entries);
+            updated.cursor = listing.cursor;
+        }
+        ListFolderResult page;
+        do {
+            page = delegate.listFolderContinue(updated.cursor);
+            apply(updated, page);
+            for (Metadata m : page.getEntries()) invalidate(m.getPathLower());
+        } while (page.getHasMore());
+
+        synchronized (listing) {
+            listing.entries.clear();
+            listing.entries.putAll(updated.entries);
+            listing.cursor = updated.cursor;
+            listing.refreshedAt = System.nanoTime();
+        }
+    }
+
+    private static void apply(Listing listing, ListFolderResult page) {
+        for (Metadata m : page.getEntries()) {
+            String path = m.getPathLower() != null ? m.getPathLower() : m.getPathDisplay().toLowerCase(Locale.ROOT);
+            if (m instanceof DeletedMetadata) listing.entries.remove(path);
+            else listing.entries.put(path, m);
+        }
+        listing.cursor = page.getCursor();
+    }
+
+    private boolean fresh(Listing listing) {
+        synchronized (listing) {
+            return System.nanoTime() - listing.refreshedAt < listingRefreshNanos;
+        }
+    }
+
+    private static List<Metadata> snapshot(Listing listing) {
+        synchronized (listing) {
+            return new ArrayList<>(listing.entries.values());
+        }
+    }
+
+    @Override
+    public ListFolderResult listFolder(String dropboxFolderPath) throws Exception {
+        return delegate.listFolder(dropboxFolderPath);
+    }
+
+    @Override
+    public ListFolderResult listFolderContinue(String cursor) throws Exception {
+        return delegate.listFolderContinue(cursor);
+    }
+
+    // ===== stats =====
+
+    public synchronized long storedBytes() { return storedBytes; }
+    public synchronized int size() { return files.size(); }
+    public long contentHits() { return contentHits.get(); }
+    public long contentMisses() { return contentMisses.get(); }
+    public long coalesced() { return coalesced.get(); }
+    public long evictions() { return evictions.get(); }
+    public long listingHits() { return listingHits.get(); }
+    public long listingMisses() { return listingMisses.get(); }
+    public long listingRefreshes() { return listingRefreshes.get(); }
+
+    private static double ratio(AtomicLong hits, AtomicLong misses) {
+        long h = hits.get();
+        long total = h + misses.get();
+        return total == 0 ? 0.0 : (double) h / total;
+    }
+
+    private static String key(String dropboxPath) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256")
+                .digest(dropboxPath.toLowerCase(Locale.ROOT).getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static FileTime lastModified(Path p) {
+        try {
+            return Files.getLastModifiedTime(p);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    /** Reads at most {@code remaining} bytes of the wrapped stream */
+    private static final class LimitedInputStream extends FilterInputStream {
+        private long remaining;
+
+        LimitedInputStream(InputStream in, long limit) {
+            super(in);
+            this.remaining = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) return -1;
+            int b = super.read();
+            if (b >= 0) remaining--;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remaining <= 0) return -1;
+            int n = super.read(b, off, (int) Math.min(len, remaining));
+            if (n > 0) remaining -= n;
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(Math.min(n, remaining));
+            remaining -= skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(super.available(), remaining);
+        }
+    }
+}
@@ -0,0 +1,385 @@
+package com.chatbot.service;
+
+import java.io.ByteArrayInputStream;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import com.chatbot.config.HttpClients;
+import com.chatbot.config.ThreadPools;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import net.fortuna.ical4j.data.CalendarBuilder;
+import net.fortuna.ical4j.model.Calendar;
+import net.fortuna.ical4j.model.component.VEvent;
+import reactor.core.publisher.Mono;
+
+/**
+ * Assignment deadlines from ICS calendar feeds, answered from memory. Each feed is
+ * fetched in the background every {@code calendar.refreshInterval} with a conditional
+ * GET (If-None-Match / If-Modified-Since), so an unchanged calendar costs one 304 and
+ * no parse; a changed one is parsed once into a date-sorted index of deadline events.
+ * Requests never fetch, except the first one for a feed nothing has loaded yet, which
+ * waits up to {@code calendar.fetchTimeout} for it.
+ * <p>
+ * The first of {@code calendar.feeds} is the one chat questions use. Other URLs asked
+ * for through {@code /files/ics-deadlines} join the refreshed set once they have loaded
+ * successfully (a URL that never loads is not kept), up to {@code calendar.maxFeeds},
+ * least recently asked dropped first. {@code file:} URLs are read from disk (the
+ * modification time stands in for the ETag), so a local file or a stub server can
+ * stand in for Moodle. Fetches run on their own pool; the scheduler thread only starts
+ * them, so a cold feed never waits behind other feeds. Refreshes of one feed never
+ * overlap: callers that arrive while one is running share its result.
+ */
+@Service
+public class CalendarFeedService {
+
+    // 🔗 Live Moodle ICS URL
+    private static final String MOODLE_ICS_URL =
+            "https://moodle.coep.org.in/moodle/calendar/export_execute.php?userid=25932&authtoken=214046f471911012c4e9537d0a62043b8a4615f3&preset_what=all&preset_time=custom";
+
+    private final WebClient client;
+    private final Clock clock;
+    private final String defaultFeed;
+    private final List<String> configuredFeeds;
+    private final Duration refreshInterval;
+    private final Duration fetchTimeout;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<String, Feed> feeds;                          // refreshed in the background
+    private final Map<String, Feed> loading = new HashMap<>();      // asked for, not loaded yet
+
+    private final AtomicLong fetches = new AtomicLong();
+    private final AtomicLong notModified = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+
+    private final ScheduledExecutorService refresher = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "calendar-refresh");
+        t.setDaemon(true);
+        return t;
+    });
+    private final ExecutorService fetcher;
+
+    /** Deadline events of one version of a feed, sorted by date */
+    static final class Deadlines {
+        private final LocalDate[] dates;
+        private final String[] summaries;
+
+        Deadlines(List<Map.Entry<LocalDate, String>> events) {
+            List<Map.Entry<LocalDate, String>> sorted = new ArrayList<>(events);
+            sorted.sort(Map.Entry.comparingByKey()); // stable: same-day events keep feed order
+            dates = new LocalDate[sorted.size()];
+            summaries = new String[sorted.size()];
+            for (int i = 0; i < sorted.size(); i++) {
+                dates[i] = sorted.get(i).getKey();
+                summaries[i] = sorted.get(i).getValue();
+            }
+        }
+
+        /** From {@code today} on: every deadline, or only those on the first date that has any */
+        List<String> upcoming(LocalDate today, boolean all) {
+            int from = firstOnOrAfter(today);
+            if (from == dates.length) return List.of("No upcoming assignments or deadlines found.");
+            int to = from + 1;
+            if (all) to = dates.length;
+            else while (to < dates.length && dates[to].equals(dates[from])) to++;
+            List<String> lines = new ArrayList<>(to - from);
+            for (int i = from; i < to; i++) lines.add(dates[i] + ": " + summaries[i]);
+            return lines;
+        }
+
+        int size() { return dates.length; }
+
+        private int firstOnOrAfter(LocalDate day) {
+            int lo = 0, hi = dates.length;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (dates[mid].isBefore(day)) lo = mid + 1; else hi = mid;
+            }
+            return lo;
+        }
+    }
+
+    private static final class Feed {
+        final String url;
+        volatile Deadlines deadlines;          // null until the first successful fetch
+        // validators from the last fetch; only the feed's one running refresh touches them
+        String etag;
+        String lastModified;
+        CompletableFuture<Deadlines> refreshing; // guarded by the service lock
+
+        Feed(String url) {
+            this.url = url;
+        }
+    }
+
+    private static final class Fetched {
+        final byte[] body;                     // null when not modified
+        final String etag;
+        final String lastModified;
+
+        Fetched(byte[] body, String etag, String lastModified) {
+            this.body = body;
+            this.etag = etag;
+            this.lastModified = lastModified;
+        }
+    }
+
+    public CalendarFeedService(
+        HttpClients httpClients,
+        ThreadPools threadPools,
+        Clock clock,
+        @Value("${calendar.feeds:}") List<String> feeds,
+        @Value("${calendar.refreshInterval:10m}") Duration refreshInterval,
+        @Value("${calendar.fetchTimeout:15s}") Duration fetchTimeout,
+        @Value("${calendar.maxFeeds:16}") int maxFeeds,
+        MeterRegistry meterRegistry
+    ) {
+        this.client = httpClients.builder("calendar").build();
+        this.fetcher = threadPools.newCached("calendar-fetch");
+        this.clock = clock;
+        this.configuredFeeds = feeds.stream().map(String::trim).filter(s -> !s.isEmpty()).toList();
+        this.defaultFeed = configuredFeeds.isEmpty() ? MOODLE_ICS_URL : configuredFeeds.get(0);
+        this.refreshInterval = refreshInterval;
+        this.fetchTimeout = fetchTimeout;
+        int capacity = Math.max(maxFeeds, configuredFeeds.size() + 1);
+        this.feeds = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Feed> eldest) {
+                return size() > capacity && !configuredFeeds.contains(eldest.getKey()) && !eldest.getKey().equals(defaultFeed);
+            }
+        };
+
+        FunctionCounter.builder("calendar.fetches", fetches, AtomicLong::get).register(meterRegistry);
+        FunctionCounter.builder("calendar.not.modified", notModified, AtomicLong::get).register(meterRegistry);
+        FunctionCounter.builder("calendar.failures", failures, AtomicLong::get).register(meterRegistry);
+        FunctionCounter.builder("calendar.coalesced", coalesced, AtomicLong::get).register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        lock.lock();
+        try {
+            feeds.put(defaultFeed, new Feed(defaultFeed));
+            for (String url : configuredFeeds) feeds.computeIfAbsent(url, Feed::new);
+        } finally {
+            lock.unlock();
+        }
+        long every = Math.max(1, refreshInterval.toSeconds());
+        refresher.scheduleWithFixedDelay(this::refreshAll, 0, every, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        refresher.shutdownNow();
+        fetcher.shutdownNow();
+    }
+
+    /** Deadlines from the default feed (see {@link #deadlinesAsync(String, boolean)}) */
+    public CompletableFuture<List<String>> deadlinesAsync(boolean all) {
+        return deadlinesAsync(defaultFeed, all);
+    }
+
+    /**
+     * Upcoming deadlines ("date: summary") from today on: all of them, or those on the
+     * nearest date. Completes straight away once the feed has loaded; before that, with
+     * its first fetch, failing after {@code calendar.fetchTimeout}.
+     */
+    public CompletableFuture<List<String>> deadlinesAsync(String url, boolean all) {
+        Feed feed = lookup(url);
+        Deadlines loaded = feed.deadlines;
+        if (loaded != null) return CompletableFuture.completedFuture(loaded.upcoming(LocalDate.now(clock), all));
+        // a dependent stage, so the timeout fails this caller only, not the shared refresh
+        return refresh(feed)
+            .thenApply(d -> d.upcoming(LocalDate.now(clock), all))
+            .orTimeout(fetchTimeout.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    public List<String> deadlines(boolean all) throws Exception {
+        return deadlines(defaultFeed, all);
+    }
+
+    public List<String> deadlines(String url, boolean all) throws Exception {
+        try {
+            return deadlinesAsync(url, all).get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception cause) throw cause;
+            throw e;
+        }
+    }
+
+    /** A refreshed feed, or one being loaded for the first time (it joins the refreshed set once it loads) */
+    private Feed lookup(String url) {
+        lock.lock();
+        try {
+            Feed feed = feeds.get(url);
+            return feed != null ? feed : loading.computeIfAbsent(url, Feed::new);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Fetch {@code url} now (coalesced with a running fetch); for tests and manual refreshes */
+    CompletableFuture<Deadlines> refresh(String url) {
+        return refresh(lookup(url));
+    }
+
+    /** URLs refreshed in the background */
+    List<String> refreshedFeeds() {
+        lock.lock();
+        try {
+            return new ArrayList<>(feeds.keySet());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void refreshAll() {
+        List<Feed> all;
+        lock.lock();
+        try {
+            all = new ArrayList<>(feeds.values());
+        } finally {
+            lock.unlock();
+        }
+        all.forEach(this::refresh);
+    }
+
+    /** Start a refresh of the feed, or join the one already running */
+    private CompletableFuture<Deadlines> refresh(Feed feed) {
+        lock.lock();
+        try {
+            if (feed.refreshing != null) {
+                coalesced.incrementAndGet();
+                return feed.refreshing;
+            }
+            // completed only after the bookkeeping below, so callers see the feed kept or dropped
+            CompletableFuture<Deadlines> running = new CompletableFuture<>();
+            feed.refreshing = running;
+            CompletableFuture.supplyAsync(() -> fetch(feed), fetcher).whenComplete((d, e) -> {
+                lock.lock();
+                try {
+                    if (feed.refreshing == running) feed.refreshing = null;
+                    // a first load decides whether the URL is kept: loaded ones are refreshed from now on
+                    if (loading.remove(feed.url, feed) && e == null) feeds.put(feed.url, feed);
+                } finally {
+                    lock.unlock();
+                }
+                if (e != null) running.completeExceptionally(e);
+                else running.complete(d);
+            });
+            return running;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // runs on the refresh thread
+    private Deadlines fetch(Feed feed) {
+        long start = System.currentTimeMillis();
+        try {
+            Fetched fetched = feed.url.startsWith("file:") ? readFile(feed) : get(feed);
+            fetches.incrementAndGet();
+            if (fetched.body == null) {
+                // validators are only sent once something is loaded
+                if (feed.deadlines == null) throw new IllegalStateException("Not modified, but nothing loaded");
+                notModified.incrementAndGet();
+                return feed.deadlines;
+            }
+            Deadlines parsed = parse(fetched.body);
+            feed.deadlines = parsed;
+            feed.etag = fetched.etag;
+            feed.lastModified = fetched.lastModified;
+            System.out.println("📅 [Calendar] Loaded " + parsed.size() + " deadlines from " + host(feed.url)
+                + " in " + (System.currentTimeMillis() - start) + " ms");
+            return parsed;
+        } catch (Exception e) {
+            failures.incrementAndGet();
+            System.err.println("❌ [Calendar] Could not refresh " + host(feed.url) + ": " + e.getMessage());
+            throw new CompletionException(e);
+        }
+    }
+
+    private Fetched get(Feed feed) {
+        String etag = feed.deadlines != null ? feed.etag : null;
+        String lastModified = feed.deadlines != null ? feed.lastModified : null;
+        return client.get()
+            .uri(URI.create(feed.url))
+            .headers(h -> {
+                if (etag != null) h.set(HttpHeaders.IF_NONE_MATCH, etag);
+                if (lastModified != null) h.set(HttpHeaders.IF_MODIFIED_SINCE, lastModified);
+            })
+            .exchangeToMono(response -> {
+                if (response.statusCode().isSameCodeAs(HttpStatus.NOT_MODIFIED)) {
+                    return response.releaseBody().thenReturn(new Fetched(null, etag, lastModified));
+                }
+                if (!response.statusCode().is2xxSuccessful()) {
+                    return response.createException().flatMap(Mono::error);
+                }
+                HttpHeaders headers = response.headers().asHttpHeaders();
+                return response.bodyToMono(byte[].class)
+                    .defaultIfEmpty(new byte[0])
+                    .map(body -> new Fetched(body, headers.getETag(), headers.getFirst(HttpHeaders.LAST_MODIFIED)));
+            })
+            .block(fetchTimeout);
+    }
+
+    private Fetched readFile(Feed feed) throws Exception {
+        Path path = Paths.get(URI.create(feed.url));
+        String modified = String.valueOf(Files.getLastModifiedTime(path).toMillis());
+        if (feed.deadlines != null && modified.equals(feed.lastModified)) return new Fetched(null, null, modified);
+        return new Fetched(Files.readAllBytes(path), null, modified);
+    }
+
+    static Deadlines parse(byte[] ics) throws Exception {
+        Calendar calendar = new CalendarBuilder().build(new ByteArrayInputStream(ics));
+        List<Map.Entry<LocalDate, String>> events = new ArrayList<>();
+        for (Object obj : calendar.getComponents("VEVENT")) {
+            VEvent event = (VEvent) obj;
+            if (event.getSummary() == null || event.getStartDate() == null) continue;
+            String title = event.getSummary().getValue();
+            String summary = title.toLowerCase(Locale.ROOT);
+            if (summary.contains("assignment") || summary.contains("deadline") || summary.contains("due")) {
+                String start = event.getStartDate().getValue(); // format: YYYYMMDD or YYYYMMDDTHHmmss
+                events.add(Map.entry(LocalDate.parse(start.substring(0, 8), DateTimeFormatter.BASIC_ISO_DATE), title));
+            }
+        }
+        return new Deadlines(events);
+    }
+
+    // feed URLs carry auth tokens; log where they point, not the whole thing
+    private static String host(String url) {
+        URI uri = URI.create(url);
+        return uri.getHost() != null ? uri.getHost() : uri.getPath();
+    }
+}
@@ -1,19 +1,17 @@
 package com.chatbot.service;
 
+import java.time.Clock;
 import java.time.LocalDate;
 import java.time.LocalTime;
 import java.time.format.DateTimeFormatter;
-import java.util.List;
 import java.util.Map;
+import java.util.regex.Pattern;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.buffer.DataBuffer;
 import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
-import org.springframework.web.reactive.function.client.WebClient;
 
-import com.chatbot.model.ChatMessage;
-import com.chatbot.repository.ChatRepository;
-import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import reactor.core.publisher.Flux;
@@ -22,21 +20,30 @@ import reactor.core.publisher.Mono;
 @Service
 public class ChatGPTService {
 
-    @Autowired
-    private ChatRepository chatRepository;
     @Autowired
     private com.chatbot.repository.ResourceRepository resourceRepository;
+    @Autowired
+    private InferenceScheduler scheduler;
 
+    @Autowired
+    private ObjectMapper objectMapper;
+    // Ollama servers (see ModelEndpointProperties)
+    @Autowired
+    private ModelEndpointRouter router;
+    // same clock as the timetable, so "today" means the same day in both
+    @Autowired
+    private Clock clock;
 
-    private final WebClient webClient = WebClient.builder()
-            .baseUrl("http://localhost:11434") // Ollama local server
-            .build();
+    /** The date and time every prompt states, to the minute; an answer depends on it like on its context */
+    public String promptClock() {
+        String date = LocalDate.now(clock).format(DateTimeFormatter.ofPattern("EEEE, MMMM dd, yyyy"));
+        String time = LocalTime.now(clock).format(DateTimeFormatter.ofPattern("hh:mm a"));
+        return "Today is %s and the current time is %s.".formatted(date, time);
+    }
 
     private String injectDateTime(String userMessage) {
-        String date = LocalDate.now().format(DateTimeFormatter.ofPattern("EEEE, MMMM dd, yyyy"));
-        String time = LocalTime.now().format(DateTimeFormatter.ofPattern("hh:mm a"));
         return """
-        	    [System Info] Today is %s and the current time is %s.
+        	    [System Info] %s
 
         	    Please respond using:
         	    - Clear, well-structured paragraphs
@@ -44,11 +51,17 @@ public class ChatGPTService {
         	    - Short sentences
 
         	    %s
-        	    """.formatted(date, time, userMessage);
+        	    """.formatted(promptClock(), userMessage);
 
     }
 
-    public String ask(String userMessage) {
+    /** One-shot reply for a request {@code user} is waiting on */
+    public String ask(String userMessage, String user) {
+        return ask(userMessage, user, InferenceScheduler.Priority.INTERACTIVE);
+    }
+
+    /** One-shot reply; work nobody is waiting on passes {@link InferenceScheduler#BACKGROUND} and BULK */
+    public String ask(String userMessage, String user, InferenceScheduler.Priority priority) {
     	String promptWithContext; 
     	promptWithContext = injectDateTime(userMessage);
     	
@@ -57,16 +70,17 @@ public class ChatGPTService {
         // 🐛 Debug prompt
         System.out.println("📝 Prompt Sent to Ollama:\n" + promptWithContext);
 
-        Mono<Map> responseMono = webClient.post()
+        Mono<Map> responseMono = scheduler.submitOne(user, priority, "ask\n" + promptWithContext,
+                () -> router.exchange(ModelEndpointRouter.Role.GENERATE, conversation(user), ep -> ep.limiter().limit(ep.client().post()
                 .uri("/api/generate")
                 .contentType(MediaType.APPLICATION_JSON)
                 .bodyValue(Map.of(
-                        "model", "llama3.1",
+                        "model", ep.model(),
                         "prompt", promptWithContext,
                         "stream", false
                 ))
                 .retrieve()
-                .bodyToMono(Map.class);
+                .bodyToMono(Map.class))));
 
         Map response = responseMono.block();
         String fullReply = (String) response.get("response");
@@ -81,38 +95,36 @@ public class ChatGPTService {
         String formattedReply = cleanAndFormatResponse(cleanedReply);
         System.out.println("✅ Final Cleaned + Formatted Response:\n" + formattedReply);
 
-        chatRepository.save(new ChatMessage(null, userMessage, formattedReply));
+        // not saved here: userMessage is the whole prompt; callers save the user's own turn
         return formattedReply;
     }
 
 
-    public Flux<String> streamReply(String prompt) {
+    /** Streamed reply; someone is watching the tokens arrive, so it is always interactive */
+    public Flux<String> streamReply(String prompt, String user) {
         String promptWithContext = injectDateTime(prompt);
 
-        return webClient.post()
-                .uri("/api/generate")
-                .contentType(MediaType.APPLICATION_JSON)
-                .accept(MediaType.APPLICATION_JSON)
-                .bodyValue(Map.of(
-                        "model", "llama3.1",
-                        "prompt", promptWithContext,
-                        "stream", true
-                ))
-                .retrieve()
-                .bodyToFlux(String.class)
-                .map(line -> {
-                    try {
-                        ObjectMapper mapper = new ObjectMapper();
-                        Map<String, Object> jsonMap = mapper.readValue(line, new TypeReference<>() {});
-                        String responseChunk = (String) jsonMap.getOrDefault("response", "");
-                        return responseChunk;
-                    } catch (Exception e) {
-                        System.out.println("❌ JSON parse error: " + line);
-                        return "";
-                    }
-                })
-                .filter(chunk -> !chunk.isBlank())
-                .doOnNext(chunk -> System.out.println("🧠 Streamed: " + chunk));
+        // the permit is held for the whole generation, not just until the first line
+        // raw bytes are decoded inside the scheduled call, so coalesced callers share tokens, not buffers
+        return scheduler.submit(user, InferenceScheduler.Priority.INTERACTIVE, "stream\n" + promptWithContext,
+                () -> OllamaStreamDecoder.tokens(
+                        router.stream(ModelEndpointRouter.Role.GENERATE, conversation(user), ep -> ep.limiter().limitMany(ep.client().post()
+                        .uri("/api/generate")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_NDJSON, MediaType.APPLICATION_JSON)
+                        .bodyValue(Map.of(
+                                "model", ep.model(),
+                                "prompt", promptWithContext,
+                                "stream", true
+                        ))
+                        .retrieve()
+                        .bodyToFlux(DataBuffer.class))),
+                        objectMapper.getFactory()));
+    }
+
+    /** A user's prompts stay on one Ollama server, which keeps their context cached; background work goes anywhere */
+    private static String conversation(String user) {
+        return InferenceScheduler.BACKGROUND.equals(user) ? null : user;
     }
 
     private String stripThinkTag(String response) {
@@ -145,19 +157,38 @@ public class ChatGPTService {
 
     }
     
+    private static final Pattern MULTI_SPACE = Pattern.compile("\\s{2,}");
+    private static final Pattern SPLIT_WORD = Pattern.compile("(?<=[a-zA-Z])\\s(?=[a-zA-Z])");
+    private static final Pattern BOLD_OPEN = Pattern.compile("\\*{2}\\s*");
+    private static final Pattern BOLD_CLOSE = Pattern.compile("\\s*\\*{2}");
+    private static final Pattern TIME_RANGE = Pattern.compile("(?<=\\d)\\s*-\\s*(?=\\d)");
+    private static final Pattern TIME_COLON = Pattern.compile("(?<=\\d)\\s*:\\s*(?=\\d)");
+    private static final Pattern AM_PM = Pattern.compile("(?<=\\d)(AM|PM)");
+    private static final Pattern ANY_SPACE = Pattern.compile("\\s+");
+
+    /** Patterns are compiled once; text with no whitespace, digits or '*' has nothing to fix */
     public static String cleanAndFormatResponse(String input) {
         if (input == null) return "";
+        if (nothingToFormat(input)) return input;
+
+        String s = input;
+        s = MULTI_SPACE.matcher(s).replaceAll(" ");       // Replace multiple spaces with a single space
+        s = SPLIT_WORD.matcher(s).replaceAll(" ");        // Join words split unnecessarily
+        s = BOLD_OPEN.matcher(s).replaceAll("**");        // Fix bold markdown syntax like "** text"
+        s = BOLD_CLOSE.matcher(s).replaceAll("**");       // Fix trailing space before **
+        s = TIME_RANGE.matcher(s).replaceAll("-");        // Fix time like "10 : 30 - 11 : 30"
+        s = TIME_COLON.matcher(s).replaceAll(":");        // Fix time like "10 : 30"
+        s = AM_PM.matcher(s).replaceAll(" $1");           // Ensure space before AM/PM
+        s = ANY_SPACE.matcher(s).replaceAll(" ");         // Final cleanup of extra spaces
+        return s.trim();
+    }
 
-        return input
-            .replaceAll("\\s{2,}", " ")            // Replace multiple spaces with a single space
-            .replaceAll("(?<=[a-zA-Z])\\s(?=[a-zA-Z])", " ") // Join words split unnecessarily
-            .replaceAll("\\*{2}\\s*", "**")        // Fix bold markdown syntax like "** text"
-            .replaceAll("\\s*\\*{2}", "**")        // Fix trailing space before **
-            .replaceAll("(?<=\\d)\\s*-\\s*(?=\\d)", "-") // Fix time like "10 : 30 - 11 : 30"
-            .replaceAll("(?<=\\d)\\s*:\\s*(?=\\d)", ":") // Fix time like "10 : 30"
-            .replaceAll("(?<=\\d)(AM|PM)", " $1")   // Ensure space before AM/PM
-            .replaceAll("\\s+", " ")                // Final cleanup of extra spaces
-            .trim();
+    private static boolean nothingToFormat(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c <= ' ' || c == '*' || (c >= '0' && c <= '9') || Character.isWhitespace(c)) return false;
+        }
+        return true;
     }
     
     public String tryAnswerWithResources(String userMessage) {
@@ -196,10 +227,4 @@ public class ChatGPTService {
         return s.replace("&","&amp;").replace("<","&lt;").replace(">","&gt;");
     }
 
-
-
-
-    public List<ChatMessage> getAllChats() {
-        return chatRepository.findAll();
-    }
 }
@@ -0,0 +1,121 @@
+package com.chatbot.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+
+import com.chatbot.model.ChatMessage;
+import com.chatbot.repository.ChatMessageExport;
+import com.chatbot.repository.ChatMessageSummary;
+import com.chatbot.repository.ChatRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * A user's chat history, read in keyset pages over the (owner, created_at, id) index:
+ * each page starts where the previous one ended instead of at an offset, so page 100
+ * costs the same as page 1. Lists carry no reply bodies; a single message is loaded
+ * with its reply on demand, and exports stream NDJSON page by page, so memory use
+ * does not grow with the history. Only signed-in users read history: anonymous chats
+ * are saved under the client address, which strangers behind one proxy or NAT share.
+ * Messages saved before owners were recorded belong to nobody and are not listed.
+ */
+@Service
+public class ChatHistoryService {
+
+    private final ChatRepository chatRepository;
+    private final ObjectMapper objectMapper;
+    private final int maxPageSize;
+    private final int exportBatch;
+
+    public static final class HistoryPage {
+        private final List<ChatMessageSummary> items;
+        private final String nextCursor;
+
+        HistoryPage(List<ChatMessageSummary> items, String nextCursor) {
+            this.items = items;
+            this.nextCursor = nextCursor;
+        }
+
+        public List<ChatMessageSummary> getItems() { return items; }
+
+        /** Pass back as {@code cursor} for the next (older) page; null on the last page */
+        public String getNextCursor() { return nextCursor; }
+    }
+
+    public ChatHistoryService(
+        ChatRepository chatRepository,
+        ObjectMapper objectMapper,
+        @Value("${chat.history.maxPageSize:200}") int maxPageSize,
+        @Value("${chat.history.exportBatch:500}") int exportBatch
+    ) {
+        this.chatRepository = chatRepository;
+        this.objectMapper = objectMapper;
+        this.maxPageSize = maxPageSize;
+        this.exportBatch = exportBatch;
+    }
+
+    /**
+     * Up to {@code size} of the owner's messages, newest first, older than {@code cursor}
+     * (from a previous page) or from the newest when it is null.
+     *
+     * @throws IllegalArgumentException if the cursor was not issued by this service
+     */
+    public HistoryPage page(String owner, String cursor, int size) {
+        int limit = Math.max(1, Math.min(size, maxPageSize));
+        // one extra row tells whether another page follows
+        List<ChatMessageSummary> rows;
+        if (cursor == null || cursor.isBlank()) {
+            rows = chatRepository.findByOwnerOrderByCreatedAtDescIdDesc(owner, Limit.of(limit + 1));
+        } else {
+            Instant createdAt;
+            long id;
+            int dot = cursor.indexOf('.');
+            try {
+                createdAt = Instant.ofEpochMilli(Long.parseLong(cursor.substring(0, dot)));
+                id = Long.parseLong(cursor.substring(dot + 1));
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Invalid cursor: " + cursor);
+            }
+            rows = chatRepository.findPageBefore(owner, createdAt, id, Limit.of(limit + 1));
+        }
+        if (rows.size() <= limit) return new HistoryPage(rows, null);
+        List<ChatMessageSummary> items = rows.subList(0, limit);
+        ChatMessageSummary last = items.get(limit - 1);
+        return new HistoryPage(items, last.getCreatedAt().toEpochMilli() + "." + last.getId());
+    }
+
+    /** One message with its reply, if it belongs to the owner */
+    public Optional<ChatMessage> find(String owner, Long id) {
+        return chatRepository.findByIdAndOwner(id, owner);
+    }
+
+    /** Write the owner's whole history to {@code out}, oldest first, one JSON object per line */
+    public long export(String owner, OutputStream out) throws IOException {
+        long written = 0;
+        List<ChatMessageExport> rows = chatRepository.findByOwnerOrderByCreatedAtAscIdAsc(owner, Limit.of(exportBatch));
+        while (true) {
+            for (ChatMessageExport row : rows) {
+                Map<String, Object> line = new LinkedHashMap<>();
+                line.put("id", row.getId());
+                line.put("createdAt", row.getCreatedAt());
+                line.put("userMessage", row.getUserMessage());
+                line.put("botReply", row.getBotReply());
+                out.write(objectMapper.writeValueAsBytes(line));
+                out.write('\n');
+            }
+            written += rows.size();
+            out.flush();
+            if (rows.size() < exportBatch) return written;
+            ChatMessageExport last = rows.get(rows.size() - 1);
+            rows = chatRepository.findPageAfter(owner, last.getCreatedAt(), last.getId(), Limit.of(exportBatch));
+        }
+    }
+}
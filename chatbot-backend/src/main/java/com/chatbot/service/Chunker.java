@@ -1,20 +1,301 @@
 package com.chatbot.service;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
 
-public class Chunker {
-    public static List<String> chunk(String text, int size, int overlap) {
-        List<String> chunks = new ArrayList<>();
-        if (text == null) return chunks;
-        text = text.replaceAll("\\s+", " ").trim();
-        int start = 0;
-        while (start < text.length()) {
-            int end = Math.min(text.length(), start + size);
-            chunks.add(text.substring(start, end));
-            if (end == text.length()) break;
-            start = Math.max(end - overlap, 0);
-        }
-        return chunks;
+/**
+ * Streaming, structure-aware chunker.
+ * Text is read one character at a time from a {@link Reader} or {@link CharSequence}
+ * (nothing is copied up front) and cut into units: sentences, list lines, paragraphs
+ * and headings. Units are packed into chunks of at most {@code maxTokens} estimated
+ * tokens ({@link ContextAssembler#estimateTokens}); a chunk prefers to end on a
+ * paragraph boundary, a heading always starts a new chunk, and chunks cut mid-paragraph
+ * repeat up to {@code overlapTokens} of trailing sentences. Chunks are produced lazily,
+ * so a document can be embedded while it is still being parsed.
+ * <p>
+ * Whitespace runs collapse to one space; a blank line is a paragraph break, a line
+ * starting with {@code #} or a bullet is its own line, and a short single-line
+ * paragraph without closing punctuation is treated as a heading.
+ */
+public class Chunker implements Iterator<String> {
+
+    private static final int CHARS_PER_TOKEN = 4;
+    private static final int MAX_HEADING_CHARS = 80;
+
+    private enum Sep {
+        NONE(""), SPACE(" "), LINE("\n"), PARAGRAPH("\n\n");
+
+        final String text;
+
+        Sep(String text) { this.text = text; }
+    }
+
+    /** A sentence, line or heading together with the separator that precedes it */
+    private static final class Unit {
+        final String text;
+        final Sep sep;
+        final boolean heading;
+        final int tokens;
+
+        Unit(String text, Sep sep, boolean heading) {
+            this.text = text;
+            this.sep = sep;
+            this.heading = heading;
+            this.tokens = ContextAssembler.estimateTokens(text);
+        }
+    }
+
+    private final Reader reader;
+    private final CharSequence seq;
+    private int seqPos;
+    private final char[] buf;
+    private int bufPos;
+    private int bufLen;
+    private int pushedBack = -1;
+
+    private final int maxTokens;
+    private final int overlapTokens;
+    private final int maxUnitChars;
+
+    // unit being read
+    private final StringBuilder unit = new StringBuilder();
+    private Sep unitSep = Sep.NONE;
+    private boolean unitStartsParagraph = true;
+    private boolean unitMultiLine;
+
+    // chunk being packed
+    private final List<Unit> current = new ArrayList<>();
+    private int currentTokens;
+
+    private final ArrayDeque<String> ready = new ArrayDeque<>();
+    private boolean eof;
+
+    private Chunker(Reader reader, CharSequence seq, int maxTokens, int overlapTokens) {
+        this.reader = reader;
+        this.seq = seq;
+        this.buf = reader != null ? new char[8192] : null;
+        this.maxTokens = Math.max(8, maxTokens);
+        this.overlapTokens = Math.max(0, Math.min(overlapTokens, this.maxTokens / 2));
+        this.maxUnitChars = this.maxTokens * CHARS_PER_TOKEN;
+    }
+
+    /** Chunks read lazily from {@code in}; the caller closes the reader */
+    public static Iterator<String> stream(Reader in, int maxTokens, int overlapTokens) {
+        return new Chunker(in, null, maxTokens, overlapTokens);
+    }
+
+    public static Iterator<String> stream(CharSequence text, int maxTokens, int overlapTokens) {
+        return new Chunker(null, text == null ? "" : text, maxTokens, overlapTokens);
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (ready.isEmpty() && !eof) advance();
+        return !ready.isEmpty();
+    }
+
+    @Override
+    public String next() {
+        if (!hasNext()) throw new NoSuchElementException();
+        return ready.poll();
+    }
+
+    // ===== reading =====
+
+    private int read() {
+        if (seq != null) return seqPos < seq.length() ? seq.charAt(seqPos++) : -1;
+        if (bufPos == bufLen) {
+            try {
+                bufLen = reader.read(buf, 0, buf.length);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            bufPos = 0;
+            if (bufLen <= 0) {
+                bufLen = 0;
+                return -1;
+            }
+        }
+        return buf[bufPos++];
+    }
+
+    /** Consume one whitespace run plus the character after it, completing units as they end */
+    private void advance() {
+        int c = pushedBack >= 0 ? pushedBack : read();
+        pushedBack = -1;
+
+        int newlines = 0;
+        boolean sawSpace = false;
+        while (c >= 0 && Character.isWhitespace(c)) {
+            sawSpace = true;
+            if (c == '\n') newlines++;
+            c = read();
+        }
+
+        if (c < 0) {
+            endUnit(true, Sep.NONE);
+            flush(0);
+            eof = true;
+            return;
+        }
+
+        if (sawSpace && unit.length() > 0) {
+            if (newlines >= 2) {
+                endUnit(true, Sep.PARAGRAPH);
+            } else if (newlines == 1 && (startsLine(c) || unit.charAt(0) == '#')) {
+                endUnit(false, Sep.LINE);
+            } else if (endsSentence()) {
+                endUnit(false, Sep.SPACE);
+            } else {
+                unit.append(' ');
+                if (newlines > 0) unitMultiLine = true;
+            }
+        }
+
+        // read the rest of this word
+        while (c >= 0 && !Character.isWhitespace(c)) {
+            unit.append((char) c);
+            if (unit.length() >= maxUnitChars) splitLongUnit();
+            c = read();
+        }
+        pushedBack = c;
+    }
+
+    private static boolean startsLine(int c) {
+        return c == '#' || c == '-' || c == '*' || c == '\u2022' || c == '\u00b7' || c == '|';
+    }
+
+    private boolean endsSentence() {
+        int end = unit.length() - 1;
+        while (end > 0 && (unit.charAt(end) == '"' || unit.charAt(end) == '\'' || unit.charAt(end) == ')')) end--;
+        char last = unit.charAt(end);
+        if (last == '!' || last == '?') return true;
+        if (last != '.') return false;
+        // "e.g.", "Dr.", "A." are not sentence ends
+        int wordStart = unit.lastIndexOf(" ", end) + 1;
+        String word = unit.substring(wordStart, end);
+        return word.length() > 2 && word.indexOf('.') < 0;
+    }
+
+    /** No whitespace for too long: cut at the last space, or hard-cut as a last resort */
+    private void splitLongUnit() {
+        int cut = unit.lastIndexOf(" ");
+        String rest = "";
+        if (cut > 0) {
+            rest = unit.substring(cut + 1);
+            unit.setLength(cut);
+        }
+        endUnit(false, Sep.SPACE);
+        unit.append(rest);
+    }
+
+    /**
+     * Finish the unit being read. {@code paragraphEnds} says whether a paragraph break
+     * (or end of input) follows; {@code nextSep} is the separator before the next unit.
+     */
+    private void endUnit(boolean paragraphEnds, Sep nextSep) {
+        if (unit.length() > 0) {
+            String text = unit.toString();
+            boolean heading = text.charAt(0) == '#'
+                || (unitStartsParagraph && paragraphEnds && !unitMultiLine && looksLikeHeading(text));
+            add(new Unit(text, unitSep, heading));
+            unit.setLength(0);
+        }
+        unitSep = nextSep;
+        unitStartsParagraph = nextSep == Sep.PARAGRAPH;
+        unitMultiLine = false;
+    }
+
+    private static boolean looksLikeHeading(String text) {
+        if (text.length() > MAX_HEADING_CHARS) return false;
+        char last = text.charAt(text.length() - 1);
+        if (last == '.' || last == '!' || last == '?' || last == ',' || last == ';') return false;
+        char first = text.charAt(0);
+        return Character.isUpperCase(first) || Character.isDigit(first);
+    }
+
+    // ===== packing =====
+
+    private void add(Unit u) {
+        if (u.heading && currentTokens >= maxTokens / 4) {
+            // a new section starts a new chunk, without overlap from the previous one
+            flush(0);
+        }
+        while (!current.isEmpty() && currentTokens + sepTokens(u) + u.tokens > maxTokens) {
+            cutBeforeOverflow(u);
+        }
+        current.add(u);
+        currentTokens += sepTokens(u) + u.tokens;
+    }
+
+    private int sepTokens(Unit u) {
+        return current.isEmpty() ? 0 : (u.sep.text.length() > 0 ? 1 : 0);
+    }
+
+    /**
+     * {@code next} does not fit. Prefer ending at the last paragraph boundary in the
+     * second half of the chunk; otherwise end here and repeat trailing sentences, as
+     * many as still leave room for {@code next}.
+     */
+    private void cutBeforeOverflow(Unit next) {
+        if (next.sep == Sep.PARAGRAPH || next.heading) {
+            flush(0);
+            return;
+        }
+        int tokens = 0;
+        int paragraphCut = -1;
+        for (int i = 0; i < current.size(); i++) {
+            Unit u = current.get(i);
+            if (i > 0 && (u.sep == Sep.PARAGRAPH || u.heading) && tokens >= maxTokens / 2) paragraphCut = i;
+            tokens += (i > 0 ? 1 : 0) + u.tokens;
+        }
+        if (paragraphCut > 0) {
+            List<Unit> carry = new ArrayList<>(current.subList(paragraphCut, current.size()));
+            current.subList(paragraphCut, current.size()).clear();
+            flush(0);
+            for (Unit u : carry) add(u);
+        } else {
+            flush(Math.min(overlapTokens, maxTokens - next.tokens - 1));
+        }
+    }
+
+    /**
+     * Emit the current chunk, keeping trailing sentences of up to {@code overlapBudget}
+     * tokens, separators between them included, so the kept tail is exactly what
+     * {@link #add} will count.
+     */
+    private void flush(int overlapBudget) {
+        if (current.isEmpty()) return;
+        StringBuilder sb = new StringBuilder();
+        for (Unit u : current) {
+            if (sb.length() > 0) sb.append(u.sep.text);
+            sb.append(u.text);
+        }
+        ready.add(sb.toString());
+
+        int keep = 0;
+        if (overlapBudget > 0) {
+            int tokens = 0;
+            for (int i = current.size() - 1; i > 0; i--) {
+                Unit u = current.get(i);
+                int cost = u.tokens + (keep > 0 ? 1 : 0);
+                if (u.heading || tokens + cost > overlapBudget) break;
+                tokens += cost;
+                keep++;
+            }
+        }
+        List<Unit> tail = keep == 0 ? List.of() : new ArrayList<>(current.subList(current.size() - keep, current.size()));
+        current.clear();
+        currentTokens = 0;
+        for (Unit u : tail) {
+            currentTokens += sepTokens(u) + u.tokens; // before adding: the first kept unit has no separator
+            current.add(u);
+        }
     }
 }
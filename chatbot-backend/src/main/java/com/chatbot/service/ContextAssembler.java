@@ -0,0 +1,160 @@
+package com.chatbot.service;
+
+import java.util.*;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Turns retrieved chunks into the prompt context block.
+ * Duplicate chunks are dropped, neighbouring chunks of the same document are
+ * stitched back together (removing the chunker overlap), and the result is cut
+ * off at a token budget so prompt size no longer depends on corpus size.
+ */
+@Service
+public class ContextAssembler {
+
+    // Rough English average; good enough for budgeting without a tokenizer
+    private static final int CHARS_PER_TOKEN = 4;
+    private static final int MIN_PARTIAL_TOKENS = 40;
+    private static final int MIN_OVERLAP_CHARS = 16;
+    private static final String SEPARATOR = "\n---\n";
+
+    private final int maxTokens;
+
+    public ContextAssembler(@Value("${rag.context.maxTokens:1500}") int maxTokens) {
+        this.maxTokens = maxTokens;
+    }
+
+    public static int estimateTokens(CharSequence text) {
+        return (text.length() + CHARS_PER_TOKEN - 1) / CHARS_PER_TOKEN;
+    }
+
+    /** Build a context block from search hits, best-scoring source first */
+    public String assemble(List<Map<String, Object>> hits) {
+        // 1. group passages by source document, remembering the rank of each source's best hit
+        Map<String, List<Passage>> bySource = new LinkedHashMap<>();
+        Set<String> seenText = new HashSet<>();
+        for (Map<String, Object> hit : hits) {
+            Passage p = Passage.from(hit);
+            if (p == null || p.text.isBlank()) continue;
+            if (!seenText.add(p.source + '\u0000' + p.text.strip())) continue; // exact duplicate
+            bySource.computeIfAbsent(p.source, k -> new ArrayList<>()).add(p);
+        }
+
+        // 2. merge adjacent chunks within each source, then emit under the token budget
+        StringBuilder out = new StringBuilder();
+        int budget = maxTokens;
+        for (List<Passage> passages : bySource.values()) {
+            for (String block : mergeAdjacent(passages)) {
+                int cost = estimateTokens(block) + (out.length() > 0 ? estimateTokens(SEPARATOR) : 0);
+                if (cost <= budget) {
+                    if (out.length() > 0) out.append(SEPARATOR);
+                    out.append(block);
+                    budget -= cost;
+                } else {
+                    if (budget >= MIN_PARTIAL_TOKENS) {
+                        if (out.length() > 0) out.append(SEPARATOR);
+                        out.append(truncate(block, (budget - estimateTokens(SEPARATOR)) * CHARS_PER_TOKEN));
+                    }
+                    return out.toString();
+                }
+            }
+        }
+        return out.toString();
+    }
+
+    private List<String> mergeAdjacent(List<Passage> passages) {
+        List<Passage> sorted = new ArrayList<>(passages);
+        sorted.sort(Comparator.comparingInt(p -> p.chunkIndex));
+
+        List<String> blocks = new ArrayList<>();
+        Passage head = null;
+        StringBuilder run = null;
+        int lastIndex = Integer.MIN_VALUE;
+        for (Passage p : sorted) {
+            if (run != null && p.chunkIndex >= 0 && p.chunkIndex == lastIndex) {
+                continue; // same chunk twice (e.g. re-indexed copy)
+            }
+            if (run != null && p.chunkIndex >= 0 && p.chunkIndex == lastIndex + 1) {
+                appendWithoutOverlap(run, p.text);
+            } else {
+                if (run != null) blocks.add(head.header() + run);
+                head = p;
+                run = new StringBuilder(p.text.strip());
+            }
+            lastIndex = p.chunkIndex;
+        }
+        if (run != null) blocks.add(head.header() + run);
+        return blocks;
+    }
+
+    /** Append {@code next}, skipping the prefix it shares with the end of {@code run} */
+    static void appendWithoutOverlap(StringBuilder run, String next) {
+        String n = next.strip();
+        int max = Math.min(Math.min(run.length(), n.length()), 2000);
+        for (int k = max; k >= MIN_OVERLAP_CHARS; k--) {
+            if (regionEquals(run, run.length() - k, n, k)) {
+                run.append(n, k, n.length());
+                return;
+            }
+        }
+        run.append(' ').append(n);
+    }
+
+    private static boolean regionEquals(CharSequence a, int aStart, String b, int len) {
+        for (int i = 0; i < len; i++) {
+            if (a.charAt(aStart + i) != b.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    private static String truncate(String block, int maxChars) {
+        if (block.length() <= maxChars) return block;
+        int cut = block.lastIndexOf(' ', maxChars);
+        return block.substring(0, cut > 0 ? cut : maxChars) + " …";
+    }
+
+    /** One retrieved chunk with the payload fields the context needs */
+    private static final class Passage {
+        final String source;
+        final int chunkIndex;
+        final String text;
+        final String name;
+        final String driveLink;
+        final boolean file;
+
+        private Passage(String source, int chunkIndex, String text, String name, String driveLink, boolean file) {
+            this.source = source;
+            this.chunkIndex = chunkIndex;
+            this.text = text;
+            this.name = name;
+            this.driveLink = driveLink;
+            this.file = file;
+        }
+
+        @SuppressWarnings("unchecked")
+        static Passage from(Map<String, Object> hit) {
+            Map<String, Object> payload = (Map<String, Object>) hit.get("payload");
+            if (payload == null) return null;
+
+            String text = String.valueOf(payload.getOrDefault("text", ""));
+            String fileName = (String) payload.get("fileName");
+            String name = String.valueOf(payload.getOrDefault("name", ""));
+            String drive = String.valueOf(payload.getOrDefault("driveLink", ""));
+            Object idx = payload.get("chunkIndex");
+            int chunkIndex = idx instanceof Number ? ((Number) idx).intValue() : -1;
+
+            if (fileName != null) {
+                return new Passage("file:" + fileName, chunkIndex, text, fileName, "", true);
+            }
+            return new Passage("resource:" + name, chunkIndex, text, name, drive, false);
+        }
+
+        String header() {
+            if (file) return "[FILE: " + name + "]\n";
+            if (!driveLink.isBlank()) return "**" + name + "** — " + driveLink + "\n";
+            return "";
+        }
+    }
+}
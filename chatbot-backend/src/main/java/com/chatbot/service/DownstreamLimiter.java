@@ -0,0 +1,177 @@
+package com.chatbot.service;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+
+/**
+ * Caps the calls in flight to one downstream service. Callers over the cap wait in a
+ * FIFO queue without holding a thread (reactive callers) or parked (blocking callers);
+ * a caller that waits longer than {@code acquireTimeout}, or finds {@code maxQueued}
+ * callers already waiting, fails fast with {@link BusyException}.
+ */
+public class DownstreamLimiter {
+
+    private static final int WAITING = 0, GRANTED = 1, CANCELLED = 2;
+
+    private final String name;
+    private final int maxConcurrent;
+    private final int maxQueued;
+    private final Duration acquireTimeout;
+
+    // guarded by this; held only to update the counts, never across a call
+    private final ArrayDeque<Waiter> waiters = new ArrayDeque<>();
+    private int inFlight;
+
+    private final AtomicLong rejected = new AtomicLong();
+
+    /** Thrown when no permit could be had in time */
+    public static class BusyException extends RuntimeException {
+        public BusyException(String message) {
+            super(message);
+        }
+    }
+
+    /** One call's slot; releasing it more than once has no effect */
+    public final class Permit {
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        public void release() {
+            if (released.compareAndSet(false, true)) DownstreamLimiter.this.release();
+        }
+    }
+
+    private static final class Waiter {
+        final MonoSink<Permit> sink;
+        final AtomicInteger state = new AtomicInteger(WAITING);
+        volatile Permit permit;
+
+        Waiter(MonoSink<Permit> sink) {
+            this.sink = sink;
+        }
+    }
+
+    public DownstreamLimiter(String name, int maxConcurrent, int maxQueued, Duration acquireTimeout) {
+        this.name = name;
+        this.maxConcurrent = Math.max(1, maxConcurrent);
+        this.maxQueued = Math.max(0, maxQueued);
+        this.acquireTimeout = acquireTimeout;
+    }
+
+    public DownstreamLimiter bindTo(MeterRegistry registry) {
+        Gauge.builder("downstream.inflight", this, DownstreamLimiter::inFlight).tag("downstream", name).register(registry);
+        Gauge.builder("downstream.queued", this, DownstreamLimiter::queued).tag("downstream", name).register(registry);
+        FunctionCounter.builder("downstream.rejected", rejected, AtomicLong::get).tag("downstream", name).register(registry);
+        return this;
+    }
+
+    /** A permit, emitted once one is free; cancelling while queued gives up the place */
+    public Mono<Permit> acquire() {
+        return Mono.<Permit>create(sink -> {
+            Waiter w = new Waiter(sink);
+            boolean granted = false, full = false;
+            synchronized (this) {
+                if (inFlight < maxConcurrent) {
+                    inFlight++;
+                    granted = true;
+                } else if (waiters.size() >= maxQueued) {
+                    full = true;
+                } else {
+                    waiters.add(w);
+                }
+            }
+            if (granted) {
+                sink.success(new Permit());
+                return;
+            }
+            if (full) {
+                rejected.incrementAndGet();
+                sink.error(new BusyException(name + " is busy: " + maxQueued + " calls already waiting"));
+                return;
+            }
+            sink.onCancel(() -> {
+                if (w.state.compareAndSet(WAITING, CANCELLED)) {
+                    synchronized (this) {
+                        waiters.remove(w);
+                    }
+                } else {
+                    // granted as we cancelled: hand it back
+                    Permit p = w.permit;
+                    if (p != null) p.release();
+                }
+            });
+        }).timeout(acquireTimeout, Mono.defer(() -> {
+            rejected.incrementAndGet();
+            return Mono.error(new BusyException(name + " is busy: no slot within " + acquireTimeout.toMillis() + " ms"));
+        }));
+    }
+
+    /** Run {@code call} once a permit is free, holding it until the call terminates or is cancelled */
+    public <T> Mono<T> limit(Mono<T> call) {
+        return Mono.usingWhen(acquire(), p -> call, DownstreamLimiter::releasing);
+    }
+
+    /** Like {@link #limit(Mono)} for a streamed call: the permit is held until the stream ends */
+    public <T> Flux<T> limitMany(Flux<T> call) {
+        return Flux.usingWhen(acquire(), p -> call, DownstreamLimiter::releasing);
+    }
+
+    /** Blocking form of {@link #limit(Mono)} */
+    public <T> T call(Callable<T> call) throws Exception {
+        Permit p = acquire().block();
+        try {
+            return call.call();
+        } finally {
+            p.release();
+        }
+    }
+
+    /**
+     * WebClient filter: each exchange holds a permit until the response status and
+     * headers arrive, which covers the server-side work for request/response APIs.
+     */
+    public ExchangeFilterFunction filter() {
+        return (request, next) -> limit(next.exchange(request));
+    }
+
+    private static Mono<Void> releasing(Permit p) {
+        return Mono.fromRunnable(p::release);
+    }
+
+    private void release() {
+        while (true) {
+            Waiter next;
+            synchronized (this) {
+                next = waiters.poll();
+                if (next == null) {
+                    inFlight--;
+                    return;
+                }
+            }
+            // the slot passes straight to the next waiter unless it just gave up
+            Permit p = new Permit();
+            next.permit = p;
+            if (next.state.compareAndSet(WAITING, GRANTED)) {
+                next.sink.success(p);
+                return;
+            }
+        }
+    }
+
+    public String name() { return name; }
+    public synchronized int inFlight() { return inFlight; }
+    public synchronized int queued() { return waiters.size(); }
+    public long rejected() { return rejected.get(); }
+}
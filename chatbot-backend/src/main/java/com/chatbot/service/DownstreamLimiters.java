@@ -0,0 +1,54 @@
+package com.chatbot.service;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * One {@link DownstreamLimiter} per service the backend calls. The caps are what each
+ * service handles well (Ollama generates only a few prompts at once), not what the
+ * backend could send; with virtual threads nothing else in the process bounds it.
+ * Ollama is capped per server, so every server added to {@code llm.endpoints} adds
+ * its own {@code downstream.ollama.maxConcurrent} slots.
+ */
+@Component
+public class DownstreamLimiters {
+
+    private final Map<String, DownstreamLimiter> ollama = new ConcurrentHashMap<>(); // by endpoint name
+    private final int ollamaMax;
+    private final int maxQueued;
+    private final Duration acquireTimeout;
+    private final MeterRegistry meterRegistry;
+    private final DownstreamLimiter qdrant;
+    private final DownstreamLimiter dropbox;
+
+    public DownstreamLimiters(
+        @Value("${downstream.ollama.maxConcurrent:4}") int ollamaMax,
+        @Value("${downstream.qdrant.maxConcurrent:32}") int qdrantMax,
+        @Value("${downstream.dropbox.maxConcurrent:8}") int dropboxMax,
+        @Value("${downstream.maxQueued:1000}") int maxQueued,
+        @Value("${downstream.acquireTimeout:30s}") Duration acquireTimeout,
+        MeterRegistry meterRegistry
+    ) {
+        this.ollamaMax = ollamaMax;
+        this.maxQueued = maxQueued;
+        this.acquireTimeout = acquireTimeout;
+        this.meterRegistry = meterRegistry;
+        this.qdrant = new DownstreamLimiter("qdrant", qdrantMax, maxQueued, acquireTimeout).bindTo(meterRegistry);
+        this.dropbox = new DownstreamLimiter("dropbox", dropboxMax, maxQueued, acquireTimeout).bindTo(meterRegistry);
+    }
+
+    /** The cap for one Ollama server (see {@link ModelEndpointRouter.Endpoint#limiter}) */
+    public DownstreamLimiter ollama(String endpoint) {
+        return ollama.computeIfAbsent(endpoint, name ->
+            new DownstreamLimiter("ollama:" + name, ollamaMax, maxQueued, acquireTimeout).bindTo(meterRegistry));
+    }
+
+    public DownstreamLimiter qdrant() { return qdrant; }
+    public DownstreamLimiter dropbox() { return dropbox; }
+}
@@ -1,13 +1,17 @@
 package com.chatbot.service;
 
 import java.io.InputStream;
+import java.nio.file.Path;
 import java.util.List;
 
+import com.dropbox.core.v2.files.ListFolderResult;
 import com.dropbox.core.v2.files.Metadata;
-import org.springframework.web.multipart.MultipartFile;
 
 public interface DropboxService {
-    String uploadToDropbox(MultipartFile file) throws Exception;
+    String uploadToDropbox(String fileName, Path source) throws Exception;
     InputStream downloadFromDropbox(String dropboxPath) throws Exception;
+    InputStream downloadFromDropbox(String dropboxPath, long offset, long length) throws Exception; // byte range
     List<Metadata> listAllFiles(String dropboxFolderPath) throws Exception; // ✅ NEW
+    ListFolderResult listFolder(String dropboxFolderPath) throws Exception;   // first page + cursor
+    ListFolderResult listFolderContinue(String cursor) throws Exception;      // changes since cursor
 }
@@ -3,11 +3,14 @@ package com.chatbot.service;
 import com.dropbox.core.DbxRequestConfig;
 import com.dropbox.core.v2.DbxClientV2;
 import com.dropbox.core.v2.files.*;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.web.multipart.MultipartFile;
 
 import java.io.InputStream;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -15,22 +18,33 @@ import java.util.List;
 public class DropboxServiceImpl implements DropboxService {
 
     private final DbxClientV2 dropboxClient;
+    private final DropboxUploadEngine uploadEngine;
+    private final DownstreamLimiter limiter;
 
-    public DropboxServiceImpl(@Value("${dropbox.access.token}") String accessToken) {
+    public DropboxServiceImpl(
+        @Value("${dropbox.access.token}") String accessToken,
+        @Value("${dropbox.upload.partBytes:8388608}") long partBytes,
+        @Value("${dropbox.upload.parallelism:4}") int parallelism,
+        @Value("${dropbox.upload.maxAttempts:4}") int maxAttempts,
+        @Value("${dropbox.upload.backoff:500ms}") Duration backoff,
+        @Value("${dropbox.upload.batchWindow:250ms}") Duration batchWindow,
+        DownstreamLimiters limiters,
+        MeterRegistry meterRegistry
+    ) {
         DbxRequestConfig config = DbxRequestConfig.newBuilder("cosmo-ally-app").build();
         this.dropboxClient = new DbxClientV2(config, accessToken);
+        this.limiter = limiters.dropbox();
+        this.uploadEngine = new DropboxUploadEngine(new DropboxUploadSessions(dropboxClient, limiter),
+            partBytes, parallelism, maxAttempts, backoff, batchWindow).bindTo(meterRegistry);
     }
 
     @Override
-    public String uploadToDropbox(MultipartFile file) throws Exception {
-        String dropboxPath = "/uploads/" + file.getOriginalFilename();
-        try (InputStream in = file.getInputStream()) {
-            FileMetadata metadata = dropboxClient.files()
-                .uploadBuilder(dropboxPath)
-                .withMode(WriteMode.OVERWRITE)
-                .uploadAndFinish(in);
-            System.out.println("✅ Dropbox upload complete: " + metadata.getPathDisplay());
-            return metadata.getPathDisplay();
+    public String uploadToDropbox(String fileName, Path source) throws Exception {
+        String dropboxPath = "/uploads/" + fileName;
+        try {
+            String stored = uploadEngine.upload(source, dropboxPath);
+            System.out.println("✅ Dropbox upload complete: " + stored);
+            return stored;
         } catch (Exception e) {
             System.err.println("❌ Dropbox upload error: " + e.getMessage());
             throw e;
@@ -40,21 +54,43 @@ public class DropboxServiceImpl implements DropboxService {
     @Override
     public InputStream downloadFromDropbox(String dropboxPath) throws Exception {
         System.out.println("📁 [Dropbox Download] Attempting path: " + dropboxPath);
-        return dropboxClient.files().download(dropboxPath).getInputStream();
+        // the permit covers opening the download; reading the body is up to the caller
+        return limiter.call(() -> dropboxClient.files().download(dropboxPath).getInputStream());
+    }
+
+    @Override
+    public InputStream downloadFromDropbox(String dropboxPath, long offset, long length) throws Exception {
+        System.out.println("📁 [Dropbox Download] Range " + offset + "+" + length + " of " + dropboxPath);
+        return limiter.call(() -> dropboxClient.files().downloadBuilder(dropboxPath).range(offset, length).start().getInputStream());
     }
 
     @Override
     public List<Metadata> listAllFiles(String dropboxFolderPath) throws Exception {
         List<Metadata> files = new ArrayList<>();
-        ListFolderResult result = dropboxClient.files().listFolder(dropboxFolderPath);
+        ListFolderResult result = listFolder(dropboxFolderPath);
         while (true) {
             for (Metadata entry : result.getEntries()) {
                 System.out.println("Found file in Dropbox: " + entry.getPathDisplay());
                 files.add(entry);
             }
             if (!result.getHasMore()) break;
-            result = dropboxClient.files().listFolderContinue(result.getCursor());
+            result = listFolderContinue(result.getCursor());
         }
         return files;
     }
+
+    @Override
+    public ListFolderResult listFolder(String dropboxFolderPath) throws Exception {
+        return limiter.call(() -> dropboxClient.files().listFolder(dropboxFolderPath));
+    }
+
+    @Override
+    public ListFolderResult listFolderContinue(String cursor) throws Exception {
+        return limiter.call(() -> dropboxClient.files().listFolderContinue(cursor));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        uploadEngine.close();
+    }
 }
@@ -0,0 +1,253 @@
+package com.chatbot.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Uploads files through Dropbox upload sessions.
+ * Files up to one part are sent in a single request. Larger files are split into
+ * fixed-size parts (a multiple of 4 MiB) that are appended to a concurrent session
+ * from a shared pool of {@code parallelism} threads, each read straight from the file
+ * at its offset; the last part, which closes the session, goes once the rest are in.
+ * Every request is retried on its own with exponential backoff (or the server's
+ * rate-limit delay), so a failure costs one part rather than the whole file.
+ * <p>
+ * Commits wait up to {@code batchWindow} for other uploads finishing at the same time
+ * and are then committed together with {@code finishBatch}; a lone commit uses
+ * {@code finish}.
+ */
+public class DropboxUploadEngine implements Closeable {
+
+    private static final int MAX_BATCH = 1000; // Dropbox limit per finish_batch
+
+    private final UploadSessionApi api;
+    private final long partBytes;
+    private final int maxAttempts;
+    private final long backoffMillis;
+    private final long batchWindowMillis;
+    private final ExecutorService parts;
+    private final ScheduledExecutorService finisher;
+
+    private final List<Pending> pending = new ArrayList<>(); // guarded by itself
+
+    private final AtomicLong uploadedBytes = new AtomicLong();
+    private final AtomicLong uploadedFiles = new AtomicLong();
+    private final AtomicLong uploadedParts = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private volatile double lastBytesPerSecond;
+
+    private static final class Pending {
+        final UploadSessionApi.Commit commit;
+        final CompletableFuture<String> done = new CompletableFuture<>();
+
+        Pending(UploadSessionApi.Commit commit) {
+            this.commit = commit;
+        }
+    }
+
+    public DropboxUploadEngine(UploadSessionApi api, long partBytes, int parallelism, int maxAttempts,
+                               Duration backoff, Duration batchWindow) {
+        this.api = api;
+        // round to the session alignment; parts must be non-empty multiples of it
+        long aligned = partBytes / UploadSessionApi.PART_ALIGNMENT * UploadSessionApi.PART_ALIGNMENT;
+        this.partBytes = Math.max(UploadSessionApi.PART_ALIGNMENT, aligned);
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.backoffMillis = Math.max(1, backoff.toMillis());
+        this.batchWindowMillis = Math.max(0, batchWindow.toMillis());
+        this.parts = Executors.newFixedThreadPool(Math.max(1, parallelism), r -> {
+            Thread t = new Thread(r, "dropbox-upload");
+            t.setDaemon(true);
+            return t;
+        });
+        this.finisher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "dropbox-commit");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public DropboxUploadEngine bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("dropbox.upload.bytes", uploadedBytes, AtomicLong::get).baseUnit("bytes").register(registry);
+        FunctionCounter.builder("dropbox.upload.files", uploadedFiles, AtomicLong::get).register(registry);
+        FunctionCounter.builder("dropbox.upload.parts", uploadedParts, AtomicLong::get).register(registry);
+        FunctionCounter.builder("dropbox.upload.retries", retries, AtomicLong::get).register(registry);
+        FunctionCounter.builder("dropbox.upload.failures", failures, AtomicLong::get).register(registry);
+        FunctionCounter.builder("dropbox.upload.batches", batches, AtomicLong::get).register(registry);
+        Gauge.builder("dropbox.upload.throughput", this, e -> e.lastBytesPerSecond).baseUnit("bytes/s").register(registry);
+        return this;
+    }
+
+    /** Upload {@code source} to {@code dropboxPath}, overwriting; returns the stored path */
+    public String upload(Path source, String dropboxPath) throws Exception {
+        long size = Files.size(source);
+        long start = System.nanoTime();
+        try {
+            String path = size <= partBytes
+                ? retry("upload " + dropboxPath, () -> {
+                    try (InputStream in = Files.newInputStream(source)) {
+                        return api.upload(dropboxPath, in, size);
+                    }
+                })
+                : uploadSession(source, dropboxPath, size);
+            uploadedFiles.incrementAndGet();
+            uploadedBytes.addAndGet(size);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            if (seconds > 0) lastBytesPerSecond = size / seconds;
+            return path;
+        } catch (Exception e) {
+            failures.incrementAndGet();
+            throw e;
+        }
+    }
+
+    private String uploadSession(Path source, String dropboxPath, long size) throws Exception {
+        String sessionId = retry("start session for " + dropboxPath, api::start);
+        long lastOffset = (size - 1) / partBytes * partBytes;
+
+        List<Future<Void>> appends = new ArrayList<>();
+        try {
+            for (long offset = 0; offset < lastOffset; offset += partBytes) {
+                long partOffset = offset;
+                appends.add(parts.submit(() -> {
+                    appendPart(sessionId, source, dropboxPath, partOffset, partBytes, false);
+                    return null;
+                }));
+            }
+            for (Future<Void> f : appends) {
+                try {
+                    f.get();
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof Exception ex) throw ex;
+                    throw e;
+                }
+            }
+        } catch (Exception e) {
+            appends.forEach(f -> f.cancel(true));
+            throw e;
+        }
+        appendPart(sessionId, source, dropboxPath, lastOffset, size - lastOffset, true);
+
+        return commit(new UploadSessionApi.Commit(sessionId, size, dropboxPath));
+    }
+
+    private void appendPart(String sessionId, Path source, String dropboxPath, long offset, long length, boolean close)
+            throws Exception {
+        retry("part at " + offset + " of " + dropboxPath, () -> {
+            try (FileChannel channel = FileChannel.open(source, StandardOpenOption.READ)) {
+                channel.position(offset);
+                api.append(sessionId, offset, Channels.newInputStream(channel), length, close);
+            }
+            return null;
+        });
+        uploadedParts.incrementAndGet();
+    }
+
+    // ===== commits =====
+
+    private String commit(UploadSessionApi.Commit commit) throws Exception {
+        if (batchWindowMillis == 0) {
+            return retry("commit " + commit.getPath(), () -> api.finish(commit));
+        }
+        Pending p = new Pending(commit);
+        synchronized (pending) {
+            pending.add(p);
+            if (pending.size() == 1) finisher.schedule(this::flush, batchWindowMillis, TimeUnit.MILLISECONDS);
+            else if (pending.size() >= MAX_BATCH) finisher.execute(this::flush);
+        }
+        try {
+            return p.done.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof Exception ex) throw ex;
+            throw e;
+        }
+    }
+
+    /** Commit everything that is waiting, as one batch when there is more than one */
+    private void flush() {
+        List<Pending> batch;
+        synchronized (pending) {
+            batch = new ArrayList<>(pending.subList(0, Math.min(MAX_BATCH, pending.size())));
+            pending.subList(0, batch.size()).clear();
+            if (!pending.isEmpty()) finisher.execute(this::flush);
+        }
+        if (batch.isEmpty()) return;
+
+        try {
+            if (batch.size() == 1) {
+                UploadSessionApi.Commit c = batch.get(0).commit;
+                batch.get(0).done.complete(retry("commit " + c.getPath(), () -> api.finish(c)));
+                return;
+            }
+            List<UploadSessionApi.Commit> commits = new ArrayList<>();
+            for (Pending p : batch) commits.add(p.commit);
+            List<UploadSessionApi.Result> results = retry("commit batch of " + commits.size(), () -> api.finishBatch(commits));
+            batches.incrementAndGet();
+            System.out.println("📦 [DropboxUpload] Committed " + commits.size() + " uploads in one batch");
+            for (int i = 0; i < batch.size(); i++) {
+                UploadSessionApi.Result r = i < results.size() ? results.get(i) : UploadSessionApi.Result.failed("no result");
+                if (r.isOk()) batch.get(i).done.complete(r.getPath());
+                else batch.get(i).done.completeExceptionally(
+                    new IOException("Dropbox commit failed for " + batch.get(i).commit.getPath() + ": " + r.getError()));
+            }
+        } catch (Exception e) {
+            for (Pending p : batch) p.done.completeExceptionally(e);
+        }
+    }
+
+    // ===== retries =====
+
+    private <T> T retry(String what, Callable<T> call) throws Exception {
+        for (int attempt = 1; ; attempt++) {
+            long delay;
+            try {
+                return call.call();
+            } catch (Exception e) {
+                delay = api.retryAfterMillis(e);
+                if (delay < 0 || attempt >= maxAttempts) throw e;
+                if (delay == 0) delay = backoffMillis << Math.min(attempt - 1, 10);
+                retries.incrementAndGet();
+                System.err.println("🔁 [DropboxUpload] " + what + " failed (attempt " + attempt + "/" + maxAttempts
+                    + "), retrying in " + delay + " ms: " + e.getMessage());
+            }
+            Thread.sleep(delay);
+        }
+    }
+
+    public long uploadedBytes() { return uploadedBytes.get(); }
+    public long uploadedFiles() { return uploadedFiles.get(); }
+    public long uploadedParts() { return uploadedParts.get(); }
+    public long retries() { return retries.get(); }
+    public long failures() { return failures.get(); }
+    public long batches() { return batches.get(); }
+
+    @Override
+    public void close() {
+        parts.shutdownNow();
+        finisher.shutdownNow();
+    }
+}
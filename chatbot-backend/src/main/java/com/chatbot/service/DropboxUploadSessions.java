@@ -0,0 +1,103 @@
+package com.chatbot.service;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.dropbox.core.NetworkIOException;
+import com.dropbox.core.RateLimitException;
+import com.dropbox.core.RetryException;
+import com.dropbox.core.ServerException;
+import com.dropbox.core.v2.DbxClientV2;
+import com.dropbox.core.v2.files.CommitInfo;
+import com.dropbox.core.v2.files.UploadSessionCursor;
+import com.dropbox.core.v2.files.UploadSessionFinishArg;
+import com.dropbox.core.v2.files.UploadSessionFinishBatchResult;
+import com.dropbox.core.v2.files.UploadSessionFinishBatchResultEntry;
+import com.dropbox.core.v2.files.UploadSessionType;
+import com.dropbox.core.v2.files.WriteMode;
+
+/** {@link UploadSessionApi} over the Dropbox SDK; every commit overwrites and every call holds a Dropbox permit */
+final class DropboxUploadSessions implements UploadSessionApi {
+
+    private final DbxClientV2 client;
+    private final DownstreamLimiter limiter;
+
+    DropboxUploadSessions(DbxClientV2 client, DownstreamLimiter limiter) {
+        this.client = client;
+        this.limiter = limiter;
+    }
+
+    @Override
+    public String upload(String path, InputStream data, long length) throws Exception {
+        return limiter.call(() -> client.files().uploadBuilder(path)
+            .withMode(WriteMode.OVERWRITE)
+            .uploadAndFinish(data, length)
+            .getPathDisplay());
+    }
+
+    @Override
+    public String start() throws Exception {
+        return limiter.call(() -> client.files().uploadSessionStartBuilder()
+            .withSessionType(UploadSessionType.CONCURRENT)
+            .uploadAndFinish(empty())
+            .getSessionId());
+    }
+
+    @Override
+    public void append(String sessionId, long offset, InputStream data, long length, boolean close) throws Exception {
+        limiter.call(() -> {
+            client.files().uploadSessionAppendV2Builder(new UploadSessionCursor(sessionId, offset))
+                .withClose(close)
+                .uploadAndFinish(data, length);
+            return null;
+        });
+    }
+
+    @Override
+    public String finish(Commit commit) throws Exception {
+        // concurrent sessions are finished without data
+        return limiter.call(() -> client.files().uploadSessionFinish(cursor(commit), commitInfo(commit))
+            .uploadAndFinish(empty())
+            .getPathDisplay());
+    }
+
+    @Override
+    public List<Result> finishBatch(List<Commit> commits) throws Exception {
+        List<UploadSessionFinishArg> args = new ArrayList<>();
+        for (Commit c : commits) args.add(new UploadSessionFinishArg(cursor(c), commitInfo(c)));
+        UploadSessionFinishBatchResult batch = limiter.call(() -> client.files().uploadSessionFinishBatchV2(args));
+
+        List<Result> results = new ArrayList<>();
+        for (UploadSessionFinishBatchResultEntry entry : batch.getEntries()) {
+            results.add(entry.isSuccess()
+                ? Result.ok(entry.getSuccessValue().getPathDisplay())
+                : Result.failed(String.valueOf(entry.getFailureValue())));
+        }
+        return results;
+    }
+
+    @Override
+    public long retryAfterMillis(Exception e) {
+        if (e instanceof RateLimitException rateLimit) return Math.max(1, rateLimit.getBackoffMillis());
+        if (e instanceof RetryException || e instanceof NetworkIOException || e instanceof ServerException
+            || e instanceof IOException || e instanceof DownstreamLimiter.BusyException) {
+            return 0;
+        }
+        return -1;
+    }
+
+    private static UploadSessionCursor cursor(Commit c) {
+        return new UploadSessionCursor(c.getSessionId(), c.getSize());
+    }
+
+    private static CommitInfo commitInfo(Commit c) {
+        return CommitInfo.newBuilder(c.getPath()).withMode(WriteMode.OVERWRITE).build();
+    }
+
+    private static InputStream empty() {
+        return new ByteArrayInputStream(new byte[0]);
+    }
+}
@@ -0,0 +1,266 @@
+package com.chatbot.service;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Bounded LRU + TTL cache of embedding vectors.
+ * Vectors are stored quantized ({@link Encoding}) to keep the footprint small:
+ * FLOAT16 halves it with negligible effect on cosine ranking, INT8 quarters it.
+ */
+public class EmbeddingCache {
+
+    public enum Encoding { FLOAT32, FLOAT16, INT8 }
+
+    private final String name;
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final Encoding encoding;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private long storedBytes;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong expirations = new AtomicLong();
+
+    public EmbeddingCache(String name, int maxEntries, Duration ttl, Encoding encoding) {
+        this.name = name;
+        this.maxEntries = Math.max(1, maxEntries);
+        this.ttlNanos = ttl.isZero() || ttl.isNegative() ? Long.MAX_VALUE : ttl.toNanos();
+        this.encoding = encoding;
+    }
+
+    /** Lower-case, drop punctuation and collapse whitespace so trivially different queries share a key */
+    public static String normalizeQuery(String query) {
+        if (query == null) return "";
+        StringBuilder sb = new StringBuilder(query.length());
+        boolean pendingSpace = false;
+        for (int i = 0; i < query.length(); i++) {
+            char c = query.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                if (pendingSpace && sb.length() > 0) sb.append(' ');
+                pendingSpace = false;
+                sb.append(c);
+            } else {
+                pendingSpace = true;
+            }
+        }
+        return sb.toString().toLowerCase(Locale.ROOT);
+    }
+
+    public float[] get(String key) {
+        lock.lock();
+        try {
+            Entry e = entries.get(key);
+            if (e == null) {
+                misses.incrementAndGet();
+                return null;
+            }
+            if (System.nanoTime() - e.createdAt > ttlNanos) {
+                entries.remove(key);
+                storedBytes -= e.data.length;
+                expirations.incrementAndGet();
+                misses.incrementAndGet();
+                return null;
+            }
+            hits.incrementAndGet();
+            return e.decode();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void put(String key, float[] vector) {
+        Entry e = Entry.encode(vector, encoding);
+        lock.lock();
+        try {
+            Entry previous = entries.put(key, e);
+            storedBytes += e.data.length - (previous != null ? previous.data.length : 0);
+            Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+            while (entries.size() > maxEntries && eldest.hasNext()) {
+                storedBytes -= eldest.next().getValue().data.length;
+                eldest.remove();
+                evictions.incrementAndGet();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Cached vector for {@code key}, computing (outside the lock) and storing it on a miss */
+    public float[] getOrCompute(String key, Function<String, float[]> compute) {
+        float[] cached = get(key);
+        if (cached != null) return cached;
+        float[] computed = compute.apply(key);
+        if (computed != null && computed.length > 0) put(key, computed);
+        return computed;
+    }
+
+    public void clear() {
+        lock.lock();
+        try {
+            entries.clear();
+            storedBytes = 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long storedBytes() {
+        lock.lock();
+        try {
+            return storedBytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Publish hit/miss/eviction counters and size gauges as rag.embedding.cache.* tagged with the cache name */
+    public EmbeddingCache bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("rag.embedding.cache.hits", hits, AtomicLong::get).tag("cache", name).register(registry);
+        FunctionCounter.builder("rag.embedding.cache.misses", misses, AtomicLong::get).tag("cache", name).register(registry);
+        FunctionCounter.builder("rag.embedding.cache.evictions", evictions, AtomicLong::get).tag("cache", name).register(registry);
+        FunctionCounter.builder("rag.embedding.cache.expirations", expirations, AtomicLong::get).tag("cache", name).register(registry);
+        Gauge.builder("rag.embedding.cache.size", this, EmbeddingCache::size).tag("cache", name).register(registry);
+        Gauge.builder("rag.embedding.cache.bytes", this, EmbeddingCache::storedBytes).tag("cache", name).register(registry);
+        return this;
+    }
+
+    private static final class Entry {
+        final byte[] data;
+        final float scale;
+        final Encoding encoding;
+        final long createdAt = System.nanoTime();
+
+        private Entry(byte[] data, float scale, Encoding encoding) {
+            this.data = data;
+            this.scale = scale;
+            this.encoding = encoding;
+        }
+
+        static Entry encode(float[] v, Encoding encoding) {
+            switch (encoding) {
+                case FLOAT16: {
+                    byte[] out = new byte[v.length * 2];
+                    for (int i = 0; i < v.length; i++) {
+                        short h = toHalf(v[i]);
+                        out[2 * i] = (byte) (h >>> 8);
+                        out[2 * i + 1] = (byte) h;
+                    }
+                    return new Entry(out, 1f, encoding);
+                }
+                case INT8: {
+                    float maxAbs = 0f;
+                    for (float f : v) maxAbs = Math.max(maxAbs, Math.abs(f));
+                    float scale = maxAbs == 0f ? 1f : maxAbs / 127f;
+                    byte[] out = new byte[v.length];
+                    for (int i = 0; i < v.length; i++) {
+                        out[i] = (byte) Math.round(v[i] / scale);
+                    }
+                    return new Entry(out, scale, encoding);
+                }
+                default: {
+                    byte[] out = new byte[v.length * 4];
+                    for (int i = 0; i < v.length; i++) {
+                        int bits = Float.floatToRawIntBits(v[i]);
+                        out[4 * i] = (byte) (bits >>> 24);
+                        out[4 * i + 1] = (byte) (bits >>> 16);
+                        out[4 * i + 2] = (byte) (bits >>> 8);
+                        out[4 * i + 3] = (byte) bits;
+                    }
+                    return new Entry(out, 1f, encoding);
+                }
+            }
+        }
+
+        float[] decode() {
+            switch (encoding) {
+                case FLOAT16: {
+                    float[] v = new float[data.length / 2];
+                    for (int i = 0; i < v.length; i++) {
+                        v[i] = fromHalf((short) (((data[2 * i] & 0xff) << 8) | (data[2 * i + 1] & 0xff)));
+                    }
+                    return v;
+                }
+                case INT8: {
+                    float[] v = new float[data.length];
+                    for (int i = 0; i < v.length; i++) v[i] = data[i] * scale;
+                    return v;
+                }
+                default: {
+                    float[] v = new float[data.length / 4];
+                    for (int i = 0; i < v.length; i++) {
+                        int bits = ((data[4 * i] & 0xff) << 24) | ((data[4 * i + 1] & 0xff) << 16)
+                            | ((data[4 * i + 2] & 0xff) << 8) | (data[4 * i + 3] & 0xff);
+                        v[i] = Float.intBitsToFloat(bits);
+                    }
+                    return v;
+                }
+            }
+        }
+    }
+
+    /** IEEE 754 binary16 encode, round-half-up (Float.floatToFloat16 needs JDK 20) */
+    static short toHalf(float f) {
+        int bits = Float.floatToRawIntBits(f);
+        int sign = (bits >>> 16) & 0x8000;
+        int rawExp = (bits >>> 23) & 0xff;
+        int mant = bits & 0x7fffff;
+
+        if (rawExp == 0xff) return (short) (sign | 0x7c00 | (mant != 0 ? 0x200 : 0)); // Inf / NaN
+        int exp = rawExp - 127 + 15;
+        if (exp >= 31) return (short) (sign | 0x7c00);                                // overflow -> Inf
+        if (exp <= 0) {                                                               // subnormal half
+            if (exp < -10) return (short) sign;
+            int full = mant | 0x800000;
+            int shift = 14 - exp;
+            int half = full >> shift;
+            if (((full >> (shift - 1)) & 1) != 0) half++;
+            return (short) (sign | half);
+        }
+        int half = sign | (exp << 10) | (mant >> 13);
+        if ((mant & 0x1000) != 0) half++; // a carry into the exponent is still the correctly rounded value
+        return (short) half;
+    }
+
+    static float fromHalf(short h) {
+        int sign = (h & 0x8000) << 16;
+        int exp = (h >>> 10) & 0x1f;
+        int mant = h & 0x3ff;
+        if (exp == 0) {
+            if (mant == 0) return Float.intBitsToFloat(sign);
+            int shifts = 0;
+            do {
+                mant <<= 1;
+                shifts++;
+            } while ((mant & 0x400) == 0);
+            mant &= 0x3ff;
+            exp = 1 - shifts;
+        } else if (exp == 31) {
+            return Float.intBitsToFloat(sign | 0x7f800000 | (mant << 13));
+        }
+        return Float.intBitsToFloat(sign | ((exp + 112) << 23) | (mant << 13));
+    }
+}
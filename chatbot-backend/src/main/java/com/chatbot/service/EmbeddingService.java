@@ -1,42 +1,75 @@
 package com.chatbot.service;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
-import org.springframework.web.reactive.function.client.WebClient;
+
+import reactor.core.publisher.Mono;
 
 @Service
 public class EmbeddingService {
 
-    private final WebClient webClient;
+    private final ModelEndpointRouter router;
     private final String model;
 
     public EmbeddingService(
-        @Value("${rag.embeddings.ollamaUrl}") String ollamaUrl,
+        ModelEndpointRouter router,
         @Value("${rag.embeddings.model}") String model
     ) {
-        this.webClient = WebClient.builder().baseUrl(ollamaUrl).build();
+        this.router = router;
         this.model = model;
     }
 
-    @SuppressWarnings("unchecked")
     public float[] embed(String text) {
-        Map<String, Object> resp = webClient.post()
-            .uri("/api/embeddings")
+        return embedBatch(List.of(text)).get(0);
+    }
+
+    /** Embed several texts in one round trip (Ollama /api/embed accepts an input array) */
+    public List<float[]> embedBatch(List<String> texts) {
+        if (texts.isEmpty()) return List.of();
+        return embedBatchAsync(texts).block();
+    }
+
+    /** Non-blocking {@link #embed}, for request paths running on event-loop threads */
+    public Mono<float[]> embedAsync(String text) {
+        return embedBatchAsync(List.of(text)).map(vectors -> vectors.get(0));
+    }
+
+    @SuppressWarnings("unchecked")
+    public Mono<List<float[]>> embedBatchAsync(List<String> texts) {
+        if (texts.isEmpty()) return Mono.just(List.of());
+
+        return router.exchange(ModelEndpointRouter.Role.EMBED, null, ep -> ep.limiter().limit(ep.client().post()
+            .uri("/api/embed")
             .contentType(MediaType.APPLICATION_JSON)
-            .bodyValue(Map.of("model", model, "prompt", text))
+            .bodyValue(Map.of("model", model, "input", texts))
             .retrieve()
-            .bodyToMono(Map.class)
-            .block();
+            .bodyToMono(Map.class)))
+            .map(resp -> {
+                if (!resp.containsKey("embeddings")) {
+                    throw new RuntimeException("Embedding API returned no data");
+                }
 
-        if (resp == null || !resp.containsKey("embedding")) {
-            throw new RuntimeException("Embedding API returned no data");
-        }
+                List<List<Number>> embeddings = (List<List<Number>>) resp.get("embeddings");
+                if (embeddings.size() != texts.size()) {
+                    throw new RuntimeException("Embedding API returned " + embeddings.size()
+                        + " vectors for " + texts.size() + " inputs");
+                }
+
+                List<float[]> out = new ArrayList<>(embeddings.size());
+                for (List<Number> values : embeddings) {
+                    out.add(toFloats(values));
+                }
+                return out;
+            })
+            .switchIfEmpty(Mono.error(() -> new RuntimeException("Embedding API returned no data")));
+    }
 
-        List<Double> values = (List<Double>) resp.get("embedding");
+    private static float[] toFloats(List<Number> values) {
         float[] out = new float[values.size()];
         for (int i = 0; i < values.size(); i++) {
             out[i] = values.get(i).floatValue();
@@ -1,20 +1,47 @@
 package com.chatbot.service;
 
-import org.apache.tika.Tika;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Function;
+
+import jakarta.annotation.PreDestroy;
+import org.apache.tika.io.TikaInputStream;
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.metadata.TikaCoreProperties;
+import org.apache.tika.parser.AutoDetectParser;
+import org.apache.tika.parser.ParseContext;
+import org.apache.tika.parser.Parser;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.web.multipart.MultipartFile;
 
+import com.chatbot.config.ThreadPools;
 import com.chatbot.model.UploadedFile;
 import com.chatbot.model.User;
 import com.chatbot.repository.UploadedFileRepository;
 import com.chatbot.repository.UserRepository;
 
-import jakarta.transaction.Transactional;
-
+/**
+ * Stores spooled uploads. The spool file is read by two tasks at once: the
+ * {@link BlobStore} copy (which also yields the SHA-256) and Tika extraction, whose
+ * text is streamed to the caller's consumer (the chunker) while parsing is still going
+ * on. The Dropbox upload overwrites the stored copy of the name, so it only starts once
+ * extraction has succeeded; the blob copy of an upload that fails is deleted again.
+ */
 @Service
 public class FileStorageService {
 
+    private static final int PIPE_WRITES = 32;
+    private static final int PIPE_WRITE_CHARS = 8192;
+
     @Autowired
     private UploadedFileRepository fileRepository;
 
@@ -24,34 +51,187 @@ public class FileStorageService {
     @Autowired
     private DropboxService dropboxService;
 
-    @Transactional
-    public UploadedFile storeFile(MultipartFile file, String username) throws Exception {
+    @Autowired
+    private AutoDetectParser parser;
+
+    @Autowired
+    private BlobStore blobStore;
+
+    // Only a preview is kept in the DB; the full text goes to the consumer
+    @Value("${ingest.textContent.maxChars:1000000}")
+    private int textContentMaxChars;
+
+    private final ExecutorService io;
+
+    public FileStorageService(ThreadPools threadPools) {
+        this.io = threadPools.newCached("ingest-io");
+    }
+
+    /** Result of storing a file: the saved entity and what the text consumer returned */
+    public static final class Stored<T> {
+        private final UploadedFile file;
+        private final T textResult;
+        private final long extractedChars;
+
+        Stored(UploadedFile file, T textResult, long extractedChars) {
+            this.file = file;
+            this.textResult = textResult;
+            this.extractedChars = extractedChars;
+        }
+
+        public UploadedFile getFile() { return file; }
+        public T getTextResult() { return textResult; }
+        public long getExtractedChars() { return extractedChars; }
+    }
+
+    /** Extracted text handed to a consumer, plus the detected type and a capped preview */
+    public static final class Extraction<T> {
+        private final T result;
+        private final String contentType;
+        private final String preview;
+        private final long chars;
+
+        Extraction(T result, String contentType, String preview, long chars) {
+            this.result = result;
+            this.contentType = contentType;
+            this.preview = preview;
+            this.chars = chars;
+        }
+
+        public T getResult() { return result; }
+        public String getContentType() { return contentType; }
+        public String getPreview() { return preview; }
+        public long getChars() { return chars; }
+    }
+
+    /**
+     * Store a spooled upload: copy it into the blob store while extracting its text, feeding the
+     * text to {@code textConsumer} as it is parsed, then push it to Dropbox and save (or replace)
+     * the entity. The consumer finishes before the upload and blob copy do, and either of those can
+     * still fail this call, so anything the consumer changes should only be made final once this returns.
+     */
+    public <T> Stored<T> storeFile(Path source, String originalFileName, String contentType, String username,
+                                   Function<Reader, T> textConsumer) throws Exception {
         User user = userRepository.findByEmail(username)
             .orElseThrow(() -> new RuntimeException("User not found"));
 
-        // ✅ Upload to Dropbox
-        String dropboxPath = dropboxService.uploadToDropbox(file);
+        CompletableFuture<BlobStore.Manifest> blob = CompletableFuture.supplyAsync(() -> {
+            try {
+                return blobStore.put(source);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, io);
 
-        // ✅ Extract text using Tika
-        Tika tika = new Tika();
-        String extractedText = tika.parseToString(file.getInputStream());
+        try {
+            Extraction<T> text = extract(source, originalFileName, textConsumer);
+            String dropboxLink = dropboxService.uploadToDropbox(originalFileName, source);
 
-        // ✅ Strip extension from file name
-        String originalFileName = file.getOriginalFilename();
-        String baseFileName = originalFileName != null
+            String fileName = baseFileName(originalFileName);
+            String type = contentType == null || contentType.isBlank() || contentType.equals("application/octet-stream")
+                ? text.getContentType()
+                : contentType;
+
+            // Re-uploading a name replaces the stored file (Dropbox overwrites it too)
+            UploadedFile file = fileRepository.findByFileNameIgnoreCase(fileName).orElseGet(UploadedFile::new);
+            file.setFileName(fileName);
+            file.setFileType(type);
+            file.setUser(user);
+            BlobStore.Manifest stored = await(blob);
+            file.setBlobId(stored.getId());
+            file.setSize(stored.getSize());
+            file.setTextContent(text.getPreview());
+            file.setDropboxLink(dropboxLink);
+            file.setContentHash(stored.getId());
+
+            return new Stored<>(fileRepository.save(file), text.getResult(), text.getChars());
+        } catch (Exception e) {
+            discardBlob(blob);
+            throw e;
+        }
+    }
+
+    /** Wait for the blob copy of a failed upload and delete it, unless a stored file has the same content */
+    private void discardBlob(CompletableFuture<BlobStore.Manifest> blob) {
+        BlobStore.Manifest m = blob.handle((stored, e) -> stored).join();
+        if (m == null || fileRepository.existsByBlobId(m.getId())) return;
+        try {
+            blobStore.delete(m);
+        } catch (IOException e) {
+            System.err.println("⚠️ [Ingest] Could not delete blob " + m.getId() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Parse {@code source} with the shared parser on this thread while {@code consumer}
+     * reads the text on another. If parsing fails the consumer's reader throws, so it
+     * never mistakes a partial document for a complete one.
+     */
+    public <T> Extraction<T> extract(Path source, String originalFileName, Function<Reader, T> consumer) throws Exception {
+        try (InputStream in = TikaInputStream.get(source)) {
+            return extract(in, originalFileName, consumer);
+        }
+    }
+
+    /** As {@link #extract(Path, String, Function)}, for content that is not in a local file (a stored blob) */
+    public <T> Extraction<T> extract(InputStream source, String originalFileName, Function<Reader, T> consumer) throws Exception {
+        TextPipe pipe = new TextPipe(PIPE_WRITES);
+        CompletableFuture<T> consumed = CompletableFuture.supplyAsync(() -> {
+            try (Reader reader = pipe.reader()) {
+                return consumer.apply(reader);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, io);
+
+        Metadata metadata = new Metadata();
+        if (originalFileName != null) metadata.set(TikaCoreProperties.RESOURCE_NAME_KEY, originalFileName);
+        ParseContext context = new ParseContext();
+        context.set(Parser.class, parser); // descend into embedded documents (zip entries, attachments)
+
+        Writer writer = new BufferedWriter(pipe.writer(), PIPE_WRITE_CHARS);
+        StructuredTextHandler handler = new StructuredTextHandler(writer, textContentMaxChars);
+        try (InputStream in = TikaInputStream.get(source)) {
+            parser.parse(in, handler, metadata, context);
+            writer.close();
+        } catch (Exception e) {
+            pipe.fail(e);
+            try {
+                await(consumed);
+            } catch (Exception consumerError) {
+                // the consumer stopping first (e.g. embedding failed) is the more useful error
+                if (!(consumerError.getCause() instanceof IOException)) throw consumerError;
+            }
+            throw e;
+        }
+
+        T result = await(consumed);
+        if (handler.previewTruncated()) {
+            System.out.println("ℹ️ [Ingest] " + originalFileName + ": stored the first " + textContentMaxChars
+                + " of " + handler.chars() + " extracted characters; the full text was indexed");
+        }
+        return new Extraction<>(result, metadata.get(Metadata.CONTENT_TYPE), handler.preview(), handler.chars());
+    }
+
+    private static <T> T await(CompletableFuture<T> future) throws Exception {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception ex) throw ex;
+            throw e;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        io.shutdownNow();
+    }
+
+    /** Strip extension from file name */
+    public static String baseFileName(String originalFileName) {
+        return originalFileName != null
                 ? originalFileName.replaceFirst("\\.[^.]+$", "")  // Remove last extension
                 : "untitled";
-
-        // ✅ Create and save entity
-        UploadedFile newFile = new UploadedFile(
-            baseFileName,                             // File name without extension
-            file.getContentType(),
-            file.getBytes(),
-            user
-        );
-        newFile.setDropboxLink(dropboxPath);
-        newFile.setTextContent(extractedText);
-
-        return fileRepository.save(newFile);
     }
 }
@@ -0,0 +1,448 @@
+package com.chatbot.service;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.SplittableRandom;
+import java.util.function.IntPredicate;
+
+/**
+ * Hierarchical Navigable Small World graph over float vectors (Malkov &amp; Yashunin).
+ * Everything lives in primitive arrays: one flat {@code float[]} for vectors and
+ * {@code int[]} adjacency lists of the form {@code [count, n1, n2, ...]}.
+ * Scores are dot products, so cosine vectors are normalised on the way in.
+ * An index can sit on top of a {@link VectorSegment}: nodes below {@code baseCount}
+ * are read from the mapped segment and their adjacency lists are copied to the
+ * heap only when an insert has to change them; newer nodes live on the heap.
+ * Not thread-safe; {@link HnswVectorStore} guards it with a read/write lock.
+ */
+class HnswIndex {
+
+    enum Metric { COSINE, DOT }
+
+    private final Metric metric;
+    private final int m;
+    private final int mMax0;
+    private final int efConstruction;
+    private final double levelMult;
+    private final SplittableRandom random = new SplittableRandom(42);
+
+    private final VectorSegment base;
+    private final int baseCount;
+
+    private int dim = -1;
+    private int size;
+    private float[] vectors = new float[0];   // heap nodes only, offset by baseCount
+    private int[] levels = new int[0];        // heap nodes only, offset by baseCount
+    private int[][][] links = new int[0][][]; // all nodes; null for untouched segment nodes
+    private BitSet deleted = new BitSet();
+    private int deletedCount;
+    private int entryPoint = -1;
+    private int maxLevel = -1;
+
+    HnswIndex(Metric metric, int m, int efConstruction) {
+        this(metric, m, efConstruction, null);
+    }
+
+    /** Index over an opened segment; metric and M come from the segment header */
+    HnswIndex(VectorSegment segment, int efConstruction) {
+        this(segment.metric(), segment.m(), efConstruction, segment);
+    }
+
+    private HnswIndex(Metric metric, int m, int efConstruction, VectorSegment segment) {
+        this.metric = metric;
+        this.m = Math.max(2, m);
+        this.mMax0 = this.m * 2;
+        this.efConstruction = Math.max(this.m, efConstruction);
+        this.levelMult = 1 / Math.log(this.m);
+        this.base = segment;
+        this.baseCount = segment == null ? 0 : segment.count();
+        if (segment != null) {
+            dim = segment.count() == 0 ? -1 : segment.dim();
+            size = baseCount;
+            links = new int[baseCount][][];
+            deletedCount = segment.deletedCount();
+            entryPoint = segment.entryPoint();
+            maxLevel = segment.maxLevel();
+        }
+    }
+
+    int size() { return size; }
+    int liveCount() { return size - deletedCount; }
+    int deletedCount() { return deletedCount; }
+    int dim() { return dim; }
+    int m() { return m; }
+    Metric metric() { return metric; }
+    int entryPoint() { return entryPoint; }
+    int maxLevel() { return maxLevel; }
+
+    int level(int node) {
+        return node < baseCount ? base.level(node) : levels[node - baseCount];
+    }
+
+    boolean isDeleted(int node) {
+        return deleted.get(node) || (node < baseCount && base.isDeleted(node));
+    }
+
+    int linkCount(int node, int level) {
+        int[][] own = links[node];
+        return own != null ? own[level][0] : base.linkCount(node, level);
+    }
+
+    int link(int node, int level, int i) {
+        int[][] own = links[node];
+        return own != null ? own[level][1 + i] : base.link(node, level, i);
+    }
+
+    float[] vector(int node) {
+        if (node < baseCount) return base.vector(node);
+        int off = (node - baseCount) * dim;
+        return Arrays.copyOfRange(vectors, off, off + dim);
+    }
+
+    /** Prepare a query or stored vector for scoring (unit length for cosine) */
+    float[] prepare(float[] v) {
+        if (metric != Metric.COSINE) return v.clone();
+        double norm = 0;
+        for (float f : v) norm += (double) f * f;
+        norm = Math.sqrt(norm);
+        float[] out = new float[v.length];
+        if (norm == 0) return out;
+        for (int i = 0; i < v.length; i++) out[i] = (float) (v[i] / norm);
+        return out;
+    }
+
+    /** Insert a vector and return its node number */
+    int add(float[] raw) {
+        if (dim < 0) dim = raw.length;
+        if (raw.length != dim) {
+            throw new IllegalArgumentException("Vector dimension " + raw.length + " != index dimension " + dim);
+        }
+        float[] v = prepare(raw);
+        int node = size;
+        ensureCapacity(node + 1);
+        System.arraycopy(v, 0, vectors, (node - baseCount) * dim, dim);
+
+        int level = randomLevel();
+        levels[node - baseCount] = level;
+        links[node] = new int[level + 1][];
+        for (int l = 0; l <= level; l++) {
+            links[node][l] = new int[1 + (l == 0 ? mMax0 : m)];
+        }
+        size++;
+
+        if (entryPoint < 0) {
+            entryPoint = node;
+            maxLevel = level;
+            return node;
+        }
+
+        int ep = entryPoint;
+        for (int l = maxLevel; l > level; l--) {
+            ep = greedyClosest(v, ep, l);
+        }
+        for (int l = Math.min(level, maxLevel); l >= 0; l--) {
+            Heap candidates = searchLayer(v, ep, efConstruction, l);
+            int[] selected = selectNeighbors(v, candidates, l == 0 ? mMax0 : m, -1);
+            setLinks(node, l, selected);
+            for (int n : selected) {
+                connect(n, node, l);
+            }
+            ep = candidates.bestNode();
+        }
+        if (level > maxLevel) {
+            maxLevel = level;
+            entryPoint = node;
+        }
+        return node;
+    }
+
+    void markDeleted(int node) {
+        if (!isDeleted(node)) {
+            deleted.set(node);
+            deletedCount++;
+        }
+    }
+
+    /**
+     * Top-k live nodes accepted by {@code accept}, best first. The beam is widened
+     * until k matches are found, so selective filters still return full results.
+     */
+    Result search(float[] rawQuery, int k, int ef, IntPredicate accept) {
+        if (entryPoint < 0 || k <= 0) return new Result(new int[0], new float[0]);
+        float[] q = prepare(rawQuery);
+        IntPredicate live = n -> !isDeleted(n) && (accept == null || accept.test(n));
+
+        int beam = Math.max(ef, k);
+        while (true) {
+            int ep = entryPoint;
+            for (int l = maxLevel; l > 0; l--) {
+                ep = greedyClosest(q, ep, l);
+            }
+            Heap found = searchLayer(q, ep, beam, 0);
+            Result r = found.topLive(k, live);
+            if (r.nodes.length >= k || beam >= size) return r;
+            beam = Math.min(size, beam * 4);
+        }
+    }
+
+    float score(float[] preparedQuery, int node) {
+        if (node < baseCount) return base.dot(node, preparedQuery);
+        int off = (node - baseCount) * dim;
+        float sum = 0f;
+        for (int i = 0; i < dim; i++) sum += preparedQuery[i] * vectors[off + i];
+        return sum;
+    }
+
+    private float score(int a, int b) {
+        if (a < baseCount || b < baseCount) {
+            return a < baseCount ? score(vector(b), a) : score(vector(a), b);
+        }
+        int offA = (a - baseCount) * dim, offB = (b - baseCount) * dim;
+        float sum = 0f;
+        for (int i = 0; i < dim; i++) sum += vectors[offA + i] * vectors[offB + i];
+        return sum;
+    }
+
+    private int randomLevel() {
+        double u = 1.0 - random.nextDouble(); // (0, 1]
+        return (int) Math.floor(-Math.log(u) * levelMult);
+    }
+
+    private int greedyClosest(float[] q, int ep, int level) {
+        int best = ep;
+        float bestScore = score(q, ep);
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            int from = best;
+            int count = linkCount(from, level);
+            for (int i = 0; i < count; i++) {
+                int n = link(from, level, i);
+                float s = score(q, n);
+                if (s > bestScore) {
+                    bestScore = s;
+                    best = n;
+                    improved = true;
+                }
+            }
+        }
+        return best;
+    }
+
+    /** Beam search on one layer; returns up to ef best nodes (deleted nodes included, they still route) */
+    private Heap searchLayer(float[] q, int ep, int ef, int level) {
+        BitSet visited = new BitSet(size);
+        Heap candidates = new Heap(true, ef * 2);
+        Heap results = new Heap(false, ef + 1);
+
+        float s0 = score(q, ep);
+        visited.set(ep);
+        candidates.push(ep, s0);
+        results.push(ep, s0);
+
+        while (candidates.size > 0) {
+            float cScore = candidates.topScore();
+            int c = candidates.pop();
+            if (results.size >= ef && cScore < results.topScore()) break;
+
+            int count = linkCount(c, level);
+            for (int i = 0; i < count; i++) {
+                int n = link(c, level, i);
+                if (visited.get(n)) continue;
+                visited.set(n);
+                float s = score(q, n);
+                if (results.size < ef || s > results.topScore()) {
+                    candidates.push(n, s);
+                    results.push(n, s);
+                    if (results.size > ef) results.pop();
+                }
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Neighbour selection heuristic (Algorithm 4): keep a candidate only if it is
+     * closer to the base than to every neighbour already kept, then top up with
+     * the closest rejected ones so lists stay full.
+     */
+    private int[] selectNeighbors(float[] base, Heap candidates, int max, int exclude) {
+        int[] nodes = candidates.sortedNodesDesc();
+        int[] kept = new int[Math.min(max, nodes.length)];
+        int keptCount = 0;
+        int[] rejected = new int[nodes.length];
+        int rejectedCount = 0;
+
+        for (int c : nodes) {
+            if (c == exclude) continue;
+            if (keptCount >= max) break;
+            float toBase = score(base, c);
+            boolean good = true;
+            for (int i = 0; i < keptCount; i++) {
+                if (score(c, kept[i]) > toBase) {
+                    good = false;
+                    break;
+                }
+            }
+            if (good) kept[keptCount++] = c;
+            else rejected[rejectedCount++] = c;
+        }
+        for (int i = 0; i < rejectedCount && keptCount < kept.length; i++) {
+            kept[keptCount++] = rejected[i];
+        }
+        return Arrays.copyOf(kept, keptCount);
+    }
+
+    private void setLinks(int node, int level, int[] selected) {
+        int[] nb = links[node][level];
+        nb[0] = selected.length;
+        System.arraycopy(selected, 0, nb, 1, selected.length);
+    }
+
+    /** Add a back-link from {@code node} to {@code newNode}, re-pruning when the list is full */
+    private void connect(int node, int newNode, int level) {
+        int[] nb = ownLinks(node)[level];
+        int max = nb.length - 1;
+        if (nb[0] < max) {
+            nb[++nb[0]] = newNode;
+            return;
+        }
+        float[] base = vector(node);
+        Heap pool = new Heap(false, max + 1);
+        for (int i = 1; i <= nb[0]; i++) pool.push(nb[i], score(base, nb[i]));
+        pool.push(newNode, score(base, newNode));
+        setLinks(node, level, selectNeighbors(base, pool, max, node));
+    }
+
+    /** Heap adjacency lists for a node, copied out of the segment on first write */
+    private int[][] ownLinks(int node) {
+        int[][] own = links[node];
+        if (own == null) {
+            int level = base.level(node);
+            own = new int[level + 1][];
+            for (int l = 0; l <= level; l++) own[l] = base.copyLinks(node, l);
+            links[node] = own;
+        }
+        return own;
+    }
+
+    private void ensureCapacity(int nodes) {
+        if (links.length < nodes) {
+            links = Arrays.copyOf(links, Math.max(nodes, Math.max(16, links.length * 2)));
+        }
+        int heapNodes = nodes - baseCount;
+        if (levels.length >= heapNodes) return;
+        int cap = Math.max(heapNodes, Math.max(16, levels.length * 2));
+        levels = Arrays.copyOf(levels, cap);
+        vectors = Arrays.copyOf(vectors, cap * Math.max(dim, 1));
+    }
+
+    /** Search hits: node numbers and their scores, best first */
+    static final class Result {
+        final int[] nodes;
+        final float[] scores;
+
+        Result(int[] nodes, float[] scores) {
+            this.nodes = nodes;
+            this.scores = scores;
+        }
+    }
+
+    /** Binary heap of (node, score) pairs on primitive arrays; max-heap or min-heap by score */
+    static final class Heap {
+        private final boolean max;
+        private int[] nodes;
+        private float[] scores;
+        int size;
+
+        Heap(boolean max, int capacity) {
+            this.max = max;
+            this.nodes = new int[Math.max(4, capacity)];
+            this.scores = new float[nodes.length];
+        }
+
+        void push(int node, float score) {
+            if (size == nodes.length) {
+                nodes = Arrays.copyOf(nodes, size * 2);
+                scores = Arrays.copyOf(scores, size * 2);
+            }
+            int i = size++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (!before(score, scores[parent])) break;
+                nodes[i] = nodes[parent];
+                scores[i] = scores[parent];
+                i = parent;
+            }
+            nodes[i] = node;
+            scores[i] = score;
+        }
+
+        float topScore() { return scores[0]; }
+
+        int pop() {
+            int top = nodes[0];
+            size--;
+            if (size > 0) {
+                int node = nodes[size];
+                float score = scores[size];
+                int i = 0;
+                while (true) {
+                    int child = 2 * i + 1;
+                    if (child >= size) break;
+                    if (child + 1 < size && before(scores[child + 1], scores[child])) child++;
+                    if (!before(scores[child], score)) break;
+                    nodes[i] = nodes[child];
+                    scores[i] = scores[child];
+                    i = child;
+                }
+                nodes[i] = node;
+                scores[i] = score;
+            }
+            return top;
+        }
+
+        private boolean before(float a, float b) {
+            return max ? a > b : a < b;
+        }
+
+        /** Node with the highest score, without disturbing the heap */
+        int bestNode() {
+            int best = nodes[0];
+            float bestScore = scores[0];
+            for (int i = 1; i < size; i++) {
+                if (scores[i] > bestScore) {
+                    bestScore = scores[i];
+                    best = nodes[i];
+                }
+            }
+            return best;
+        }
+
+        int[] sortedNodesDesc() {
+            Integer[] order = new Integer[size];
+            for (int i = 0; i < size; i++) order[i] = i;
+            Arrays.sort(order, (a, b) -> Float.compare(scores[b], scores[a]));
+            int[] out = new int[size];
+            for (int i = 0; i < size; i++) out[i] = nodes[order[i]];
+            return out;
+        }
+
+        Result topLive(int k, IntPredicate live) {
+            Integer[] order = new Integer[size];
+            for (int i = 0; i < size; i++) order[i] = i;
+            Arrays.sort(order, (a, b) -> Float.compare(scores[b], scores[a]));
+            int[] outNodes = new int[Math.min(k, size)];
+            float[] outScores = new float[outNodes.length];
+            int n = 0;
+            for (int i = 0; i < size && n < outNodes.length; i++) {
+                int node = nodes[order[i]];
+                if (!live.test(node)) continue;
+                outNodes[n] = node;
+                outScores[n] = scores[order[i]];
+                n++;
+            }
+            return new Result(Arrays.copyOf(outNodes, n), Arrays.copyOf(outScores, n));
+        }
+    }
+}
@@ -0,0 +1,390 @@
+package com.chatbot.service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * In-process vector store (rag.vector.backend=hnsw).
+ * Durable state is an immutable {@link VectorSegment} plus a {@link VectorLog} of
+ * the upserts made since it was written. Opening maps the segment (constant time,
+ * nothing is copied onto the heap) and replays the short log; new points go to the
+ * log and into heap nodes of the {@link HnswIndex}. Once the log grows past
+ * {@code compactAfter} records, or on the compaction interval, everything is written
+ * into a fresh segment and the log is reset. If tombstones pass {@code vacuumRatio}
+ * the graph is rebuilt from live points during compaction.
+ */
+@Service
+@ConditionalOnProperty(name = "rag.vector.backend", havingValue = "hnsw")
+public class HnswVectorStore implements VectorStore {
+
+    private final ObjectMapper objectMapper;
+    private final Path segmentPath;
+    private final Path logPath;
+    private final HnswIndex.Metric metric;
+    private final int m;
+    private final int efConstruction;
+    private final int efSearch;
+    private final VectorSegment.Encoding encoding;
+    private final int compactAfter;
+    private final double vacuumRatio;
+    private final Duration compactInterval;
+
+    // Searches share the read lock; applying writes and swapping segments take the write lock.
+    // writeMutex serialises writers with compaction so nothing lands between snapshot and swap.
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ReentrantLock writeMutex = new ReentrantLock();
+    private final AtomicBoolean compactionQueued = new AtomicBoolean();
+
+    private VectorSegment segment;
+    private HnswIndex index;
+    private VectorLog log;
+    private final List<String> tailIds = new ArrayList<>();
+    private final List<Map<String, Object>> tailPayloads = new ArrayList<>();
+    // id -> node and docKey -> ids, built on first write; segment ids and payloads are only read then
+    private Map<String, Integer> nodeById;
+    private Map<String, Set<String>> idsByDoc;
+    private final Map<String, String> documents = new HashMap<>(); // docKey -> docHash
+
+    private final ScheduledExecutorService compactor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "hnsw-compact");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public HnswVectorStore(
+        ObjectMapper objectMapper,
+        @Value("${rag.hnsw.path:./data/vectors.seg}") String segmentPath,
+        @Value("${rag.hnsw.metric:COSINE}") HnswIndex.Metric metric,
+        @Value("${rag.hnsw.m:16}") int m,
+        @Value("${rag.hnsw.efConstruction:100}") int efConstruction,
+        @Value("${rag.hnsw.efSearch:64}") int efSearch,
+        @Value("${rag.hnsw.encoding:FLOAT32}") VectorSegment.Encoding encoding,
+        @Value("${rag.hnsw.compactAfter:2000}") int compactAfter,
+        @Value("${rag.hnsw.vacuumRatio:0.3}") double vacuumRatio,
+        @Value("${rag.hnsw.compactInterval:10m}") Duration compactInterval
+    ) {
+        this.objectMapper = objectMapper;
+        this.segmentPath = Paths.get(segmentPath);
+        this.logPath = Paths.get(segmentPath + ".log");
+        this.metric = metric;
+        this.m = m;
+        this.efConstruction = efConstruction;
+        this.efSearch = efSearch;
+        this.encoding = encoding;
+        this.compactAfter = Math.max(1, compactAfter);
+        this.vacuumRatio = vacuumRatio;
+        this.compactInterval = compactInterval;
+        this.index = new HnswIndex(metric, m, efConstruction);
+    }
+
+    @PostConstruct
+    public void open() throws IOException {
+        long start = System.currentTimeMillis();
+        if (Files.exists(segmentPath)) {
+            segment = VectorSegment.open(segmentPath);
+            index = new HnswIndex(segment, efConstruction);
+            documents.putAll(segment.documents());
+        }
+        log = new VectorLog(logPath, objectMapper);
+        log.replay(segment == null ? 0 : segment.logSequence(), entry -> {
+            if (entry.type == VectorLog.UPSERT) apply(entry.id, entry.vector, entry.payload);
+            else applyDelete(entry.id);
+        });
+        System.out.println("🧭 [HNSW] Opened " + index.liveCount() + " vectors ("
+            + (segment == null ? 0 : segment.count()) + " mapped, " + log.entries() + " replayed) in "
+            + (System.currentTimeMillis() - start) + " ms");
+
+        long every = Math.max(1, compactInterval.toSeconds());
+        compactor.scheduleWithFixedDelay(this::compactIfNeeded, every, every, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        compactor.shutdown();
+        writeMutex.lock();
+        try {
+            log.sync();
+            log.close();
+        } finally {
+            writeMutex.unlock();
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean upsertBatch(List<Map<String, Object>> points) {
+        writeMutex.lock();
+        try {
+            lock.writeLock().lock();
+            try {
+                for (Map<String, Object> point : points) {
+                    String id = String.valueOf(point.get("id"));
+                    float[] vector = (float[]) point.get("vector");
+                    if (vector == null || vector.length == 0) continue;
+                    if (index.dim() >= 0 && vector.length != index.dim()) {
+                        throw new IllegalArgumentException("Vector dimension " + vector.length
+                            + " != index dimension " + index.dim());
+                    }
+                    Map<String, Object> payload = (Map<String, Object>) point.getOrDefault("payload", Map.of());
+                    log.appendUpsert(id, vector, payload);
+                    apply(id, vector, payload);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+            log.sync();
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Failed to upsert " + points.size() + " points: " + e.getMessage());
+            return false;
+        } finally {
+            writeMutex.unlock();
+        }
+
+        if (log.entries() >= compactAfter && compactionQueued.compareAndSet(false, true)) {
+            compactor.execute(this::compactIfNeeded);
+        }
+        return true;
+    }
+
+    @Override
+    public boolean delete(Collection<String> ids) {
+        writeMutex.lock();
+        try {
+            lock.writeLock().lock();
+            try {
+                for (String id : ids) {
+                    if (!nodeById().containsKey(id)) continue;
+                    log.appendDelete(id);
+                    applyDelete(id);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+            log.sync();
+            return true;
+        } catch (IOException e) {
+            System.err.println("Failed to delete " + ids.size() + " points: " + e.getMessage());
+            return false;
+        } finally {
+            writeMutex.unlock();
+        }
+    }
+
+    @Override
+    public Set<String> pointIds(String docKey) {
+        // Write lock: the first call may build the id maps
+        lock.writeLock().lock();
+        try {
+            nodeById();
+            return new HashSet<>(idsByDoc.getOrDefault(docKey, Set.of()));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean hasDocument(String docKey, String docHash, int chunks) {
+        if (docHash == null) return false;
+        // Write lock: the first call may build the id maps
+        lock.writeLock().lock();
+        try {
+            if (!docHash.equals(documents.get(docKey))) return false;
+            nodeById();
+            int stored = 0;
+            for (String id : idsByDoc.getOrDefault(docKey, Set.of())) {
+                if (docHash.equals(String.valueOf(payload(nodeById.get(id)).get("docHash")))) stored++;
+            }
+            return stored == chunks;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Map<String, Object>> search(float[] queryVector, int topK, Map<String, Object> filter) {
+        lock.readLock().lock();
+        try {
+            if (index.size() == 0 || queryVector.length != index.dim()) return new ArrayList<>();
+
+            HnswIndex.Result result = index.search(queryVector, topK, efSearch,
+                filter == null || filter.isEmpty() ? null : node -> matches(payload(node), filter));
+
+            List<Map<String, Object>> hits = new ArrayList<>(result.nodes.length);
+            for (int i = 0; i < result.nodes.length; i++) {
+                int node = result.nodes[i];
+                Map<String, Object> hit = new HashMap<>();
+                hit.put("id", id(node));
+                hit.put("score", result.scores[i]);
+                hit.put("payload", payload(node));
+                hits.add(hit);
+            }
+            return hits;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static boolean matches(Map<String, Object> payload, Map<String, Object> filter) {
+        for (Map.Entry<String, Object> f : filter.entrySet()) {
+            Object actual = payload.get(f.getKey());
+            if (actual == null || !String.valueOf(actual).equals(String.valueOf(f.getValue()))) return false;
+        }
+        return true;
+    }
+
+    // ===== node bookkeeping (caller holds the lock) =====
+
+    private int segmentCount() {
+        return segment == null ? 0 : segment.count();
+    }
+
+    private String id(int node) {
+        return node < segmentCount() ? segment.id(node) : tailIds.get(node - segmentCount());
+    }
+
+    private Map<String, Object> payload(int node) {
+        if (node >= segmentCount()) return tailPayloads.get(node - segmentCount());
+        try {
+            return segment.payload(node, objectMapper);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Map<String, Integer> nodeById() {
+        if (nodeById == null) {
+            nodeById = new HashMap<>();
+            idsByDoc = new HashMap<>();
+            for (int node = 0; node < index.size(); node++) {
+                if (index.isDeleted(node)) continue;
+                String id = id(node);
+                nodeById.put(id, node);
+                Object docKey = payload(node).get("docKey");
+                if (docKey != null) idsByDoc.computeIfAbsent(docKey.toString(), k -> new HashSet<>()).add(id);
+            }
+        }
+        return nodeById;
+    }
+
+    private void apply(String id, float[] vector, Map<String, Object> payload) {
+        if (nodeById().containsKey(id)) applyDelete(id);
+
+        int node = index.add(vector);
+        tailIds.add(id);
+        tailPayloads.add(payload);
+        nodeById.put(id, node);
+
+        Object docKey = payload.get("docKey");
+        Object docHash = payload.get("docHash");
+        if (docKey != null) idsByDoc.computeIfAbsent(docKey.toString(), k -> new HashSet<>()).add(id);
+        if (docKey != null && docHash != null) documents.put(docKey.toString(), docHash.toString());
+    }
+
+    private void applyDelete(String id) {
+        Integer node = nodeById().remove(id);
+        if (node == null) return;
+        index.markDeleted(node);
+
+        Object docKey = payload(node).get("docKey");
+        Set<String> docIds = docKey == null ? null : idsByDoc.get(docKey.toString());
+        if (docIds != null && docIds.remove(id) && docIds.isEmpty()) {
+            idsByDoc.remove(docKey.toString());
+            documents.remove(docKey.toString());
+        }
+    }
+
+    // ===== compaction =====
+
+    private void compactIfNeeded() {
+        compactionQueued.set(false);
+        if (log.entries() == 0) return;
+        try {
+            compact();
+        } catch (Exception e) {
+            System.err.println("❌ [HNSW] Compaction failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Fold the log into a new segment. Writers wait on {@code writeMutex} for the
+     * duration; searches keep running against the old state until the swap.
+     */
+    void compact() throws IOException {
+        writeMutex.lock();
+        try {
+            long start = System.currentTimeMillis();
+            Path tmp = segmentPath.resolveSibling(segmentPath.getFileName() + ".tmp");
+            boolean vacuum;
+            int written;
+
+            lock.readLock().lock();
+            try {
+                vacuum = index.deletedCount() > 0 && index.deletedCount() >= index.size() * vacuumRatio;
+                if (vacuum) {
+                    // Rebuild the graph from live points only; live[n] is the old node of new node n
+                    HnswIndex fresh = new HnswIndex(index.metric(), m, efConstruction);
+                    int[] live = new int[index.liveCount()];
+                    for (int node = 0, n = 0; node < index.size(); node++) {
+                        if (index.isDeleted(node)) continue;
+                        fresh.add(index.vector(node));
+                        live[n++] = node;
+                    }
+                    VectorSegment.write(tmp, fresh, n -> id(live[n]), n -> payload(live[n]),
+                        documents, log.lastSequence(), encoding, objectMapper);
+                    written = fresh.size();
+                } else {
+                    VectorSegment.write(tmp, index, this::id, this::payload,
+                        documents, log.lastSequence(), encoding, objectMapper);
+                    written = index.size();
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+
+            try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                ch.force(true);
+            }
+            Files.move(tmp, segmentPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            VectorSegment opened = VectorSegment.open(segmentPath);
+
+            lock.writeLock().lock();
+            try {
+                segment = opened;
+                index = new HnswIndex(opened, efConstruction);
+                tailIds.clear();
+                tailPayloads.clear();
+                nodeById = null;
+                idsByDoc = null;
+                log.reset();
+            } finally {
+                lock.writeLock().unlock();
+            }
+            System.out.println("🧭 [HNSW] Compacted " + written + " vectors into " + segmentPath
+                + (vacuum ? " (vacuumed)" : "") + " in " + (System.currentTimeMillis() - start) + " ms");
+        } finally {
+            writeMutex.unlock();
+        }
+    }
+}
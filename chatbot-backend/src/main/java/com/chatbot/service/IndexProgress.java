@@ -0,0 +1,97 @@
+package com.chatbot.service;
+
+import java.time.Instant;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/** Live counters for one document moving through the {@link IndexingPipeline}. */
+public class IndexProgress {
+
+    public enum State { RUNNING, DONE, UNCHANGED, FAILED }
+
+    private final String docKey;
+    private final Instant startedAt = Instant.now();
+    private volatile Instant finishedAt;
+    private volatile State state = State.RUNNING;
+    private volatile String error;
+
+    private final AtomicLong chunksQueued = new AtomicLong();
+    private final AtomicLong chunksEmbedded = new AtomicLong();
+    private final AtomicLong chunksFailed = new AtomicLong();
+    private final AtomicLong chunksUnchanged = new AtomicLong();
+    private final AtomicLong chunksReused = new AtomicLong();
+    private final AtomicLong pointsUpserted = new AtomicLong();
+    private final AtomicLong pointsDeleted = new AtomicLong();
+
+    // a version indexed without committing: the previous version's leftovers, and the points this one added
+    private Set<String> staleIds = Set.of();
+    private Set<String> addedIds = Set.of();
+
+    public IndexProgress(String docKey) {
+        this.docKey = docKey;
+    }
+
+    void queued(int n) { chunksQueued.addAndGet(n); }
+    void embedded(int n) { chunksEmbedded.addAndGet(n); }
+    void failed(int n) { chunksFailed.addAndGet(n); }
+    void unchanged(int n) { chunksUnchanged.addAndGet(n); }
+    void reused(int n) { chunksReused.addAndGet(n); }
+    void upserted(int n) { pointsUpserted.addAndGet(n); }
+    void deleted(int n) { pointsDeleted.addAndGet(n); }
+
+    synchronized void superseding(Set<String> stale, Set<String> added) {
+        this.staleIds = stale;
+        this.addedIds = added;
+    }
+
+    synchronized Set<String> takeStaleIds() {
+        Set<String> ids = staleIds;
+        staleIds = Set.of();
+        addedIds = Set.of();
+        return ids;
+    }
+
+    synchronized Set<String> takeAddedIds() {
+        Set<String> ids = addedIds;
+        staleIds = Set.of();
+        addedIds = Set.of();
+        return ids;
+    }
+
+    void finish() {
+        this.finishedAt = Instant.now();
+        this.state = State.DONE;
+    }
+
+    /** Content hash already indexed; nothing was embedded */
+    void unchanged() {
+        this.finishedAt = Instant.now();
+        this.state = State.UNCHANGED;
+    }
+
+    void fail(Throwable t) {
+        this.finishedAt = Instant.now();
+        this.error = t.getMessage();
+        this.state = State.FAILED;
+    }
+
+    public String getDocKey() { return docKey; }
+    public State getState() { return state; }
+    public String getError() { return error; }
+    public Instant getStartedAt() { return startedAt; }
+    public Instant getFinishedAt() { return finishedAt; }
+    public long getChunksQueued() { return chunksQueued.get(); }
+    public long getChunksEmbedded() { return chunksEmbedded.get(); }
+    public long getChunksFailed() { return chunksFailed.get(); }
+    /** Chunks whose point (same document, position and text) was already stored */
+    public long getChunksUnchanged() { return chunksUnchanged.get(); }
+    /** Chunks whose vector came from the chunk-hash store instead of the embedding model */
+    public long getChunksReused() { return chunksReused.get(); }
+    public long getPointsUpserted() { return pointsUpserted.get(); }
+    public long getPointsDeleted() { return pointsDeleted.get(); }
+
+    public long getElapsedMillis() {
+        Instant end = finishedAt != null ? finishedAt : Instant.now();
+        return end.toEpochMilli() - startedAt.toEpochMilli();
+    }
+}
@@ -0,0 +1,343 @@
+package com.chatbot.service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.chatbot.config.ThreadPools;
+
+/**
+ * Chunk -> embed -> upsert pipeline.
+ * Chunks are embedded in batches on a bounded pool; the producer blocks once
+ * {@code concurrency} batches are in flight, so a huge document never queues
+ * more than a few batches in memory. Embedded points are buffered and flushed
+ * to the vector store in multi-point upserts.
+ * <p>
+ * Indexing is incremental: a point id is derived from (docKey, ordinal, chunk hash),
+ * so a chunk that is already stored is skipped, a chunk whose text was seen before
+ * (in any document) takes its vector from the chunk-hash store, and only the rest is
+ * embedded. Points of the previous version that no longer exist are deleted once the
+ * new version is fully written, or, when the caller has more to do before the new version
+ * counts (see {@link #commit}), only once it says so. The {@link LexicalIndex} follows
+ * every upsert and delete.
+ */
+@Service
+public class IndexingPipeline {
+
+    private final EmbeddingService embeddingService;
+    private final VectorStore vectorStore;
+    private final LexicalIndex lexicalIndex;
+    private final int embedBatchSize;
+    private final int upsertBatchSize;
+    private final int concurrency;
+    private final ExecutorService embedExecutor;
+
+    // chunk hash -> embedding; exact vectors, content-addressed so entries never go stale
+    private final EmbeddingCache chunkVectors;
+
+    // Latest progress per document, for the /files/indexing endpoint
+    private final Map<String, IndexProgress> progress = new ConcurrentHashMap<>();
+
+    public IndexingPipeline(
+        EmbeddingService embeddingService,
+        VectorStore vectorStore,
+        LexicalIndex lexicalIndex,
+        @Value("${rag.index.embedBatchSize:16}") int embedBatchSize,
+        @Value("${rag.index.upsertBatchSize:64}") int upsertBatchSize,
+        @Value("${rag.index.concurrency:4}") int concurrency,
+        @Value("${rag.cache.chunk.maxEntries:20000}") int chunkCacheEntries,
+        ThreadPools threadPools,
+        MeterRegistry meterRegistry
+    ) {
+        this.embeddingService = embeddingService;
+        this.vectorStore = vectorStore;
+        this.lexicalIndex = lexicalIndex;
+        this.embedBatchSize = Math.max(1, embedBatchSize);
+        this.upsertBatchSize = Math.max(1, upsertBatchSize);
+        this.concurrency = Math.max(1, concurrency);
+        this.embedExecutor = threadPools.newWorkers("rag-embed", this.concurrency);
+        this.chunkVectors = new EmbeddingCache("chunk", chunkCacheEntries, Duration.ZERO, EmbeddingCache.Encoding.FLOAT32)
+            .bindTo(meterRegistry);
+    }
+
+    /** Stable point id for one chunk of a document */
+    public static String pointId(String docKey, int ordinal, String chunkHash) {
+        String key = docKey + "\n" + ordinal + "\n" + chunkHash;
+        return UUID.nameUUIDFromBytes(key.getBytes(StandardCharsets.UTF_8)).toString();
+    }
+
+    /** Index every chunk produced by {@code chunks}; blocks until all points are flushed. */
+    public IndexProgress index(String docKey, Iterator<String> chunks, Map<String, Object> payloadBase) {
+        return index(docKey, chunks, payloadBase, true);
+    }
+
+    /**
+     * As {@link #index(String, Iterator, Map)}; with {@code commit} false the previous
+     * version's leftover points are kept until {@link #commit} is called, and
+     * {@link #rollback} removes the points this version added instead.
+     */
+    public IndexProgress index(String docKey, Iterator<String> chunks, Map<String, Object> payloadBase, boolean commit) {
+        IndexProgress p = new IndexProgress(docKey);
+        progress.put(docKey, p);
+
+        Semaphore inFlight = new Semaphore(concurrency);
+        PointBuffer buffer = new PointBuffer(p);
+        List<CompletableFuture<Void>> pending = new ArrayList<>();
+        Set<String> existing = Set.of();
+        boolean written = false;
+
+        try {
+            existing = vectorStore.pointIds(docKey);
+            Set<String> current = new HashSet<>();
+            List<Chunk> batch = new ArrayList<>(embedBatchSize);
+            int ordinal = 0;
+            while (chunks.hasNext()) {
+                String text = chunks.next();
+                String hash = RagService.contentHash(text);
+                Chunk chunk = new Chunk(pointId(docKey, ordinal, hash), ordinal, hash, text);
+                ordinal++;
+                current.add(chunk.id);
+                p.queued(1);
+
+                if (existing.contains(chunk.id)) {
+                    p.unchanged(1);
+                    lexicalIndex.ensure(chunk.id, chunk.payload(payloadBase));
+                    continue;
+                }
+                float[] known = chunkVectors.get(hash);
+                if (known != null) {
+                    p.reused(1);
+                    buffer.addAll(List.of(chunk.point(known, payloadBase)));
+                    continue;
+                }
+
+                batch.add(chunk);
+                if (batch.size() == embedBatchSize) {
+                    List<Chunk> ready = batch;
+                    batch = new ArrayList<>(embedBatchSize);
+                    inFlight.acquire(); // backpressure: wait for a free embedding slot
+                    pending.add(submit(ready, payloadBase, buffer, p, inFlight));
+                }
+            }
+            if (!batch.isEmpty()) {
+                inFlight.acquire(); // the tail batch counts against the limit like any other
+                pending.add(submit(batch, payloadBase, buffer, p, inFlight));
+            }
+
+            CompletableFuture.allOf(pending.toArray(new CompletableFuture[0])).join();
+            buffer.flush();
+            written = true;
+
+            Set<String> added = new HashSet<>(current);
+            added.removeAll(existing);
+            existing.removeAll(current);
+            p.superseding(existing, added);
+            if (commit) commit(p);
+            p.finish();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            p.fail(e);
+        } catch (RuntimeException e) {
+            p.fail(e);
+            throw e;
+        } finally {
+            if (!written) abandon(pending, buffer, existing, p, commit);
+        }
+
+        System.out.println("📚 Indexed " + docKey + ": " + p.getPointsUpserted() + " points, "
+            + p.getChunksUnchanged() + " unchanged, " + p.getChunksReused() + " reused, "
+            + p.getPointsDeleted() + " deleted, " + p.getChunksFailed() + " failed, " + p.getElapsedMillis() + " ms");
+        return p;
+    }
+
+    private CompletableFuture<Void> submit(List<Chunk> batch, Map<String, Object> payloadBase, PointBuffer buffer,
+                                           IndexProgress p, Semaphore inFlight) {
+        CompletableFuture<Void> f = CompletableFuture.runAsync(() -> embedBatch(batch, payloadBase, buffer, p), embedExecutor);
+        f.whenComplete((v, e) -> inFlight.release());
+        return f;
+    }
+
+    /**
+     * Indexing stopped part way: cancel the batches, wait until none is still writing, and
+     * record the points this version wrote so {@link #rollback} can remove them. A caller
+     * that asked for an immediate commit gets the rollback straight away.
+     */
+    private void abandon(List<CompletableFuture<Void>> pending, PointBuffer buffer, Set<String> existing,
+                         IndexProgress p, boolean commit) {
+        // Future.cancel would not stop a batch that is already running; a closed buffer makes
+        // queued batches return at once and running ones drop their points
+        buffer.close();
+        CompletableFuture.allOf(pending.toArray(new CompletableFuture[0])).handle((v, e) -> null).join();
+
+        Set<String> added = buffer.writtenIds();
+        added.removeAll(existing);
+        p.superseding(Set.of(), added);
+        if (commit) rollback(p);
+    }
+
+    /** Drop the previous version's leftovers, but only if the new version is complete */
+    public void commit(IndexProgress p) {
+        Set<String> stale = p.takeStaleIds();
+        if (stale.isEmpty() || p.getChunksFailed() > 0) return;
+        if (vectorStore.delete(stale)) {
+            lexicalIndex.delete(stale);
+            p.deleted(stale.size());
+        }
+    }
+
+    /** Remove the points an uncommitted version added, leaving the previous version as it was */
+    public void rollback(IndexProgress p) {
+        Set<String> added = p.takeAddedIds();
+        if (added.isEmpty()) return;
+        if (vectorStore.delete(added)) {
+            lexicalIndex.delete(added);
+            System.out.println("↩️ Rolled back " + added.size() + " new points of " + p.getDocKey());
+        } else {
+            System.err.println("⚠️ Could not roll back " + added.size() + " new points of " + p.getDocKey());
+        }
+    }
+
+    /** Record a document that was skipped because the store already holds this version */
+    public IndexProgress unchanged(String docKey) {
+        IndexProgress p = new IndexProgress(docKey);
+        p.unchanged();
+        progress.put(docKey, p);
+        return p;
+    }
+
+    private void embedBatch(List<Chunk> batch, Map<String, Object> payloadBase, PointBuffer buffer, IndexProgress p) {
+        if (buffer.isClosed()) return;
+        List<String> texts = new ArrayList<>(batch.size());
+        for (Chunk c : batch) texts.add(c.text);
+
+        List<float[]> vectors;
+        try {
+            vectors = embeddingService.embedBatch(texts);
+        } catch (Exception e) {
+            System.err.println("❌ Embedding batch failed for " + p.getDocKey() + ": " + e.getMessage());
+            p.failed(batch.size());
+            return;
+        }
+        p.embedded(batch.size());
+
+        List<Map<String, Object>> points = new ArrayList<>(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            float[] vec = vectors.get(i);
+            if (vec == null || vec.length == 0) {
+                p.failed(1);
+                continue;
+            }
+            Chunk chunk = batch.get(i);
+            chunkVectors.put(chunk.hash, vec);
+            points.add(chunk.point(vec, payloadBase));
+        }
+        buffer.addAll(points);
+    }
+
+    /** One chunk of a document with its derived point id */
+    private static final class Chunk {
+        final String id;
+        final int ordinal;
+        final String hash;
+        final String text;
+
+        Chunk(String id, int ordinal, String hash, String text) {
+            this.id = id;
+            this.ordinal = ordinal;
+            this.hash = hash;
+            this.text = text;
+        }
+
+        Map<String, Object> point(float[] vector, Map<String, Object> payloadBase) {
+            return VectorStore.point(id, vector, payload(payloadBase));
+        }
+
+        Map<String, Object> payload(Map<String, Object> payloadBase) {
+            Map<String, Object> payload = new HashMap<>(payloadBase);
+            payload.put("text", text);
+            payload.put("chunkIndex", ordinal);
+            payload.put("chunkHash", hash);
+            return payload;
+        }
+    }
+
+    public Collection<IndexProgress> progress() {
+        return progress.values();
+    }
+
+    public IndexProgress progress(String docKey) {
+        return progress.get(docKey);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        embedExecutor.shutdown();
+    }
+
+    /** Collects points from the embedding workers and upserts them in fixed-size batches */
+    private class PointBuffer {
+        private final IndexProgress p;
+        private final List<Map<String, Object>> points = new ArrayList<>();
+        private final Set<String> written = ConcurrentHashMap.newKeySet(); // ids sent to the store
+        private volatile boolean closed;
+
+        PointBuffer(IndexProgress p) {
+            this.p = p;
+        }
+
+        /** Stop accepting points; a write already under way still finishes */
+        void close() {
+            closed = true;
+        }
+
+        boolean isClosed() {
+            return closed;
+        }
+
+        Set<String> writtenIds() {
+            return new HashSet<>(written);
+        }
+
+        void addAll(List<Map<String, Object>> more) {
+            List<Map<String, Object>> ready = null;
+            synchronized (this) {
+                if (closed) return;
+                points.addAll(more);
+                if (points.size() >= upsertBatchSize) {
+                    ready = new ArrayList<>(points);
+                    points.clear();
+                }
+            }
+            if (ready != null) write(ready);
+        }
+
+        void flush() {
+            List<Map<String, Object>> ready;
+            synchronized (this) {
+                ready = new ArrayList<>(points);
+                points.clear();
+            }
+            write(ready);
+        }
+
+        private void write(List<Map<String, Object>> batch) {
+            for (int i = 0; i < batch.size(); i += upsertBatchSize) {
+                List<Map<String, Object>> slice = batch.subList(i, Math.min(batch.size(), i + upsertBatchSize));
+                // recorded before the call: a rejected batch may still have been partly applied
+                for (Map<String, Object> point : slice) written.add(String.valueOf(point.get("id")));
+                if (vectorStore.upsertBatch(slice)) {
+                    lexicalIndex.addAll(slice);
+                    p.upserted(slice.size());
+                } else {
+                    p.failed(slice.size());
+                }
+            }
+        }
+    }
+}
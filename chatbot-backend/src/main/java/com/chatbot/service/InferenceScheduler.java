@@ -0,0 +1,301 @@
+package com.chatbot.service;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntSupplier;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+
+/**
+ * Admission control for LLM generations. At most {@code maxInFlight} generations per
+ * available generate server ({@link ModelEndpointRouter#available}) run at once, so
+ * adding servers adds slots; the rest wait in two lanes. INTERACTIVE work always goes
+ * first and BULK work never holds more than {@code bulkMaxInFlight} slots per server,
+ * so a batch job can't take the model away from people waiting on a reply. Within a lane every user has their own
+ * queue and users take turns, so one student sending twenty prompts waits behind
+ * their own prompts, not everyone else's.
+ * <p>
+ * Identical requests (same coalescing key) made while one is queued or running share
+ * it: later callers get the output so far replayed and then follow the live stream.
+ * The shared call keeps the first caller's place: it counts against that caller's
+ * queue, lane and sticky endpoint, and joining callers use none of their own.
+ * <p>
+ * The scheduler knows nothing about HTTP; {@link #submit} takes the call to run, so it
+ * can be driven by a stub generator.
+ */
+@Service
+public class InferenceScheduler {
+
+    public enum Priority { INTERACTIVE, BULK }
+
+    /** Queue owner for work no user asked for */
+    public static final String BACKGROUND = "background";
+
+    private static final int WAITING = 0, GRANTED = 1, CANCELLED = 2;
+
+    private final int maxInFlight;       // per server
+    private final int bulkMaxInFlight;   // per server
+    private final IntSupplier servers;
+    private final int maxQueuedPerUser;
+    private final Duration maxQueueWait;
+    private final MeterRegistry registry;
+
+    // guarded by this; held only to move tickets between the lanes and the running set
+    private final EnumMap<Priority, Lane> lanes = new EnumMap<>(Priority.class);
+    private int inFlight;
+    private int bulkInFlight;
+
+    private final ConcurrentHashMap<String, Flux<?>> inProgress = new ConcurrentHashMap<>();
+
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final EnumMap<Priority, Timer> queueWait = new EnumMap<>(Priority.class);
+
+    /** Per-user FIFO queues served round-robin */
+    private static final class Lane {
+        final Map<String, ArrayDeque<Ticket>> byUser = new HashMap<>();
+        final ArrayDeque<String> turns = new ArrayDeque<>(); // users with queued work, next first
+        int size;
+
+        void add(Ticket t) {
+            ArrayDeque<Ticket> q = byUser.computeIfAbsent(t.user, u -> new ArrayDeque<>());
+            if (q.isEmpty()) turns.add(t.user);
+            q.add(t);
+            size++;
+        }
+
+        Ticket poll() {
+            String user = turns.poll();
+            if (user == null) return null;
+            ArrayDeque<Ticket> q = byUser.get(user);
+            Ticket t = q.poll();
+            size--;
+            if (q.isEmpty()) byUser.remove(user);
+            else turns.add(user);
+            return t;
+        }
+
+        void remove(Ticket t) {
+            ArrayDeque<Ticket> q = byUser.get(t.user);
+            if (q == null || !q.remove(t)) return;
+            size--;
+            if (q.isEmpty()) {
+                byUser.remove(t.user);
+                turns.remove(t.user);
+            }
+        }
+
+        int queued(String user) {
+            ArrayDeque<Ticket> q = byUser.get(user);
+            return q == null ? 0 : q.size();
+        }
+    }
+
+    private static final class Ticket {
+        final String user;
+        final Priority priority;
+        final MonoSink<Slot> sink;
+        final long enqueuedAt = System.nanoTime();
+        final AtomicInteger state = new AtomicInteger(WAITING);
+        volatile Slot slot;
+
+        Ticket(String user, Priority priority, MonoSink<Slot> sink) {
+            this.user = user;
+            this.priority = priority;
+            this.sink = sink;
+        }
+    }
+
+    /** A running generation; released once, when the call ends */
+    private final class Slot {
+        final Priority priority;
+        final long startedAt = System.nanoTime();
+        final AtomicBoolean released = new AtomicBoolean();
+
+        Slot(Priority priority) {
+            this.priority = priority;
+        }
+
+        Mono<Void> release(String outcome) {
+            return Mono.fromRunnable(() -> {
+                if (!released.compareAndSet(false, true)) return;
+                Timer.builder("inference.generation")
+                    .tag("priority", priority.name().toLowerCase())
+                    .tag("outcome", outcome)
+                    .publishPercentileHistogram()
+                    .register(registry)
+                    .record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+                free(priority);
+                dispatch();
+            });
+        }
+    }
+
+    @Autowired
+    public InferenceScheduler(
+        @Value("${inference.maxInFlight:2}") int maxInFlight,
+        @Value("${inference.bulkMaxInFlight:1}") int bulkMaxInFlight,
+        @Value("${inference.maxQueuedPerUser:5}") int maxQueuedPerUser,
+        @Value("${inference.maxQueueWait:60s}") Duration maxQueueWait,
+        ModelEndpointRouter router,
+        MeterRegistry meterRegistry
+    ) {
+        this(maxInFlight, bulkMaxInFlight, maxQueuedPerUser, maxQueueWait,
+            () -> router.available(ModelEndpointRouter.Role.GENERATE), meterRegistry);
+    }
+
+    /** A scheduler for a single server */
+    InferenceScheduler(int maxInFlight, int bulkMaxInFlight, int maxQueuedPerUser, Duration maxQueueWait,
+                       MeterRegistry meterRegistry) {
+        this(maxInFlight, bulkMaxInFlight, maxQueuedPerUser, maxQueueWait, () -> 1, meterRegistry);
+    }
+
+    /** {@code servers} is read on every dispatch; fewer than one counts as one */
+    InferenceScheduler(int maxInFlight, int bulkMaxInFlight, int maxQueuedPerUser, Duration maxQueueWait,
+                       IntSupplier servers, MeterRegistry meterRegistry) {
+        this.servers = servers;
+        this.maxInFlight = Math.max(1, maxInFlight);
+        this.bulkMaxInFlight = Math.max(1, Math.min(this.maxInFlight, bulkMaxInFlight));
+        this.maxQueuedPerUser = Math.max(1, maxQueuedPerUser);
+        this.maxQueueWait = maxQueueWait;
+        this.registry = meterRegistry;
+
+        for (Priority p : Priority.values()) {
+            lanes.put(p, new Lane());
+            String tag = p.name().toLowerCase();
+            queueWait.put(p, Timer.builder("inference.queue.wait").tag("priority", tag)
+                .publishPercentileHistogram().register(meterRegistry));
+            Gauge.builder("inference.queued", this, s -> s.queued(p)).tag("priority", tag).register(meterRegistry);
+        }
+        Gauge.builder("inference.inflight", this, InferenceScheduler::inFlight).register(meterRegistry);
+        FunctionCounter.builder("inference.coalesced", coalesced, AtomicLong::get).register(meterRegistry);
+        FunctionCounter.builder("inference.rejected", rejected, AtomicLong::get).register(meterRegistry);
+    }
+
+    /**
+     * Run {@code call} once {@code user} gets a slot at {@code priority}. A request with the
+     * same {@code key} already queued or running is joined instead (pass null to never share).
+     * Fails with {@link DownstreamLimiter.BusyException} if the user already has
+     * {@code maxQueuedPerUser} requests waiting or no slot frees up within {@code maxQueueWait}.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> Flux<T> submit(String user, Priority priority, String key, Supplier<Flux<T>> call) {
+        if (key == null) return run(user, priority, call);
+        return Flux.defer(() -> {
+            boolean[] created = {false};
+            Flux<T> shared = (Flux<T>) inProgress.computeIfAbsent(key, k -> {
+                created[0] = true;
+                Flux<?>[] self = new Flux<?>[1];
+                self[0] = run(user, priority, call)
+                    .doFinally(signal -> inProgress.remove(k, self[0]))
+                    .replay()
+                    .refCount();
+                return self[0];
+            });
+            if (!created[0]) coalesced.incrementAndGet();
+            return shared;
+        });
+    }
+
+    /** {@link #submit} for a call with a single result */
+    public <T> Mono<T> submitOne(String user, Priority priority, String key, Supplier<Mono<T>> call) {
+        return submit(user, priority, key, () -> call.get().flux()).single();
+    }
+
+    private <T> Flux<T> run(String user, Priority priority, Supplier<Flux<T>> call) {
+        return Flux.usingWhen(admit(user, priority),
+            slot -> call.get(),
+            slot -> slot.release("ok"),
+            (slot, e) -> slot.release("error"),
+            slot -> slot.release("cancelled"));
+    }
+
+    private Mono<Slot> admit(String user, Priority priority) {
+        return Mono.<Slot>create(sink -> {
+            Ticket t = new Ticket(user, priority, sink);
+            boolean full;
+            synchronized (this) {
+                Lane lane = lanes.get(priority);
+                full = lane.queued(user) >= maxQueuedPerUser;
+                if (!full) lane.add(t);
+            }
+            if (full) {
+                rejected.incrementAndGet();
+                sink.error(new DownstreamLimiter.BusyException(
+                    "Too many requests waiting for " + user + "; try again when one has finished"));
+                return;
+            }
+            sink.onCancel(() -> {
+                if (t.state.compareAndSet(WAITING, CANCELLED)) {
+                    synchronized (this) {
+                        lanes.get(priority).remove(t);
+                    }
+                } else {
+                    // granted as we cancelled: hand the slot back
+                    Slot s = t.slot;
+                    if (s != null) s.release("cancelled").subscribe();
+                }
+            });
+            dispatch();
+        }).timeout(maxQueueWait, Mono.defer(() -> {
+            rejected.incrementAndGet();
+            return Mono.error(new DownstreamLimiter.BusyException(
+                "The model is busy: no slot within " + maxQueueWait.toSeconds() + " s"));
+        }));
+    }
+
+    /** Start queued tickets while there are free slots */
+    private void dispatch() {
+        int n = Math.max(1, servers.getAsInt());
+        while (true) {
+            Ticket next;
+            synchronized (this) {
+                if (inFlight >= maxInFlight * n) return;
+                next = lanes.get(Priority.INTERACTIVE).poll();
+                if (next == null && bulkInFlight < bulkMaxInFlight * n) next = lanes.get(Priority.BULK).poll();
+                if (next == null) return;
+                inFlight++;
+                if (next.priority == Priority.BULK) bulkInFlight++;
+            }
+            Slot slot = new Slot(next.priority);
+            next.slot = slot;
+            if (next.state.compareAndSet(WAITING, GRANTED)) {
+                queueWait.get(next.priority).record(System.nanoTime() - next.enqueuedAt, TimeUnit.NANOSECONDS);
+                next.sink.success(slot);
+            } else {
+                // cancelled while being dispatched: take the slot back and try the next ticket
+                slot.released.set(true);
+                free(next.priority);
+            }
+        }
+    }
+
+    private synchronized void free(Priority priority) {
+        inFlight--;
+        if (priority == Priority.BULK) bulkInFlight--;
+    }
+
+    public synchronized int inFlight() { return inFlight; }
+    public synchronized int queued(Priority priority) { return lanes.get(priority).size; }
+    public long coalesced() { return coalesced.get(); }
+    public long rejected() { return rejected.get(); }
+}
@@ -0,0 +1,248 @@
+package com.chatbot.service;
+
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import com.chatbot.config.ThreadPools;
+import com.chatbot.model.IngestionJob;
+import com.chatbot.model.IngestionStage;
+import com.chatbot.model.UploadedFile;
+import com.chatbot.repository.IngestionJobRepository;
+import com.chatbot.repository.UploadedFileRepository;
+
+/**
+ * Background ingestion of uploaded files.
+ * The upload request only spools the raw bytes to disk and records a job; a
+ * small worker pool then makes one pass over the spool file in which upload,
+ * hashing, extraction and indexing overlap (see {@link FileStorageService}).
+ * Jobs that were still running when the app stopped are re-queued on startup.
+ */
+@Service
+public class IngestionJobService {
+
+    private final IngestionJobRepository jobRepository;
+    private final UploadedFileRepository uploadedFileRepository;
+    private final FileStorageService fileStorageService;
+    private final RagService ragService;
+    private final BlobStore blobStore;
+    private final Path spoolDir;
+    private final ExecutorService workers;
+
+    public IngestionJobService(
+        IngestionJobRepository jobRepository,
+        UploadedFileRepository uploadedFileRepository,
+        FileStorageService fileStorageService,
+        RagService ragService,
+        BlobStore blobStore,
+        @Value("${ingest.spoolDir:./uploads/spool}") String spoolDir,
+        @Value("${ingest.workers:2}") int workerCount,
+        ThreadPools threadPools
+    ) {
+        this.jobRepository = jobRepository;
+        this.uploadedFileRepository = uploadedFileRepository;
+        this.fileStorageService = fileStorageService;
+        this.ragService = ragService;
+        this.blobStore = blobStore;
+        this.spoolDir = Paths.get(spoolDir);
+        // the worker count caps concurrent jobs (memory, Tika) in either thread mode
+        this.workers = threadPools.newWorkers("ingest-worker", workerCount);
+    }
+
+    /** Spool the upload to disk, record a QUEUED job and hand it to the workers */
+    public IngestionJob submit(MultipartFile file, String username) throws Exception {
+        Files.createDirectories(spoolDir);
+        String original = file.getOriginalFilename() != null ? file.getOriginalFilename() : "untitled";
+        Path spooled = spoolDir.resolve(UUID.randomUUID() + "-" + Paths.get(original).getFileName());
+        file.transferTo(spooled);
+
+        IngestionJob job = jobRepository.save(
+            new IngestionJob(original, file.getContentType(), username, spooled.toString()));
+        System.out.println("🧾 [Ingest] Job " + job.getId() + " queued for " + original);
+
+        enqueue(job.getId());
+        return job;
+    }
+
+    public Optional<IngestionJob> find(Long id) {
+        return jobRepository.findById(id);
+    }
+
+    public List<IngestionJob> recent() {
+        return jobRepository.findTop50ByOrderByIdDesc();
+    }
+
+    /** Live indexing counters for a job that is currently parsing or indexing */
+    public IndexProgress liveProgress(IngestionJob job) {
+        if (job.getStage().isTerminal() || job.getDocKey() == null) return null;
+        return ragService.indexingProgress(job.getDocKey());
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeUnfinished() {
+        List<IngestionJob> unfinished = jobRepository.findByStageInOrderByIdAsc(
+            EnumSet.of(IngestionStage.QUEUED, IngestionStage.PARSING, IngestionStage.INDEXING));
+        for (IngestionJob job : unfinished) {
+            System.out.println("🔁 [Ingest] Resuming job " + job.getId() + " from " + job.getStage());
+            enqueue(job.getId());
+        }
+    }
+
+    private void enqueue(Long jobId) {
+        workers.execute(() -> run(jobId));
+    }
+
+    private void run(Long jobId) {
+        IngestionJob job = jobRepository.findById(jobId).orElse(null);
+        if (job == null || job.getStage().isTerminal()) return;
+
+        job.setAttempts(job.getAttempts() + 1);
+        job.setStartedAt(Instant.now());
+        job.setError(null);
+
+        try {
+            Optional<UploadedFile> stored = job.getUploadedFileId() == null
+                ? Optional.empty()
+                : uploadedFileRepository.findById(job.getUploadedFileId());
+            if (stored.isPresent()) {
+                reindex(job, stored.get());
+            } else {
+                ingest(job);
+            }
+
+            job.setStage(IngestionStage.DONE);
+            job.setFinishedAt(Instant.now());
+            jobRepository.save(job);
+            deleteSpool(job);
+            System.out.println("✅ [Ingest] Job " + jobId + " done in "
+                + Duration.between(job.getStartedAt(), job.getFinishedAt()).toMillis() + " ms");
+        } catch (Exception e) {
+            System.err.println("❌ [Ingest] Job " + jobId + " failed: " + e.getMessage());
+            job.setStage(IngestionStage.FAILED);
+            job.setError(String.valueOf(e.getMessage()));
+            job.setFinishedAt(Instant.now());
+            jobRepository.save(job);
+            // failed jobs are not retried, so nothing would ever read the spooled upload again
+            deleteSpool(job);
+        }
+    }
+
+    private static void deleteSpool(IngestionJob job) {
+        if (job.getSpoolPath() == null) return;
+        try {
+            Files.deleteIfExists(Paths.get(job.getSpoolPath()));
+        } catch (Exception e) {
+            System.err.println("⚠️ [Ingest] Could not delete spool file " + job.getSpoolPath() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * PARSING: Dropbox upload, hashing, extraction and DB write in one pass over the spool
+     * file. Extracted text is chunked and embedded while Tika is still parsing, so indexing
+     * finishes together with the parse.
+     */
+    private void ingest(IngestionJob job) throws Exception {
+        Path spooled = spoolFile(job);
+        String fileName = FileStorageService.baseFileName(job.getOriginalFileName());
+
+        job.setDocKey(RagService.docKey(fileName));
+        job.setStage(IngestionStage.PARSING);
+        jobRepository.save(job);
+
+        long start = System.nanoTime();
+        // indexing finishes before the upload and blob copy are known to have worked, so the
+        // previous version is only dropped once the file is stored, and the new one undone if not
+        AtomicReference<IndexProgress> indexed = new AtomicReference<>();
+        FileStorageService.Stored<IndexProgress> stored;
+        try {
+            stored = fileStorageService.storeFile(
+                spooled, job.getOriginalFileName(), job.getContentType(), job.getUsername(),
+                text -> {
+                    IndexProgress p = ragService.indexFileText(fileName, job.getContentType(), text, false);
+                    indexed.set(p);
+                    return p;
+                });
+        } catch (Exception e) {
+            if (indexed.get() != null) ragService.discardIndexed(indexed.get());
+            throw e;
+        }
+        job.setParseMillis(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        job.setUploadedFileId(stored.getFile().getId());
+        job.setExtractedChars(stored.getExtractedChars());
+        record(job, stored.getTextResult());
+        ragService.commitIndexed(stored.getTextResult());
+    }
+
+    /** INDEXING only: a previous attempt stored the file but did not finish indexing it */
+    private void reindex(IngestionJob job, UploadedFile stored) throws Exception {
+        job.setDocKey(RagService.docKey(stored));
+        job.setStage(IngestionStage.INDEXING);
+        jobRepository.save(job);
+
+        Path spooled = Paths.get(job.getSpoolPath());
+        Function<Reader, IndexProgress> index =
+            reader -> ragService.indexFileText(stored.getFileName(), stored.getFileType(), reader);
+        IndexProgress p;
+        if (Files.exists(spooled)) {
+            FileStorageService.Extraction<IndexProgress> text =
+                fileStorageService.extract(spooled, job.getOriginalFileName(), index);
+            job.setExtractedChars(text.getChars());
+            p = text.getResult();
+        } else if (stored.getBlobId() != null) {
+            // spool already gone: re-extract from the stored blob
+            try (InputStream in = blobStore.open(stored.getBlobId(), stored.getDropboxLink())) {
+                FileStorageService.Extraction<IndexProgress> text =
+                    fileStorageService.extract(in, job.getOriginalFileName(), index);
+                job.setExtractedChars(text.getChars());
+                p = text.getResult();
+            }
+        } else {
+            p = ragService.indexFile(stored); // no content stored: fall back to the text preview
+        }
+        record(job, p);
+    }
+
+    private Path spoolFile(IngestionJob job) {
+        Path spooled = Paths.get(job.getSpoolPath());
+        if (!Files.exists(spooled)) {
+            throw new IllegalStateException("Spooled upload is missing: " + spooled);
+        }
+        return spooled;
+    }
+
+    private void record(IngestionJob job, IndexProgress p) {
+        job.setIndexMillis(p.getElapsedMillis());
+        job.setChunksQueued(p.getChunksQueued());
+        job.setChunksEmbedded(p.getChunksEmbedded());
+        job.setChunksFailed(p.getChunksFailed());
+        job.setPointsIndexed(p.getPointsUpserted());
+        if (p.getState() == IndexProgress.State.FAILED) {
+            throw new IllegalStateException("Indexing failed: " + p.getError());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // Unfinished jobs stay in the DB and are picked up again on the next start
+        workers.shutdownNow();
+    }
+}
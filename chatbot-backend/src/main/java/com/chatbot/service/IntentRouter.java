@@ -0,0 +1,449 @@
+package com.chatbot.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import com.chatbot.event.CorpusChangedEvent;
+import com.chatbot.model.Resource;
+import com.chatbot.model.UploadedFile;
+import com.chatbot.repository.ResourceRepository;
+import com.chatbot.repository.UploadedFileRepository;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Decides which route a chat message takes (deadlines, file download, timetable,
+ * resource links or general chat) without touching the database. Resource names and types, uploaded
+ * file names and the route keywords are all patterns of one {@link AhoCorasick}
+ * automaton, so a message is scanned once however many entities exist.
+ * <p>
+ * The names are loaded at startup and then kept current from
+ * {@link CorpusChangedEvent}s; a change only marks the automaton stale, and the next
+ * message rebuilds it from memory, so a burst of uploads costs one rebuild.
+ * Matching is on lower-cased text, like the controller's message.
+ */
+@Service
+public class IntentRouter {
+
+    public enum Intent { DEADLINES, DOWNLOAD, TIMETABLE, RESOURCE, CHAT }
+
+    // keyword i sets bit i
+    private static final List<String> KEYWORDS = List.of(
+        "assignment", "deadline", "due", "all", "download", "resource",
+        "timetable", "time table", "schedule",
+        "class", "classes", "lecture", "lectures", "lab", "labs",
+        "now", "next", "today", "tomorrow",
+        "monday", "tuesday", "wednesday", "thursday", "friday", "saturday", "sunday");
+    private static final int DEADLINE_WORDS = mask("assignment", "deadline", "due"), ALL = mask("all"),
+        DOWNLOAD = mask("download"), RESOURCE = mask("resource"),
+        TIMETABLE_WORDS = mask("timetable", "time table", "schedule"),
+        CLASS_WORDS = mask("class", "classes", "lecture", "lectures", "lab", "labs"),
+        TIME_WORDS = mask("now", "next", "today", "tomorrow",
+            "monday", "tuesday", "wednesday", "thursday", "friday", "saturday", "sunday"),
+        // the timetable words only count as whole words ("lab" is in "syllabus")
+        WHOLE_WORDS = TIMETABLE_WORDS | CLASS_WORDS | TIME_WORDS;
+    private static final String DOWNLOAD_PREFIX = "download";
+
+    private static int mask(String... words) {
+        int mask = 0;
+        for (String w : words) mask |= 1 << KEYWORDS.indexOf(w);
+        return mask;
+    }
+
+    private final ResourceRepository resourceRepository;
+    private final UploadedFileRepository uploadedFileRepository;
+    private final Timer routeTimer;
+    private final AtomicLong rebuilds = new AtomicLong();
+
+    // what the automaton is built from, guarded by lock (not synchronized: callers may be virtual threads)
+    private final ReentrantLock lock = new ReentrantLock();
+    private final TreeMap<Long, ResourceLink> resources = new TreeMap<>();
+    private final TreeMap<Long, String> fileNames = new TreeMap<>();
+
+    private volatile Snapshot snapshot = Snapshot.build(List.of(), List.of());
+    private volatile boolean stale;
+
+    public IntentRouter(ResourceRepository resourceRepository, UploadedFileRepository uploadedFileRepository,
+                        MeterRegistry meterRegistry) {
+        this.resourceRepository = resourceRepository;
+        this.uploadedFileRepository = uploadedFileRepository;
+        this.routeTimer = Timer.builder("chat.intent.route")
+            .publishPercentileHistogram()
+            .register(meterRegistry);
+        FunctionCounter.builder("chat.intent.rebuilds", rebuilds, AtomicLong::get).register(meterRegistry);
+        Gauge.builder("chat.intent.patterns", this, r -> r.snapshot.patternCount).register(meterRegistry);
+    }
+
+    /** A resource as the chat replies show it, copied off the entity */
+    public static final class ResourceLink {
+        private final Long id;
+        private final String name;
+        private final String driveLink;
+        private final String type;
+
+        ResourceLink(Resource resource) {
+            this.id = resource.getId();
+            this.name = resource.getName();
+            this.driveLink = resource.getDriveLink();
+            this.type = resource.getType();
+        }
+
+        public Long getId() { return id; }
+        public String getName() { return name; }
+        public String getDriveLink() { return driveLink; }
+        public String getType() { return type; }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof ResourceLink other && Objects.equals(id, other.id) && Objects.equals(name, other.name)
+                && Objects.equals(driveLink, other.driveLink) && Objects.equals(type, other.type);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(id, name, driveLink, type);
+        }
+    }
+
+    /** Where a message goes, with whatever the route needs to answer it */
+    public static final class Route {
+        private final Intent intent;
+        private final boolean allDeadlines;
+        private final String fileQuery;
+        private final String fileName;
+        private final ResourceLink resource;
+        private final List<ResourceLink> resourcesByType;
+
+        private Route(Intent intent, boolean allDeadlines, String fileQuery, String fileName,
+                      ResourceLink resource, List<ResourceLink> resourcesByType) {
+            this.intent = intent;
+            this.allDeadlines = allDeadlines;
+            this.fileQuery = fileQuery;
+            this.fileName = fileName;
+            this.resource = resource;
+            this.resourcesByType = resourcesByType;
+        }
+
+        public Intent getIntent() { return intent; }
+        /** DEADLINES: the message asked for all of them rather than the next */
+        public boolean isAllDeadlines() { return allDeadlines; }
+        /** DOWNLOAD: what followed the word "download" */
+        public String getFileQuery() { return fileQuery; }
+        /** DOWNLOAD: the matching file's stored name, or null if none matched */
+        public String getFileName() { return fileName; }
+        /** RESOURCE: the first resource named in the message, or null */
+        public ResourceLink getResource() { return resource; }
+        /** RESOURCE: every resource whose type the message names, by id */
+        public List<ResourceLink> getResourcesByType() { return resourcesByType; }
+    }
+
+    @PostConstruct
+    public void load() {
+        lock.lock();
+        try {
+            resourceRepository.findAll().forEach(r -> {
+                if (r.getId() != null) resources.put(r.getId(), new ResourceLink(r));
+            });
+            uploadedFileRepository.findAllProjectedByOrderByIdAsc().forEach(f -> {
+                if (f.getFileName() != null) fileNames.put(f.getId(), f.getFileName());
+            });
+            stale = true;
+        } finally {
+            lock.unlock();
+        }
+        Snapshot s = rebuild();
+        System.out.println("🧭 [Intent] Routing over " + s.resources.length + " resource(s) and "
+            + s.fileNames.length + " file(s), " + s.patternCount + " pattern(s)");
+    }
+
+    @EventListener
+    public void onCorpusChanged(CorpusChangedEvent event) {
+        boolean deleted = event.getAction() == CorpusChangedEvent.Action.DELETED;
+        lock.lock();
+        try {
+            boolean changed = false;
+            if (event.getEntity() instanceof Resource r && r.getId() != null) {
+                ResourceLink link = new ResourceLink(r);
+                changed = deleted ? resources.remove(r.getId()) != null : !link.equals(resources.put(r.getId(), link));
+            } else if (event.getEntity() instanceof UploadedFile f && f.getId() != null) {
+                changed = deleted || f.getFileName() == null
+                    ? fileNames.remove(f.getId()) != null
+                    : !f.getFileName().equals(fileNames.put(f.getId(), f.getFileName()));
+            }
+            if (changed) stale = true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Route a message that has already been trimmed and lower-cased */
+    public Route route(String message) {
+        long start = System.nanoTime();
+        Snapshot s = stale ? rebuild() : snapshot;
+        Route route = s.route(message);
+        routeTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return route;
+    }
+
+    private Snapshot rebuild() {
+        lock.lock();
+        try {
+            if (stale) {
+                stale = false;
+                snapshot = Snapshot.build(new ArrayList<>(resources.values()), new ArrayList<>(fileNames.values()));
+                rebuilds.incrementAndGet();
+            }
+            return snapshot;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** One immutable automaton and the entities its patterns point at, all in id order */
+    private static final class Snapshot {
+        private static final int[] NONE = new int[0];
+        private static final char END = '\0';   // ends each name in fileText, so no match spans two
+
+        final AhoCorasick automaton;
+        final int patternCount;
+        final int[] patternLengths;
+        final int[] keywordBits;
+        final int[][] byName;    // pattern -> resources with that name
+        final int[][] byType;    // pattern -> resources with that type
+        final int[][] byFile;    // pattern -> files with that name
+        final ResourceLink[] resources;
+        final String[] fileNames;
+        final String[] lowerFileNames;
+        // suffix array over the lower-cased file names, for the names containing a download query
+        final char[] fileText;
+        final int[] fileAt;      // position in fileText -> file
+        final int[] suffixes;    // positions in fileText, in the order of the suffixes starting there
+
+        private Snapshot(List<String> patterns, int[] keywordBits, int[][] byName, int[][] byType, int[][] byFile,
+                         ResourceLink[] resources, String[] fileNames, String[] lowerFileNames) {
+            this.automaton = new AhoCorasick(patterns);
+            this.patternCount = patterns.size();
+            this.patternLengths = patterns.stream().mapToInt(String::length).toArray();
+            this.keywordBits = keywordBits;
+            this.byName = byName;
+            this.byType = byType;
+            this.byFile = byFile;
+            this.resources = resources;
+            this.fileNames = fileNames;
+            this.lowerFileNames = lowerFileNames;
+
+            StringBuilder text = new StringBuilder();
+            int[] fileAt = new int[Arrays.stream(lowerFileNames).mapToInt(n -> n.length() + 1).sum()];
+            for (int i = 0; i < lowerFileNames.length; i++) {
+                Arrays.fill(fileAt, text.length(), text.length() + lowerFileNames[i].length() + 1, i);
+                text.append(lowerFileNames[i]).append(END);
+            }
+            this.fileText = text.toString().toCharArray();
+            this.fileAt = fileAt;
+            this.suffixes = IntStream.range(0, fileText.length)
+                .filter(i -> fileText[i] != END)
+                .boxed()
+                .sorted(this::compareSuffixes)
+                .mapToInt(Integer::intValue)
+                .toArray();
+        }
+
+        static Snapshot build(List<ResourceLink> resources, List<String> fileNames) {
+            Map<String, Integer> index = new HashMap<>();
+            List<String> patterns = new ArrayList<>();
+            List<Integer> bits = new ArrayList<>();
+            List<List<Integer>> names = new ArrayList<>(), types = new ArrayList<>(), files = new ArrayList<>();
+            Function<String, Integer> pattern = text -> index.computeIfAbsent(text, t -> {
+                patterns.add(t);
+                bits.add(0);
+                names.add(new ArrayList<>());
+                types.add(new ArrayList<>());
+                files.add(new ArrayList<>());
+                return patterns.size() - 1;
+            });
+
+            for (int k = 0; k < KEYWORDS.size(); k++) {
+                int p = pattern.apply(KEYWORDS.get(k));
+                bits.set(p, bits.get(p) | 1 << k);
+            }
+            // an empty name or type would be "in" every message; those are left out
+            for (int i = 0; i < resources.size(); i++) {
+                ResourceLink r = resources.get(i);
+                if (r.getName() != null && !r.getName().isEmpty()) names.get(pattern.apply(r.getName().toLowerCase())).add(i);
+                if (r.getType() != null && !r.getType().isEmpty()) types.get(pattern.apply(r.getType().toLowerCase())).add(i);
+            }
+            String[] lower = new String[fileNames.size()];
+            for (int i = 0; i < fileNames.size(); i++) {
+                lower[i] = fileNames.get(i).toLowerCase();
+                if (!lower[i].isEmpty()) files.get(pattern.apply(lower[i])).add(i);
+            }
+
+            return new Snapshot(patterns,
+                bits.stream().mapToInt(Integer::intValue).toArray(),
+                toArrays(names), toArrays(types), toArrays(files),
+                resources.toArray(new ResourceLink[0]), fileNames.toArray(new String[0]), lower);
+        }
+
+        private static int[][] toArrays(List<List<Integer>> lists) {
+            int[][] out = new int[lists.size()][];
+            for (int i = 0; i < out.length; i++) {
+                List<Integer> list = lists.get(i);
+                out[i] = list.isEmpty() ? NONE : list.stream().mapToInt(Integer::intValue).toArray();
+            }
+            return out;
+        }
+
+        Route route(String message) {
+            Scan scan = new Scan(message);
+            automaton.match(message, scan);
+
+            if ((scan.keywords & DEADLINE_WORDS) != 0) {
+                return new Route(Intent.DEADLINES, (scan.keywords & ALL) != 0, null, null, null, List.of());
+            }
+
+            if ((scan.keywords & DOWNLOAD) != 0) {
+                String query = message.substring(DOWNLOAD_PREFIX.length()).trim();
+                return new Route(Intent.DOWNLOAD, false, query, file(query, scan.filePattern), null, List.of());
+            }
+
+            // a timetable word, or a class word with a time ("next lab", "classes on friday")
+            if ((scan.keywords & TIMETABLE_WORDS) != 0
+                    || ((scan.keywords & CLASS_WORDS) != 0 && (scan.keywords & TIME_WORDS) != 0)) {
+                return new Route(Intent.TIMETABLE, false, null, null, null, List.of());
+            }
+
+            ResourceLink named = scan.firstNamed == Integer.MAX_VALUE ? null : resources[scan.firstNamed];
+            List<ResourceLink> typed = typesNamed(scan.typePatterns, scan.typeCount);
+            if ((scan.keywords & RESOURCE) != 0 || named != null || !typed.isEmpty()) {
+                return new Route(Intent.RESOURCE, false, null, null, named, typed);
+            }
+            return new Route(Intent.CHAT, false, null, null, null, List.of());
+        }
+
+        /** What one pass over a message found */
+        private final class Scan implements AhoCorasick.Hits {
+            final String message;
+            int keywords;
+            int firstNamed = Integer.MAX_VALUE;  // lowest resource index whose name occurs
+            int[] typePatterns = new int[2];
+            int typeCount;
+            int filePattern = -1;                // longest file name occurring after "download"
+
+            Scan(String message) {
+                this.message = message;
+            }
+
+            @Override
+            public void hit(int p, int start) {
+                int kw = keywordBits[p];
+                if (start != 0) kw &= ~DOWNLOAD; // only as the first word
+                if ((kw & WHOLE_WORDS) != 0 && !wholeWord(start, patternLengths[p])) kw &= ~WHOLE_WORDS;
+                keywords |= kw;
+                if (byName[p].length > 0) firstNamed = Math.min(firstNamed, byName[p][0]);
+                if (byType[p].length > 0) {
+                    if (typeCount == typePatterns.length) typePatterns = Arrays.copyOf(typePatterns, typeCount * 2);
+                    typePatterns[typeCount++] = p;
+                }
+                if (byFile[p].length > 0 && start >= DOWNLOAD_PREFIX.length()
+                        && (filePattern < 0 || lowerFileNames[byFile[p][0]].length() > lowerFileNames[byFile[filePattern][0]].length())) {
+                    filePattern = p;
+                }
+            }
+
+            private boolean wholeWord(int start, int length) {
+                int end = start + length;
+                return (start == 0 || !Character.isLetterOrDigit(message.charAt(start - 1)))
+                    && (end == message.length() || !Character.isLetterOrDigit(message.charAt(end)));
+            }
+        }
+
+        /**
+         * The file a download asks for: one named exactly, else the first (by id) whose
+         * name contains the query, else the longest file name the message mentions.
+         * Names containing the query are the suffixes it prefixes, one range of the
+         * suffix array found by binary search, so only its occurrences are looked at.
+         */
+        private String file(String query, int mentioned) {
+            if (mentioned >= 0 && lowerFileNames[byFile[mentioned][0]].equals(query)) return fileNames[byFile[mentioned][0]];
+            if (query.isEmpty()) return fileNames.length > 0 ? fileNames[0] : null;
+            if (query.indexOf(END) < 0) {
+                int first = Integer.MAX_VALUE;
+                for (int i = firstSuffixFrom(query); i < suffixes.length && compareToQuery(suffixes[i], query) == 0; i++) {
+                    first = Math.min(first, fileAt[suffixes[i]]);
+                }
+                if (first != Integer.MAX_VALUE) return fileNames[first];
+            }
+            return mentioned >= 0 ? fileNames[byFile[mentioned][0]] : null;
+        }
+
+        /** Index of the first suffix not ordered before {@code query} */
+        private int firstSuffixFrom(String query) {
+            int lo = 0, hi = suffixes.length;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (compareToQuery(suffixes[mid], query) < 0) lo = mid + 1;
+                else hi = mid;
+            }
+            return lo;
+        }
+
+        /** The suffix at {@code from}, cut to the query's length, against the query */
+        private int compareToQuery(int from, String query) {
+            int n = Math.min(query.length(), fileText.length - from);
+            for (int k = 0; k < n; k++) {
+                int d = fileText[from + k] - query.charAt(k);
+                if (d != 0) return d;
+            }
+            return n == query.length() ? 0 : -1;
+        }
+
+        private int compareSuffixes(int a, int b) {
+            int n = fileText.length - Math.max(a, b);
+            for (int k = 0; k < n; k++) {
+                int d = fileText[a + k] - fileText[b + k];
+                if (d != 0) return d;
+            }
+            return b - a;
+        }
+
+        private List<ResourceLink> typesNamed(int[] typePatterns, int count) {
+            if (count == 0) return List.of();
+            if (count == 1) {
+                int[] ids = byType[typePatterns[0]];
+                List<ResourceLink> out = new ArrayList<>(ids.length);
+                for (int i : ids) out.add(resources[i]);
+                return out;
+            }
+            int total = 0;
+            for (int k = 0; k < count; k++) total += byType[typePatterns[k]].length;
+            int[] ids = new int[total];
+            int n = 0;
+            for (int k = 0; k < count; k++) {
+                for (int i : byType[typePatterns[k]]) ids[n++] = i;
+            }
+            Arrays.sort(ids);
+            List<ResourceLink> out = new ArrayList<>(total);
+            for (int k = 0; k < total; k++) {
+                if (k == 0 || ids[k] != ids[k - 1]) out.add(resources[ids[k]]);
+            }
+            return out;
+        }
+    }
+}
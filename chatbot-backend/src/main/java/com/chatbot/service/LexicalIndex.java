@@ -0,0 +1,273 @@
+package com.chatbot.service;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Keyword side of hybrid retrieval: a {@link Bm25Index} over the same chunks the
+ * {@link IndexingPipeline} writes to the vector store, keyed by the same point ids and
+ * carrying the same payloads, so its hits can be fused with vector hits and fed to the
+ * {@link ContextAssembler} unchanged. Course codes and batch names ("ADBMS",
+ * "BT2-Hon-DL") that embed poorly are found here by exact token.
+ * <p>
+ * The index lives on the heap and is written to {@code rag.lexical.path} (postings
+ * delta- and varint-encoded) every {@code rag.lexical.flushInterval} when it changed,
+ * and on shutdown. Chunks the file missed are added back the next time their document
+ * goes through the pipeline.
+ */
+@Service
+public class LexicalIndex {
+
+    // tombstones beyond this share of live chunks are compacted away on the next write
+    private static final double VACUUM_RATIO = 0.3;
+
+    private final ObjectMapper objectMapper;
+    private final boolean enabled;
+    private final Path path;
+    private final float k1;
+    private final float b;
+    private final Duration flushInterval;
+    private final Timer searchTimer;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final AtomicBoolean dirty = new AtomicBoolean();
+    private Bm25Index index;
+    private final Map<String, Integer> chunksPerVersion = new HashMap<>(); // docKey + "\n" + docHash -> chunks
+
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "bm25-flush");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public LexicalIndex(
+        ObjectMapper objectMapper,
+        @Value("${rag.lexical.enabled:true}") boolean enabled,
+        @Value("${rag.lexical.path:./data/lexical.idx}") String path,
+        @Value("${rag.lexical.k1:1.2}") float k1,
+        @Value("${rag.lexical.b:0.75}") float b,
+        @Value("${rag.lexical.flushInterval:1m}") Duration flushInterval,
+        MeterRegistry meterRegistry
+    ) {
+        this.objectMapper = objectMapper;
+        this.enabled = enabled;
+        this.path = Paths.get(path);
+        this.k1 = k1;
+        this.b = b;
+        this.flushInterval = flushInterval;
+        this.index = new Bm25Index(k1, b);
+        this.searchTimer = Timer.builder("rag.lexical.search").publishPercentileHistogram().register(meterRegistry);
+        Gauge.builder("rag.lexical.chunks", this, LexicalIndex::size).register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void open() {
+        if (!enabled) return;
+        long start = System.currentTimeMillis();
+        if (Files.exists(path)) {
+            try {
+                index = Bm25Index.read(path, objectMapper, k1, b);
+                for (Map<String, Object> payload : index.livePayloads()) track(payload, 1);
+            } catch (IOException e) {
+                System.err.println("⚠️ [BM25] Could not read " + path + ", starting empty: " + e.getMessage());
+                index = new Bm25Index(k1, b);
+            }
+        }
+        System.out.println("🔤 [BM25] Opened " + index.liveCount() + " chunks, " + index.termCount() + " terms in "
+            + (System.currentTimeMillis() - start) + " ms");
+
+        long every = Math.max(1, flushInterval.toSeconds());
+        flusher.scheduleWithFixedDelay(this::flushQuietly, every, every, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void close() {
+        flusher.shutdown();
+        flushQuietly();
+    }
+
+    /** Add or replace points in the vector store's shape ({@code id}, {@code payload} with {@code text}) */
+    @SuppressWarnings("unchecked")
+    public void addAll(List<Map<String, Object>> points) {
+        if (!enabled || points.isEmpty()) return;
+        lock.writeLock().lock();
+        try {
+            for (Map<String, Object> point : points) {
+                Map<String, Object> payload = (Map<String, Object>) point.getOrDefault("payload", Map.of());
+                add(String.valueOf(point.get("id")), payload);
+            }
+            vacuumIfNeeded();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        dirty.set(true);
+    }
+
+    /** Add a point the vector store already holds, unless it is indexed here too */
+    public void ensure(String id, Map<String, Object> payload) {
+        if (!enabled) return;
+        lock.readLock().lock();
+        try {
+            if (index.contains(id)) return;
+        } finally {
+            lock.readLock().unlock();
+        }
+        lock.writeLock().lock();
+        try {
+            if (index.contains(id)) return;
+            add(id, payload);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        dirty.set(true);
+    }
+
+    public void delete(Collection<String> ids) {
+        if (!enabled || ids.isEmpty()) return;
+        lock.writeLock().lock();
+        try {
+            for (String id : ids) {
+                Map<String, Object> removed = index.remove(id);
+                if (removed != null) track(removed, -1);
+            }
+            vacuumIfNeeded();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        dirty.set(true);
+    }
+
+    /** Same contract as {@link VectorStore#hasDocument}; always true when the index is disabled */
+    public boolean hasDocument(String docKey, String docHash, int chunks) {
+        if (!enabled) return true;
+        lock.readLock().lock();
+        try {
+            return docHash != null && chunksPerVersion.getOrDefault(docKey + "\n" + docHash, 0) == chunks;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Top-K chunks by BM25, best first, as hits in the vector store's shape */
+    public List<Map<String, Object>> search(String query, int topK) {
+        if (!enabled) return new ArrayList<>();
+        long start = System.nanoTime();
+        lock.readLock().lock();
+        try {
+            HnswIndex.Result result = index.search(query, topK);
+            List<Map<String, Object>> hits = new ArrayList<>(result.nodes.length);
+            for (int i = 0; i < result.nodes.length; i++) {
+                Map<String, Object> hit = new HashMap<>();
+                hit.put("id", index.id(result.nodes[i]));
+                hit.put("score", result.scores[i]);
+                hit.put("payload", index.payload(result.nodes[i]));
+                hits.add(hit);
+            }
+            return hits;
+        } finally {
+            lock.readLock().unlock();
+            searchTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return index.liveCount();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Write the index if it changed since the last flush */
+    public void flush() throws IOException {
+        if (!enabled || !dirty.getAndSet(false)) return;
+        long start = System.currentTimeMillis();
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        Files.createDirectories(path.toAbsolutePath().getParent());
+
+        lock.writeLock().lock();
+        try {
+            index.compact();
+            // downgrade: searches may run while the file is written, writers wait
+            lock.readLock().lock();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        int chunks;
+        try {
+            index.write(tmp, objectMapper);
+            chunks = index.liveCount();
+        } catch (IOException | RuntimeException e) {
+            dirty.set(true);
+            throw e;
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+            ch.force(true);
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        System.out.println("🔤 [BM25] Wrote " + chunks + " chunks to " + path + " in "
+            + (System.currentTimeMillis() - start) + " ms");
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (Exception e) {
+            System.err.println("❌ [BM25] Flush failed: " + e.getMessage());
+        }
+    }
+
+    // caller holds the write lock
+    private void vacuumIfNeeded() {
+        if (index.deletedCount() > 0 && index.deletedCount() >= index.liveCount() * VACUUM_RATIO) index.compact();
+    }
+
+    // caller holds the write lock
+    private void add(String id, Map<String, Object> payload) {
+        Object text = payload.get("text");
+        if (text == null) return;
+        Map<String, Object> replaced = index.remove(id);
+        if (replaced != null) track(replaced, -1);
+        index.add(id, text.toString(), payload);
+        track(payload, 1);
+    }
+
+    private void track(Map<String, Object> payload, int delta) {
+        Object docKey = payload.get("docKey");
+        Object docHash = payload.get("docHash");
+        if (docKey == null || docHash == null) return;
+        String key = docKey + "\n" + docHash;
+        if (chunksPerVersion.merge(key, delta, Integer::sum) <= 0) chunksPerVersion.remove(key);
+    }
+}
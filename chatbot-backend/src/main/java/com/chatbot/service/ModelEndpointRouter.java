@@ -0,0 +1,333 @@
+package com.chatbot.service;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+import com.chatbot.config.HttpClients;
+import com.chatbot.config.ModelEndpointProperties;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Spreads generate and embed calls over the Ollama servers in {@link ModelEndpointProperties}.
+ * <ul>
+ *   <li>Each call goes to the available endpoint with the lowest score: outstanding
+ *       requests, or (EWMA) outstanding requests weighted by the endpoint's recent latency
+ *       (time to first chunk).</li>
+ *   <li>An endpoint is unavailable while its last health check ({@code GET /api/tags})
+ *       failed, or while its circuit is open: {@code failureThreshold} failures in a row
+ *       open it for {@code openDuration}, then one trial call decides whether it closes.</li>
+ *   <li>A call that fails before producing anything (connection error, timeout, 5xx) is
+ *       retried once on each other endpoint; a stream that already sent tokens is not.</li>
+ *   <li>Calls with a sticky key (a conversation) keep going to the same endpoint while it
+ *       is available, so its KV cache for that conversation stays warm.</li>
+ * </ul>
+ * If every endpoint for a role is unavailable the least loaded one is tried anyway.
+ * Each endpoint has its own {@link DownstreamLimiter}, so adding servers adds capacity.
+ */
+@Service
+public class ModelEndpointRouter {
+
+    public enum Role { GENERATE, EMBED }
+
+    private static final double EWMA_ALPHA = 0.3;
+
+    private final ModelEndpointProperties props;
+    private final List<Endpoint> endpoints = new ArrayList<>();
+    private final Map<String, Endpoint> sticky; // guarded by itself
+    private final AtomicLong failovers = new AtomicLong();
+    private final ScheduledExecutorService healthChecker = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "llm-health");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /** One Ollama server */
+    public final class Endpoint {
+        private final String name;
+        private final String url;
+        private final String model;
+        private final Set<Role> roles;
+        private final WebClient client;
+        private final DownstreamLimiter limiter;
+
+        private final AtomicInteger outstanding = new AtomicInteger();
+        private volatile double latencyMillis; // EWMA, 0 until the first call
+        private volatile boolean healthy = true;
+        private final AtomicInteger consecutiveFailures = new AtomicInteger();
+        private volatile long openUntil; // nanoTime; 0 while the circuit is closed
+        private final AtomicBoolean trialInFlight = new AtomicBoolean();
+
+        Endpoint(String name, String url, String model, Set<Role> roles, WebClient client, DownstreamLimiter limiter) {
+            this.name = name;
+            this.url = url;
+            this.model = model;
+            this.roles = roles;
+            this.client = client;
+            this.limiter = limiter;
+        }
+
+        public String name() { return name; }
+        public String url() { return url; }
+        /** Generate model to request from this endpoint */
+        public String model() { return model; }
+        public WebClient client() { return client; }
+        /** This server's own concurrency cap ({@code downstream.ollama.maxConcurrent}) */
+        public DownstreamLimiter limiter() { return limiter; }
+        public int outstanding() { return outstanding.get(); }
+        public double latencyMillis() { return latencyMillis; }
+        public boolean isHealthy() { return healthy; }
+        public boolean isOpen() { return openUntil != 0; }
+
+        boolean available(long now) {
+            if (!healthy) return false;
+            long until = openUntil;
+            if (until == 0) return true;
+            return now - until >= 0 && !trialInFlight.get(); // half-open: one trial at a time
+        }
+
+        double score() {
+            int load = outstanding.get();
+            if (props.getBalancing() == ModelEndpointProperties.Balancing.LEAST_OUTSTANDING) {
+                return load + latencyMillis / 1e9; // latency only breaks ties
+            }
+            return (load + 1) * Math.max(1.0, latencyMillis);
+        }
+
+        void recordLatency(long nanos) {
+            double millis = nanos / 1e6;
+            double prev = latencyMillis;
+            latencyMillis = prev == 0 ? millis : prev + EWMA_ALPHA * (millis - prev);
+        }
+
+        void recordSuccess() {
+            consecutiveFailures.set(0);
+            if (openUntil != 0) System.out.println("✅ [LLM] " + name + " recovered, closing its circuit");
+            openUntil = 0;
+        }
+
+        void recordFailure(Throwable e, boolean trial) {
+            int failures = consecutiveFailures.incrementAndGet();
+            if (trial || failures >= props.getFailureThreshold()) {
+                openUntil = System.nanoTime() + props.getOpenDuration().toNanos();
+                System.err.println("🔌 [LLM] " + name + " failed " + failures + " times in a row, pausing it for "
+                    + props.getOpenDuration().toSeconds() + " s: " + e.getMessage());
+            }
+        }
+    }
+
+    public ModelEndpointRouter(
+        ModelEndpointProperties props,
+        HttpClients httpClients,
+        DownstreamLimiters limiters,
+        @Value("${ollama.url:http://localhost:11434}") String generateUrl,
+        @Value("${rag.embeddings.ollamaUrl:${ollama.url:http://localhost:11434}}") String embedUrl,
+        MeterRegistry meterRegistry
+    ) {
+        this.props = props;
+        int maxSticky = Math.max(1, props.getStickyEntries());
+        this.sticky = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Endpoint> eldest) {
+                return size() > maxSticky;
+            }
+        };
+
+        if (props.getEndpoints().isEmpty()) {
+            // no pool configured: the single-server settings
+            if (generateUrl.equals(embedUrl)) {
+                endpoints.add(new Endpoint("ollama", generateUrl, props.getModel(), EnumSet.allOf(Role.class),
+                    httpClients.builder("ollama").baseUrl(generateUrl).build(), limiters.ollama("ollama")));
+            } else {
+                endpoints.add(new Endpoint("ollama-generate", generateUrl, props.getModel(), EnumSet.of(Role.GENERATE),
+                    httpClients.builder("ollama").baseUrl(generateUrl).build(), limiters.ollama("ollama-generate")));
+                endpoints.add(new Endpoint("ollama-embed", embedUrl, props.getModel(), EnumSet.of(Role.EMBED),
+                    httpClients.builder("ollama").baseUrl(embedUrl).build(), limiters.ollama("ollama-embed")));
+            }
+        } else {
+            for (ModelEndpointProperties.Backend b : props.getEndpoints()) {
+                String name = b.getName() != null ? b.getName() : b.getUrl();
+                String model = b.getModel() != null ? b.getModel() : props.getModel();
+                Set<Role> roles = b.getRoles() == null || b.getRoles().isEmpty()
+                    ? EnumSet.allOf(Role.class) : EnumSet.copyOf(b.getRoles());
+                endpoints.add(new Endpoint(name, b.getUrl(), model, roles,
+                    httpClients.builder("ollama").baseUrl(b.getUrl()).build(), limiters.ollama(name)));
+            }
+        }
+
+        for (Endpoint e : endpoints) {
+            Gauge.builder("llm.endpoint.outstanding", e, Endpoint::outstanding).tag("endpoint", e.name).register(meterRegistry);
+            Gauge.builder("llm.endpoint.latency", e, Endpoint::latencyMillis).tag("endpoint", e.name)
+                .baseUnit("milliseconds").register(meterRegistry);
+            Gauge.builder("llm.endpoint.available", e, ep -> ep.available(System.nanoTime()) ? 1 : 0)
+                .tag("endpoint", e.name).register(meterRegistry);
+        }
+        FunctionCounter.builder("llm.failovers", failovers, AtomicLong::get).register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void startHealthChecks() {
+        long every = Math.max(1, props.getHealthInterval().toMillis());
+        healthChecker.scheduleWithFixedDelay(this::checkHealth, 0, every, TimeUnit.MILLISECONDS);
+        for (Endpoint e : endpoints) System.out.println("🧠 [LLM] Endpoint " + e.name + " at " + e.url + " " + e.roles);
+    }
+
+    private void checkHealth() {
+        for (Endpoint e : endpoints) {
+            e.client.get().uri("/api/tags")
+                .retrieve()
+                .toBodilessEntity()
+                .timeout(props.getHealthTimeout())
+                .subscribe(ok -> setHealthy(e, true, null), err -> setHealthy(e, false, err));
+        }
+    }
+
+    private void setHealthy(Endpoint e, boolean healthy, Throwable err) {
+        if (e.healthy == healthy) return;
+        e.healthy = healthy;
+        if (healthy) System.out.println("✅ [LLM] " + e.name + " passed its health check");
+        else System.err.println("⚠️ [LLM] " + e.name + " failed its health check: " + err.getMessage());
+    }
+
+    /**
+     * Run a streamed call on a chosen endpoint, failing over to the others while nothing
+     * has been emitted. {@code stickyKey} may be null.
+     */
+    public <T> Flux<T> stream(Role role, String stickyKey, Function<Endpoint, Flux<T>> call) {
+        return Flux.defer(() -> attempt(role, stickyKey, call, new HashSet<>()));
+    }
+
+    /** {@link #stream} for a call with a single result */
+    public <T> Mono<T> exchange(Role role, String stickyKey, Function<Endpoint, Mono<T>> call) {
+        return stream(role, stickyKey, ep -> call.apply(ep).flux()).singleOrEmpty();
+    }
+
+    private <T> Flux<T> attempt(Role role, String stickyKey, Function<Endpoint, Flux<T>> call, Set<Endpoint> tried) {
+        Endpoint ep = pick(role, stickyKey, tried);
+        if (ep == null) return Flux.error(new IllegalStateException("No LLM endpoint serves " + role));
+        tried.add(ep);
+
+        long start = System.nanoTime();
+        boolean trial = claim(ep, start);
+        AtomicBoolean emitted = new AtomicBoolean();
+        ep.outstanding.incrementAndGet();
+        return Flux.defer(() -> call.apply(ep))
+            .doOnNext(item -> {
+                if (emitted.compareAndSet(false, true)) ep.recordLatency(System.nanoTime() - start);
+            })
+            .doOnComplete(() -> {
+                if (!emitted.get()) ep.recordLatency(System.nanoTime() - start);
+                ep.recordSuccess();
+            })
+            .doFinally(signal -> {
+                ep.outstanding.decrementAndGet();
+                // every ending (success, any error, cancel) frees the half-open slot for the next trial
+                if (trial) ep.trialInFlight.set(false);
+            })
+            .onErrorResume(e -> {
+                if (!endpointFault(e)) return Flux.error(e);
+                ep.recordFailure(e, trial);
+                if (emitted.get() || tried.size() >= candidates(role)) return Flux.error(e);
+                failovers.incrementAndGet();
+                System.err.println("↪️ [LLM] " + role + " call to " + ep.name + " failed, trying another endpoint: " + e.getMessage());
+                return attempt(role, stickyKey, call, tried);
+            });
+    }
+
+    /** Errors that say something about the endpoint, as opposed to the request or our own limits */
+    private static boolean endpointFault(Throwable e) {
+        if (e instanceof WebClientResponseException r) return r.getStatusCode().is5xxServerError();
+        return e instanceof WebClientRequestException || e instanceof TimeoutException
+            || e instanceof IOException;
+    }
+
+    private Endpoint pick(Role role, String stickyKey, Set<Endpoint> exclude) {
+        long now = System.nanoTime();
+        if (stickyKey != null && exclude.isEmpty()) {
+            Endpoint bound;
+            synchronized (sticky) {
+                bound = sticky.get(stickyKey);
+            }
+            if (bound != null && bound.roles.contains(role) && bound.available(now)) return bound;
+        }
+
+        Endpoint best = choose(role, exclude, now, true);
+        if (best == null) best = choose(role, exclude, now, false);
+        if (best == null) return null;
+        if (stickyKey != null) {
+            synchronized (sticky) {
+                sticky.put(stickyKey, best);
+            }
+        }
+        return best;
+    }
+
+    private Endpoint choose(Role role, Set<Endpoint> exclude, long now, boolean availableOnly) {
+        Endpoint best = null;
+        double bestScore = Double.MAX_VALUE;
+        for (Endpoint e : endpoints) {
+            if (!e.roles.contains(role) || exclude.contains(e)) continue;
+            if (availableOnly && !e.available(now)) continue;
+            double score = e.score();
+            if (score < bestScore) {
+                best = e;
+                bestScore = score;
+            }
+        }
+        return best;
+    }
+
+    /** A call on an endpoint whose circuit is half-open is its trial; true if this call took that slot */
+    private static boolean claim(Endpoint e, long now) {
+        long until = e.openUntil;
+        return until != 0 && now - until >= 0 && e.trialInFlight.compareAndSet(false, true);
+    }
+
+    /** Endpoints serving {@code role} that would be picked right now; capacity scales with this */
+    public int available(Role role) {
+        long now = System.nanoTime();
+        int n = 0;
+        for (Endpoint e : endpoints) if (e.roles.contains(role) && e.available(now)) n++;
+        return n;
+    }
+
+    private int candidates(Role role) {
+        int n = 0;
+        for (Endpoint e : endpoints) if (e.roles.contains(role)) n++;
+        return n;
+    }
+
+    public List<Endpoint> endpoints() { return List.copyOf(endpoints); }
+    public long failovers() { return failovers.get(); }
+
+    @PreDestroy
+    public void shutdown() {
+        healthChecker.shutdownNow();
+    }
+}
@@ -0,0 +1,108 @@
+package com.chatbot.service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteBufferFeeder;
+
+import reactor.core.publisher.Flux;
+
+/**
+ * Decodes the body of a streamed Ollama {@code /api/generate} call (one JSON object per
+ * line) as the bytes arrive, with Jackson's non-blocking parser. Only the top-level
+ * {@code response}, {@code done} and {@code error} fields are looked at; everything
+ * else, including the final frame's large {@code context} array, is skipped token by
+ * token without building maps or strings. Frames may be split anywhere across buffers.
+ */
+public final class OllamaStreamDecoder {
+
+    private static final int NONE = 0, RESPONSE = 1, DONE = 2, ERROR = 3;
+
+    private final JsonParser parser;
+    private final ByteBufferFeeder feeder;
+    private int depth;
+    private int field = NONE;
+    private boolean done;
+
+    public OllamaStreamDecoder(JsonFactory factory) throws IOException {
+        this.parser = factory.createNonBlockingByteBufferParser();
+        this.feeder = (ByteBufferFeeder) parser.getNonBlockingInputFeeder();
+    }
+
+    /** Token text from the streamed body, in order; fails if Ollama reports an error */
+    public static Flux<String> tokens(Flux<DataBuffer> body, JsonFactory factory) {
+        return Flux.defer(() -> {
+            OllamaStreamDecoder decoder;
+            try {
+                decoder = new OllamaStreamDecoder(factory);
+            } catch (IOException e) {
+                return Flux.error(e);
+            }
+            return body.concatMapIterable(buffer -> {
+                List<String> out = new ArrayList<>(4);
+                try (DataBuffer.ByteBufferIterator it = buffer.readableByteBuffers()) {
+                    while (it.hasNext()) decoder.feed(it.next(), out::add);
+                } catch (IOException e) {
+                    throw new IllegalStateException("Bad stream from Ollama: " + e.getMessage(), e);
+                } finally {
+                    DataBufferUtils.release(buffer);
+                }
+                return out;
+            });
+        });
+    }
+
+    /** Feed the next bytes; every {@code response} value completed by them goes to {@code sink} */
+    public void feed(ByteBuffer bytes, Consumer<String> sink) throws IOException {
+        feeder.feedInput(bytes);
+        JsonToken t;
+        while ((t = parser.nextToken()) != null && t != JsonToken.NOT_AVAILABLE) {
+            switch (t) {
+                case START_OBJECT, START_ARRAY -> depth++;
+                case END_OBJECT, END_ARRAY -> depth--;
+                case FIELD_NAME -> {
+                    if (depth == 1) field = fieldOf(parser.currentName());
+                }
+                default -> {
+                    if (depth == 1) value(t, sink);
+                }
+            }
+        }
+    }
+
+    private void value(JsonToken t, Consumer<String> sink) throws IOException {
+        switch (field) {
+            case RESPONSE -> {
+                if (t == JsonToken.VALUE_STRING && parser.getTextLength() > 0) sink.accept(parser.getText());
+            }
+            case DONE -> done = t == JsonToken.VALUE_TRUE;
+            case ERROR -> throw new IOException("Ollama error: " + parser.getText());
+            default -> { }
+        }
+        field = NONE;
+    }
+
+    private static int fieldOf(String name) {
+        // names come from the parser's symbol table, so this compares without allocating
+        return switch (name) {
+            case "response" -> RESPONSE;
+            case "done" -> DONE;
+            case "error" -> ERROR;
+            default -> NONE;
+        };
+    }
+
+    /** True once a frame with {@code "done": true} has been read */
+    public boolean isDone() {
+        return done;
+    }
+}
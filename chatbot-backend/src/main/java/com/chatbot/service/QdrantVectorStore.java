@@ -0,0 +1,194 @@
+package com.chatbot.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+import com.chatbot.config.HttpClients;
+
+import reactor.core.publisher.Mono;
+
+/** Qdrant over HTTP; the default backend (rag.vector.backend=qdrant) */
+@Service
+@ConditionalOnProperty(name = "rag.vector.backend", havingValue = "qdrant", matchIfMissing = true)
+public class QdrantVectorStore implements VectorStore {
+
+    private final WebClient qdrant;
+    private final String collection;
+    private final EmbeddingService embeddings;
+
+    public QdrantVectorStore(
+        EmbeddingService embeddings,
+        @Value("${rag.qdrant.url}") String qdrantUrl,
+        @Value("${rag.qdrant.collection}") String collection,
+        DownstreamLimiters limiters,
+        HttpClients httpClients
+    ) {
+        this.embeddings = embeddings;
+        this.qdrant = httpClients.builder("qdrant").baseUrl(qdrantUrl).filter(limiters.qdrant().filter()).build();
+        this.collection = collection;
+    }
+
+    @PostConstruct
+    public void ensureCollection() {
+        int dim = embeddings.embeddingDimension();
+
+        Map<String, Object> vectors = new HashMap<>();
+        vectors.put("size", dim);
+        vectors.put("distance", "Cosine");
+
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("vectors", vectors);
+
+        qdrant.put()
+            .uri("/collections/{name}", collection)
+            .contentType(MediaType.APPLICATION_JSON)
+            .bodyValue(payload)
+            .retrieve()
+            .bodyToMono(Map.class)
+            .onErrorResume(e -> qdrant.get().uri("/collections/{name}", collection)
+                .retrieve().bodyToMono(Map.class))
+            .block();
+    }
+
+    @Override
+    public boolean upsertBatch(List<Map<String, Object>> points) {
+        if (points.isEmpty()) return true;
+
+        Map<String, Object> body = new HashMap<>();
+        body.put("points", points);
+
+        try {
+            qdrant.put()
+                .uri("/collections/{name}/points?wait=true", collection)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(body)
+                .retrieve()
+                .bodyToMono(Map.class)
+                .block();
+            return true;
+        } catch (WebClientResponseException e) {
+            System.err.println("Failed to upsert " + points.size() + " points: " + e.getResponseBodyAsString());
+            return false;
+        }
+    }
+
+    @Override
+    public boolean delete(Collection<String> ids) {
+        if (ids.isEmpty()) return true;
+
+        try {
+            qdrant.post()
+                .uri("/collections/{name}/points/delete?wait=true", collection)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(Map.of("points", ids))
+                .retrieve()
+                .bodyToMono(Map.class)
+                .block();
+            return true;
+        } catch (WebClientResponseException e) {
+            System.err.println("Failed to delete " + ids.size() + " points: " + e.getResponseBodyAsString());
+            return false;
+        }
+    }
+
+    /** Page through the collection with scroll, ids only */
+    @Override
+    @SuppressWarnings("unchecked")
+    public Set<String> pointIds(String docKey) {
+        Set<String> ids = new HashSet<>();
+        Object offset = null;
+        do {
+            Map<String, Object> body = new HashMap<>();
+            body.put("filter", mustMatch(Map.of("docKey", docKey)));
+            body.put("limit", 256);
+            body.put("with_payload", false);
+            body.put("with_vector", false);
+            if (offset != null) body.put("offset", offset);
+
+            Map<String, Object> resp = qdrant.post()
+                .uri("/collections/{name}/points/scroll", collection)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(body)
+                .retrieve()
+                .bodyToMono(Map.class)
+                .block();
+            Map<String, Object> result = resp == null ? null : (Map<String, Object>) resp.get("result");
+            if (result == null) break;
+
+            for (Map<String, Object> point : (List<Map<String, Object>>) result.getOrDefault("points", List.of())) {
+                ids.add(String.valueOf(point.get("id")));
+            }
+            offset = result.get("next_page_offset");
+        } while (offset != null);
+        return ids;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean hasDocument(String docKey, String docHash, int chunks) {
+        Map<String, Object> body = new HashMap<>();
+        body.put("filter", mustMatch(Map.of("docKey", docKey, "docHash", docHash)));
+        body.put("exact", true);
+
+        try {
+            Map<String, Object> resp = qdrant.post()
+                .uri("/collections/{name}/points/count", collection)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(body)
+                .retrieve()
+                .bodyToMono(Map.class)
+                .block();
+            Map<String, Object> result = resp == null ? null : (Map<String, Object>) resp.get("result");
+            return result != null && ((Number) result.getOrDefault("count", 0)).longValue() == chunks;
+        } catch (WebClientResponseException e) {
+            System.err.println("Failed to count points for " + docKey + ": " + e.getResponseBodyAsString());
+            return false;
+        }
+    }
+
+    @Override
+    public List<Map<String, Object>> search(float[] queryVector, int topK, Map<String, Object> filter) {
+        return searchAsync(queryVector, topK, filter).block();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Mono<List<Map<String, Object>>> searchAsync(float[] queryVector, int topK, Map<String, Object> filter) {
+        Map<String, Object> body = new HashMap<>();
+        body.put("vector", queryVector);
+        body.put("limit", topK);
+        body.put("with_payload", true);
+        if (filter != null && !filter.isEmpty()) {
+            body.put("filter", mustMatch(filter));
+        }
+
+        return qdrant.post()
+            .uri("/collections/{name}/points/search", collection)
+            .contentType(MediaType.APPLICATION_JSON)
+            .bodyValue(body)
+            .retrieve()
+            .bodyToMono(Map.class)
+            .map(resp -> (List<Map<String, Object>>) resp.getOrDefault("result", new ArrayList<>()))
+            .defaultIfEmpty(new ArrayList<>());
+    }
+
+    /** Qdrant filter requiring every payload key to equal the given value */
+    private static Map<String, Object> mustMatch(Map<String, Object> filter) {
+        List<Map<String, Object>> must = new ArrayList<>();
+        filter.forEach((key, value) -> must.add(Map.of("key", key, "match", Map.of("value", value))));
+        return Map.of("must", must);
+    }
+}
@@ -1,54 +1,93 @@
 package com.chatbot.service;
 
+import java.io.Reader;
 import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
 import java.util.*;
 import java.util.concurrent.*;
-import java.util.stream.Collectors;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
+import com.chatbot.config.ThreadPools;
 import com.chatbot.model.UploadedFile;
 import com.chatbot.model.Resource;
 import com.chatbot.repository.ResourceRepository;
 
+/**
+ * Retrieval for the chat: documents are chunked and indexed through the
+ * {@link IndexingPipeline}, and a query is answered by a vector search and a BM25
+ * search ({@link LexicalIndex}) run side by side, their rankings merged with
+ * reciprocal-rank fusion ({@code rag.hybrid.rrfK}).
+ */
 @Service
 public class RagService {
 
+    private static final Duration SEARCH_TIMEOUT = Duration.ofSeconds(3);
+
     private final EmbeddingService embeddingService;
-    private final VectorStoreService vectorStore;
+    private final VectorStore vectorStore;
+    private final LexicalIndex lexicalIndex;
+    private final IndexingPipeline indexingPipeline;
+    private final ContextAssembler contextAssembler;
     private final ResourceRepository resourceRepository;
-    private final int chunkSize;
-    private final int overlap;
+    private final int chunkTokens;
+    private final int overlapTokens;
     private final int topK;
+    private final int contextCandidates;
+    private final int rrfK;
 
-    // Cache for query embeddings to avoid repeated computation
-    private final Map<String, float[]> queryEmbeddingCache = new ConcurrentHashMap<>();
-    private final ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+    // Bounded cache for query embeddings, keyed on the normalized query
+    private final EmbeddingCache queryEmbeddingCache;
+    private final ExecutorService executor;
 
     public RagService(
         EmbeddingService embeddingService,
-        VectorStoreService vectorStore,
+        VectorStore vectorStore,
+        LexicalIndex lexicalIndex,
+        IndexingPipeline indexingPipeline,
+        ContextAssembler contextAssembler,
         ResourceRepository resourceRepository,
-        @Value("${rag.chunk.size}") int chunkSize,
-        @Value("${rag.chunk.overlap}") int overlap,
-        @Value("${rag.search.topK}") int topK
+        @Value("${rag.chunk.maxTokens:225}") int chunkTokens,
+        @Value("${rag.chunk.overlapTokens:40}") int overlapTokens,
+        @Value("${rag.search.topK}") int topK,
+        @Value("${rag.context.candidates:12}") int contextCandidates,
+        @Value("${rag.hybrid.rrfK:60}") int rrfK,
+        @Value("${rag.cache.query.maxEntries:2000}") int queryCacheEntries,
+        @Value("${rag.cache.query.ttl:6h}") Duration queryCacheTtl,
+        @Value("${rag.cache.query.encoding:FLOAT16}") EmbeddingCache.Encoding queryCacheEncoding,
+        ThreadPools threadPools,
+        MeterRegistry meterRegistry
     ) {
         this.embeddingService = embeddingService;
         this.vectorStore = vectorStore;
+        this.lexicalIndex = lexicalIndex;
+        this.indexingPipeline = indexingPipeline;
+        this.contextAssembler = contextAssembler;
         this.resourceRepository = resourceRepository;
-        this.chunkSize = chunkSize;
-        this.overlap = overlap;
+        this.chunkTokens = chunkTokens;
+        this.overlapTokens = overlapTokens;
         this.topK = topK;
+        this.contextCandidates = Math.max(topK, contextCandidates);
+        this.rrfK = Math.max(1, rrfK);
+        this.queryEmbeddingCache = new EmbeddingCache("query", queryCacheEntries, queryCacheTtl, queryCacheEncoding)
+            .bindTo(meterRegistry);
+        this.executor = threadPools.newPool("rag-search", Runtime.getRuntime().availableProcessors());
     }
 
+    /** Unchanged resources are skipped (see {@link #indexLogicalDoc}), so restarts re-embed nothing */
     @PostConstruct
     public void seedResourcesIntoVectors() {
         List<Resource> all = resourceRepository.findAll();
         for (Resource r : all) {
             String doc = buildResourceDoc(r);
-            indexLogicalDoc(doc, Map.of(
+            indexLogicalDoc("resource:" + r.getName(), doc, Map.of(
                 "type", "resource",
                 "name", r.getName(),
                 "driveLink", r.getDriveLink(),
@@ -70,68 +109,204 @@ public class RagService {
             );
     }
 
-    /** Index any logical document (string). Chunk + embed + upsert using UUIDs for point IDs */
-    public void indexLogicalDoc(String text, Map<String,Object> payloadBase) {
-        List<String> chunks = Chunker.chunk(text, chunkSize, overlap);
-        for (String chunk : chunks) {
-            String id = UUID.randomUUID().toString();
-            float[] vec = embeddingService.embed(chunk);
-            Map<String,Object> payload = new HashMap<>(payloadBase);
-            payload.put("text", chunk);
-            vectorStore.upsert(id, vec, payload);
+    /**
+     * Index any logical document (string). Chunks are embedded and upserted in batches by the pipeline.
+     * Every point carries {@code docKey} and {@code docHash}; if the store already holds every
+     * chunk of this exact content the document is skipped (unless the lexical index lacks some,
+     * which the pipeline then fills in without re-embedding). A partly stored version is
+     * indexed again, which only embeds the chunks it is missing.
+     */
+    public IndexProgress indexLogicalDoc(String docKey, String text, Map<String,Object> payloadBase) {
+        String docHash = contentHash(text);
+        List<String> chunks = new ArrayList<>();
+        Chunker.stream(text, chunkTokens, overlapTokens).forEachRemaining(chunks::add);
+        if (vectorStore.hasDocument(docKey, docHash, chunks.size())
+                && lexicalIndex.hasDocument(docKey, docHash, chunks.size())) {
+            return indexingPipeline.unchanged(docKey);
         }
+
+        Map<String,Object> payload = new HashMap<>(payloadBase);
+        payload.put("docKey", docKey);
+        payload.put("docHash", docHash);
+
+        return indexingPipeline.index(docKey, chunks.iterator(), payload);
+    }
+
+    /** SHA-256 of a document's text, hex encoded */
+    public static String contentHash(String text) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public static String docKey(UploadedFile file) {
+        return docKey(file.getFileName());
+    }
+
+    public static String docKey(String fileName) {
+        return "file:" + fileName;
     }
 
-    /** Index an uploaded text file */
-    public void indexFile(UploadedFile file) {
-        String content = file.getTextContent() != null
-            ? file.getTextContent()
-            : new String(file.getData(), StandardCharsets.UTF_8);
+    /** Index an uploaded file from its stored text preview */
+    public IndexProgress indexFile(UploadedFile file) {
+        String content = file.getTextContent() != null ? file.getTextContent() : "";
 
+        return indexLogicalDoc(docKey(file), content, filePayload(file.getFileName(), file.getFileType()));
+    }
+
+    /**
+     * Index a file's text while it is being extracted; the chunker pulls from {@code text}.
+     * Unchanged chunks are skipped by the pipeline, so no whole-document hash is needed up front.
+     */
+    public IndexProgress indexFileText(String fileName, String fileType, Reader text) {
+        return indexFileText(fileName, fileType, text, true);
+    }
+
+    /**
+     * With {@code commit} false the previous version stays searchable alongside the new one
+     * until {@link #commitIndexed} (or {@link #discardIndexed} if storing the file failed).
+     */
+    public IndexProgress indexFileText(String fileName, String fileType, Reader text, boolean commit) {
+        String docKey = docKey(fileName);
+        Map<String,Object> payload = filePayload(fileName, fileType);
+        payload.put("docKey", docKey);
+        return indexingPipeline.index(docKey, Chunker.stream(text, chunkTokens, overlapTokens), payload, commit);
+    }
+
+    public void commitIndexed(IndexProgress p) {
+        indexingPipeline.commit(p);
+    }
+
+    public void discardIndexed(IndexProgress p) {
+        indexingPipeline.rollback(p);
+    }
+
+    private static Map<String,Object> filePayload(String fileName, String fileType) {
         Map<String,Object> payload = new HashMap<>();
         payload.put("type", "file");
-        payload.put("fileName", file.getFileName());
-        payload.put("fileType", file.getFileType());
+        payload.put("fileName", fileName);
+        payload.put("fileType", fileType);
+        return payload;
+    }
 
-        indexLogicalDoc(content, payload);
+    public IndexProgress indexingProgress(String docKey) {
+        return indexingPipeline.progress(docKey);
     }
 
-    /** Retrieve topK chunks for a query (parallel + cached embeddings) */
+    /** Progress of every document indexed since startup */
+    public Collection<IndexProgress> indexingProgress() {
+        return indexingPipeline.progress();
+    }
+
+    /** Retrieve topK chunks for a query (lexical and vector search in parallel, cached embeddings) */
     public List<Map<String,Object>> retrieve(String query) {
-        // Get embedding from cache or compute
-        float[] qv = queryEmbeddingCache.computeIfAbsent(query, embeddingService::embed);
+        return retrieve(query, topK);
+    }
 
-        // Can parallelize search if vectorStore supports batch search
+    public List<Map<String,Object>> retrieve(String query, int limit) {
+        // BM25 runs on the pool while the query is embedded and searched
+        CompletableFuture<List<Map<String,Object>>> lexical =
+            CompletableFuture.supplyAsync(() -> lexicalIndex.search(query, limit), executor);
+
+        List<Map<String,Object>> vectorHits;
         try {
-            CompletableFuture<List<Map<String,Object>>> future = CompletableFuture.supplyAsync(() -> vectorStore.search(qv, topK), executor);
-            return future.get(3, TimeUnit.SECONDS); // timeout to prevent long waits
+            float[] qv = embedQuery(query);
+            CompletableFuture<List<Map<String,Object>>> future = CompletableFuture.supplyAsync(() -> vectorStore.search(qv, limit), executor);
+            vectorHits = future.get(SEARCH_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS); // timeout to prevent long waits
         } catch (Exception e) {
             e.printStackTrace();
-            return Collections.emptyList();
+            vectorHits = Collections.emptyList();
         }
+
+        List<Map<String,Object>> lexicalHits;
+        try {
+            lexicalHits = lexical.get(SEARCH_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+            System.err.println("⚠️ [RAG] Lexical search failed: " + e.getMessage());
+            lexicalHits = Collections.emptyList();
+        }
+        return fuse(vectorHits, lexicalHits, limit);
     }
 
-    /** Build compact context block (null-safe) */
+    /**
+     * Reciprocal-rank fusion: each hit scores {@code sum 1 / (rrfK + rank)} over the
+     * rankings it appears in (rank from 1), so agreement between the two searches wins
+     * and neither side's raw scores need to be comparable.
+     */
+    List<Map<String,Object>> fuse(List<Map<String,Object>> vectorHits, List<Map<String,Object>> lexicalHits, int limit) {
+        if (lexicalHits.isEmpty()) return vectorHits.size() <= limit ? vectorHits : vectorHits.subList(0, limit);
+
+        Map<String, Map<String,Object>> byId = new LinkedHashMap<>();
+        Map<String, Double> scores = new HashMap<>();
+        for (List<Map<String,Object>> ranking : List.of(vectorHits, lexicalHits)) {
+            for (int rank = 0; rank < ranking.size(); rank++) {
+                Map<String,Object> hit = ranking.get(rank);
+                String id = String.valueOf(hit.get("id"));
+                byId.putIfAbsent(id, hit);
+                scores.merge(id, 1.0 / (rrfK + rank + 1), Double::sum);
+            }
+        }
+        List<String> ids = new ArrayList<>(byId.keySet());
+        ids.sort((a, b) -> Double.compare(scores.get(b), scores.get(a)));
+
+        List<Map<String,Object>> fused = new ArrayList<>(Math.min(limit, ids.size()));
+        for (String id : ids.subList(0, Math.min(limit, ids.size()))) {
+            Map<String,Object> hit = new HashMap<>(byId.get(id));
+            hit.put("score", scores.get(id));
+            fused.add(hit);
+        }
+        return fused;
+    }
+
+    /** Query embedding, served from the cache when an equivalent query was seen recently */
+    public float[] embedQuery(String query) {
+        String key = EmbeddingCache.normalizeQuery(query);
+        return queryEmbeddingCache.getOrCompute(key, k -> embeddingService.embed(query));
+    }
+
+    /** Non-blocking {@link #embedQuery}: a cache hit does no I/O, a miss calls the embedding API reactively */
+    public Mono<float[]> embedQueryAsync(String query) {
+        String key = EmbeddingCache.normalizeQuery(query);
+        return Mono.defer(() -> {
+            float[] cached = queryEmbeddingCache.get(key);
+            if (cached != null) return Mono.just(cached);
+            return embeddingService.embedAsync(query)
+                .doOnNext(vector -> {
+                    if (vector.length > 0) queryEmbeddingCache.put(key, vector);
+                });
+        });
+    }
+
+    /**
+     * Non-blocking {@link #buildContext} for an already embedded query. Like {@link #retrieve},
+     * a failed or slow search yields no context rather than an error.
+     */
+    public Mono<String> buildContextAsync(String query, float[] queryVector) {
+        Mono<List<Map<String,Object>>> vectorHits = vectorStore.searchAsync(queryVector, contextCandidates, Map.of())
+            .timeout(SEARCH_TIMEOUT)
+            .onErrorResume(e -> {
+                System.err.println("⚠️ [RAG] Search failed, answering without vector context: " + e.getMessage());
+                return Mono.just(List.of());
+            });
+        Mono<List<Map<String,Object>>> lexicalHits = Mono.fromCallable(() -> lexicalIndex.search(query, contextCandidates))
+            .subscribeOn(Schedulers.parallel())
+            .onErrorResume(e -> {
+                System.err.println("⚠️ [RAG] Lexical search failed: " + e.getMessage());
+                return Mono.just(List.of());
+            });
+        return Mono.zip(vectorHits, lexicalHits)
+            .map(both -> fuse(both.getT1(), both.getT2(), contextCandidates))
+            .map(hits -> hits.isEmpty() ? "" : contextAssembler.assemble(hits));
+    }
+
+    /** Build a token-bounded context block from the retrieved chunks only (null-safe) */
     public String buildContext(String query) {
-        List<Map<String,Object>> hits = retrieve(query);
+        List<Map<String,Object>> hits = retrieve(query, contextCandidates);
         if (hits.isEmpty()) return "";
-
-        return hits.stream()
-            .map(hit -> {
-                @SuppressWarnings("unchecked")
-                Map<String,Object> payload = (Map<String,Object>) hit.get("payload");
-                if (payload == null) payload = new HashMap<>();
-
-                String text = String.valueOf(payload.getOrDefault("text", ""));
-                String name = String.valueOf(payload.getOrDefault("name", ""));
-                String drive = String.valueOf(payload.getOrDefault("driveLink", ""));
-
-                if (!drive.isBlank()) {
-                    return "**" + name + "** — " + drive + "\n" + text;
-                }
-                return text;
-            })
-            .collect(Collectors.joining("\n---\n"));
+        return contextAssembler.assemble(hits);
     }
 
     // Shutdown executor when service stops
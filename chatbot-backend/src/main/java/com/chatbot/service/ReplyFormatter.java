@@ -0,0 +1,58 @@
+package com.chatbot.service;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * {@link ChatGPTService#cleanAndFormatResponse} for a reply that arrives in pieces.
+ * Text is held back only until a point where no formatting rule can reach across:
+ * between two "plain" characters (not whitespace, digits, {@code * - :} or the
+ * letters of AM/PM). Formatting the pieces cut there and joining them gives exactly
+ * what formatting the whole reply would, and no piece after the first starts or
+ * ends with whitespace.
+ */
+public final class ReplyFormatter {
+
+    private final StringBuilder pending = new StringBuilder();
+
+    /** Add the next chunk; returns formatted text that can be sent now (possibly empty) */
+    public String accept(String chunk) {
+        pending.append(chunk);
+        int cut = lastSafeCut();
+        if (cut <= 0) return "";
+        String ready = pending.substring(0, cut);
+        pending.delete(0, cut);
+        return ChatGPTService.cleanAndFormatResponse(ready);
+    }
+
+    /** Format whatever is still held back; call once, after the last chunk */
+    public String finish() {
+        String rest = ChatGPTService.cleanAndFormatResponse(pending.toString());
+        pending.setLength(0);
+        return rest;
+    }
+
+    /** Format a stream of chunks as they arrive */
+    public static Flux<String> format(Flux<String> chunks) {
+        return Flux.defer(() -> {
+            ReplyFormatter formatter = new ReplyFormatter();
+            return chunks.map(formatter::accept)
+                .concatWith(Mono.fromCallable(formatter::finish))
+                .filter(text -> !text.isEmpty());
+        });
+    }
+
+    private int lastSafeCut() {
+        for (int i = pending.length() - 1; i > 0; i--) {
+            char before = pending.charAt(i - 1);
+            // never between the halves of a surrogate pair (emoji)
+            if (plain(pending.charAt(i)) && plain(before) && !Character.isHighSurrogate(before)) return i;
+        }
+        return -1;
+    }
+
+    private static boolean plain(char c) {
+        return !Character.isWhitespace(c) && !Character.isDigit(c)
+            && c != '*' && c != '-' && c != ':' && c != 'A' && c != 'P' && c != 'M';
+    }
+}
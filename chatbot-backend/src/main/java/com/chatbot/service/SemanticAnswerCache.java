@@ -0,0 +1,182 @@
+package com.chatbot.service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import com.chatbot.event.CorpusChangedEvent;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Answer cache in front of the LLM for the general chat path.
+ * A cached answer is reused when a new question embeds within
+ * {@code chat.answerCache.threshold} cosine similarity of an earlier one AND the
+ * retrieved context is byte-identical to what that answer was generated from. The
+ * prompt also states the current time to the minute, so callers fingerprint that too
+ * and an answer is not served once the time it was given at has passed.
+ * Any change to uploaded files or resources clears the cache.
+ */
+@Service
+public class SemanticAnswerCache {
+
+    private final boolean enabled;
+    private final double threshold;
+    private final int maxEntries;
+    private final long ttlNanos;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Deque<Entry> entries = new ArrayDeque<>(); // newest first
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    public SemanticAnswerCache(
+        @Value("${chat.answerCache.enabled:true}") boolean enabled,
+        @Value("${chat.answerCache.threshold:0.92}") double threshold,
+        @Value("${chat.answerCache.maxEntries:500}") int maxEntries,
+        @Value("${chat.answerCache.ttl:10m}") Duration ttl,
+        MeterRegistry meterRegistry
+    ) {
+        this.enabled = enabled;
+        this.threshold = threshold;
+        this.maxEntries = Math.max(1, maxEntries);
+        this.ttlNanos = ttl.toNanos();
+
+        FunctionCounter.builder("chat.answer.cache.hits", hits, AtomicLong::get).register(meterRegistry);
+        FunctionCounter.builder("chat.answer.cache.misses", misses, AtomicLong::get).register(meterRegistry);
+        FunctionCounter.builder("chat.answer.cache.invalidations", invalidations, AtomicLong::get).register(meterRegistry);
+        Gauge.builder("chat.answer.cache.size", this, SemanticAnswerCache::size).register(meterRegistry);
+    }
+
+    /** Stable fingerprint of the prompt context an answer was generated from */
+    public static String fingerprint(String context) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(context.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public Optional<String> lookup(float[] queryVector, String contextFingerprint) {
+        if (!enabled || queryVector == null) return Optional.empty();
+
+        float[] q = unit(queryVector);
+        long now = System.nanoTime();
+        Entry best = null;
+        double bestScore = threshold;
+
+        lock.readLock().lock();
+        try {
+            for (Entry e : entries) {
+                if (now - e.createdAt > ttlNanos) continue;
+                if (!e.contextFingerprint.equals(contextFingerprint)) continue;
+                double score = dot(q, e.vector);
+                if (score >= bestScore) {
+                    bestScore = score;
+                    best = e;
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        if (best == null) {
+            misses.incrementAndGet();
+            return Optional.empty();
+        }
+        hits.incrementAndGet();
+        return Optional.of(best.answer);
+    }
+
+    public void store(float[] queryVector, String contextFingerprint, String answer) {
+        if (!enabled || queryVector == null || answer == null || answer.isBlank()) return;
+
+        Entry entry = new Entry(unit(queryVector), contextFingerprint, answer);
+        long now = System.nanoTime();
+        lock.writeLock().lock();
+        try {
+            entries.addFirst(entry);
+            for (Iterator<Entry> it = entries.descendingIterator(); it.hasNext(); ) {
+                Entry oldest = it.next();
+                if (entries.size() > maxEntries || now - oldest.createdAt > ttlNanos) {
+                    it.remove();
+                } else {
+                    break;
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @EventListener
+    public void onCorpusChanged(CorpusChangedEvent event) {
+        invalidateAll();
+    }
+
+    public void invalidateAll() {
+        lock.writeLock().lock();
+        try {
+            if (!entries.isEmpty()) invalidations.incrementAndGet();
+            entries.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static float[] unit(float[] v) {
+        double norm = 0;
+        for (float f : v) norm += f * f;
+        norm = Math.sqrt(norm);
+        float[] out = new float[v.length];
+        if (norm == 0) return out;
+        for (int i = 0; i < v.length; i++) out[i] = (float) (v[i] / norm);
+        return out;
+    }
+
+    private static double dot(float[] a, float[] b) {
+        if (a.length != b.length) return -1;
+        double sum = 0;
+        for (int i = 0; i < a.length; i++) sum += a[i] * b[i];
+        return sum;
+    }
+
+    private static final class Entry {
+        final float[] vector;
+        final String contextFingerprint;
+        final String answer;
+        final long createdAt = System.nanoTime();
+
+        Entry(float[] vector, String contextFingerprint, String answer) {
+            this.vector = vector;
+            this.contextFingerprint = contextFingerprint;
+            this.answer = answer;
+        }
+    }
+}
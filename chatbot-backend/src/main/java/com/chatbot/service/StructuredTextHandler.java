@@ -0,0 +1,79 @@
+package com.chatbot.service;
+
+import java.io.IOException;
+import java.io.Writer;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * SAX handler for Tika's XHTML events that writes plain text but keeps the document
+ * structure the {@link Chunker} looks for: block elements become paragraph breaks,
+ * headings become {@code # } lines, list items become {@code - } lines. Every character
+ * goes to {@code out}; only the stored preview is capped, and the handler reports how
+ * much was cut so nothing is truncated silently.
+ */
+class StructuredTextHandler extends DefaultHandler {
+
+    private final Writer out;
+    private final StringBuilder preview = new StringBuilder();
+    private final int previewMax;
+    private long chars;
+
+    StructuredTextHandler(Writer out, int previewMax) {
+        this.out = out;
+        this.previewMax = Math.max(0, previewMax);
+    }
+
+    /** Extracted text, cut at {@code previewMax} characters */
+    String preview() { return preview.toString(); }
+    long chars() { return chars; }
+    boolean previewTruncated() { return chars > preview.length(); }
+
+    @Override
+    public void startElement(String uri, String localName, String qName, Attributes atts) throws SAXException {
+        switch (localName) {
+            case "h1", "h2", "h3", "h4", "h5", "h6" -> write("\n\n# ");
+            case "p", "div", "section", "article", "table", "blockquote", "pre", "ul", "ol" -> write("\n\n");
+            case "li" -> write("\n- ");
+            case "tr", "br" -> write("\n");
+            case "td", "th" -> write(" ");
+            default -> { }
+        }
+    }
+
+    @Override
+    public void endElement(String uri, String localName, String qName) throws SAXException {
+        switch (localName) {
+            case "h1", "h2", "h3", "h4", "h5", "h6", "p", "div", "section", "article", "table", "blockquote", "pre",
+                 "ul", "ol" -> write("\n\n");
+            default -> { }
+        }
+    }
+
+    @Override
+    public void characters(char[] ch, int start, int length) throws SAXException {
+        write(ch, start, length);
+    }
+
+    @Override
+    public void ignorableWhitespace(char[] ch, int start, int length) throws SAXException {
+        write(ch, start, length);
+    }
+
+    private void write(String s) throws SAXException {
+        write(s.toCharArray(), 0, s.length());
+    }
+
+    private void write(char[] ch, int start, int length) throws SAXException {
+        try {
+            out.write(ch, start, length);
+        } catch (IOException e) {
+            throw new SAXException(e);
+        }
+        chars += length;
+        int room = previewMax - preview.length();
+        if (room > 0) preview.append(ch, start, Math.min(room, length));
+    }
+}
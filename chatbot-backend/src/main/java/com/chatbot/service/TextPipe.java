@@ -0,0 +1,117 @@
+package com.chatbot.service;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded in-memory pipe from a text producer (the Tika handler) to a consumer on
+ * another thread (the chunker). Unlike PipedReader/PipedWriter it is not tied to
+ * thread liveness, a consumer that closes early makes the producer fail instead of
+ * blocking forever, and a producer failure surfaces as an IOException on the consumer
+ * side rather than as a normal end of text.
+ */
+final class TextPipe {
+
+    private static final String END = new String(); // compared by identity
+    private static final long POLL_MILLIS = 100;
+
+    private final BlockingQueue<String> queue;
+    private volatile boolean readerClosed;
+    private volatile Throwable failure;
+
+    /** {@code capacity} is counted in writes; wrap the writer in a BufferedWriter to batch them */
+    TextPipe(int capacity) {
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, capacity));
+    }
+
+    /** Abort the pipe: the reader throws instead of returning end of text */
+    void fail(Throwable t) {
+        failure = t;
+        queue.offer(END);
+    }
+
+    private void put(String piece) throws IOException {
+        if (readerClosed) throw new IOException("Text consumer stopped reading");
+        try {
+            while (!queue.offer(piece, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                if (readerClosed) throw new IOException("Text consumer stopped reading");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while writing text", e);
+        }
+    }
+
+    Writer writer() {
+        return new Writer() {
+            private boolean closed;
+
+            @Override
+            public void write(char[] cbuf, int off, int len) throws IOException {
+                if (closed) throw new IOException("Writer closed");
+                if (len > 0) put(new String(cbuf, off, len));
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() throws IOException {
+                if (closed) return;
+                closed = true;
+                put(END);
+            }
+        };
+    }
+
+    Reader reader() {
+        return new Reader() {
+            private String current = "";
+            private int pos;
+            private boolean ended;
+
+            @Override
+            public int read(char[] cbuf, int off, int len) throws IOException {
+                if (len == 0) return 0;
+                while (pos == current.length()) {
+                    if (ended) return end();
+                    String next;
+                    try {
+                        next = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new IOException("Interrupted while reading text", e);
+                    }
+                    if (failure != null) return end();
+                    if (next == null) continue;
+                    if (next == END) {
+                        ended = true;
+                        continue;
+                    }
+                    current = next;
+                    pos = 0;
+                }
+                int n = Math.min(len, current.length() - pos);
+                current.getChars(pos, pos + n, cbuf, off);
+                pos += n;
+                return n;
+            }
+
+            private int end() throws IOException {
+                if (failure != null) throw new IOException("Text extraction failed: " + failure.getMessage(), failure);
+                return -1;
+            }
+
+            @Override
+            public void close() {
+                readerClosed = true;
+                queue.clear();
+            }
+        };
+    }
+}
@@ -0,0 +1,421 @@
+package com.chatbot.service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.DayOfWeek;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.format.TextStyle;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Class timetable from {@code timetable.location} (CSV: Day,Time,Batch,Subject with
+ * times like {@code 08:30-09:30}), answered without the LLM. Each weekday's classes
+ * are kept sorted by start time with a running maximum of end times, so "what is on
+ * now" is a binary search plus a short scan back over overlapping slots; classes are
+ * also grouped by batch. "Now" comes from the shared {@link Clock}.
+ * <p>
+ * The file's modification time is checked every {@code timetable.reloadInterval} and
+ * a changed file is loaded into a new index that replaces the old one in one step; a
+ * file that fails to parse leaves the previous timetable in place.
+ */
+@Service
+public class TimetableService {
+
+    private static final Pattern NOW = Pattern.compile("\\b(now|current|currently|ongoing)\\b");
+    private static final Pattern NEXT = Pattern.compile("\\b(next|upcoming)\\b");
+    private static final Pattern TOMORROW = Pattern.compile("\\btomorrow\\b");
+    private static final Pattern TODAY = Pattern.compile("\\btoday\\b");
+
+    private final ResourceLoader resourceLoader;
+    private final String location;
+    private final Clock clock;
+    private final Duration reloadInterval;
+
+    private volatile Timetable timetable = Timetable.build(List.of());
+    private long loadedModified = Long.MIN_VALUE;
+
+    private final ScheduledExecutorService reloader = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "timetable-reload");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public TimetableService(
+        ResourceLoader resourceLoader,
+        Clock clock,
+        @Value("${timetable.location:classpath:full_timetable.csv}") String location,
+        @Value("${timetable.reloadInterval:30s}") Duration reloadInterval
+    ) {
+        this.resourceLoader = resourceLoader;
+        this.clock = clock;
+        this.location = location;
+        this.reloadInterval = reloadInterval;
+    }
+
+    /** One class: a batch's slot on a weekday */
+    public static final class Slot {
+        private final DayOfWeek day;
+        private final LocalTime start;
+        private final LocalTime end;
+        private final String batch;
+        private final String subject;
+
+        Slot(DayOfWeek day, LocalTime start, LocalTime end, String batch, String subject) {
+            this.day = day;
+            this.start = start;
+            this.end = end;
+            this.batch = batch;
+            this.subject = subject;
+        }
+
+        public DayOfWeek getDay() { return day; }
+        public LocalTime getStart() { return start; }
+        public LocalTime getEnd() { return end; }
+        public String getBatch() { return batch; }
+        public String getSubject() { return subject; }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Slot s && day == s.day && start.equals(s.start) && end.equals(s.end)
+                && batch.equals(s.batch) && subject.equals(s.subject);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(day, start, end, batch, subject);
+        }
+    }
+
+    @PostConstruct
+    public void open() {
+        reloadIfChanged();
+        long every = Math.max(1, reloadInterval.toSeconds());
+        reloader.scheduleWithFixedDelay(this::reloadIfChanged, every, every, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void close() {
+        reloader.shutdown();
+    }
+
+    public boolean isEmpty() {
+        return timetable.size == 0;
+    }
+
+    /** Classes in progress at the clock's current time, optionally for one batch */
+    public List<Slot> now(String batch) {
+        LocalDateTime now = LocalDateTime.now(clock);
+        return timetable.at(now.getDayOfWeek(), minutes(now.toLocalTime()), batch);
+    }
+
+    /** The next classes to start after the clock's current time (all starting together), within a week */
+    public List<Slot> next(String batch) {
+        LocalDateTime now = LocalDateTime.now(clock);
+        return timetable.after(now.getDayOfWeek(), minutes(now.toLocalTime()), batch);
+    }
+
+    /** A whole day's classes in start order, optionally for one batch */
+    public List<Slot> on(DayOfWeek day, String batch) {
+        return timetable.on(day, batch);
+    }
+
+    /** Every class of one batch, Monday first */
+    public List<Slot> week(String batch) {
+        return timetable.byBatch.getOrDefault(batch.toLowerCase(Locale.ROOT), List.of());
+    }
+
+    /** The batch a message names (the longest match wins), or null */
+    public String batchIn(String message) {
+        return timetable.batchIn(message.toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * Markdown reply to a lower-cased timetable question: what is on now, next,
+     * today, tomorrow or on a named weekday, or a batch's whole week when only a batch
+     * is named; today's classes otherwise.
+     */
+    public String answer(String message) {
+        if (isEmpty()) return "📅 The timetable is not available right now.";
+        String batch = batchIn(message);
+        String forBatch = batch == null ? "" : " for **" + batch + "**";
+        LocalDateTime now = LocalDateTime.now(clock);
+
+        if (NOW.matcher(message).find()) {
+            List<Slot> current = now(batch);
+            if (!current.isEmpty()) return "🕒 On now" + forBatch + ":\n\n" + lines(current, false);
+            List<Slot> upcoming = next(batch);
+            return "🕒 No class right now" + forBatch + "."
+                + (upcoming.isEmpty() ? "" : " Next up, " + when(upcoming.get(0), now.getDayOfWeek()) + ":\n\n" + lines(upcoming, false));
+        }
+        if (NEXT.matcher(message).find()) {
+            List<Slot> upcoming = next(batch);
+            if (upcoming.isEmpty()) return "📅 No more classes this week" + forBatch + ".";
+            return "⏭️ Next class" + forBatch + ", " + when(upcoming.get(0), now.getDayOfWeek()) + ":\n\n" + lines(upcoming, false);
+        }
+
+        DayOfWeek day;
+        if (TOMORROW.matcher(message).find()) day = now.getDayOfWeek().plus(1);
+        else if (TODAY.matcher(message).find()) day = now.getDayOfWeek();
+        else day = dayIn(message);
+
+        if (day == null && batch != null) {
+            List<Slot> week = week(batch);
+            return "📅 Weekly timetable" + forBatch + ":\n\n" + lines(week, true);
+        }
+        if (day == null) day = now.getDayOfWeek();
+        List<Slot> classes = on(day, batch);
+        String dayName = day.getDisplayName(TextStyle.FULL, Locale.ENGLISH);
+        if (classes.isEmpty()) return "📅 No classes on " + dayName + forBatch + ".";
+        return "📅 " + dayName + forBatch + ":\n\n" + lines(classes, false);
+    }
+
+    private static DayOfWeek dayIn(String message) {
+        for (DayOfWeek d : DayOfWeek.values()) {
+            if (message.contains(d.getDisplayName(TextStyle.FULL, Locale.ENGLISH).toLowerCase(Locale.ROOT))) return d;
+        }
+        return null;
+    }
+
+    private static String when(Slot slot, DayOfWeek today) {
+        String at = "at " + slot.start;
+        if (slot.day == today) return at;
+        if (slot.day == today.plus(1)) return "tomorrow " + at;
+        return "on " + slot.day.getDisplayName(TextStyle.FULL, Locale.ENGLISH) + " " + at;
+    }
+
+    private static String lines(List<Slot> slots, boolean withDay) {
+        StringBuilder out = new StringBuilder();
+        for (Slot s : slots) {
+            if (out.length() > 0) out.append("\n\n");
+            if (withDay) out.append(s.day.getDisplayName(TextStyle.SHORT, Locale.ENGLISH)).append(' ');
+            out.append("**").append(s.start).append('-').append(s.end).append("** ").append(s.batch);
+            if (!s.subject.isEmpty()) out.append(" — ").append(s.subject);
+        }
+        return out.toString();
+    }
+
+    private static int minutes(LocalTime time) {
+        return time.getHour() * 60 + time.getMinute();
+    }
+
+    // ===== loading =====
+
+    private void reloadIfChanged() {
+        try {
+            Resource resource = resourceLoader.getResource(location);
+            if (!resource.exists()) {
+                if (loadedModified == Long.MIN_VALUE) System.err.println("⚠️ [Timetable] " + location + " not found");
+                loadedModified = -1;
+                return;
+            }
+            long modified = resource.lastModified();
+            if (modified == loadedModified) return;
+
+            long start = System.currentTimeMillis();
+            List<Slot> slots = parse(resource);
+            timetable = Timetable.build(slots);
+            loadedModified = modified;
+            System.out.println("📅 [Timetable] Loaded " + timetable.size + " classes for " + timetable.byBatch.size()
+                + " batches from " + location + " in " + (System.currentTimeMillis() - start) + " ms");
+        } catch (Exception e) {
+            System.err.println("❌ [Timetable] Could not load " + location + ": " + e.getMessage());
+        }
+    }
+
+    private static List<Slot> parse(Resource resource) throws IOException {
+        List<Slot> slots = new ArrayList<>();
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(resource.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            int row = 0;
+            while ((line = in.readLine()) != null) {
+                row++;
+                if (row == 1 || line.isBlank()) continue; // header
+                String[] cols = line.split(",", 4);
+                try {
+                    DayOfWeek day = DayOfWeek.valueOf(cols[0].trim().toUpperCase(Locale.ROOT));
+                    String[] times = cols[1].trim().split("-");
+                    slots.add(new Slot(day, LocalTime.parse(times[0].trim()), LocalTime.parse(times[1].trim()),
+                        cols[2].trim(), cols.length > 3 ? subject(cols[3]) : ""));
+                } catch (RuntimeException e) {
+                    System.err.println("⚠️ [Timetable] Skipping row " + row + ": " + line);
+                }
+            }
+        }
+        return slots;
+    }
+
+    // the export quotes some cells and leaves stray separators ("\",\"") where a subject should be
+    private static String subject(String cell) {
+        String s = cell.trim();
+        if (s.length() >= 2 && s.startsWith("\"") && s.endsWith("\"")) s = s.substring(1, s.length() - 1).replace("\"\"", "\"").trim();
+        return s.chars().anyMatch(Character::isLetterOrDigit) ? s : "";
+    }
+
+    /** Immutable index over one version of the file */
+    private static final class Timetable {
+        final int size;
+        final Map<DayOfWeek, Day> days = new EnumMap<>(DayOfWeek.class);
+        final Map<String, List<Slot>> byBatch = new HashMap<>(); // lower-cased batch -> its week
+        final AhoCorasick batchNames;
+        final List<String> aliasBatch = new ArrayList<>();       // alias pattern -> batch
+        final List<String> aliases = new ArrayList<>();
+
+        private Timetable(List<Slot> slots) {
+            Set<Slot> distinct = new LinkedHashSet<>(slots);
+            List<Slot> sorted = new ArrayList<>(distinct);
+            sorted.sort(Comparator.comparing(Slot::getDay).thenComparing(Slot::getStart)
+                .thenComparing(Slot::getEnd).thenComparing(Slot::getBatch));
+            size = sorted.size();
+
+            Map<DayOfWeek, List<Slot>> perDay = new EnumMap<>(DayOfWeek.class);
+            for (Slot s : sorted) {
+                perDay.computeIfAbsent(s.day, d -> new ArrayList<>()).add(s);
+                byBatch.computeIfAbsent(s.batch.toLowerCase(Locale.ROOT), b -> new ArrayList<>()).add(s);
+            }
+            perDay.forEach((d, list) -> days.put(d, new Day(list)));
+
+            // a batch is found by its full name, by what follows "BT2-", or by the part before "(CS)"
+            Map<String, String> aliasToBatch = new HashMap<>();
+            for (List<Slot> week : byBatch.values()) {
+                String name = week.get(0).batch;
+                String lower = name.toLowerCase(Locale.ROOT);
+                aliasToBatch.putIfAbsent(lower, name);
+                int dash = lower.indexOf('-');
+                String tail = dash >= 0 ? lower.substring(dash + 1) : lower;
+                if (tail.length() >= 2) aliasToBatch.putIfAbsent(tail, name);
+                int paren = tail.indexOf('(');
+                if (paren >= 2) aliasToBatch.putIfAbsent(tail.substring(0, paren), name);
+            }
+            aliasToBatch.forEach((alias, batch) -> {
+                aliases.add(alias);
+                aliasBatch.add(batch);
+            });
+            batchNames = new AhoCorasick(aliases);
+        }
+
+        static Timetable build(List<Slot> slots) {
+            return new Timetable(slots);
+        }
+
+        List<Slot> at(DayOfWeek day, int minute, String batch) {
+            Day d = days.get(day);
+            return d == null ? List.of() : d.at(minute, batch);
+        }
+
+        List<Slot> after(DayOfWeek today, int minute, String batch) {
+            for (int offset = 0; offset <= 7; offset++) {
+                Day d = days.get(today.plus(offset));
+                if (d == null) continue;
+                List<Slot> found = d.startingAfter(offset == 0 ? minute : -1, batch);
+                if (!found.isEmpty()) return found;
+            }
+            return List.of();
+        }
+
+        List<Slot> on(DayOfWeek day, String batch) {
+            Day d = days.get(day);
+            if (d == null) return List.of();
+            List<Slot> out = new ArrayList<>();
+            for (Slot s : d.slots) {
+                if (batch == null || s.batch.equals(batch)) out.add(s);
+            }
+            return out;
+        }
+
+        String batchIn(String message) {
+            String[] best = new String[1];
+            int[] bestLength = new int[1];
+            batchNames.match(message, (p, start) -> {
+                String alias = aliases.get(p);
+                int end = start + alias.length();
+                // whole words only: "ds" must not match inside "words"
+                boolean bounded = (start == 0 || !Character.isLetterOrDigit(message.charAt(start - 1)))
+                    && (end == message.length() || !Character.isLetterOrDigit(message.charAt(end)));
+                if (bounded && alias.length() > bestLength[0]) {
+                    best[0] = aliasBatch.get(p);
+                    bestLength[0] = alias.length();
+                }
+            });
+            return best[0];
+        }
+    }
+
+    /** One weekday's classes sorted by start, with start/end minutes and the running maximum end */
+    private static final class Day {
+        final Slot[] slots;
+        final int[] starts;
+        final int[] ends;
+        final int[] maxEnd;
+
+        Day(List<Slot> sorted) {
+            slots = sorted.toArray(new Slot[0]);
+            starts = new int[slots.length];
+            ends = new int[slots.length];
+            maxEnd = new int[slots.length];
+            for (int i = 0; i < slots.length; i++) {
+                starts[i] = minutes(slots[i].start);
+                ends[i] = minutes(slots[i].end);
+                maxEnd[i] = Math.max(ends[i], i == 0 ? 0 : maxEnd[i - 1]);
+            }
+        }
+
+        /** Slots with start <= minute < end */
+        List<Slot> at(int minute, String batch) {
+            int i = firstStartAfter(minute) - 1;
+            List<Slot> out = new ArrayList<>();
+            // every earlier slot ends by maxEnd[i]; once that is past, nothing further back is running
+            for (; i >= 0 && maxEnd[i] > minute; i--) {
+                if (ends[i] > minute && (batch == null || slots[i].batch.equals(batch))) out.add(slots[i]);
+            }
+            Collections.reverse(out);
+            return out;
+        }
+
+        /** The earliest matching slots that start after {@code minute}, all with the same start */
+        List<Slot> startingAfter(int minute, String batch) {
+            List<Slot> out = new ArrayList<>();
+            for (int i = firstStartAfter(minute); i < slots.length; i++) {
+                if (!out.isEmpty() && starts[i] != minutes(out.get(0).start)) break;
+                if (batch == null || slots[i].batch.equals(batch)) out.add(slots[i]);
+            }
+            return out;
+        }
+
+        private int firstStartAfter(int minute) {
+            int lo = 0, hi = starts.length;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (starts[mid] <= minute) lo = mid + 1;
+                else hi = mid;
+            }
+            return lo;
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.chatbot.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+/**
+ * The part of Dropbox's upload-session API that {@link DropboxUploadEngine} uses, kept
+ * separate so the engine can run against a local stub. Sessions are concurrent: parts
+ * may be appended in any order, every part but the last is a multiple of
+ * {@link #PART_ALIGNMENT} bytes, and the last append closes the session.
+ */
+public interface UploadSessionApi {
+
+    long PART_ALIGNMENT = 4L * 1024 * 1024;
+
+    /** Upload a small file in a single request; returns the stored path */
+    String upload(String path, InputStream data, long length) throws Exception;
+
+    /** Open a concurrent session; returns its id */
+    String start() throws Exception;
+
+    void append(String sessionId, long offset, InputStream data, long length, boolean close) throws Exception;
+
+    /** Commit one closed session; returns the stored path */
+    String finish(Commit commit) throws Exception;
+
+    /** Commit several closed sessions in one call; one result per commit, in order */
+    List<Result> finishBatch(List<Commit> commits) throws Exception;
+
+    /**
+     * How long to wait before retrying after {@code e}: negative if it should not be
+     * retried, 0 to use the engine's own backoff.
+     */
+    default long retryAfterMillis(Exception e) {
+        return e instanceof IOException ? 0 : -1;
+    }
+
+    final class Commit {
+        private final String sessionId;
+        private final long size;
+        private final String path;
+
+        public Commit(String sessionId, long size, String path) {
+            this.sessionId = sessionId;
+            this.size = size;
+            this.path = path;
+        }
+
+        public String getSessionId() { return sessionId; }
+        public long getSize() { return size; }
+        public String getPath() { return path; }
+    }
+
+    /** Outcome of one commit in a batch: the stored path, or an error */
+    final class Result {
+        private final String path;
+        private final String error;
+
+        private Result(String path, String error) {
+            this.path = path;
+            this.error = error;
+        }
+
+        public static Result ok(String path) { return new Result(path, null); }
+        public static Result failed(String error) { return new Result(null, error); }
+
+        public String getPath() { return path; }
+        public String getError() { return error; }
+        public boolean isOk() { return error == null; }
+    }
+}
@@ -0,0 +1,169 @@
+package com.chatbot.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Append-only write-ahead log of vector upserts and deletes made since the last
+ * {@link VectorSegment} was written. Each record is
+ * {@code length(int) crc32(int) sequence(long) type(byte) idLength(short) id
+ * [dim(int) float32 * dim payloadJson]}; a torn or corrupt tail (crash mid-append)
+ * is cut off on replay. Compaction folds the log into a new segment and resets it.
+ */
+final class VectorLog implements Closeable {
+
+    static final byte UPSERT = 1;
+    static final byte DELETE = 2;
+
+    private final Path path;
+    private final ObjectMapper mapper;
+    private final FileChannel channel;
+    private long lastSequence;
+    private int entries;
+
+    VectorLog(Path path, ObjectMapper mapper) throws IOException {
+        this.path = path;
+        this.mapper = mapper;
+        Files.createDirectories(path.toAbsolutePath().getParent());
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE,
+            StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    /**
+     * Apply every intact record with a sequence above {@code afterSequence}, then
+     * position the log for appends. Records at or below it are already in the segment.
+     */
+    void replay(long afterSequence, Consumer<Entry> apply) throws IOException {
+        lastSequence = afterSequence;
+        entries = 0;
+        long size = channel.size();
+        long pos = 0;
+        ByteBuffer head = ByteBuffer.allocate(8);
+        CRC32 crc = new CRC32();
+        while (pos + 8 <= size) {
+            head.clear();
+            channel.read(head, pos);
+            head.flip();
+            int length = head.getInt();
+            int checksum = head.getInt();
+            if (length <= 0 || pos + 8 + length > size) break;
+
+            ByteBuffer body = ByteBuffer.allocate(length);
+            channel.read(body, pos + 8);
+            body.flip();
+            crc.reset();
+            crc.update(body.duplicate());
+            if ((int) crc.getValue() != checksum) break;
+
+            Entry entry = decode(body);
+            if (entry.sequence > afterSequence) {
+                apply.accept(entry);
+                lastSequence = entry.sequence;
+            }
+            entries++;
+            pos += 8 + length;
+        }
+        if (pos < size) {
+            System.err.println("⚠️ [VectorLog] Discarding " + (size - pos) + " trailing bytes of " + path);
+            channel.truncate(pos);
+        }
+        channel.position(pos);
+    }
+
+    long appendUpsert(String id, float[] vector, Map<String, Object> payload) throws IOException {
+        byte[] idBytes = id.getBytes(StandardCharsets.UTF_8);
+        byte[] json = mapper.writeValueAsBytes(payload);
+        ByteBuffer body = ByteBuffer.allocate(8 + 1 + 2 + idBytes.length + 4 + vector.length * 4 + json.length);
+        body.putLong(++lastSequence).put(UPSERT).putShort((short) idBytes.length).put(idBytes);
+        body.putInt(vector.length);
+        for (float f : vector) body.putFloat(f);
+        body.put(json);
+        write(body);
+        return lastSequence;
+    }
+
+    long appendDelete(String id) throws IOException {
+        byte[] idBytes = id.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer body = ByteBuffer.allocate(8 + 1 + 2 + idBytes.length);
+        body.putLong(++lastSequence).put(DELETE).putShort((short) idBytes.length).put(idBytes);
+        write(body);
+        return lastSequence;
+    }
+
+    private void write(ByteBuffer body) throws IOException {
+        body.flip();
+        CRC32 crc = new CRC32();
+        crc.update(body.duplicate());
+        ByteBuffer head = ByteBuffer.allocate(8).putInt(body.remaining()).putInt((int) crc.getValue());
+        head.flip();
+        while (head.hasRemaining() || body.hasRemaining()) {
+            channel.write(new ByteBuffer[] { head, body });
+        }
+        entries++;
+    }
+
+    /** Flush appended records to disk; called once per upsert batch */
+    void sync() throws IOException {
+        channel.force(false);
+    }
+
+    /** Drop every record; the caller has just written them into a segment */
+    void reset() throws IOException {
+        channel.truncate(0);
+        channel.position(0);
+        channel.force(true);
+        entries = 0;
+    }
+
+    long lastSequence() { return lastSequence; }
+    int entries() { return entries; }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private Entry decode(ByteBuffer body) throws IOException {
+        long sequence = body.getLong();
+        byte type = body.get();
+        byte[] idBytes = new byte[body.getShort() & 0xffff];
+        body.get(idBytes);
+        String id = new String(idBytes, StandardCharsets.UTF_8);
+        if (type != UPSERT) return new Entry(sequence, type, id, null, null);
+
+        float[] vector = new float[body.getInt()];
+        for (int i = 0; i < vector.length; i++) vector[i] = body.getFloat();
+        byte[] json = new byte[body.remaining()];
+        body.get(json);
+        Map<String, Object> payload = mapper.readValue(json, new TypeReference<Map<String, Object>>() {});
+        return new Entry(sequence, type, id, vector, payload);
+    }
+
+    static final class Entry {
+        final long sequence;
+        final byte type;
+        final String id;
+        final float[] vector;
+        final Map<String, Object> payload;
+
+        Entry(long sequence, byte type, String id, float[] vector, Map<String, Object> payload) {
+            this.sequence = sequence;
+            this.type = type;
+            this.id = id;
+            this.vector = vector;
+            this.payload = payload;
+        }
+    }
+}
@@ -0,0 +1,334 @@
+package com.chatbot.service;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.IntFunction;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Immutable on-disk vector segment, opened with {@link FileChannel#map} so that
+ * opening costs the same regardless of size: vectors, graph links and payloads
+ * are read straight from the mapping when a search touches them.
+ *
+ * <pre>
+ * header   128 bytes  magic "VSEG", version, dim, count, encoding, metric, m,
+ *                     entryPoint, maxLevel, docCount, logSequence, block offsets, deletedCount
+ * vectors  count * dim float32, or count * dim int8 followed by count float32 scales
+ * table    count * 24 bytes: payloadOffset(long) payloadLength(int) graphIndex(int) level(int) flags(int)
+ * graph    int32 slots; per node and level [count, neighbour * capacity], capacity 2m on level 0, m above
+ * payload  per node: idLength(short) id(UTF-8) payload JSON(UTF-8)
+ * docs     per document: keyLength(short) key hashLength(short) hash
+ * </pre>
+ * All integers are big-endian. A single mapping limits a segment to 2 GB.
+ */
+final class VectorSegment {
+
+    enum Encoding { FLOAT32, INT8 }
+
+    private static final int MAGIC = 0x56534547; // "VSEG"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 128;
+    private static final int TABLE_ENTRY_BYTES = 24;
+    private static final int FLAG_DELETED = 1;
+
+    private final ByteBuffer buf;
+    private final int dim;
+    private final int count;
+    private final Encoding encoding;
+    private final HnswIndex.Metric metric;
+    private final int m;
+    private final int entryPoint;
+    private final int maxLevel;
+    private final int deletedCount;
+    private final long logSequence;
+    private final FloatBuffer floatVectors;
+    private final ByteBuffer int8Vectors;
+    private final FloatBuffer scales;
+    private final ByteBuffer table;
+    private final IntBuffer graph;
+    private final ByteBuffer payload;
+    private final Map<String, String> documents;
+
+    private VectorSegment(ByteBuffer buf) throws IOException {
+        this.buf = buf;
+        if (buf.getInt(0) != MAGIC || buf.getInt(4) != VERSION) {
+            throw new IOException("Not a vector segment (bad magic/version)");
+        }
+        dim = buf.getInt(8);
+        count = buf.getInt(12);
+        encoding = Encoding.values()[buf.getInt(16)];
+        metric = HnswIndex.Metric.values()[buf.getInt(20)];
+        m = buf.getInt(24);
+        entryPoint = buf.getInt(28);
+        maxLevel = buf.getInt(32);
+        int docCount = buf.getInt(36);
+        logSequence = buf.getLong(40);
+        long vectorsOffset = buf.getLong(48);
+        long scalesOffset = buf.getLong(56);
+        long tableOffset = buf.getLong(64);
+        long graphOffset = buf.getLong(72);
+        long payloadOffset = buf.getLong(80);
+        long docsOffset = buf.getLong(88);
+        deletedCount = buf.getInt(96);
+
+        if (encoding == Encoding.FLOAT32) {
+            floatVectors = slice(vectorsOffset, (long) count * dim * 4).asFloatBuffer();
+            int8Vectors = null;
+            scales = null;
+        } else {
+            floatVectors = null;
+            int8Vectors = slice(vectorsOffset, (long) count * dim);
+            scales = slice(scalesOffset, (long) count * 4).asFloatBuffer();
+        }
+        table = slice(tableOffset, (long) count * TABLE_ENTRY_BYTES);
+        graph = slice(graphOffset, payloadOffset - graphOffset).asIntBuffer();
+        payload = slice(payloadOffset, docsOffset - payloadOffset);
+
+        // The document table is tiny (one row per logical document), so read it eagerly
+        documents = new LinkedHashMap<>();
+        ByteBuffer docs = slice(docsOffset, buf.capacity() - docsOffset);
+        for (int i = 0; i < docCount; i++) {
+            String key = readShortString(docs);
+            String hash = readShortString(docs);
+            documents.put(key, hash);
+        }
+    }
+
+    static VectorSegment open(Path path) throws IOException {
+        try (FileChannel ch = FileChannel.open(path)) {
+            MappedByteBuffer mapped = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            return new VectorSegment(mapped);
+        }
+    }
+
+    private ByteBuffer slice(long offset, long length) {
+        return buf.duplicate().position((int) offset).limit((int) (offset + length)).slice();
+    }
+
+    int dim() { return dim; }
+    int count() { return count; }
+    int m() { return m; }
+    HnswIndex.Metric metric() { return metric; }
+    int entryPoint() { return entryPoint; }
+    int maxLevel() { return maxLevel; }
+    int deletedCount() { return deletedCount; }
+    long logSequence() { return logSequence; }
+    Map<String, String> documents() { return documents; }
+
+    float dot(int node, float[] q) {
+        int off = node * dim;
+        float sum = 0f;
+        if (floatVectors != null) {
+            for (int i = 0; i < dim; i++) sum += q[i] * floatVectors.get(off + i);
+            return sum;
+        }
+        for (int i = 0; i < dim; i++) sum += q[i] * int8Vectors.get(off + i);
+        return sum * scales.get(node);
+    }
+
+    float[] vector(int node) {
+        float[] v = new float[dim];
+        int off = node * dim;
+        if (floatVectors != null) {
+            for (int i = 0; i < dim; i++) v[i] = floatVectors.get(off + i);
+        } else {
+            float scale = scales.get(node);
+            for (int i = 0; i < dim; i++) v[i] = int8Vectors.get(off + i) * scale;
+        }
+        return v;
+    }
+
+    int level(int node) {
+        return table.getInt(node * TABLE_ENTRY_BYTES + 16);
+    }
+
+    boolean isDeleted(int node) {
+        return (table.getInt(node * TABLE_ENTRY_BYTES + 20) & FLAG_DELETED) != 0;
+    }
+
+    private int levelSlot(int node, int level) {
+        int base = table.getInt(node * TABLE_ENTRY_BYTES + 12);
+        return level == 0 ? base : base + (1 + 2 * m) + (level - 1) * (1 + m);
+    }
+
+    int linkCount(int node, int level) {
+        return graph.get(levelSlot(node, level));
+    }
+
+    int link(int node, int level, int i) {
+        return graph.get(levelSlot(node, level) + 1 + i);
+    }
+
+    /** Heap copy of one adjacency list in {@link HnswIndex} form: [count, neighbours..., spare capacity] */
+    int[] copyLinks(int node, int level) {
+        int slot = levelSlot(node, level);
+        int[] out = new int[1 + (level == 0 ? 2 * m : m)];
+        int n = graph.get(slot);
+        out[0] = n;
+        for (int i = 0; i < n; i++) out[1 + i] = graph.get(slot + 1 + i);
+        return out;
+    }
+
+    String id(int node) {
+        ByteBuffer record = payload.duplicate().position((int) table.getLong(node * TABLE_ENTRY_BYTES));
+        return readShortString(record);
+    }
+
+    Map<String, Object> payload(int node, ObjectMapper mapper) throws IOException {
+        int start = (int) table.getLong(node * TABLE_ENTRY_BYTES);
+        int length = table.getInt(node * TABLE_ENTRY_BYTES + 8);
+        ByteBuffer record = payload.duplicate().position(start);
+        int idLength = record.getShort() & 0xffff;
+        byte[] json = new byte[length - 2 - idLength];
+        record.position(start + 2 + idLength).get(json);
+        return mapper.readValue(json, new TypeReference<Map<String, Object>>() {});
+    }
+
+    private static String readShortString(ByteBuffer b) {
+        byte[] bytes = new byte[b.getShort() & 0xffff];
+        b.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /** Write every node of {@code index} as a new segment at {@code path}; ids and payloads by node number */
+    static void write(Path path, HnswIndex index, IntFunction<String> ids,
+                      IntFunction<Map<String, Object>> payloads, Map<String, String> documents, long logSequence, Encoding encoding,
+                      ObjectMapper mapper) throws IOException {
+        int count = index.size();
+        int dim = Math.max(index.dim(), 0);
+        int m = index.m();
+
+        // Serialize payload records up front: their lengths are needed for the table
+        byte[][] records = new byte[count][];
+        long payloadBytes = 0;
+        for (int node = 0; node < count; node++) {
+            byte[] id = ids.apply(node).getBytes(StandardCharsets.UTF_8);
+            byte[] json = mapper.writeValueAsBytes(payloads.apply(node));
+            ByteBuffer r = ByteBuffer.allocate(2 + id.length + json.length);
+            r.putShort((short) id.length).put(id).put(json);
+            records[node] = r.array();
+            payloadBytes += records[node].length;
+        }
+
+        long vectorsOffset = HEADER_BYTES;
+        long vectorBytes = (long) count * dim * (encoding == Encoding.FLOAT32 ? 4 : 1);
+        long scalesOffset = align(vectorsOffset + vectorBytes);
+        long tableOffset = align(scalesOffset + (encoding == Encoding.INT8 ? (long) count * 4 : 0));
+        long graphOffset = align(tableOffset + (long) count * TABLE_ENTRY_BYTES);
+        long graphSlots = 0;
+        int deleted = 0;
+        for (int node = 0; node < count; node++) {
+            graphSlots += (1 + 2L * m) + (long) index.level(node) * (1 + m);
+            if (index.isDeleted(node)) deleted++;
+        }
+        long payloadOffset = graphOffset + graphSlots * 4;
+        long docsOffset = payloadOffset + payloadBytes;
+
+        Files.createDirectories(path.toAbsolutePath().getParent());
+        try (OutputStream os = Files.newOutputStream(path);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(os, 1 << 16))) {
+            // header
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(dim);
+            out.writeInt(count);
+            out.writeInt(encoding.ordinal());
+            out.writeInt(index.metric().ordinal());
+            out.writeInt(m);
+            out.writeInt(index.entryPoint());
+            out.writeInt(index.maxLevel());
+            out.writeInt(documents.size());
+            out.writeLong(logSequence);
+            out.writeLong(vectorsOffset);
+            out.writeLong(encoding == Encoding.INT8 ? scalesOffset : 0);
+            out.writeLong(tableOffset);
+            out.writeLong(graphOffset);
+            out.writeLong(payloadOffset);
+            out.writeLong(docsOffset);
+            out.writeInt(deleted);
+            pad(out, HEADER_BYTES);
+
+            // vectors (+ int8 scales)
+            float[] scaleOut = encoding == Encoding.INT8 ? new float[count] : null;
+            for (int node = 0; node < count; node++) {
+                float[] v = index.vector(node);
+                if (encoding == Encoding.FLOAT32) {
+                    for (float f : v) out.writeFloat(f);
+                } else {
+                    float maxAbs = 0f;
+                    for (float f : v) maxAbs = Math.max(maxAbs, Math.abs(f));
+                    float scale = maxAbs == 0f ? 1f : maxAbs / 127f;
+                    scaleOut[node] = scale;
+                    for (float f : v) out.writeByte(Math.round(f / scale));
+                }
+            }
+            pad(out, scalesOffset);
+            if (scaleOut != null) {
+                for (float s : scaleOut) out.writeFloat(s);
+            }
+            pad(out, tableOffset);
+
+            // id/offset table
+            long recordOffset = 0;
+            long slot = 0;
+            for (int node = 0; node < count; node++) {
+                out.writeLong(recordOffset);
+                out.writeInt(records[node].length);
+                out.writeInt((int) slot);
+                out.writeInt(index.level(node));
+                out.writeInt(index.isDeleted(node) ? FLAG_DELETED : 0);
+                recordOffset += records[node].length;
+                slot += (1 + 2L * m) + (long) index.level(node) * (1 + m);
+            }
+            pad(out, graphOffset);
+
+            // graph
+            for (int node = 0; node < count; node++) {
+                for (int l = 0; l <= index.level(node); l++) {
+                    int capacity = l == 0 ? 2 * m : m;
+                    int n = index.linkCount(node, l);
+                    out.writeInt(n);
+                    for (int i = 0; i < capacity; i++) out.writeInt(i < n ? index.link(node, l, i) : 0);
+                }
+            }
+
+            // payloads
+            for (byte[] record : records) out.write(record);
+
+            // documents
+            for (Map.Entry<String, String> doc : documents.entrySet()) {
+                writeShortString(out, doc.getKey());
+                writeShortString(out, doc.getValue());
+            }
+        }
+    }
+
+    private static long align(long offset) {
+        return (offset + 7) & ~7L;
+    }
+
+    private static void pad(DataOutputStream out, long offset) throws IOException {
+        while (out.size() < offset) out.writeByte(0);
+    }
+
+    private static void writeShortString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeShort(bytes.length);
+        out.write(bytes);
+    }
+
+}
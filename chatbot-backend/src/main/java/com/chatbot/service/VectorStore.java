@@ -0,0 +1,66 @@
+package com.chatbot.service;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Vector index used by the RAG pipeline. Points and search hits keep Qdrant's
+ * JSON shape ({@code id}, {@code vector}/{@code score}, {@code payload}) whichever
+ * backend is selected with {@code rag.vector.backend} (qdrant | hnsw).
+ */
+public interface VectorStore {
+
+    /** Upsert many points at once. Returns false if the backend rejected the batch. */
+    boolean upsertBatch(List<Map<String, Object>> points);
+
+    /** Delete points by id; unknown ids are ignored. Returns false if the backend rejected the request. */
+    boolean delete(Collection<String> ids);
+
+    /** Ids of every point whose payload {@code docKey} equals the given key */
+    Set<String> pointIds(String docKey);
+
+    /** Top-K hits, best first; {@code filter} matches payload fields by equality (may be empty) */
+    List<Map<String, Object>> search(float[] queryVector, int topK, Map<String, Object> filter);
+
+    /**
+     * True if exactly {@code chunks} points for {@code docKey} carry payload {@code docHash},
+     * i.e. the whole version is stored and an unchanged document can be skipped instead of
+     * re-embedded. A version left partly written (a crash, a failed batch, a rollback) does
+     * not count, so it is indexed again.
+     */
+    default boolean hasDocument(String docKey, String docHash, int chunks) {
+        return false;
+    }
+
+    /**
+     * Non-blocking {@link #search}. By default the search runs on a bounded elastic thread;
+     * backends with an async client override it.
+     */
+    default Mono<List<Map<String, Object>>> searchAsync(float[] queryVector, int topK, Map<String, Object> filter) {
+        return Mono.fromCallable(() -> search(queryVector, topK, filter)).subscribeOn(Schedulers.boundedElastic());
+    }
+
+    default List<Map<String, Object>> search(float[] queryVector, int topK) {
+        return search(queryVector, topK, Map.of());
+    }
+
+    default void upsert(String id, float[] vector, Map<String, Object> payload) {
+        if (vector == null || vector.length == 0) return; // skip bad vectors
+        upsertBatch(List.of(point(id, vector, payload)));
+    }
+
+    /** Build a point map in the shape Qdrant expects */
+    static Map<String, Object> point(String id, float[] vector, Map<String, Object> payload) {
+        Map<String, Object> point = new HashMap<>();
+        point.put("id", id);
+        point.put("vector", vector);
+        point.put("payload", payload);
+        return point;
+    }
+}
@@ -0,0 +1,61 @@
+package com.chatbot.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class AhoCorasickTest {
+
+    @Test
+    void reportsOverlappingAndNestedPatterns() {
+        List<String> patterns = List.of("he", "she", "his", "hers");
+
+        assertThat(hits(patterns, "ushers")).containsExactly("she@1", "he@2", "hers@2");
+        assertThat(hits(patterns, "ahishe")).containsExactly("his@1", "she@3", "he@4");
+        assertThat(hits(patterns, "nothing")).isEmpty();
+    }
+
+    @Test
+    void emptyPatternNeverMatches() {
+        assertThat(hits(List.of("", "a"), "aa")).containsExactly("a@0", "a@1");
+    }
+
+    @Test
+    void findsWhatIndexOfFinds() {
+        Random random = new Random(7);
+        for (int round = 0; round < 200; round++) {
+            List<String> patterns = new ArrayList<>();
+            int count = 1 + random.nextInt(8);
+            for (int p = 0; p < count; p++) {
+                String pattern = word(random, 1 + random.nextInt(4));
+                if (!patterns.contains(pattern)) patterns.add(pattern);
+            }
+            String text = word(random, random.nextInt(40));
+
+            List<String> expected = new ArrayList<>();
+            for (int end = 0; end < text.length(); end++) {
+                for (String pattern : patterns) {
+                    int start = end - pattern.length() + 1;
+                    if (start >= 0 && text.startsWith(pattern, start)) expected.add(pattern + "@" + start);
+                }
+            }
+            assertThat(hits(patterns, text)).containsExactlyInAnyOrderElementsOf(expected);
+        }
+    }
+
+    private static List<String> hits(List<String> patterns, String text) {
+        List<String> out = new ArrayList<>();
+        new AhoCorasick(patterns).match(text, (p, start) -> out.add(patterns.get(p) + "@" + start));
+        return out;
+    }
+
+    private static String word(Random random, int length) {
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) chars[i] = (char) ('a' + random.nextInt(3));
+        return new String(chars);
+    }
+}
@@ -0,0 +1,130 @@
+package com.chatbot.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+class Bm25IndexTest {
+
+    @TempDir
+    Path dir;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Test
+    void varIntsRoundTripInTheFewestBytes() throws Exception {
+        int[] values = { 0, 1, 127, 128, 300, 16383, 16384, 1 << 21, Integer.MAX_VALUE, -1 };
+        int[] sizes = { 1, 1, 1, 2, 2, 2, 3, 4, 5, 5 };
+        for (int i = 0; i < values.length; i++) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            Bm25Index.writeVarInt(new DataOutputStream(bytes), values[i]);
+
+            assertThat(bytes.size()).as("size of %d", values[i]).isEqualTo(sizes[i]);
+            assertThat(Bm25Index.readVarInt(in(bytes.toByteArray()))).isEqualTo(values[i]);
+        }
+    }
+
+    @Test
+    void varIntWithoutAnEndIsRejected() {
+        byte[] endless = { (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x01 };
+
+        assertThatThrownBy(() -> Bm25Index.readVarInt(in(endless))).isInstanceOf(IOException.class);
+    }
+
+    @Test
+    void codesAreIndexedWholeAndByTheirParts() {
+        assertThat(Bm25Index.tokens("The BT2-Hon-DL code_name is here"))
+            .containsExactly("bt2", "hon", "dl", "bt2-hon-dl", "code", "name", "code_name", "here");
+    }
+
+    @Test
+    void exactCodeOutranksAFragment() {
+        Bm25Index index = new Bm25Index(1.2f, 0.75f);
+        index.add("fragment", "BT2 overview and the honours route", Map.of());
+        index.add("exact", "Timetable for BT2-Hon-DL students", Map.of());
+        index.add("other", "Library opening hours", Map.of());
+
+        assertThat(ids(index, index.search("bt2-hon-dl", 3))).containsExactly("exact", "fragment");
+        assertThat(index.search("nothing matches", 3).nodes).isEmpty();
+    }
+
+    @Test
+    void removedChunksStayOutOfResultsAcrossCompaction() {
+        Bm25Index index = new Bm25Index(1.2f, 0.75f);
+        index.add("a", "sorting algorithms", Map.of("docKey", "a"));
+        index.add("b", "graph algorithms", Map.of("docKey", "b"));
+        index.add("c", "sorting networks", Map.of("docKey", "c"));
+
+        assertThat(index.remove("a")).containsEntry("docKey", "a");
+        assertThat(index.remove("a")).isNull();
+        assertThat(ids(index, index.search("sorting", 5))).containsExactly("c");
+
+        index.compact();
+        assertThat(index.size()).isEqualTo(2);
+        assertThat(index.deletedCount()).isZero();
+        assertThat(ids(index, index.search("algorithms sorting", 5))).containsExactly("c", "b");
+        assertThat(index.livePayloads()).extracting(p -> p.get("docKey")).containsExactly("b", "c");
+    }
+
+    @Test
+    void fileReadsBackToTheSameRanking() throws Exception {
+        Bm25Index index = new Bm25Index(1.2f, 0.75f);
+        for (int i = 0; i < 50; i++) {
+            index.add("chunk-" + i, "lecture " + i + " covers topic" + (i % 7) + " and topic" + (i % 3), Map.of("n", i));
+        }
+        index.remove("chunk-3");
+        index.compact();
+        Path path = dir.resolve("lexical.idx");
+        index.write(path, mapper);
+
+        Bm25Index read = Bm25Index.read(path, mapper, 1.2f, 0.75f);
+
+        assertThat(read.size()).isEqualTo(49);
+        assertThat(read.termCount()).isEqualTo(index.termCount());
+        for (String query : List.of("topic3", "lecture 12", "topic0 topic2")) {
+            HnswIndex.Result before = index.search(query, 10);
+            HnswIndex.Result after = read.search(query, 10);
+            assertThat(ids(read, after)).isEqualTo(ids(index, before));
+            assertThat(after.scores).containsExactly(before.scores);
+        }
+        assertThat(read.payload(0)).containsEntry("n", 0);
+    }
+
+    @Test
+    void corruptFileIsRejected() throws Exception {
+        Bm25Index index = new Bm25Index(1.2f, 0.75f);
+        index.add("a", "sorting algorithms", Map.of());
+        Path path = dir.resolve("lexical.idx");
+        index.write(path, mapper);
+        byte[] bytes = Files.readAllBytes(path);
+        bytes[bytes.length / 2] ^= 0x01;
+        Files.write(path, bytes);
+
+        assertThatThrownBy(() -> Bm25Index.read(path, mapper, 1.2f, 0.75f)).isInstanceOf(IOException.class);
+    }
+
+    private static List<String> ids(Bm25Index index, HnswIndex.Result result) {
+        List<String> ids = new ArrayList<>();
+        for (int chunk : result.nodes) ids.add(index.id(chunk));
+        return ids;
+    }
+
+    private static DataInputStream in(byte[] bytes) {
+        return new DataInputStream(new ByteArrayInputStream(bytes));
+    }
+}
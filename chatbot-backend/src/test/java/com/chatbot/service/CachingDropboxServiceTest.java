@@ -0,0 +1,250 @@
+package com.chatbot.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.dropbox.core.v2.files.DeletedMetadata;
+import com.dropbox.core.v2.files.FileMetadata;
+import com.dropbox.core.v2.files.ListFolderResult;
+import com.dropbox.core.v2.files.Metadata;
+
+class CachingDropboxServiceTest {
+
+    @TempDir
+    Path dir;
+
+    private final FakeDropbox dropbox = new FakeDropbox();
+
+    @Test
+    void secondDownloadIsServedFromDisk() throws Exception {
+        dropbox.files.put("/notes/a.txt", bytes("hello world"));
+        CachingDropboxService cache = new CachingDropboxService(dropbox, dir.resolve("cache"), 1024, Duration.ofMinutes(5));
+
+        assertThat(read(cache.downloadFromDropbox("/notes/a.txt"))).isEqualTo("hello world");
+        // paths are case-insensitive
+        assertThat(read(cache.downloadFromDropbox("/Notes/A.txt"))).isEqualTo("hello world");
+        assertThat(read(cache.downloadFromDropbox("/notes/a.txt", 6, 5))).isEqualTo("world");
+
+        assertThat(cache.contentMisses()).isEqualTo(1);
+        assertThat(cache.contentHits()).isEqualTo(2);
+        assertThat(dropbox.downloads).hasValue(1);
+        assertThat(cache.storedBytes()).isEqualTo(11);
+    }
+
+    @Test
+    void cachedFilesSurviveARestart() throws Exception {
+        dropbox.files.put("/a.txt", bytes("kept"));
+        read(new CachingDropboxService(dropbox, dir, 1024, Duration.ofMinutes(5)).downloadFromDropbox("/a.txt"));
+
+        CachingDropboxService reopened = new CachingDropboxService(dropbox, dir, 1024, Duration.ofMinutes(5));
+        assertThat(read(reopened.downloadFromDropbox("/a.txt"))).isEqualTo("kept");
+        assertThat(reopened.contentHits()).isEqualTo(1);
+        assertThat(dropbox.downloads).hasValue(1);
+    }
+
+    @Test
+    void uploadInvalidatesTheCachedCopy() throws Exception {
+        dropbox.files.put("/a.txt", bytes("old"));
+        CachingDropboxService cache = new CachingDropboxService(dropbox, dir, 1024, Duration.ofMinutes(5));
+        read(cache.downloadFromDropbox("/a.txt"));
+
+        Path source = Files.writeString(dir.resolve("upload.tmp"), "new");
+        cache.uploadToDropbox("a.txt", source);
+
+        assertThat(read(cache.downloadFromDropbox("/a.txt"))).isEqualTo("new");
+        assertThat(cache.contentMisses()).isEqualTo(2);
+        assertThat(dropbox.downloads).hasValue(2);
+    }
+
+    @Test
+    void leastRecentlyUsedFileIsEvicted() throws Exception {
+        dropbox.files.put("/a.txt", bytes("aaaaaa"));
+        dropbox.files.put("/b.txt", bytes("bbbbbb"));
+        CachingDropboxService cache = new CachingDropboxService(dropbox, dir, 10, Duration.ofMinutes(5));
+
+        read(cache.downloadFromDropbox("/a.txt"));
+        read(cache.downloadFromDropbox("/b.txt"));
+        assertThat(cache.evictions()).isEqualTo(1);
+        assertThat(cache.size()).isEqualTo(1);
+
+        read(cache.downloadFromDropbox("/b.txt"));
+        read(cache.downloadFromDropbox("/a.txt"));
+        assertThat(cache.contentHits()).isEqualTo(1);
+        assertThat(cache.contentMisses()).isEqualTo(3);
+    }
+
+    @Test
+    void concurrentMissesShareOneDownload() throws Exception {
+        dropbox.files.put("/a.txt", bytes("shared"));
+        dropbox.gate = new CountDownLatch(1);
+        CachingDropboxService cache = new CachingDropboxService(dropbox, dir, 1024, Duration.ofMinutes(5));
+
+        CompletableFuture<String> first = CompletableFuture.supplyAsync(() -> readQuietly(cache, "/a.txt"));
+        dropbox.started.await(5, TimeUnit.SECONDS);
+        CompletableFuture<String> second = CompletableFuture.supplyAsync(() -> readQuietly(cache, "/a.txt"));
+        while (cache.coalesced() == 0) Thread.sleep(5);
+        dropbox.gate.countDown();
+
+        assertThat(first.get(5, TimeUnit.SECONDS)).isEqualTo("shared");
+        assertThat(second.get(5, TimeUnit.SECONDS)).isEqualTo("shared");
+        assertThat(dropbox.downloads).hasValue(1);
+    }
+
+    @Test
+    void listingIsReusedUntilItGoesStale() throws Exception {
+        dropbox.listing = List.of(file("/docs/a.txt"), file("/docs/b.txt"));
+        CachingDropboxService cache = new CachingDropboxService(dropbox, dir, 1024, Duration.ofMinutes(5));
+
+        assertThat(cache.listAllFiles("/docs")).hasSize(2);
+        assertThat(cache.listAllFiles("/Docs")).hasSize(2);
+
+        assertThat(cache.listingMisses()).isEqualTo(1);
+        assertThat(cache.listingHits()).isEqualTo(1);
+        assertThat(dropbox.listCalls).hasValue(1);
+        assertThat(dropbox.continueCalls).hasValue(0);
+    }
+
+    @Test
+    void staleListingAppliesOnlyTheChanges() throws Exception {
+        dropbox.listing = List.of(file("/docs/a.txt"), file("/docs/b.txt"));
+        dropbox.files.put("/docs/a.txt", bytes("aaa"));
+        CachingDropboxService cache = new CachingDropboxService(dropbox, dir, 1024, Duration.ZERO);
+        cache.listAllFiles("/docs");
+        read(cache.downloadFromDropbox("/docs/a.txt"));
+
+        // a.txt deleted, c.txt added since the cursor
+        dropbox.changes.add(List.of(deleted("/docs/a.txt"), file("/docs/c.txt")));
+        List<String> paths = new ArrayList<>();
+        for (Metadata m : cache.listAllFiles("/docs")) paths.add(m.getPathLower());
+
+        assertThat(paths).containsExactly("/docs/b.txt", "/docs/c.txt");
+        assertThat(cache.listingRefreshes()).isEqualTo(1);
+        assertThat(dropbox.listCalls).hasValue(1);
+        // the changed file also left the content cache
+        assertThat(cache.size()).isZero();
+    }
+
+    @Test
+    void failedIncrementalListingFallsBackToAFullOne() throws Exception {
+        dropbox.listing = List.of(file("/docs/a.txt"));
+        CachingDropboxService cache = new CachingDropboxService(dropbox, dir, 1024, Duration.ZERO);
+        cache.listAllFiles("/docs");
+
+        // no changes queued: the fake rejects the cursor, as Dropbox does for a reset one
+        dropbox.listing = List.of(file("/docs/a.txt"), file("/docs/b.txt"));
+        assertThat(cache.listAllFiles("/docs")).hasSize(2);
+        assertThat(cache.listingMisses()).isEqualTo(2);
+        assertThat(dropbox.listCalls).hasValue(2);
+    }
+
+    private static FileMetadata file(String path) {
+        String name = path.substring(path.lastIndexOf('/') + 1);
+        Date now = new Date(0);
+        return FileMetadata.newBuilder(name, "id:" + name, now, now, "0123456789abcdef", 1)
+            .withPathLower(path.toLowerCase(Locale.ROOT))
+            .withPathDisplay(path)
+            .build();
+    }
+
+    private static DeletedMetadata deleted(String path) {
+        return DeletedMetadata.newBuilder(path.substring(path.lastIndexOf('/') + 1))
+            .withPathLower(path.toLowerCase(Locale.ROOT))
+            .withPathDisplay(path)
+            .build();
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String read(InputStream in) throws Exception {
+        try (in) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static String readQuietly(CachingDropboxService cache, String path) {
+        try {
+            return read(cache.downloadFromDropbox(path));
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /** In-memory Dropbox: files by lower-cased path, one listing, and queued change pages */
+    private static final class FakeDropbox implements DropboxService {
+        final Map<String, byte[]> files = new ConcurrentHashMap<>();
+        final AtomicInteger downloads = new AtomicInteger();
+        final AtomicInteger listCalls = new AtomicInteger();
+        final AtomicInteger continueCalls = new AtomicInteger();
+        final CountDownLatch started = new CountDownLatch(1);
+        volatile CountDownLatch gate;
+        volatile List<Metadata> listing = List.of();
+        final Deque<List<Metadata>> changes = new ArrayDeque<>();
+
+        @Override
+        public String uploadToDropbox(String fileName, Path source) throws Exception {
+            String path = "/" + fileName;
+            files.put(path.toLowerCase(Locale.ROOT), Files.readAllBytes(source));
+            return path;
+        }
+
+        @Override
+        public InputStream downloadFromDropbox(String dropboxPath) throws Exception {
+            downloads.incrementAndGet();
+            started.countDown();
+            if (gate != null) gate.await(5, TimeUnit.SECONDS);
+            byte[] body = files.get(dropboxPath.toLowerCase(Locale.ROOT));
+            if (body == null) throw new IllegalArgumentException("not found: " + dropboxPath);
+            return new ByteArrayInputStream(body);
+        }
+
+        @Override
+        public InputStream downloadFromDropbox(String dropboxPath, long offset, long length) throws Exception {
+            byte[] body = files.get(dropboxPath.toLowerCase(Locale.ROOT));
+            int from = (int) offset;
+            return new ByteArrayInputStream(Arrays.copyOfRange(body, from, (int) Math.min(body.length, from + length)));
+        }
+
+        @Override
+        public List<Metadata> listAllFiles(String dropboxFolderPath) {
+            return listing;
+        }
+
+        @Override
+        public ListFolderResult listFolder(String dropboxFolderPath) {
+            listCalls.incrementAndGet();
+            return new ListFolderResult(listing, "cursor-0", false);
+        }
+
+        @Override
+        public ListFolderResult listFolderContinue(String cursor) {
+            continueCalls.incrementAndGet();
+            List<Metadata> page = changes.poll();
+            if (page == null) throw new IllegalStateException("reset cursor: " + cursor);
+            return new ListFolderResult(page, cursor + "+", false);
+        }
+    }
+}
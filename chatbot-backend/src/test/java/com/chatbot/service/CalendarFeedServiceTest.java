@@ -0,0 +1,153 @@
+package com.chatbot.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.chatbot.config.HttpClientProperties;
+import com.chatbot.config.HttpClients;
+import com.chatbot.config.ThreadPools;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class CalendarFeedServiceTest {
+
+    private static final String ICS = String.join("\r\n",
+        "BEGIN:VCALENDAR",
+        "VERSION:2.0",
+        "PRODID:-//test//EN",
+        "BEGIN:VEVENT",
+        "UID:1@test",
+        "DTSTAMP:20260101T000000Z",
+        "DTSTART:20260310T090000Z",
+        "SUMMARY:Assignment 1 due",
+        "END:VEVENT",
+        "BEGIN:VEVENT",
+        "UID:2@test",
+        "DTSTAMP:20260101T000000Z",
+        "DTSTART:20260305T090000Z",
+        "SUMMARY:Lecture",
+        "END:VEVENT",
+        "END:VCALENDAR",
+        "");
+
+    @TempDir
+    Path dir;
+
+    private SimpleMeterRegistry registry;
+    private CalendarFeedService service;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        // start() is not called: no background refreshes of the default Moodle feed
+        service = new CalendarFeedService(
+            new HttpClients(new HttpClientProperties(), new ObjectMapper()),
+            new ThreadPools(false),
+            Clock.fixed(Instant.parse("2026-03-01T00:00:00Z"), ZoneOffset.UTC),
+            List.of(),
+            Duration.ofMinutes(10),
+            Duration.ofSeconds(5),
+            16,
+            registry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.stop();
+    }
+
+    @Test
+    void unchangedFileIsNotParsedAgain() throws Exception {
+        Path ics = Files.writeString(dir.resolve("feed.ics"), ICS);
+        String url = ics.toUri().toString();
+
+        CalendarFeedService.Deadlines first = service.refresh(url).get();
+        assertThat(first.size()).isEqualTo(1);
+        assertThat(service.deadlines(url, true)).containsExactly("2026-03-10: Assignment 1 due");
+
+        CalendarFeedService.Deadlines second = service.refresh(url).get();
+        assertThat(second).isSameAs(first);
+        assertThat(count("calendar.fetches")).isEqualTo(2);
+        assertThat(count("calendar.not.modified")).isEqualTo(1);
+
+        Files.writeString(ics, ICS.replace("Assignment 1 due", "Assignment 2 due"));
+        Files.setLastModifiedTime(ics, FileTime.fromMillis(Files.getLastModifiedTime(ics).toMillis() + 60_000));
+        CalendarFeedService.Deadlines third = service.refresh(url).get();
+        assertThat(third).isNotSameAs(first);
+        assertThat(service.deadlines(url, true)).containsExactly("2026-03-10: Assignment 2 due");
+        assertThat(count("calendar.not.modified")).isEqualTo(1);
+    }
+
+    @Test
+    void notModifiedResponseKeepsTheParsedFeed() throws Exception {
+        AtomicInteger requests = new AtomicInteger();
+        AtomicInteger conditional = new AtomicInteger();
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/feed.ics", exchange -> {
+            requests.incrementAndGet();
+            if ("\"v1\"".equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                conditional.incrementAndGet();
+                exchange.sendResponseHeaders(304, -1);
+            } else {
+                byte[] body = ICS.getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().set("ETag", "\"v1\"");
+                exchange.getResponseHeaders().set("Content-Type", "text/calendar");
+                exchange.sendResponseHeaders(200, body.length);
+                exchange.getResponseBody().write(body);
+            }
+            exchange.close();
+        });
+        server.start();
+        try {
+            String url = "http://127.0.0.1:" + server.getAddress().getPort() + "/feed.ics";
+
+            CalendarFeedService.Deadlines first = service.refresh(url).get();
+            CalendarFeedService.Deadlines second = service.refresh(url).get();
+
+            assertThat(second).isSameAs(first);
+            assertThat(requests).hasValue(2);
+            assertThat(conditional).hasValue(1);
+            assertThat(count("calendar.not.modified")).isEqualTo(1);
+            assertThat(service.deadlines(url, false)).containsExactly("2026-03-10: Assignment 1 due");
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    void onlyFeedsThatLoadAreKept() throws Exception {
+        Path ics = Files.writeString(dir.resolve("feed.ics"), ICS);
+        String good = ics.toUri().toString();
+        String missing = dir.resolve("missing.ics").toUri().toString();
+
+        service.refresh(good).get();
+        assertThatThrownBy(() -> service.refresh(missing).get()).isInstanceOf(ExecutionException.class);
+
+        assertThat(service.refreshedFeeds()).containsExactly(good);
+        assertThat(count("calendar.failures")).isEqualTo(1);
+    }
+
+    private double count(String name) {
+        return registry.get(name).functionCounter().count();
+    }
+}
@@ -0,0 +1,174 @@
+package com.chatbot.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Predicate;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Limit;
+
+import com.chatbot.repository.ChatMessageExport;
+import com.chatbot.repository.ChatMessageSummary;
+import com.chatbot.repository.ChatRepository;
+import com.chatbot.service.ChatHistoryService.HistoryPage;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+class ChatHistoryServiceTest {
+
+    private static final Comparator<Row> OLDEST_FIRST =
+        Comparator.comparing(Row::getCreatedAt).thenComparing(Row::getId);
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+    private final ChatRepository repository = mock(ChatRepository.class);
+    private final List<Row> rows = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        // the queries of ChatRepository, run over the rows in memory
+        when(repository.findByOwnerOrderByCreatedAtDescIdDesc(any(), any())).thenAnswer(call ->
+            select(call.getArgument(0), r -> true, OLDEST_FIRST.reversed(), call.getArgument(1)));
+        when(repository.findPageBefore(any(), any(), anyLong(), any())).thenAnswer(call -> {
+            Instant createdAt = call.getArgument(1);
+            long id = call.getArgument(2);
+            return select(call.getArgument(0), r -> r.createdAt.isBefore(createdAt)
+                || (r.createdAt.equals(createdAt) && r.id < id), OLDEST_FIRST.reversed(), call.getArgument(3));
+        });
+        when(repository.findByOwnerOrderByCreatedAtAscIdAsc(any(), any())).thenAnswer(call ->
+            select(call.getArgument(0), r -> true, OLDEST_FIRST, call.getArgument(1)));
+        when(repository.findPageAfter(any(), any(), anyLong(), any())).thenAnswer(call -> {
+            Instant createdAt = call.getArgument(1);
+            long id = call.getArgument(2);
+            return select(call.getArgument(0), r -> r.createdAt.isAfter(createdAt)
+                || (r.createdAt.equals(createdAt) && r.id > id), OLDEST_FIRST, call.getArgument(3));
+        });
+    }
+
+    @Test
+    void pagesCrossMessagesSavedInTheSameMillisecond() {
+        // five messages share one timestamp, so a page boundary falls inside the tie
+        saved(1, "alice", 1000);
+        saved(2, "alice", 2000);
+        saved(3, "alice", 2000);
+        saved(4, "alice", 2000);
+        saved(5, "bob", 2000);
+        saved(6, "alice", 2000);
+        saved(7, "alice", 2000);
+        saved(8, "alice", 3000);
+        ChatHistoryService history = service(200, 500);
+
+        List<Long> ids = new ArrayList<>();
+        List<String> cursors = new ArrayList<>();
+        String cursor = null;
+        do {
+            HistoryPage page = history.page("alice", cursor, 2);
+            assertThat(page.getItems().size()).isLessThanOrEqualTo(2);
+            for (ChatMessageSummary item : page.getItems()) ids.add(item.getId());
+            cursor = page.getNextCursor();
+            if (cursor != null) cursors.add(cursor);
+        } while (cursor != null);
+
+        assertThat(ids).containsExactly(8L, 7L, 6L, 4L, 3L, 2L, 1L);
+        assertThat(cursors).containsExactly("2000.7", "2000.4", "2000.2");
+    }
+
+    @Test
+    void fullLastPageHasNoCursor() {
+        for (int id = 1; id <= 4; id++) saved(id, "alice", id * 1000L);
+        ChatHistoryService history = service(200, 500);
+
+        HistoryPage first = history.page("alice", null, 2);
+        HistoryPage second = history.page("alice", first.getNextCursor(), 2);
+
+        assertThat(first.getNextCursor()).isEqualTo("3000.3");
+        assertThat(second.getItems()).extracting(ChatMessageSummary::getId).containsExactly(2L, 1L);
+        assertThat(second.getNextCursor()).isNull();
+    }
+
+    @Test
+    void pageSizeIsKeptBetweenOneAndTheMaximum() {
+        for (int id = 1; id <= 10; id++) saved(id, "alice", 1000);
+        ChatHistoryService history = service(3, 500);
+
+        assertThat(history.page("alice", null, 0).getItems()).hasSize(1);
+        assertThat(history.page("alice", null, 50).getItems()).hasSize(3);
+        assertThat(history.page("bob", null, 5).getItems()).isEmpty();
+    }
+
+    @Test
+    void foreignCursorIsRejected() {
+        ChatHistoryService history = service(200, 500);
+
+        for (String cursor : List.of("abc", "1000", "1000.x", ".5")) {
+            assertThatThrownBy(() -> history.page("alice", cursor, 5)).isInstanceOf(IllegalArgumentException.class);
+        }
+    }
+
+    @Test
+    void exportWalksTiesOldestFirstInBatches() throws Exception {
+        saved(3, "alice", 1000);
+        saved(1, "alice", 1000);
+        saved(2, "alice", 1000);
+        saved(4, "bob", 1000);
+        saved(5, "alice", 500);
+        ChatHistoryService history = service(200, 2);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        assertThat(history.export("alice", out)).isEqualTo(4);
+
+        List<Long> ids = new ArrayList<>();
+        for (String line : out.toString(StandardCharsets.UTF_8).split("\n")) {
+            JsonNode node = objectMapper.readTree(line);
+            assertThat(node.get("botReply").asText()).isEqualTo("reply " + node.get("id").asLong());
+            ids.add(node.get("id").asLong());
+        }
+        assertThat(ids).containsExactly(5L, 1L, 2L, 3L);
+    }
+
+    private ChatHistoryService service(int maxPageSize, int exportBatch) {
+        return new ChatHistoryService(repository, objectMapper, maxPageSize, exportBatch);
+    }
+
+    private void saved(long id, String owner, long createdAtMillis) {
+        rows.add(new Row(id, owner, Instant.ofEpochMilli(createdAtMillis)));
+    }
+
+    private List<Row> select(String owner, Predicate<Row> where, Comparator<Row> order, Limit limit) {
+        return rows.stream()
+            .filter(r -> r.owner.equals(owner))
+            .filter(where)
+            .sorted(order)
+            .limit(limit.max())
+            .toList();
+    }
+
+    /** A saved message as both projections return it */
+    private static final class Row implements ChatMessageSummary, ChatMessageExport {
+        final long id;
+        final String owner;
+        final Instant createdAt;
+
+        Row(long id, String owner, Instant createdAt) {
+            this.id = id;
+            this.owner = owner;
+            this.createdAt = createdAt;
+        }
+
+        @Override public Long getId() { return id; }
+        @Override public String getUserMessage() { return "question " + id; }
+        @Override public String getBotReply() { return "reply " + id; }
+        @Override public Instant getCreatedAt() { return createdAt; }
+    }
+}
@@ -0,0 +1,92 @@
+package com.chatbot.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class ChunkerTest {
+
+    private static final String PARAGRAPH = "Alpha one two three. Bravo four five six. Charlie seven eight nine. "
+        + "Delta ten eleven twelve. Echo thirteen fourteen.";
+
+    @Test
+    void whitespaceCollapsesAndLinesKeepTheirBreaks() {
+        assertThat(chunks(Chunker.stream("  Hello   world.\n  This is\n a test.  ", 100, 0)))
+            .containsExactly("Hello world. This is a test.");
+        assertThat(chunks(Chunker.stream("- first item\n- second item\n* third item", 100, 0)))
+            .containsExactly("- first item\n- second item\n* third item");
+        assertThat(chunks(Chunker.stream((CharSequence) null, 8, 0))).isEmpty();
+    }
+
+    @Test
+    void headingStartsANewChunk() {
+        String text = "Introduction\n\nThe course covers sorting. It also covers graphs.\n\n# Grading\nExams count for half.";
+
+        assertThat(chunks(Chunker.stream(text, 40, 0))).containsExactly(
+            "Introduction\n\nThe course covers sorting. It also covers graphs.",
+            "# Grading\nExams count for half.");
+    }
+
+    @Test
+    void chunksCutMidParagraphRepeatTrailingSentences() {
+        assertThat(chunks(Chunker.stream(PARAGRAPH, 20, 0))).containsExactly(
+            "Alpha one two three. Bravo four five six. Charlie seven eight nine.",
+            "Delta ten eleven twelve. Echo thirteen fourteen.");
+        assertThat(chunks(Chunker.stream(PARAGRAPH, 20, 10))).containsExactly(
+            "Alpha one two three. Bravo four five six. Charlie seven eight nine.",
+            "Charlie seven eight nine. Delta ten eleven twelve.",
+            "Delta ten eleven twelve. Echo thirteen fourteen.");
+    }
+
+    @Test
+    void readerAndTextGiveTheSameChunks() {
+        assertThat(chunks(Chunker.stream(new StringReader(PARAGRAPH), 20, 10)))
+            .isEqualTo(chunks(Chunker.stream(PARAGRAPH, 20, 10)));
+    }
+
+    @Test
+    void wordLongerThanAChunkIsHardCut() {
+        assertThat(chunks(Chunker.stream("x".repeat(100), 8, 0)))
+            .containsExactly("x".repeat(32), "x".repeat(32), "x".repeat(32), "xxxx");
+    }
+
+    @Test
+    void noChunkIsOnlyThePreviousChunksOverlap() {
+        Random random = new Random(1);
+        int id = 0;
+        for (int doc = 0; doc < 1000; doc++) {
+            StringBuilder text = new StringBuilder();
+            int sentences = 1 + random.nextInt(60);
+            for (int s = 0; s < sentences; s++) {
+                int words = 1 + random.nextInt(12);
+                for (int w = 0; w < words; w++) {
+                    // distinct words, so a repeated tail can only come from the overlap
+                    text.append("w".repeat(1 + random.nextInt(5))).append(Integer.toString(++id, 36));
+                    text.append(w == words - 1 ? ". " : " ");
+                }
+                if (random.nextInt(10) == 0) text.append("\n\n");
+            }
+            int maxTokens = 8 + random.nextInt(80);
+            int overlapTokens = random.nextInt(maxTokens);
+
+            String previous = null;
+            for (String chunk : chunks(Chunker.stream(text, maxTokens, overlapTokens))) {
+                assertThat(ContextAssembler.estimateTokens(chunk)).isLessThanOrEqualTo(maxTokens);
+                if (previous != null) assertThat(previous).doesNotEndWith(chunk);
+                previous = chunk;
+            }
+        }
+    }
+
+    private static List<String> chunks(Iterator<String> chunker) {
+        List<String> out = new ArrayList<>();
+        chunker.forEachRemaining(out::add);
+        return out;
+    }
+}
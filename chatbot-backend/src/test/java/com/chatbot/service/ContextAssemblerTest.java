@@ -0,0 +1,84 @@
+package com.chatbot.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+class ContextAssemblerTest {
+
+    private final ContextAssembler assembler = new ContextAssembler(1500);
+
+    @Test
+    void neighbouringChunksAreStitchedWithoutTheOverlap() {
+        String context = assembler.assemble(List.of(
+            file("notes.pdf", 1, "the exam covers chapters one to four. Bring a calculator."),
+            file("notes.pdf", 0, "Welcome to the course. Note that the exam covers chapters one to four.")));
+
+        assertThat(context).isEqualTo(
+            "[FILE: notes.pdf]\nWelcome to the course. Note that the exam covers chapters one to four. Bring a calculator.");
+    }
+
+    @Test
+    void chunksWithoutSharedTextAreJoinedWithASpace() {
+        assertThat(ContextAssembler.estimateTokens("abcde")).isEqualTo(2);
+
+        StringBuilder run = new StringBuilder("First part.");
+        ContextAssembler.appendWithoutOverlap(run, "  Second part.  ");
+        assertThat(run.toString()).isEqualTo("First part. Second part.");
+    }
+
+    @Test
+    void duplicatesAreDroppedAndGapsStartNewBlocks() {
+        String context = assembler.assemble(List.of(
+            file("a.txt", 0, "Chunk zero."),
+            file("a.txt", 0, "Chunk zero."),
+            file("a.txt", 2, "Chunk two."),
+            resource("Handbook", "https://drive/handbook", "Rules and regulations."),
+            file("b.txt", 5, "Other file.")));
+
+        // sources keep the order of their best hit
+        assertThat(context).isEqualTo(String.join("\n---\n",
+            "[FILE: a.txt]\nChunk zero.",
+            "[FILE: a.txt]\nChunk two.",
+            "**Handbook** — https://drive/handbook\nRules and regulations.",
+            "[FILE: b.txt]\nOther file."));
+    }
+
+    @Test
+    void contextStopsAtTheTokenBudget() {
+        String words = "word ".repeat(200).strip(); // 999 chars, 250 tokens
+        ContextAssembler small = new ContextAssembler(300);
+
+        String context = small.assemble(List.of(file("a.txt", 0, words), file("b.txt", 0, words), file("c.txt", 0, words)));
+
+        // the first block fits whole, the second is cut at a word with a marker, the third is left out
+        assertThat(ContextAssembler.estimateTokens(context)).isLessThanOrEqualTo(300);
+        assertThat(context).startsWith("[FILE: a.txt]\n" + words + "\n---\n[FILE: b.txt]\nword").endsWith("word …");
+        assertThat(context).doesNotContain("c.txt");
+    }
+
+    @Test
+    void smallRemainderIsNotFilledWithAFragment() {
+        String words = "word ".repeat(200).strip();
+        ContextAssembler small = new ContextAssembler(280);
+
+        assertThat(small.assemble(List.of(file("a.txt", 0, words), file("b.txt", 0, words))))
+            .isEqualTo("[FILE: a.txt]\n" + words);
+    }
+
+    @Test
+    void hitsWithoutTextAreSkipped() {
+        assertThat(assembler.assemble(List.of(Map.of("id", "x"), file("a.txt", 0, "   ")))).isEmpty();
+    }
+
+    private static Map<String, Object> file(String name, int chunk, String text) {
+        return Map.of("payload", Map.of("fileName", name, "chunkIndex", chunk, "text", text));
+    }
+
+    private static Map<String, Object> resource(String name, String link, String text) {
+        return Map.of("payload", Map.of("name", name, "driveLink", link, "text", text));
+    }
+}
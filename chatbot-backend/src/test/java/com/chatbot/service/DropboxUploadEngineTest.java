@@ -0,0 +1,210 @@
+package com.chatbot.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class DropboxUploadEngineTest {
+
+    private static final long PART = UploadSessionApi.PART_ALIGNMENT;
+
+    @TempDir
+    Path dir;
+
+    private final StubSessions api = new StubSessions();
+    private DropboxUploadEngine engine;
+
+    @AfterEach
+    void tearDown() {
+        if (engine != null) engine.close();
+    }
+
+    @Test
+    void failedPartIsResentAloneAndTheFileArrivesWhole() throws Exception {
+        engine = new DropboxUploadEngine(api, PART, 4, 3, Duration.ofMillis(1), Duration.ZERO);
+        byte[] data = random(3 * PART + 1000);
+        Path source = Files.write(dir.resolve("big.bin"), data);
+        // the connection drops halfway through the second part
+        api.failOnce.add(PART);
+
+        assertThat(engine.upload(source, "/big.bin")).isEqualTo("/big.bin");
+
+        assertThat(api.stored.get("/big.bin")).isEqualTo(data);
+        assertThat(engine.retries()).isEqualTo(1);
+        assertThat(engine.uploadedParts()).isEqualTo(4);
+        assertThat(api.attempts.get(0L)).hasValue(1);
+        assertThat(api.attempts.get(PART)).hasValue(2);
+        assertThat(api.attempts.get(2 * PART)).hasValue(1);
+        assertThat(api.attempts.get(3 * PART)).hasValue(1);
+        assertThat(api.closedEarly).hasValue(0);
+        assertThat(api.starts).hasValue(1);
+    }
+
+    @Test
+    void failedClosingPartIsRetriedWithoutRestartingTheSession() throws Exception {
+        engine = new DropboxUploadEngine(api, PART, 2, 3, Duration.ofMillis(1), Duration.ZERO);
+        byte[] data = random(PART + 10);
+        Path source = Files.write(dir.resolve("two.bin"), data);
+        api.failOnce.add(PART);
+
+        engine.upload(source, "/two.bin");
+
+        assertThat(api.stored.get("/two.bin")).isEqualTo(data);
+        assertThat(api.starts).hasValue(1);
+        assertThat(api.attempts.get(0L)).hasValue(1);
+        assertThat(api.attempts.get(PART)).hasValue(2);
+    }
+
+    @Test
+    void givesUpAfterMaxAttempts() throws Exception {
+        engine = new DropboxUploadEngine(api, PART, 2, 2, Duration.ofMillis(1), Duration.ZERO);
+        Path source = Files.write(dir.resolve("big.bin"), random(2 * PART + 1));
+        api.failAlways.add(0L);
+
+        assertThatThrownBy(() -> engine.upload(source, "/big.bin")).isInstanceOf(IOException.class);
+
+        assertThat(api.attempts.get(0L)).hasValue(2);
+        assertThat(api.stored).isEmpty();
+        assertThat(engine.failures()).isEqualTo(1);
+        assertThat(engine.uploadedFiles()).isZero();
+    }
+
+    @Test
+    void smallFileGoesInOneRequest() throws Exception {
+        engine = new DropboxUploadEngine(api, PART, 2, 3, Duration.ofMillis(1), Duration.ZERO);
+        byte[] data = random(1000);
+        Path source = Files.write(dir.resolve("small.txt"), data);
+
+        engine.upload(source, "/small.txt");
+
+        assertThat(api.stored.get("/small.txt")).isEqualTo(data);
+        assertThat(api.starts).hasValue(0);
+        assertThat(engine.uploadedBytes()).isEqualTo(1000);
+    }
+
+    @Test
+    void commitsFinishingTogetherShareABatch() throws Exception {
+        engine = new DropboxUploadEngine(api, PART, 4, 3, Duration.ofMillis(1), Duration.ofMillis(500));
+        Path a = Files.write(dir.resolve("a.bin"), random(PART + 1));
+        Path b = Files.write(dir.resolve("b.bin"), random(PART + 2));
+
+        CompletableFuture<String> first = CompletableFuture.supplyAsync(() -> uploadQuietly(a, "/a.bin"));
+        CompletableFuture<String> second = CompletableFuture.supplyAsync(() -> uploadQuietly(b, "/b.bin"));
+
+        assertThat(first.get(10, TimeUnit.SECONDS)).isEqualTo("/a.bin");
+        assertThat(second.get(10, TimeUnit.SECONDS)).isEqualTo("/b.bin");
+        assertThat(engine.batches()).isEqualTo(1);
+        assertThat(api.finishes).hasValue(0);
+    }
+
+    private String uploadQuietly(Path source, String path) {
+        try {
+            return engine.upload(source, path);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static byte[] random(long n) {
+        byte[] b = new byte[(int) n];
+        new Random(n).nextBytes(b);
+        return b;
+    }
+
+    /**
+     * Upload sessions in memory. Appends at an offset in {@code failOnce} read half the
+     * part and then fail once with an IOException (retryable); offsets in {@code failAlways}
+     * fail every time.
+     */
+    private static final class StubSessions implements UploadSessionApi {
+        final Set<Long> failOnce = ConcurrentHashMap.newKeySet();
+        final Set<Long> failAlways = ConcurrentHashMap.newKeySet();
+        final Map<Long, AtomicInteger> attempts = new ConcurrentHashMap<>();
+        final Map<String, ConcurrentSkipListMap<Long, byte[]>> sessions = new ConcurrentHashMap<>();
+        final Map<String, byte[]> stored = new ConcurrentHashMap<>();
+        final AtomicInteger starts = new AtomicInteger();
+        final AtomicInteger finishes = new AtomicInteger();
+        final AtomicInteger closedEarly = new AtomicInteger();
+        private final AtomicInteger ids = new AtomicInteger();
+
+        @Override
+        public String upload(String path, InputStream data, long length) throws Exception {
+            stored.put(path, data.readNBytes((int) length));
+            return path;
+        }
+
+        @Override
+        public String start() {
+            starts.incrementAndGet();
+            String id = "session-" + ids.incrementAndGet();
+            sessions.put(id, new ConcurrentSkipListMap<>());
+            return id;
+        }
+
+        @Override
+        public void append(String sessionId, long offset, InputStream data, long length, boolean close) throws Exception {
+            attempts.computeIfAbsent(offset, o -> new AtomicInteger()).incrementAndGet();
+            if (failAlways.contains(offset) || failOnce.remove(offset)) {
+                data.readNBytes((int) (length / 2));
+                throw new IOException("connection reset at " + offset);
+            }
+            byte[] part = data.readNBytes((int) length);
+            if (part.length != length) throw new IllegalStateException("short part at " + offset);
+            ConcurrentSkipListMap<Long, byte[]> parts = sessions.get(sessionId);
+            // the closing part must come after every other part
+            if (close && contiguousLength(parts) != offset) closedEarly.incrementAndGet();
+            parts.put(offset, part);
+        }
+
+        @Override
+        public String finish(Commit commit) {
+            finishes.incrementAndGet();
+            return store(commit);
+        }
+
+        @Override
+        public List<Result> finishBatch(List<Commit> commits) {
+            List<Result> results = new ArrayList<>();
+            for (Commit c : commits) results.add(Result.ok(store(c)));
+            return results;
+        }
+
+        private String store(Commit commit) {
+            ConcurrentSkipListMap<Long, byte[]> parts = sessions.remove(commit.getSessionId());
+            if (contiguousLength(parts) != commit.getSize()) throw new IllegalStateException("incomplete session");
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            for (byte[] part : parts.values()) out.writeBytes(part);
+            stored.put(commit.getPath(), out.toByteArray());
+            return commit.getPath();
+        }
+
+        private static long contiguousLength(ConcurrentSkipListMap<Long, byte[]> parts) {
+            long end = 0;
+            for (Map.Entry<Long, byte[]> e : parts.entrySet()) {
+                if (e.getKey() != end) return -1;
+                end += e.getValue().length;
+            }
+            return end;
+        }
+    }
+}
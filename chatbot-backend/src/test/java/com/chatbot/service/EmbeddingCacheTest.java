@@ -0,0 +1,114 @@
+package com.chatbot.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+import java.time.Duration;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import com.chatbot.service.EmbeddingCache.Encoding;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class EmbeddingCacheTest {
+
+    @Test
+    void everyHalfSurvivesARoundTrip() {
+        for (int bits = 0; bits <= 0xffff; bits++) {
+            short h = (short) bits;
+            float f = EmbeddingCache.fromHalf(h);
+            if (Float.isNaN(f)) {
+                assertThat(Float.isNaN(EmbeddingCache.fromHalf(EmbeddingCache.toHalf(f)))).isTrue();
+            } else {
+                assertThat(EmbeddingCache.toHalf(f)).as("0x%04x", bits).isEqualTo(h);
+            }
+        }
+    }
+
+    @Test
+    void halfEncodesKnownValues() {
+        assertThat(EmbeddingCache.toHalf(1f)).isEqualTo((short) 0x3c00);
+        assertThat(EmbeddingCache.toHalf(-2f)).isEqualTo((short) 0xc000);
+        assertThat(EmbeddingCache.toHalf(65504f)).isEqualTo((short) 0x7bff);
+        // past the largest half: infinity
+        assertThat(EmbeddingCache.toHalf(65520f)).isEqualTo((short) 0x7c00);
+        assertThat(EmbeddingCache.toHalf(Float.NEGATIVE_INFINITY)).isEqualTo((short) 0xfc00);
+        // the smallest subnormal, and below it signed zero
+        assertThat(EmbeddingCache.toHalf(0x1p-24f)).isEqualTo((short) 0x0001);
+        assertThat(EmbeddingCache.toHalf(-1e-9f)).isEqualTo((short) 0x8000);
+    }
+
+    @Test
+    void halfRoundsToTheNearestValue() {
+        Random random = new Random(11);
+        for (int i = 0; i < 100_000; i++) {
+            float f = (float) ((random.nextDouble() * 2 - 1) * Math.pow(10, random.nextInt(8) - 3));
+            if (Math.abs(f) < 0x1p-14f) continue; // subnormal halves have a fixed step
+            float back = EmbeddingCache.fromHalf(EmbeddingCache.toHalf(f));
+            // a half keeps 10 of a float's 23 mantissa bits
+            assertThat(back).isCloseTo(f, within(Math.ulp(f) * 4096));
+        }
+    }
+
+    @Test
+    void encodingsKeepVectorsClose() {
+        float[] v = new float[384];
+        Random random = new Random(3);
+        for (int i = 0; i < v.length; i++) v[i] = (float) random.nextGaussian() * 0.05f;
+        float maxAbs = 0;
+        for (float f : v) maxAbs = Math.max(maxAbs, Math.abs(f));
+
+        assertThat(roundTrip(v, Encoding.FLOAT32)).containsExactly(v);
+        float[] half = roundTrip(v, Encoding.FLOAT16);
+        float[] int8 = roundTrip(v, Encoding.INT8);
+        for (int i = 0; i < v.length; i++) {
+            assertThat(half[i]).isCloseTo(v[i], within(Math.ulp(v[i]) * 4096));
+            // INT8 is off by at most half of one 1/127 step of the largest component
+            assertThat(int8[i]).isCloseTo(v[i], within(maxAbs / 127 / 2 * 1.0001f));
+        }
+        assertThat(roundTrip(new float[4], Encoding.INT8)).containsExactly(0f, 0f, 0f, 0f);
+    }
+
+    @Test
+    void storedBytesFollowTheEncoding() {
+        for (Encoding encoding : Encoding.values()) {
+            EmbeddingCache cache = new EmbeddingCache("test", 10, Duration.ZERO, encoding);
+            cache.put("a", new float[100]);
+            int perComponent = encoding == Encoding.FLOAT32 ? 4 : encoding == Encoding.FLOAT16 ? 2 : 1;
+            assertThat(cache.storedBytes()).as(encoding.name()).isEqualTo(100L * perComponent);
+        }
+    }
+
+    @Test
+    void leastRecentlyUsedEntryIsEvicted() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        EmbeddingCache cache = new EmbeddingCache("test", 2, Duration.ofHours(1), Encoding.FLOAT32).bindTo(registry);
+        cache.put("a", new float[] { 1 });
+        cache.put("b", new float[] { 2 });
+        cache.get("a");
+        cache.put("c", new float[] { 3 });
+
+        assertThat(cache.get("b")).isNull();
+        assertThat(cache.get("a")).containsExactly(1f);
+        assertThat(cache.get("c")).containsExactly(3f);
+        assertThat(cache.size()).isEqualTo(2);
+        assertThat(cache.storedBytes()).isEqualTo(8);
+        assertThat(registry.get("rag.embedding.cache.evictions").functionCounter().count()).isEqualTo(1);
+        assertThat(registry.get("rag.embedding.cache.hits").functionCounter().count()).isEqualTo(3);
+        assertThat(registry.get("rag.embedding.cache.misses").functionCounter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void equivalentQueriesShareAKey() {
+        assertThat(EmbeddingCache.normalizeQuery("  What's the  DEADLINE?? ")).isEqualTo("what s the deadline");
+        assertThat(EmbeddingCache.normalizeQuery(null)).isEmpty();
+    }
+
+    private static float[] roundTrip(float[] v, Encoding encoding) {
+        EmbeddingCache cache = new EmbeddingCache("test", 10, Duration.ZERO, encoding);
+        cache.put("k", v);
+        return cache.get("k");
+    }
+}
@@ -0,0 +1,112 @@
+package com.chatbot.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import com.chatbot.service.HnswIndex.Metric;
+
+class HnswIndexTest {
+
+    private static final int DIM = 24;
+
+    private final Random random = new Random(3);
+
+    @Test
+    void recallAgainstBruteForce() {
+        for (Metric metric : Metric.values()) {
+            float[][] vectors = vectors(2000);
+            HnswIndex index = new HnswIndex(metric, 16, 100);
+            for (float[] v : vectors) index.add(v);
+
+            int found = 0;
+            for (int q = 0; q < 100; q++) {
+                float[] query = vector();
+                Set<Integer> truth = bruteForce(index, vectors, query, 10);
+                for (int node : index.search(query, 10, 64, null).nodes) {
+                    if (truth.contains(node)) found++;
+                }
+            }
+            assertThat(found / 1000.0).as(metric.name()).isGreaterThanOrEqualTo(0.95);
+        }
+    }
+
+    @Test
+    void resultsComeBestFirst() {
+        HnswIndex index = new HnswIndex(Metric.COSINE, 8, 50);
+        for (float[] v : vectors(300)) index.add(v);
+
+        HnswIndex.Result result = index.search(vector(), 20, 32, null);
+
+        assertThat(result.nodes).hasSize(20);
+        for (int i = 1; i < result.scores.length; i++) {
+            assertThat(result.scores[i]).isLessThanOrEqualTo(result.scores[i - 1]);
+        }
+    }
+
+    @Test
+    void deletedNodesAreSkipped() {
+        float[][] vectors = vectors(200);
+        HnswIndex index = new HnswIndex(Metric.COSINE, 8, 50);
+        for (float[] v : vectors) index.add(v);
+
+        index.markDeleted(17);
+        index.markDeleted(17);
+
+        assertThat(index.deletedCount()).isEqualTo(1);
+        assertThat(index.liveCount()).isEqualTo(199);
+        assertThat(index.search(vectors[17], 5, 32, null).nodes).hasSize(5).doesNotContain(17);
+    }
+
+    @Test
+    void selectiveFilterStillFillsK() {
+        HnswIndex index = new HnswIndex(Metric.COSINE, 8, 50);
+        for (float[] v : vectors(500)) index.add(v);
+
+        // one node in fifty passes: the beam has to widen to find ten
+        int[] nodes = index.search(vector(), 10, 16, n -> n % 50 == 0).nodes;
+
+        assertThat(nodes).hasSize(10);
+        for (int n : nodes) assertThat(n % 50).isZero();
+    }
+
+    @Test
+    void emptyIndexFindsNothingAndDimensionIsFixedByTheFirstVector() {
+        HnswIndex index = new HnswIndex(Metric.DOT, 8, 50);
+        assertThat(index.search(vector(), 5, 16, null).nodes).isEmpty();
+
+        index.add(vector());
+        assertThatThrownBy(() -> index.add(new float[DIM + 1])).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private Set<Integer> bruteForce(HnswIndex index, float[][] vectors, float[] query, int k) {
+        float[] q = index.prepare(query);
+        Integer[] order = new Integer[vectors.length];
+        float[] scores = new float[vectors.length];
+        for (int i = 0; i < vectors.length; i++) {
+            order[i] = i;
+            float[] v = index.prepare(vectors[i]);
+            for (int d = 0; d < DIM; d++) scores[i] += q[d] * v[d];
+        }
+        Arrays.sort(order, (a, b) -> Float.compare(scores[b], scores[a]));
+        return new HashSet<>(Arrays.asList(order).subList(0, k));
+    }
+
+    private float[][] vectors(int n) {
+        float[][] out = new float[n][];
+        for (int i = 0; i < n; i++) out[i] = vector();
+        return out;
+    }
+
+    private float[] vector() {
+        float[] v = new float[DIM];
+        for (int i = 0; i < DIM; i++) v[i] = (float) random.nextGaussian();
+        return v;
+    }
+}
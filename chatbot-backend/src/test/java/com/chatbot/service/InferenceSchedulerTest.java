@@ -0,0 +1,186 @@
+package com.chatbot.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import com.chatbot.service.InferenceScheduler.Priority;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+class InferenceSchedulerTest {
+
+    private final List<String> started = new CopyOnWriteArrayList<>();
+
+    private InferenceScheduler scheduler(int maxInFlight, int bulkMaxInFlight, int maxQueuedPerUser) {
+        return new InferenceScheduler(maxInFlight, bulkMaxInFlight, maxQueuedPerUser, Duration.ofSeconds(30),
+            new SimpleMeterRegistry());
+    }
+
+    /** A call that records when it is started and answers at once */
+    private Mono<String> call(String name) {
+        started.add(name);
+        return Mono.just(name);
+    }
+
+    @Test
+    void usersTakeTurns() throws Exception {
+        InferenceScheduler scheduler = scheduler(1, 1, 5);
+        Sinks.One<String> blocker = Sinks.one();
+        CompletableFuture<String> busy = scheduler
+            .submitOne("dave", Priority.INTERACTIVE, null, blocker::asMono).toFuture();
+
+        // alice queues three prompts before bob and carol ask once each
+        List<CompletableFuture<String>> results = List.of(
+            submit(scheduler, "alice", Priority.INTERACTIVE, "a1"),
+            submit(scheduler, "alice", Priority.INTERACTIVE, "a2"),
+            submit(scheduler, "alice", Priority.INTERACTIVE, "a3"),
+            submit(scheduler, "bob", Priority.INTERACTIVE, "b1"),
+            submit(scheduler, "carol", Priority.INTERACTIVE, "c1"));
+        assertThat(scheduler.queued(Priority.INTERACTIVE)).isEqualTo(5);
+        assertThat(started).isEmpty();
+
+        blocker.tryEmitValue("done");
+
+        assertThat(busy.get()).isEqualTo("done");
+        assertThat(started).containsExactly("a1", "b1", "c1", "a2", "a3");
+        for (CompletableFuture<String> r : results) assertThat(r).isDone();
+        assertThat(scheduler.inFlight()).isZero();
+    }
+
+    @Test
+    void interactiveWorkGoesBeforeBulk() throws Exception {
+        InferenceScheduler scheduler = scheduler(1, 1, 5);
+        Sinks.One<String> blocker = Sinks.one();
+        scheduler.submitOne("dave", Priority.INTERACTIVE, null, blocker::asMono).toFuture();
+
+        submit(scheduler, InferenceScheduler.BACKGROUND, Priority.BULK, "reindex");
+        submit(scheduler, "alice", Priority.INTERACTIVE, "question");
+        blocker.tryEmitValue("done");
+
+        assertThat(started).containsExactly("question", "reindex");
+    }
+
+    @Test
+    void bulkNeverHoldsEverySlot() {
+        InferenceScheduler scheduler = scheduler(2, 1, 5);
+        Sinks.One<String> bulk = Sinks.one();
+        scheduler.submitOne(InferenceScheduler.BACKGROUND, Priority.BULK, null, bulk::asMono).toFuture();
+
+        submit(scheduler, InferenceScheduler.BACKGROUND, Priority.BULK, "second bulk");
+        submit(scheduler, "alice", Priority.INTERACTIVE, "question");
+
+        assertThat(started).containsExactly("question");
+        bulk.tryEmitValue("done");
+        assertThat(started).containsExactly("question", "second bulk");
+    }
+
+    @Test
+    void identicalRequestsShareOneCall() throws Exception {
+        InferenceScheduler scheduler = scheduler(1, 1, 5);
+        Sinks.One<String> blocker = Sinks.one();
+        scheduler.submitOne("dave", Priority.INTERACTIVE, null, blocker::asMono).toFuture();
+
+        AtomicInteger calls = new AtomicInteger();
+        Sinks.One<String> answer = Sinks.one();
+        CompletableFuture<String> first = scheduler.submitOne("alice", Priority.INTERACTIVE, "same prompt", () -> {
+            calls.incrementAndGet();
+            return answer.asMono();
+        }).toFuture();
+        CompletableFuture<String> second = scheduler.submitOne("bob", Priority.INTERACTIVE, "same prompt", () -> {
+            calls.incrementAndGet();
+            return answer.asMono();
+        }).toFuture();
+        assertThat(scheduler.queued(Priority.INTERACTIVE)).isEqualTo(1);
+
+        blocker.tryEmitValue("done");
+        // a caller arriving while it runs joins too
+        CompletableFuture<String> third = scheduler.submitOne("carol", Priority.INTERACTIVE, "same prompt", () -> {
+            calls.incrementAndGet();
+            return answer.asMono();
+        }).toFuture();
+        answer.tryEmitValue("42");
+
+        assertThat(first.get()).isEqualTo("42");
+        assertThat(second.get()).isEqualTo("42");
+        assertThat(third.get()).isEqualTo("42");
+        assertThat(calls).hasValue(1);
+        assertThat(scheduler.coalesced()).isEqualTo(2);
+
+        // once finished, the key is free again
+        assertThat(scheduler.submitOne("alice", Priority.INTERACTIVE, "same prompt", () -> call("again")).block())
+            .isEqualTo("again");
+        assertThat(scheduler.coalesced()).isEqualTo(2);
+    }
+
+    @Test
+    void userWithTooManyQueuedIsTurnedAway() throws Exception {
+        InferenceScheduler scheduler = scheduler(1, 1, 2);
+        Sinks.One<String> blocker = Sinks.one();
+        scheduler.submitOne("dave", Priority.INTERACTIVE, null, blocker::asMono).toFuture();
+
+        submit(scheduler, "alice", Priority.INTERACTIVE, "a1");
+        submit(scheduler, "alice", Priority.INTERACTIVE, "a2");
+        CompletableFuture<String> third = submit(scheduler, "alice", Priority.INTERACTIVE, "a3");
+        CompletableFuture<String> other = submit(scheduler, "bob", Priority.INTERACTIVE, "b1");
+
+        assertThatThrownBy(third::get).hasCauseInstanceOf(DownstreamLimiter.BusyException.class);
+        assertThat(scheduler.rejected()).isEqualTo(1);
+
+        blocker.tryEmitValue("done");
+        assertThat(other.get()).isEqualTo("b1");
+        assertThat(started).containsExactly("a1", "b1", "a2");
+    }
+
+    @Test
+    void cancelledWaiterGivesUpItsPlace() {
+        InferenceScheduler scheduler = scheduler(1, 1, 5);
+        Sinks.One<String> blocker = Sinks.one();
+        scheduler.submitOne("dave", Priority.INTERACTIVE, null, blocker::asMono).toFuture();
+
+        Disposable gone = scheduler.submitOne("alice", Priority.INTERACTIVE, null, () -> call("a1")).subscribe();
+        submit(scheduler, "bob", Priority.INTERACTIVE, "b1");
+        gone.dispose();
+        assertThat(scheduler.queued(Priority.INTERACTIVE)).isEqualTo(1);
+
+        blocker.tryEmitValue("done");
+        assertThat(started).containsExactly("b1");
+        assertThat(scheduler.inFlight()).isZero();
+    }
+
+    @Test
+    void slotsGrowWithTheServers() {
+        AtomicInteger servers = new AtomicInteger(2);
+        InferenceScheduler scheduler = new InferenceScheduler(1, 1, 5, Duration.ofSeconds(30), servers::get,
+            new SimpleMeterRegistry());
+        Sinks.One<String> first = Sinks.one();
+        Sinks.One<String> second = Sinks.one();
+        scheduler.submitOne("alice", Priority.INTERACTIVE, null, first::asMono).toFuture();
+        scheduler.submitOne("bob", Priority.INTERACTIVE, null, second::asMono).toFuture();
+        submit(scheduler, "carol", Priority.INTERACTIVE, "c1");
+
+        assertThat(scheduler.inFlight()).isEqualTo(2);
+        assertThat(started).isEmpty();
+
+        // one server went away: the freed slot is not handed on
+        servers.set(1);
+        first.tryEmitValue("done");
+        assertThat(started).isEmpty();
+        second.tryEmitValue("done");
+        assertThat(started).containsExactly("c1");
+    }
+
+    private CompletableFuture<String> submit(InferenceScheduler scheduler, String user, Priority priority, String name) {
+        return scheduler.submitOne(user, priority, null, () -> call(name)).toFuture();
+    }
+}
@@ -0,0 +1,131 @@
+package com.chatbot.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+import com.chatbot.event.CorpusChangedEvent;
+import com.chatbot.event.CorpusChangedEvent.Action;
+import com.chatbot.model.Resource;
+import com.chatbot.model.UploadedFile;
+import com.chatbot.repository.ResourceRepository;
+import com.chatbot.repository.UploadedFileRepository;
+import com.chatbot.service.IntentRouter.Intent;
+import com.chatbot.service.IntentRouter.Route;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class IntentRouterTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final IntentRouter router = new IntentRouter(mock(ResourceRepository.class), mock(UploadedFileRepository.class),
+        registry);
+
+    @Test
+    void keywordsPickTheRoute() {
+        assertThat(router.route("when is the next assignment due").getIntent()).isEqualTo(Intent.DEADLINES);
+        assertThat(router.route("show all deadlines").isAllDeadlines()).isTrue();
+        assertThat(router.route("what is my timetable").getIntent()).isEqualTo(Intent.TIMETABLE);
+        assertThat(router.route("next lab").getIntent()).isEqualTo(Intent.TIMETABLE);
+        assertThat(router.route("explain recursion").getIntent()).isEqualTo(Intent.CHAT);
+    }
+
+    @Test
+    void timetableWordsCountOnlyAsWholeWords() {
+        // "lab" is in "syllabus" and "now" in "know"
+        assertThat(router.route("i know the syllabus").getIntent()).isEqualTo(Intent.CHAT);
+        assertThat(router.route("classes on friday").getIntent()).isEqualTo(Intent.TIMETABLE);
+    }
+
+    @Test
+    void downloadOnlyAsTheFirstWord() {
+        assertThat(router.route("download notes").getIntent()).isEqualTo(Intent.DOWNLOAD);
+        assertThat(router.route("how do i download notes").getIntent()).isEqualTo(Intent.CHAT);
+    }
+
+    @Test
+    void downloadPicksTheFileTheQueryNames() {
+        saved(file(1L, "Week1-Notes.pdf"));
+        saved(file(2L, "week2-notes.pdf"));
+        saved(file(3L, "notes.pdf"));
+
+        assertThat(download("download notes.pdf")).isEqualTo("notes.pdf");
+        // the first by id whose name contains the query
+        assertThat(download("download notes")).isEqualTo("Week1-Notes.pdf");
+        assertThat(download("download week2")).isEqualTo("week2-notes.pdf");
+        // no name contains the query: the longest name the message mentions
+        assertThat(download("download please week2-notes.pdf now")).isEqualTo("week2-notes.pdf");
+        assertThat(download("download slides")).isNull();
+    }
+
+    @Test
+    void containsMatchAgreesWithAScan() {
+        String[] names = { "a.txt", "ba.txt", "abab.md", "b", "aab.txt", "txt" };
+        for (int i = 0; i < names.length; i++) saved(file(i + 1L, names[i]));
+
+        for (String query : new String[] { "a", "b", "ab", "ba", ".txt", "txt", "t", "x", "abab.md", "zz" }) {
+            // a file named exactly goes first, then the first by id whose name contains the query
+            String expected = Arrays.asList(names).contains(query) ? query : null;
+            for (int i = 0; expected == null && i < names.length; i++) {
+                if (names[i].contains(query)) expected = names[i];
+            }
+            assertThat(router.route("download " + query).getFileName()).as(query).isEqualTo(expected);
+        }
+    }
+
+    @Test
+    void resourcesByNameAndType() {
+        saved(resource(1L, "Course Handbook", "pdf"));
+        saved(resource(2L, "Lecture Recordings", "video"));
+        saved(resource(3L, "Past Papers", "pdf"));
+
+        Route named = router.route("where is the course handbook");
+        assertThat(named.getIntent()).isEqualTo(Intent.RESOURCE);
+        assertThat(named.getResource().getName()).isEqualTo("Course Handbook");
+
+        Route typed = router.route("any pdf for this");
+        assertThat(typed.getResourcesByType()).extracting(IntentRouter.ResourceLink::getName)
+            .containsExactly("Course Handbook", "Past Papers");
+    }
+
+    @Test
+    void changesRebuildOnceOnTheNextMessage() {
+        saved(resource(1L, "Handbook", "pdf"));
+        saved(file(1L, "a.txt"));
+        router.route("hello");
+        double rebuilds = registry.get("chat.intent.rebuilds").functionCounter().count();
+
+        router.route("hello again");
+        assertThat(registry.get("chat.intent.rebuilds").functionCounter().count()).isEqualTo(rebuilds);
+
+        router.onCorpusChanged(new CorpusChangedEvent(resource(1L, "Handbook", "pdf"), Action.DELETED));
+        assertThat(router.route("handbook").getIntent()).isEqualTo(Intent.CHAT);
+        assertThat(registry.get("chat.intent.rebuilds").functionCounter().count()).isEqualTo(rebuilds + 1);
+    }
+
+    private String download(String message) {
+        Route route = router.route(message);
+        assertThat(route.getIntent()).isEqualTo(Intent.DOWNLOAD);
+        return route.getFileName();
+    }
+
+    private void saved(Object entity) {
+        router.onCorpusChanged(new CorpusChangedEvent(entity, Action.SAVED));
+    }
+
+    private static UploadedFile file(Long id, String name) {
+        return new UploadedFile(id, name, "text/plain", "blob-" + id, null);
+    }
+
+    private static Resource resource(Long id, String name, String type) {
+        Resource r = new Resource();
+        r.setId(id);
+        r.setName(name);
+        r.setType(type);
+        r.setDriveLink("https://drive/" + id);
+        return r;
+    }
+}
@@ -0,0 +1,90 @@
+package com.chatbot.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.core.JsonFactory;
+
+class OllamaStreamDecoderTest {
+
+    private static final String STREAM = String.join("\n",
+        "{\"model\":\"llama3\",\"created_at\":\"2026-01-01T00:00:00Z\",\"response\":\"Hel\",\"done\":false}",
+        "{\"model\":\"llama3\",\"response\":\"lo \\\"wörld\\\" 👋\",\"done\":false}",
+        "{\"model\":\"llama3\",\"response\":\"\",\"meta\":{\"response\":\"nested, not a token\"},\"done\":false}",
+        "{\"model\":\"llama3\",\"response\":\"!\",\"done\":true,\"context\":[1,2,3,[4,5]],\"total_duration\":12345}",
+        "");
+
+    private final JsonFactory factory = new JsonFactory();
+
+    @Test
+    void wholeStreamDecodesToItsTokens() throws Exception {
+        OllamaStreamDecoder decoder = new OllamaStreamDecoder(factory);
+
+        assertThat(decode(decoder, bytes(STREAM))).containsExactly("Hel", "lo \"wörld\" 👋", "!");
+        assertThat(decoder.isDone()).isTrue();
+    }
+
+    @Test
+    void framesSplitAnywhereDecodeTheSame() throws Exception {
+        byte[] all = bytes(STREAM);
+        for (int cut = 1; cut < all.length; cut++) {
+            OllamaStreamDecoder decoder = new OllamaStreamDecoder(factory);
+            List<String> tokens = decode(decoder, slice(all, 0, cut), slice(all, cut, all.length));
+
+            // a string value is only reported once its closing quote has arrived
+            assertThat(tokens).as("cut at %d", cut).containsExactly("Hel", "lo \"wörld\" 👋", "!");
+        }
+    }
+
+    @Test
+    void oneByteAtATime() throws Exception {
+        byte[] all = bytes(STREAM);
+        byte[][] pieces = new byte[all.length][];
+        for (int i = 0; i < all.length; i++) pieces[i] = new byte[] { all[i] };
+        OllamaStreamDecoder decoder = new OllamaStreamDecoder(factory);
+
+        assertThat(decode(decoder, pieces)).containsExactly("Hel", "lo \"wörld\" 👋", "!");
+        assertThat(decoder.isDone()).isTrue();
+    }
+
+    @Test
+    void notDoneUntilTheLastFrame() throws Exception {
+        OllamaStreamDecoder decoder = new OllamaStreamDecoder(factory);
+        decode(decoder, bytes(STREAM.substring(0, STREAM.indexOf("\"done\":true"))));
+
+        assertThat(decoder.isDone()).isFalse();
+    }
+
+    @Test
+    void errorFrameFails() throws Exception {
+        OllamaStreamDecoder decoder = new OllamaStreamDecoder(factory);
+        byte[] body = bytes("{\"response\":\"partial\",\"done\":false}\n{\"error\":\"model not found\"}\n");
+
+        assertThatThrownBy(() -> decode(decoder, body)).isInstanceOf(IOException.class)
+            .hasMessageContaining("model not found");
+    }
+
+    private static List<String> decode(OllamaStreamDecoder decoder, byte[]... pieces) throws IOException {
+        List<String> out = new ArrayList<>();
+        for (byte[] piece : pieces) decoder.feed(ByteBuffer.wrap(piece), out::add);
+        return out;
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] slice(byte[] all, int from, int to) {
+        byte[] out = new byte[to - from];
+        System.arraycopy(all, from, out, 0, out.length);
+        return out;
+    }
+}
@@ -0,0 +1,62 @@
+package com.chatbot.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import com.chatbot.config.ThreadPools;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class RagServiceTest {
+
+    // only fuse() is exercised, which touches none of the collaborators
+    private final RagService rag = new RagService(null, null, null, null, null, null,
+        225, 40, 5, 12, 60, 100, Duration.ofHours(1), EmbeddingCache.Encoding.FLOAT32,
+        new ThreadPools(false), new SimpleMeterRegistry());
+
+    @Test
+    void hitsBothSearchesFoundRankFirst() {
+        List<Map<String, Object>> fused = rag.fuse(hits("a", "b", "c"), hits("c", "d"), 10);
+
+        // c: 1/63 + 1/61; a: 1/61; b and d tie on 1/62 and keep the order they were seen in
+        assertThat(fused).extracting(h -> h.get("id")).containsExactly("c", "a", "b", "d");
+        assertThat((double) fused.get(0).get("score")).isEqualTo(1.0 / 63 + 1.0 / 61);
+        assertThat((double) fused.get(1).get("score")).isEqualTo(1.0 / 61);
+    }
+
+    @Test
+    void fusedListIsCutToTheLimit() {
+        assertThat(rag.fuse(hits("a", "b", "c"), hits("d", "e"), 2)).extracting(h -> h.get("id"))
+            .containsExactly("a", "d");
+    }
+
+    @Test
+    void vectorHitsPassThroughWhenLexicalFoundNothing() {
+        List<Map<String, Object>> vector = hits("a", "b", "c");
+
+        assertThat(rag.fuse(vector, List.of(), 5)).isSameAs(vector);
+        assertThat(rag.fuse(vector, List.of(), 2)).extracting(h -> h.get("id")).containsExactly("a", "b");
+    }
+
+    @Test
+    void inputHitsAreNotChanged() {
+        List<Map<String, Object>> vector = List.of(Map.of("id", "a", "score", 0.9f, "text", "vector copy"));
+        List<Map<String, Object>> lexical = List.of(Map.of("id", "a", "score", 7.5f, "text", "lexical copy"));
+
+        Map<String, Object> hit = rag.fuse(vector, lexical, 5).get(0);
+
+        // the vector search's copy of a chunk is kept, with the fused score
+        assertThat(hit).containsEntry("text", "vector copy").containsEntry("score", 2.0 / 61);
+        assertThat(vector.get(0)).containsEntry("score", 0.9f);
+    }
+
+    private static List<Map<String, Object>> hits(String... ids) {
+        return Arrays.stream(ids).map(id -> Map.<String, Object>of("id", id, "text", "chunk " + id)).toList();
+    }
+}
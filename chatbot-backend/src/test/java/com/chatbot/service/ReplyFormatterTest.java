@@ -0,0 +1,60 @@
+package com.chatbot.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import reactor.core.publisher.Flux;
+
+class ReplyFormatterTest {
+
+    private static final String[] PIECES = {
+        "a", "b", "x", "y", "z", "A", "P", "M", "AM", "PM", " ", "  ", "\n", "\t", "*", "**", "-", ":",
+        "1", "0", "9", ".", ",", "👋", "é", "Lecture", "10 : 30", " - ", "** bold **"
+    };
+
+    @Test
+    void piecesFormatToWhatTheWholeReplyFormatsTo() {
+        Random random = new Random(17);
+        for (int round = 0; round < 5000; round++) {
+            StringBuilder reply = new StringBuilder();
+            int pieces = random.nextInt(30);
+            for (int i = 0; i < pieces; i++) reply.append(PIECES[random.nextInt(PIECES.length)]);
+            String whole = reply.toString();
+
+            // the same reply, cut into chunks at random points (never inside an emoji)
+            ReplyFormatter formatter = new ReplyFormatter();
+            StringBuilder streamed = new StringBuilder();
+            int at = 0;
+            while (at < whole.length()) {
+                int end = Math.min(whole.length(), at + 1 + random.nextInt(6));
+                if (end < whole.length() && Character.isLowSurrogate(whole.charAt(end))) end++;
+                streamed.append(formatter.accept(whole.substring(at, end)));
+                at = end;
+            }
+            streamed.append(formatter.finish());
+
+            assertThat(streamed.toString()).as("%s", whole).isEqualTo(ChatGPTService.cleanAndFormatResponse(whole));
+        }
+    }
+
+    @Test
+    void textIsHeldBackOnlyUntilASafeCut() {
+        ReplyFormatter formatter = new ReplyFormatter();
+
+        // "10 " could still become "10 AM" or "10:30": the cut is between the last two plain letters
+        assertThat(formatter.accept("The lab is at 10 ")).isEqualTo("The lab is a");
+        assertThat(formatter.accept(": 30 - 11 : 30 in room")).isEqualTo("t 10:30-11:30 in roo");
+        assertThat(formatter.finish()).isEqualTo("m");
+    }
+
+    @Test
+    void streamSkipsPiecesThatAreAllHeldBack() {
+        List<String> out = ReplyFormatter.format(Flux.just("Class at", " 10", " : 30", " AM.")).collectList().block();
+
+        assertThat(out).containsExactly("Class a", "t 10:30 AM.");
+    }
+}
@@ -0,0 +1,124 @@
+package com.chatbot.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.DayOfWeek;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.DefaultResourceLoader;
+
+import com.chatbot.service.TimetableService.Slot;
+
+class TimetableServiceTest {
+
+    private static final String CSV = String.join("\n",
+        "Day,Time,Batch,Subject",
+        "Monday,08:30-10:30,BT2-B1(CS),Databases",
+        "Monday,09:00-09:30,BT2-ADBMS,\",\"",
+        "Monday,09:30-10:00,BT2-Hon-DL,\"Deep Learning\"",
+        "Monday,09:30-10:00,BT2-Hon-DL,\"Deep Learning\"",
+        "Monday,11:00-12:00,BT2-Hon-DL,Neural Nets",
+        "Monday,11:00-12:00,BT2-ADBMS,Advanced DB",
+        "Monday,sometime,BT2-ADBMS,Broken",
+        "Wednesday,10:00-11:00,BT2-B1(CS),Networks",
+        "");
+
+    @TempDir
+    Path dir;
+
+    private TimetableService service;
+
+    @AfterEach
+    void tearDown() {
+        if (service != null) service.close();
+    }
+
+    @Test
+    void nowIncludesALongClassThatStartedEarlier() throws Exception {
+        // Monday 09:45: the 08:30-10:30 class is still on although a later-starting one has ended
+        open("2026-03-02T09:45:00Z");
+
+        assertThat(subjects(service.now(null))).containsExactly("Databases", "Deep Learning");
+        assertThat(service.now("BT2-ADBMS")).isEmpty();
+    }
+
+    @Test
+    void nextIsTheEarliestStartAndRollsIntoLaterDays() throws Exception {
+        open("2026-03-02T09:45:00Z");
+
+        assertThat(subjects(service.next(null))).containsExactly("Advanced DB", "Neural Nets");
+        List<Slot> b1 = service.next("BT2-B1(CS)");
+        assertThat(subjects(b1)).containsExactly("Networks");
+        assertThat(b1.get(0).getDay()).isEqualTo(DayOfWeek.WEDNESDAY);
+    }
+
+    @Test
+    void dayAndWeekListingsAreInStartOrder() throws Exception {
+        open("2026-03-02T09:45:00Z");
+
+        // the duplicate row is dropped and the row with a bad time skipped
+        assertThat(service.on(DayOfWeek.MONDAY, null)).hasSize(5);
+        assertThat(service.on(DayOfWeek.TUESDAY, null)).isEmpty();
+        assertThat(subjects(service.week("bt2-b1(cs)"))).containsExactly("Databases", "Networks");
+        assertThat(subjects(service.on(DayOfWeek.MONDAY, "BT2-ADBMS"))).containsExactly("", "Advanced DB");
+    }
+
+    @Test
+    void batchIsFoundByAnyOfItsNames() throws Exception {
+        open("2026-03-02T09:45:00Z");
+
+        assertThat(service.batchIn("next class for BT2-Hon-DL")).isEqualTo("BT2-Hon-DL");
+        assertThat(service.batchIn("next class for hon-dl")).isEqualTo("BT2-Hon-DL");
+        assertThat(service.batchIn("b1 timetable")).isEqualTo("BT2-B1(CS)");
+        assertThat(service.batchIn("is adbms on")).isEqualTo("BT2-ADBMS");
+        // whole words only
+        assertThat(service.batchIn("xadbms")).isNull();
+    }
+
+    @Test
+    void answersNowNextAndToday() throws Exception {
+        open("2026-03-02T09:45:00Z");
+
+        assertThat(service.answer("what is on now for adbms")).isEqualTo(
+            "🕒 No class right now for **BT2-ADBMS**. Next up, at 11:00:\n\n**11:00-12:00** BT2-ADBMS — Advanced DB");
+        assertThat(service.answer("next class for b1")).isEqualTo(
+            "⏭️ Next class for **BT2-B1(CS)**, on Wednesday at 10:00:\n\n**10:00-11:00** BT2-B1(CS) — Networks");
+        assertThat(service.answer("classes today for hon-dl")).isEqualTo(
+            "📅 Monday for **BT2-Hon-DL**:\n\n**09:30-10:00** BT2-Hon-DL — Deep Learning\n\n**11:00-12:00** BT2-Hon-DL — Neural Nets");
+        assertThat(service.answer("classes tomorrow")).isEqualTo("📅 No classes on Tuesday.");
+    }
+
+    @Test
+    void missingFileLeavesTheTimetableEmpty() {
+        service = new TimetableService(new DefaultResourceLoader(), clock("2026-03-02T09:45:00Z"),
+            dir.resolve("missing.csv").toUri().toString(), Duration.ofMinutes(5));
+        service.open();
+
+        assertThat(service.isEmpty()).isTrue();
+        assertThat(service.answer("timetable")).isEqualTo("📅 The timetable is not available right now.");
+    }
+
+    private void open(String instant) throws Exception {
+        Path csv = Files.writeString(dir.resolve("timetable.csv"), CSV);
+        service = new TimetableService(new DefaultResourceLoader(), clock(instant), csv.toUri().toString(),
+            Duration.ofMinutes(5));
+        service.open();
+    }
+
+    private static Clock clock(String instant) {
+        return Clock.fixed(Instant.parse(instant), ZoneOffset.UTC);
+    }
+
+    private static List<String> subjects(List<Slot> slots) {
+        return slots.stream().map(Slot::getSubject).toList();
+    }
+}
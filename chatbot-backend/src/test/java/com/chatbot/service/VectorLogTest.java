@@ -0,0 +1,104 @@
+package com.chatbot.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+class VectorLogTest {
+
+    @TempDir
+    Path dir;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Test
+    void replayAppliesRecordsAfterTheSegmentAndCutsATornTail() throws Exception {
+        Path path = dir.resolve("vectors.log");
+        try (VectorLog log = new VectorLog(path, mapper)) {
+            log.replay(0, e -> {});
+            log.appendUpsert("a", new float[] { 1f, 2f }, Map.of("docKey", "x"));
+            log.appendUpsert("b", new float[] { 3f, 4f }, Map.of("docKey", "y"));
+            log.appendDelete("a");
+            log.sync();
+        }
+        long intact = Files.size(path);
+        // a crash halfway through a fourth append
+        Files.write(path, new byte[] { 0, 0, 0, 50, 1, 2 }, StandardOpenOption.APPEND);
+
+        List<VectorLog.Entry> applied = new ArrayList<>();
+        try (VectorLog log = new VectorLog(path, mapper)) {
+            // record 1 is already in the segment
+            log.replay(1, applied::add);
+
+            assertThat(applied).extracting(e -> e.sequence + ":" + e.id).containsExactly("2:b", "3:a");
+            assertThat(applied.get(0).type).isEqualTo(VectorLog.UPSERT);
+            assertThat(applied.get(0).vector).containsExactly(3f, 4f);
+            assertThat(applied.get(0).payload).containsEntry("docKey", "y");
+            assertThat(applied.get(1).type).isEqualTo(VectorLog.DELETE);
+            assertThat(log.lastSequence()).isEqualTo(3);
+            assertThat(log.entries()).isEqualTo(3);
+            assertThat(Files.size(path)).isEqualTo(intact);
+
+            // appends continue where the intact records end
+            assertThat(log.appendDelete("b")).isEqualTo(4);
+        }
+
+        List<String> all = new ArrayList<>();
+        try (VectorLog log = new VectorLog(path, mapper)) {
+            log.replay(0, e -> all.add(e.sequence + ":" + e.id));
+        }
+        assertThat(all).containsExactly("1:a", "2:b", "3:a", "4:b");
+    }
+
+    @Test
+    void corruptRecordEndsTheReplay() throws Exception {
+        Path path = dir.resolve("vectors.log");
+        long first;
+        try (VectorLog log = new VectorLog(path, mapper)) {
+            log.replay(0, e -> {});
+            log.appendDelete("a");
+            first = Files.size(path);
+            log.appendDelete("b");
+            log.appendDelete("c");
+        }
+        // flip a byte inside the second record's id
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            ch.write(ByteBuffer.wrap(new byte[] { 'z' }), first + 8 + 11);
+        }
+
+        List<String> applied = new ArrayList<>();
+        try (VectorLog log = new VectorLog(path, mapper)) {
+            log.replay(0, e -> applied.add(e.id));
+            assertThat(log.lastSequence()).isEqualTo(1);
+        }
+        assertThat(applied).containsExactly("a");
+        assertThat(Files.size(path)).isEqualTo(first);
+    }
+
+    @Test
+    void resetEmptiesTheLog() throws Exception {
+        Path path = dir.resolve("vectors.log");
+        try (VectorLog log = new VectorLog(path, mapper)) {
+            log.replay(0, e -> {});
+            log.appendDelete("a");
+            log.reset();
+
+            assertThat(log.entries()).isZero();
+            assertThat(Files.size(path)).isZero();
+            // sequences keep rising: the segment written from the log holds the old ones
+            assertThat(log.appendDelete("b")).isEqualTo(2);
+        }
+    }
+}
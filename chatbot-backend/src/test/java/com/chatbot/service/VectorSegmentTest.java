@@ -0,0 +1,125 @@
+package com.chatbot.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.chatbot.service.HnswIndex.Metric;
+import com.chatbot.service.VectorSegment.Encoding;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+class VectorSegmentTest {
+
+    private static final int DIM = 16;
+
+    @TempDir
+    Path dir;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final Random random = new Random(5);
+
+    @Test
+    void segmentReadsBackWhatWasWritten() throws Exception {
+        HnswIndex index = index(300);
+        index.markDeleted(9);
+        Path path = write("a.seg", index, Encoding.FLOAT32, 7);
+
+        VectorSegment segment = VectorSegment.open(path);
+
+        assertThat(segment.count()).isEqualTo(300);
+        assertThat(segment.dim()).isEqualTo(DIM);
+        assertThat(segment.metric()).isEqualTo(Metric.COSINE);
+        assertThat(segment.m()).isEqualTo(index.m());
+        assertThat(segment.entryPoint()).isEqualTo(index.entryPoint());
+        assertThat(segment.maxLevel()).isEqualTo(index.maxLevel());
+        assertThat(segment.logSequence()).isEqualTo(7);
+        assertThat(segment.documents()).containsEntry("doc-a", "hash-a");
+        assertThat(segment.deletedCount()).isEqualTo(1);
+        assertThat(segment.isDeleted(9)).isTrue();
+        assertThat(segment.id(42)).isEqualTo("id-42");
+        assertThat(segment.payload(42, mapper)).containsEntry("node", 42);
+        for (int node = 0; node < 300; node++) {
+            assertThat(segment.vector(node)).containsExactly(index.vector(node));
+            assertThat(segment.level(node)).isEqualTo(index.level(node));
+            for (int l = 0; l <= index.level(node); l++) {
+                assertThat(segment.linkCount(node, l)).isEqualTo(index.linkCount(node, l));
+                for (int i = 0; i < index.linkCount(node, l); i++) {
+                    assertThat(segment.link(node, l, i)).isEqualTo(index.link(node, l, i));
+                }
+            }
+        }
+    }
+
+    @Test
+    void int8VectorsStayWithinHalfAStep() throws Exception {
+        HnswIndex index = index(200);
+        VectorSegment segment = VectorSegment.open(write("q.seg", index, Encoding.INT8, 0));
+
+        for (int node = 0; node < 200; node++) {
+            float[] exact = index.vector(node);
+            float maxAbs = 0;
+            for (float f : exact) maxAbs = Math.max(maxAbs, Math.abs(f));
+            float[] read = segment.vector(node);
+            for (int i = 0; i < DIM; i++) assertThat(read[i]).isCloseTo(exact[i], within(maxAbs / 127f / 2 + 1e-6f));
+        }
+    }
+
+    @Test
+    void indexOverASegmentTakesNewVectorsAndWritesThemBack() throws Exception {
+        float[][] vectors = new float[500][];
+        for (int i = 0; i < vectors.length; i++) vectors[i] = vector();
+        HnswIndex index = new HnswIndex(Metric.COSINE, 8, 64);
+        for (int i = 0; i < 300; i++) index.add(vectors[i]);
+
+        HnswIndex over = new HnswIndex(VectorSegment.open(write("base.seg", index, Encoding.FLOAT32, 1)), 64);
+        for (int i = 300; i < 500; i++) assertThat(over.add(vectors[i])).isEqualTo(i);
+        over.markDeleted(3);
+        HnswIndex reopened = new HnswIndex(VectorSegment.open(write("merged.seg", over, Encoding.FLOAT32, 2)), 64);
+
+        assertThat(reopened.size()).isEqualTo(500);
+        assertThat(reopened.deletedCount()).isEqualTo(1);
+        int self = 0;
+        for (int i = 0; i < vectors.length; i++) {
+            int[] best = reopened.search(vectors[i], 1, 32, null).nodes;
+            if (best.length == 1 && best[0] == i) self++;
+        }
+        // every live vector finds itself, the deleted one does not
+        assertThat(self).isGreaterThanOrEqualTo(495).isLessThanOrEqualTo(499);
+        assertThat(reopened.search(vectors[3], 1, 32, null).nodes).doesNotContain(3);
+    }
+
+    @Test
+    void fileThatIsNotASegmentIsRejected() throws Exception {
+        Path path = Files.write(dir.resolve("junk.seg"), new byte[256]);
+
+        assertThatThrownBy(() -> VectorSegment.open(path)).isInstanceOf(IOException.class);
+    }
+
+    private Path write(String name, HnswIndex index, Encoding encoding, long logSequence) throws IOException {
+        Path path = dir.resolve(name);
+        VectorSegment.write(path, index, node -> "id-" + node, node -> Map.of("node", node),
+            Map.of("doc-a", "hash-a"), logSequence, encoding, mapper);
+        return path;
+    }
+
+    private HnswIndex index(int n) {
+        HnswIndex index = new HnswIndex(Metric.COSINE, 8, 64);
+        for (int i = 0; i < n; i++) index.add(vector());
+        return index;
+    }
+
+    private float[] vector() {
+        float[] v = new float[DIM];
+        for (int i = 0; i < DIM; i++) v[i] = (float) random.nextGaussian();
+        return v;
+    }
+}